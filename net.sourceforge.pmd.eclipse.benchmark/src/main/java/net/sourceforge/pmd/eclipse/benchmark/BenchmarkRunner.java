@@ -0,0 +1,43 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.benchmark;
+
+import java.util.Collection;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks inside the OSGi runtime of tycho-surefire. The usual JMH options are
+ * given with the system property <code>pmd.benchmark.args</code>, e.g.
+ * <code>-Dpmd.benchmark.args="EndToEndBenchmark -p sourceDir=/path/to/sources"</code>.
+ *
+ * <p>The benchmarks are not forked: a new JVM would not find the bundles.</p>
+ */
+public class BenchmarkRunner {
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        String args = System.getProperty("pmd.benchmark.args", "").trim();
+        CommandLineOptions commandLine = new CommandLineOptions(args.isEmpty() ? new String[0] : args.split("\\s+"));
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(commandLine);
+        builder.forks(0);
+        String result = System.getProperty("pmd.benchmark.result");
+        if (result != null) {
+            builder.resultFormat(ResultFormatType.JSON).result(result);
+        }
+        Options options = builder.build();
+
+        Collection<RunResult> results = new Runner(options).run();
+        Assert.assertFalse("No benchmark has been run", results.isEmpty());
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+
+/**
+ * Provides the source code, that is analyzed by the benchmarks.
+ */
+public final class BenchmarkSources {
+
+    /**
+     * The default location of the test projects, relative to the repository root. If the benchmarks
+     * are started from the benchmark module, the directory is found as well.
+     */
+    public static final String DEFAULT_SOURCE_DIR = "test-projects";
+
+    private BenchmarkSources() {
+        // utility
+    }
+
+    /**
+     * Generates a java class with the given number of methods. Every method has a javadoc comment,
+     * a line comment and - if requested - a review comment of the plugin in front of a statement.
+     *
+     * @param methods the number of methods
+     * @param withReviews whether every method should contain a reviewed violation
+     * @return the source code of the class
+     */
+    public static String generateClass(int methods, boolean withReviews) {
+        StringBuilder source = new StringBuilder(methods * 300);
+        source.append("package net.sourceforge.pmd.eclipse.benchmark.sample;\n\n");
+        source.append("import java.util.ArrayList;\nimport java.util.List;\n\n");
+        source.append("/**\n * Generated sample class.\n */\n");
+        source.append("public class Sample {\n");
+        for (int i = 0; i < methods; i++) {
+            source.append("\n    /**\n     * Method number ").append(i).append(".\n     */\n");
+            source.append("    public List<String> method").append(i).append("(int count) {\n");
+            source.append("        // collect the values\n");
+            source.append("        List<String> values = new ArrayList<>();\n");
+            source.append("        for (int j = 0; j < count; j++) {\n");
+            if (withReviews) {
+                source.append("            ").append(PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT)
+                    .append("AvoidInstantiatingObjectsInLoops: by benchmark on 01/01/22 12:00\n");
+            }
+            source.append("\t\t\tvalues.add(new String(\"value\" + j));\n");
+            source.append("        }\n");
+            source.append("        return values;\n");
+            source.append("    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    /**
+     * Resolves a relative directory against the working directory or - if it doesn't exist
+     * there - against its parent, so that the benchmarks can be started from the repository
+     * root as well as from the benchmark module. Inside tycho-surefire, the working directory
+     * is somewhere else, the {@link #DEFAULT_SOURCE_DIR} is then given with the system property
+     * <code>pmd.test.projects</code>.
+     *
+     * @param directory the directory, e.g. {@link #DEFAULT_SOURCE_DIR}
+     * @return the existing directory
+     * @throws IOException if the directory doesn't exist
+     */
+    public static File resolveDirectory(String directory) throws IOException {
+        File dir = new File(directory);
+        String testProjects = System.getProperty("pmd.test.projects");
+        if (!dir.isDirectory() && DEFAULT_SOURCE_DIR.equals(directory) && testProjects != null) {
+            dir = new File(testProjects);
+        }
+        if (!dir.isDirectory() && !dir.isAbsolute()) {
+            File fromModule = new File("..", directory);
+            if (fromModule.isDirectory()) {
+                dir = fromModule;
+            }
+        }
+        if (!dir.isDirectory()) {
+            throw new IOException("The source directory " + dir.getAbsolutePath()
+                    + " doesn't exist, use \"-p sourceDir=<directory>\"");
+        }
+        return dir;
+    }
+
+    /**
+     * Finds all java files below the given directory.
+     *
+     * @param directory the root directory, e.g. {@link #DEFAULT_SOURCE_DIR}
+     * @return the java files, sorted by path
+     * @throws IOException if the directory couldn't be read
+     * @see #resolveDirectory(String)
+     */
+    public static List<File> javaFilesIn(String directory) throws IOException {
+        final File root = resolveDirectory(directory);
+        final List<File> files = new ArrayList<>();
+        Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (file.getFileName().toString().endsWith(".java")) {
+                    files.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (files.isEmpty()) {
+            throw new IOException("No java files found in " + root.getAbsolutePath());
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    public static String read(File file) throws IOException {
+        return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.eclipse.ui.views.cpd2.SourceLines;
+
+/**
+ * Measures the splitting of the source code slices of the CPD matches into lines, that is done
+ * by the CPD view for every match. The view itself needs a workbench, so the benchmark uses
+ * {@link SourceLines} directly, which the view delegates to.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CpdSourceLinesBenchmark {
+
+    /** The number of duplicated methods in the slice, every method has about ten lines. */
+    @Param({ "1", "50" })
+    private int methods;
+
+    private String sourceCodeSlice;
+
+    @Setup
+    public void setup() {
+        String source = BenchmarkSources.generateClass(methods, false);
+        // a match starts and ends somewhere in the middle of the class
+        sourceCodeSlice = source.substring(source.indexOf("    /**"), source.lastIndexOf('}'));
+    }
+
+    @Benchmark
+    public String[] linesTrimmed() {
+        return SourceLines.linesFrom(sourceCodeSlice, true);
+    }
+
+    @Benchmark
+    public String[] linesUntrimmed() {
+        return SourceLines.linesFrom(sourceCodeSlice, false);
+    }
+}
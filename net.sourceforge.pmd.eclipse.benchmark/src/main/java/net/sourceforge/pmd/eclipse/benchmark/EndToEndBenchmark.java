@@ -0,0 +1,83 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.PMDConfiguration;
+import net.sourceforge.pmd.Report;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetLoader;
+import net.sourceforge.pmd.eclipse.ui.actions.internal.InternalRuleSetUtil;
+import net.sourceforge.pmd.renderers.Renderer;
+import net.sourceforge.pmd.util.datasource.DataSource;
+import net.sourceforge.pmd.util.datasource.FileDataSource;
+
+/**
+ * Analyzes the sources of the test projects with the quickstart ruleset, the same way the
+ * review does it: one file after another, without the incremental analysis cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class EndToEndBenchmark {
+
+    @Param(BenchmarkSources.DEFAULT_SOURCE_DIR)
+    private String sourceDir;
+
+    @Param("rulesets/java/quickstart.xml")
+    private String ruleSetName;
+
+    private PMDConfiguration configuration;
+    private List<RuleSet> ruleSets;
+    private List<File> files;
+
+    @Setup
+    public void setup() throws IOException {
+        configuration = new PMDConfiguration();
+        configuration.setThreads(0);
+        configuration.setIgnoreIncrementalAnalysis(true);
+        RuleSet ruleSet = new RuleSetLoader().loadFromResource(ruleSetName);
+        ruleSets = Collections.singletonList(ruleSet);
+        files = BenchmarkSources.javaFilesIn(sourceDir);
+    }
+
+    @Benchmark
+    public int reviewFiles() {
+        int violations = 0;
+        for (File file : files) {
+            if (!InternalRuleSetUtil.ruleSetsApplies(ruleSets, file)) {
+                continue;
+            }
+            List<DataSource> dataSources = new ArrayList<>();
+            dataSources.add(new FileDataSource(file));
+            Report report = PMD.processFiles(configuration, ruleSets, dataSources,
+                    Collections.<Renderer>emptyList());
+            violations += report.getViolations().size();
+        }
+        return violations;
+    }
+}
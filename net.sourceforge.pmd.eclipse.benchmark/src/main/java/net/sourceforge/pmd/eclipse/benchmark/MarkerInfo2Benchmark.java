@@ -0,0 +1,45 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.core.resources.IMarker;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.cmd.MarkerInfo2;
+
+/**
+ * Measures the creation of the marker infos, one of which is created for every violation.
+ * Uses the same attributes as the review.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarkerInfo2Benchmark {
+
+    @Benchmark
+    public MarkerInfo2 createMarkerInfo() {
+        MarkerInfo2 info = new MarkerInfo2(PMDRuntimeConstants.PMD_MARKER_3, 7);
+        info.add(IMarker.MESSAGE, "UnusedLocalVariable: Avoid unused local variables such as 'x'.");
+        info.add(PMDRuntimeConstants.KEY_MARKERATT_MESSAGE, "Avoid unused local variables such as 'x'.");
+        info.add(IMarker.LINE_NUMBER, 42);
+        info.add(PMDRuntimeConstants.KEY_MARKERATT_LINE2, 42);
+        info.add(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, "UnusedLocalVariable");
+        info.add(PMDRuntimeConstants.KEY_MARKERATT_PRIORITY, 3);
+        info.add(IMarker.PRIORITY, IMarker.PRIORITY_NORMAL);
+        info.add(IMarker.SEVERITY, IMarker.SEVERITY_WARNING);
+        return info;
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetLoader;
+import net.sourceforge.pmd.eclipse.ui.actions.internal.InternalRuleSetUtil;
+
+/**
+ * Measures the preparation of the rulesets with the exclude patterns of a project and the check,
+ * whether the rulesets apply to a file. The latter is done for every file of a review.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuleSetUtilBenchmark {
+
+    @Param({ "0", "50" })
+    private int excludePatterns;
+
+    @Param(BenchmarkSources.DEFAULT_SOURCE_DIR)
+    private String sourceDir;
+
+    private RuleSet ruleSet;
+    private Collection<Pattern> activeExclusionPatterns;
+    private List<RuleSet> preparedRuleSets;
+    private List<File> files;
+
+    @Setup
+    public void setup() throws IOException {
+        ruleSet = new RuleSetLoader().loadFromResource("rulesets/java/quickstart.xml");
+        activeExclusionPatterns = new ArrayList<>();
+        for (int i = 0; i < excludePatterns; i++) {
+            activeExclusionPatterns.add(Pattern.compile(".*/generated" + i + "/.*"));
+        }
+        preparedRuleSets = Collections.singletonList(InternalRuleSetUtil.addExcludePatterns(ruleSet,
+                activeExclusionPatterns, Collections.<Pattern>emptySet()));
+        files = BenchmarkSources.javaFilesIn(sourceDir);
+    }
+
+    @Benchmark
+    public RuleSet addExcludePatterns() {
+        return InternalRuleSetUtil.addExcludePatterns(ruleSet, activeExclusionPatterns,
+                Collections.<Pattern>emptySet());
+    }
+
+    @Benchmark
+    public void ruleSetsApplies(Blackhole blackhole) {
+        for (File file : files) {
+            blackhole.consume(InternalRuleSetUtil.ruleSetsApplies(preparedRuleSets, file));
+        }
+    }
+}
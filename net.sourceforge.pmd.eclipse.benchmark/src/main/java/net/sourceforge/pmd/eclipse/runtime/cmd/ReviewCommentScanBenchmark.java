@@ -0,0 +1,53 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.sourceforge.pmd.eclipse.benchmark.BenchmarkSources;
+
+/**
+ * Measures the search for the review comments of the plugin, that is done for every file
+ * with violations. Lives in the package of {@link BaseVisitor} to access the scan directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReviewCommentScanBenchmark {
+
+    @Param({ "10", "1000" })
+    private int methods;
+
+    @Param({ "true", "false" })
+    private boolean withReviews;
+
+    private String source;
+
+    @Setup
+    public void setup() {
+        source = BenchmarkSources.generateClass(methods, withReviews);
+    }
+
+    @Benchmark
+    public Set<BaseVisitor.Review> findReviewedViolations() {
+        return BaseVisitor.findReviewedViolations(source);
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.core.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferencesManager;
+import net.sourceforge.pmd.eclipse.ui.actions.RuleSetUtil;
+
+public class RuleRegistryTest {
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Test
+    public void findsTheRulesOfTheConfiguredRuleSet() {
+        RuleSet ruleSet = PMDPlugin.getDefault().getPreferencesManager().getRuleSet();
+        Assert.assertFalse("The configured rule set is empty", ruleSet.getRules().isEmpty());
+        RuleRegistry registry = RuleRegistry.getInstance();
+        for (Rule rule : ruleSet.getRules()) {
+            Assert.assertSame(ruleSet.getRuleByName(rule.getName()), registry.getRule(rule.getName()));
+            Assert.assertNotNull(registry.getRule(rule.getLanguage(), rule.getName()));
+        }
+        Assert.assertNull(registry.getRule("NoSuchRule"));
+        Assert.assertNull(registry.getRule(null));
+    }
+
+    @Test
+    public void findsTheRulesOfTheRegisteredRuleSets() {
+        RuleRegistry registry = RuleRegistry.getInstance();
+        int count = 0;
+        for (RuleSet ruleSet : PMDPlugin.getDefault().getRuleSetManager().getRegisteredRuleSets()) {
+            for (Rule rule : ruleSet.getRules()) {
+                Assert.assertTrue(registry.getRegisteredRuleNames().contains(rule.getName()));
+                Assert.assertNotNull(registry.getRegisteredRule(rule.getName()));
+                count++;
+            }
+        }
+        Assert.assertTrue("No registered rules", count > 0);
+        Assert.assertNull(registry.getRegisteredRule("NoSuchRule"));
+    }
+
+    @Test
+    public void indexIsUpdatedWhenTheRuleSetChanges() {
+        IPreferencesManager preferencesManager = PMDPlugin.getDefault().getPreferencesManager();
+        RuleSet oldRuleSet = preferencesManager.getRuleSet();
+        Rule first = oldRuleSet.getRules().iterator().next();
+        Rule other = null;
+        for (Rule rule : oldRuleSet.getRules()) {
+            if (!rule.getName().equals(first.getName())) {
+                other = rule;
+            }
+        }
+        Assert.assertNotNull("The configured rule set has only one rule", other);
+        RuleRegistry registry = RuleRegistry.getInstance();
+        Assert.assertNotNull(registry.getRule(other.getName()));
+
+        try {
+            preferencesManager.setRuleSet(RuleSetUtil.newSingle(first));
+            Assert.assertNotNull(registry.getRule(first.getName()));
+            Assert.assertNull("The removed rule is still found", registry.getRule(other.getName()));
+            Assert.assertNull(registry.getRule(other.getLanguage(), other.getName()));
+        } finally {
+            preferencesManager.setRuleSet(oldRuleSet);
+        }
+        Assert.assertNotNull(registry.getRule(other.getName()));
+    }
+}
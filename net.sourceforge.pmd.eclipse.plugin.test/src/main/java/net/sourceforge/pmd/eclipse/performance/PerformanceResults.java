@@ -0,0 +1,116 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.performance;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Collects the results of a performance test run. The results are appended as one JSON object
+ * per line to the result file, so that the runs of different plugin versions can be compared.
+ */
+public class PerformanceResults {
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private final Map<String, Number> metrics = new LinkedHashMap<>();
+
+    public void addParameter(String name, Object value) {
+        parameters.put(name, value);
+    }
+
+    public void addMetric(String name, Number value) {
+        metrics.put(name, value);
+    }
+
+    /**
+     * Adds the median of the measurements.
+     *
+     * @return the median
+     */
+    public long addMedian(String name, long[] measurements) {
+        long[] sorted = measurements.clone();
+        Arrays.sort(sorted);
+        long median = sorted[sorted.length / 2];
+        addMetric(name, median);
+        return median;
+    }
+
+    public Map<String, Number> getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Appends the results as a single line to the given file.
+     */
+    public void appendTo(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            writer.write(toJson());
+            writer.write('\n');
+        }
+    }
+
+    String toJson() {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.ROOT);
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        StringBuilder json = new StringBuilder(512);
+        json.append("{\"timestamp\":");
+        appendValue(json, format.format(new Date()));
+        for (Map.Entry<String, Object> parameter : parameters.entrySet()) {
+            json.append(',');
+            appendValue(json, parameter.getKey());
+            json.append(':');
+            appendValue(json, parameter.getValue());
+        }
+        json.append(",\"metrics\":{");
+        boolean first = true;
+        for (Map.Entry<String, Number> metric : metrics.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            appendValue(json, metric.getKey());
+            json.append(':');
+            appendValue(json, metric.getValue());
+        }
+        json.append("}}");
+        return json.toString();
+    }
+
+    private static void appendValue(StringBuilder json, Object value) {
+        if (value instanceof Number || value instanceof Boolean) {
+            json.append(value);
+            return;
+        }
+        json.append('"');
+        String text = String.valueOf(value);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.performance;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+
+/**
+ * Generates java projects of a configurable size for the performance tests. The source files
+ * are created from the java classes found in the template directory (usually {@code test-projects}):
+ * every generated file is a copy of a randomly chosen template, moved into one of the generated
+ * packages and renamed, plus the requested number of methods with a violation of
+ * {@code EmptyCatchBlock}. With the same seed, the same files are generated.
+ */
+public class WorkspaceGenerator {
+    private static final Pattern PACKAGE_DECLARATION = Pattern.compile("^\\s*package\\s+[\\w.]+\\s*;",
+            Pattern.MULTILINE);
+    private static final Pattern CLASS_DECLARATION = Pattern.compile(
+            "^(?:public\\s+|abstract\\s+|final\\s+)*class\\s+(\\w+)", Pattern.MULTILINE);
+
+    private final List<String> templates;
+    private final long seed;
+
+    /**
+     * @param templateDirectory the directory, that is searched recursively for java files
+     * @param seed the seed for choosing the templates
+     * @throws IOException if there are no templates
+     */
+    public WorkspaceGenerator(File templateDirectory, long seed) throws IOException {
+        this.templates = loadTemplates(templateDirectory);
+        this.seed = seed;
+    }
+
+    private static List<String> loadTemplates(File templateDirectory) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        if (templateDirectory.isDirectory()) {
+            Files.walkFileTree(templateDirectory.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (file.getFileName().toString().endsWith(".java")) {
+                        files.add(file);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        if (files.isEmpty()) {
+            throw new IOException("No java templates found in " + templateDirectory.getAbsolutePath());
+        }
+        // the order of the file system is not stable
+        Collections.sort(files);
+
+        List<String> result = new ArrayList<>(files.size());
+        for (Path file : files) {
+            String source = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            // interfaces can't take the additional methods
+            if (CLASS_DECLARATION.matcher(source).find()) {
+                result.add(source);
+            }
+        }
+        if (result.isEmpty()) {
+            throw new IOException("No java classes found in " + templateDirectory.getAbsolutePath());
+        }
+        return result;
+    }
+
+    /**
+     * Creates a new java project with the generated source files.
+     *
+     * @param projectName the name of the project
+     * @param fileCount the number of source files
+     * @param packageCount the number of packages, the files are distributed to
+     * @param violationsPerFile the number of additional violations in every file
+     * @return the project
+     */
+    public IProject generate(String projectName, final int fileCount, final int packageCount,
+            final int violationsPerFile) throws CoreException {
+        final IProject project = EclipseUtils.createJavaProject(projectName);
+
+        // one workspace operation, otherwise every file triggers a resource change event
+        ResourcesPlugin.getWorkspace().run(new IWorkspaceRunnable() {
+            @Override
+            public void run(IProgressMonitor monitor) throws CoreException {
+                Random random = new Random(seed);
+                for (int i = 0; i < packageCount; i++) {
+                    EclipseUtils.createFolders(project, "/src/" + packageName(i).replace('.', '/'));
+                }
+                for (int i = 0; i < fileCount; i++) {
+                    String template = templates.get(random.nextInt(templates.size()));
+                    String packageName = packageName(i % packageCount);
+                    String typeName = "Generated" + i;
+                    String source = sourceFrom(template, packageName, typeName, violationsPerFile);
+                    IFile file = project.getFile("/src/" + packageName.replace('.', '/') + "/" + typeName + ".java");
+                    file.create(new ByteArrayInputStream(source.getBytes(StandardCharsets.UTF_8)), true, monitor);
+                }
+            }
+        }, null);
+        return project;
+    }
+
+    private static String packageName(int index) {
+        return "generated.pkg" + index;
+    }
+
+    /**
+     * Moves the template into the given package, renames its class and adds the violations.
+     */
+    static String sourceFrom(String template, String packageName, String typeName, int violations) {
+        String source = template;
+        Matcher type = CLASS_DECLARATION.matcher(source);
+        if (type.find()) {
+            source = source.replaceAll("\\b" + Pattern.quote(type.group(1)) + "\\b", typeName);
+        }
+
+        Matcher packageDeclaration = PACKAGE_DECLARATION.matcher(source);
+        if (packageDeclaration.find()) {
+            source = packageDeclaration.replaceFirst("package " + packageName + ";");
+        } else {
+            source = "package " + packageName + ";\n\n" + source;
+        }
+
+        int end = source.lastIndexOf('}');
+        if (end < 0 || violations == 0) {
+            return source;
+        }
+        StringBuilder result = new StringBuilder(source.length() + violations * 150);
+        result.append(source, 0, end);
+        for (int i = 0; i < violations; i++) {
+            result.append("\n    public void generatedViolation").append(i).append("() {\n")
+                .append("        try {\n")
+                .append("            Integer.parseInt(\"").append(i).append("\");\n")
+                .append("        } catch (NumberFormatException e) {\n")
+                .append("        }\n")
+                .append("    }\n");
+        }
+        result.append(source.substring(end));
+        return result.toString();
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.performance;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceDescription;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+import net.sourceforge.pmd.eclipse.WaitingMonitor;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+import net.sourceforge.pmd.eclipse.runtime.builder.PMDBuilder;
+import net.sourceforge.pmd.eclipse.runtime.builder.PMDNature;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ProjectAnalysisCache;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCodeCmd;
+import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.eclipse.ui.actions.internal.InternalRuleSetUtil;
+import net.sourceforge.pmd.eclipse.ui.model.RootRecord;
+
+/**
+ * Measures the build and review times and the memory usage for a generated workspace of
+ * configurable size. The test is skipped unless the system property {@code pmd.performance}
+ * is set, e.g. with the maven profile {@code performance} of this module.
+ *
+ * <p>The size of the workspace is configured with the system properties
+ * {@code pmd.performance.files}, {@code pmd.performance.packages},
+ * {@code pmd.performance.violations} (per file) and {@code pmd.performance.seed}.
+ * Every time is measured {@code pmd.performance.iterations} times, the median is reported.
+ * The results are appended to the file {@code pmd.performance.output}.
+ */
+public class WorkspacePerformanceTest {
+    private static final Logger LOG = LoggerFactory.getLogger(WorkspacePerformanceTest.class);
+
+    private static final String PROJECT_NAME = "PerformanceTestProject";
+    private static final String RULESET = "rulesets/java/quickstart.xml";
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    private final int fileCount = Integer.getInteger("pmd.performance.files", 1000);
+    private final int packageCount = Integer.getInteger("pmd.performance.packages", 20);
+    private final int violationsPerFile = Integer.getInteger("pmd.performance.violations", 5);
+    private final long seed = Long.getLong("pmd.performance.seed", 42L);
+    private final int iterations = Integer.getInteger("pmd.performance.iterations", 3);
+    private final int changedFiles = Integer.getInteger("pmd.performance.changedFiles", 10);
+    private final File templateDirectory = new File(System.getProperty("pmd.performance.templates",
+            "../test-projects"));
+    private final File outputFile = new File(System.getProperty("pmd.performance.output",
+            "performance-results.jsonl"));
+
+    private final PerformanceResults results = new PerformanceResults();
+    private IProject project;
+    private boolean autoBuilding;
+    private boolean checkAfterSave;
+
+    @Before
+    public void setUp() throws Exception {
+        Assume.assumeTrue("Performance tests are disabled", Boolean.getBoolean("pmd.performance"));
+
+        // the builds are triggered explicitly, the file change listener would analyze the changed files, too
+        IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        IWorkspaceDescription description = workspace.getDescription();
+        autoBuilding = description.isAutoBuilding();
+        description.setAutoBuilding(false);
+        workspace.setDescription(description);
+        IPreferences preferences = PMDPlugin.getDefault().loadPreferences();
+        checkAfterSave = preferences.isCheckAfterSaveEnabled();
+        preferences.isCheckAfterSaveEnabled(false);
+        PMDPlugin.getDefault().fileChangeListenerEnabled(false);
+
+        long start = System.currentTimeMillis();
+        WorkspaceGenerator generator = new WorkspaceGenerator(templateDirectory, seed);
+        project = generator.generate(PROJECT_NAME, fileCount, packageCount, violationsPerFile);
+        results.addMetric("generationMs", System.currentTimeMillis() - start);
+
+        IProjectProperties properties = PMDPlugin.getDefault().getPropertiesManager()
+                .loadProjectProperties(project);
+        RuleSet ruleSet = InternalRuleSetUtil.getDefaultRuleSetLoader().loadFromResource(RULESET);
+        properties.setProjectRuleSet(ruleSet);
+        properties.setPmdEnabled(true);
+        PMDPlugin.getDefault().getPropertiesManager().storeProjectProperties(properties);
+        PMDNature.addPMDNature(project, null);
+        EclipseUtils.waitForJobs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (project == null) {
+            return;
+        }
+        try {
+            results.addParameter("pluginVersion", PMDPlugin.getDefault().getBundle().getVersion().toString());
+            results.addParameter("pmdVersion", PMDVersion.VERSION);
+            results.addParameter("javaVersion", System.getProperty("java.version"));
+            results.addParameter("processors", Runtime.getRuntime().availableProcessors());
+            results.addParameter("maxHeap", Runtime.getRuntime().maxMemory());
+            results.addParameter("files", fileCount);
+            results.addParameter("packages", packageCount);
+            results.addParameter("violationsPerFile", violationsPerFile);
+            results.addParameter("seed", seed);
+            results.addParameter("iterations", iterations);
+            results.addParameter("ruleset", RULESET);
+            results.appendTo(outputFile);
+            LOG.info("Performance results written to {}: {}", outputFile.getAbsolutePath(), results.getMetrics());
+        } finally {
+            ProjectAnalysisCache.remove(project);
+            EclipseUtils.removePMDNature(project);
+            project.delete(true, true, null);
+            project = null;
+
+            IWorkspace workspace = ResourcesPlugin.getWorkspace();
+            IWorkspaceDescription description = workspace.getDescription();
+            description.setAutoBuilding(autoBuilding);
+            workspace.setDescription(description);
+            PMDPlugin.getDefault().loadPreferences().isCheckAfterSaveEnabled(checkAfterSave);
+            PMDPlugin.getDefault().fileChangeListenerEnabled(checkAfterSave);
+        }
+    }
+
+    @Test
+    public void measureWorkspace() throws Exception {
+        long baselineHeap = usedHeap();
+
+        measureReviewCodeCmd();
+        measureFullBuild();
+        measureIncrementalBuild();
+
+        long heapBeforeRoot = usedHeap();
+        RootRecord root = measureRootRecord();
+        long heapWithRoot = usedHeap();
+        results.addMetric("rootRecordRetainedHeapBytes", heapWithRoot - heapBeforeRoot);
+        results.addMetric("retainedHeapBytes", heapWithRoot - baselineHeap);
+        // keeps the record reachable until the heap is measured
+        Assert.assertNotNull(root.getChildren());
+    }
+
+    /**
+     * Reviews the whole project without the analysis cache.
+     */
+    private void measureReviewCodeCmd() {
+        long[] durations = new long[iterations];
+        long[] pmdDurations = new long[iterations];
+        long[] markerDurations = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            ProjectAnalysisCache.remove(project);
+            ReviewCodeCmd cmd = new ReviewCodeCmd();
+            cmd.addResource(project);
+            cmd.setRunAlways(true);
+            cmd.setRetainMarkers(false);
+
+            long start = System.currentTimeMillis();
+            cmd.performExecute();
+            cmd.join();
+            durations[i] = System.currentTimeMillis() - start;
+            pmdDurations[i] = cmd.getPmdDuration();
+            markerDurations[i] = cmd.getMarkerDuration();
+            Assert.assertEquals(fileCount, cmd.getFileCount());
+        }
+        long median = results.addMedian("reviewMs", durations);
+        results.addMedian("reviewPmdMs", pmdDurations);
+        results.addMedian("applyMarkersMs", markerDurations);
+        results.addMetric("reviewFilesPerSecond", median == 0 ? fileCount : fileCount * 1000L / median);
+    }
+
+    /**
+     * Builds the project from scratch, then again with the analysis cache from the previous build.
+     */
+    private void measureFullBuild() throws Exception {
+        long[] coldDurations = new long[iterations];
+        long[] warmDurations = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            ProjectAnalysisCache.remove(project);
+            MarkerUtil.deleteAllMarkersIn(project);
+            coldDurations[i] = build(IncrementalProjectBuilder.FULL_BUILD);
+            warmDurations[i] = build(IncrementalProjectBuilder.FULL_BUILD);
+        }
+        results.addMedian("fullBuildMs", coldDurations);
+        results.addMedian("fullBuildCachedMs", warmDurations);
+        results.addMetric("markers", project.findMarkers(null, true, IResource.DEPTH_INFINITE).length);
+    }
+
+    /**
+     * Changes some files and builds the project incrementally.
+     */
+    private void measureIncrementalBuild() throws Exception {
+        List<IFile> files = javaFiles();
+        Random random = new Random(seed);
+        long[] durations = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            for (int j = 0; j < changedFiles; j++) {
+                IFile file = files.get(random.nextInt(files.size()));
+                String change = "\n// change " + i + "\n";
+                file.appendContents(new ByteArrayInputStream(change.getBytes(StandardCharsets.UTF_8)), true,
+                        false, null);
+            }
+            durations[i] = build(IncrementalProjectBuilder.INCREMENTAL_BUILD);
+        }
+        results.addMedian("incrementalBuildMs", durations);
+    }
+
+    private RootRecord measureRootRecord() {
+        long[] durations = new long[iterations];
+        RootRecord root = null;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.currentTimeMillis();
+            root = new RootRecord(ResourcesPlugin.getWorkspace().getRoot());
+            durations[i] = System.currentTimeMillis() - start;
+        }
+        results.addMedian("rootRecordMs", durations);
+        return root;
+    }
+
+    private long build(int kind) throws Exception {
+        WaitingMonitor monitor = new WaitingMonitor();
+        long start = System.currentTimeMillis();
+        project.build(kind, PMDBuilder.PMD_BUILDER, null, monitor);
+        monitor.await();
+        return System.currentTimeMillis() - start;
+    }
+
+    private List<IFile> javaFiles() throws CoreException {
+        final List<IFile> files = new ArrayList<>();
+        project.accept(new IResourceVisitor() {
+            @Override
+            public boolean visit(IResource resource) {
+                if (resource instanceof IFile && "java".equals(resource.getFileExtension())) {
+                    files.add((IFile) resource);
+                }
+                return true;
+            }
+        });
+        return files;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.builder;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCodeCmd;
+
+public class MarkerIndexTest {
+    private IProject testProject;
+    private IFile testFile;
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("MarkerIndexTest");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        testFile = EclipseUtils.createTestSourceFile(testProject);
+        PMDPlugin.getDefault().getPropertiesManager().loadProjectProperties(testProject).setPmdEnabled(true);
+
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.addResource(testProject);
+        cmd.performExecute();
+        cmd.join();
+        Assert.assertTrue("No markers found", markerCount(testProject) > 0);
+        awaitBuilt();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        awaitBuilt();
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            EclipseUtils.removePMDNature(testProject);
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+        testProject = null;
+    }
+
+    @Test
+    public void indexAnswersLikeTheWorkspace() throws Exception {
+        assertIndexMatchesWorkspace();
+    }
+
+    @Test
+    public void queriesFallBackUntilTheIndexIsBuilt() throws Exception {
+        MarkerIndex index = MarkerIndex.getInstance();
+        index.stop();
+        try {
+            Assert.assertFalse(index.isBuilt());
+            assertIndexMatchesWorkspace();
+        } finally {
+            index.start(ResourcesPlugin.getWorkspace());
+        }
+        awaitBuilt();
+        assertIndexMatchesWorkspace();
+    }
+
+    @Test
+    public void packageCountsOnlyTheDirectMembers() throws Exception {
+        MarkerIndex index = MarkerIndex.getInstance();
+        IResource folder = testFile.getParent();
+        int inFolder = 0;
+        int inProjectRoot = 0;
+        for (RulePriority priority : RulePriority.values()) {
+            inFolder += index.countMarkers(folder, priority.getPriority(), IResource.DEPTH_ONE);
+            inProjectRoot += index.countMarkers(testProject, priority.getPriority(), IResource.DEPTH_ONE);
+        }
+        Assert.assertEquals(markerCount(testFile), inFolder);
+        Assert.assertEquals("The file is not a direct member of the project", 0, inProjectRoot);
+    }
+
+    @Test
+    public void deletedMarkersAreRemoved() throws Exception {
+        MarkerUtil.deleteAllMarkersIn(testProject);
+        Assert.assertFalse(MarkerIndex.getInstance().hasMarkers(testProject));
+        Assert.assertEquals(0, MarkerIndex.getInstance().findMarkers(testFile).length);
+    }
+
+    private void assertIndexMatchesWorkspace() throws CoreException {
+        MarkerIndex index = MarkerIndex.getInstance();
+        int expected = markerCount(testProject);
+        Assert.assertTrue(index.hasMarkers(testProject));
+        Assert.assertTrue(index.hasMarkers(testFile));
+        Assert.assertEquals(expected, index.findMarkers(testProject).length);
+        Assert.assertEquals(markerCount(testFile), index.findMarkers(testFile).length);
+
+        int counted = 0;
+        for (RulePriority priority : RulePriority.values()) {
+            counted += index.countMarkers(testProject, priority.getPriority());
+        }
+        Assert.assertEquals(expected, counted);
+        Assert.assertFalse(index.prioritiesIn(testProject).isEmpty());
+    }
+
+    private static int markerCount(IResource resource) throws CoreException {
+        int count = 0;
+        for (String markerType : PMDRuntimeConstants.RULE_MARKER_TYPES) {
+            count += resource.findMarkers(markerType, false, IResource.DEPTH_INFINITE).length;
+        }
+        return count;
+    }
+
+    private static void awaitBuilt() throws InterruptedException {
+        long timeout = System.currentTimeMillis() + 30000;
+        while (!MarkerIndex.getInstance().isBuilt()) {
+            if (System.currentTimeMillis() > timeout) {
+                Assert.fail("The marker index has not been built");
+            }
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.pmd.cpd.CPD;
+import net.sourceforge.pmd.cpd.CPDConfiguration;
+import net.sourceforge.pmd.cpd.LanguageFactory;
+import net.sourceforge.pmd.cpd.Match;
+import net.sourceforge.pmd.cpd.SimpleRenderer;
+import net.sourceforge.pmd.cpd.Tokenizer;
+import net.sourceforge.pmd.cpd.renderer.CPDRenderer;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+
+/**
+ * Compares the duplications found with the {@link CpdTokenIndex} with the duplications found by
+ * the CPD itself.
+ */
+public class CpdTokenIndexTest {
+    private static final int MIN_TILE_SIZE = 10;
+
+    private IProject testProject;
+    private final List<IFile> sourceFiles = new ArrayList<>();
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("CpdTokenIndexTest");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+
+        File templates = new File(System.getProperty("pmd.test.projects", "../test-projects"));
+        Assert.assertTrue("The test projects are not found: " + templates, templates.isDirectory());
+        for (File source : FileUtils.listFiles(templates, new String[] { "java" }, true)) {
+            String path = "src/" + templates.toURI().relativize(source.toURI()).getPath();
+            EclipseUtils.createFolders(testProject, path.substring(0, path.lastIndexOf('/')));
+            sourceFiles.add(EclipseUtils.createTestSourceFile(testProject, path,
+                    FileUtils.readFileToString(source, StandardCharsets.UTF_8)));
+        }
+        CpdTokenIndex.remove(testProject);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testProject != null) {
+            CpdTokenIndex.remove(testProject);
+            if (testProject.exists() && testProject.isAccessible()) {
+                EclipseUtils.removePMDNature(testProject);
+                testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+                testProject.delete(true, true, null);
+            }
+        }
+        testProject = null;
+    }
+
+    @Test
+    public void indexFindsTheSameMatchesAsCpd() throws Exception {
+        List<String> expected = matchesOfCpd();
+        Assert.assertFalse("The test projects contain no duplications", expected.isEmpty());
+        Assert.assertEquals(expected, matchesOfCommand());
+
+        // all files are indexed now
+        Assert.assertEquals(expected, matchesOfCommand());
+    }
+
+    @Test
+    public void modifiedFilesAreMatchedAgain() throws Exception {
+        matchesOfCommand();
+
+        // copies a file, so that there is a new duplication
+        IFile copied = sourceFiles.get(0);
+        IFile copy = EclipseUtils.createTestSourceFile(testProject, "src/Copy.java",
+                FileUtils.readFileToString(copied.getLocation().toFile(), StandardCharsets.UTF_8));
+        sourceFiles.add(copy);
+        Assert.assertEquals(matchesOfCpd(), matchesOfCommand());
+
+        // changes the copy, so that the duplication is gone
+        EclipseUtils.createTestSourceFile(testProject, "src/Copy.java", "public class Copy { }");
+        Assert.assertEquals(matchesOfCpd(), matchesOfCommand());
+    }
+
+    @Test
+    public void parallelAndSequentialRunsFindTheSameMatches() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(Tokenizer.IGNORE_LITERALS, "true");
+        properties.setProperty(Tokenizer.IGNORE_IDENTIFIERS, "true");
+
+        List<String> sequential = matchesOfCommand(1, properties);
+        Assert.assertFalse("The test projects contain no duplications", sequential.isEmpty());
+        Assert.assertNotEquals("The properties of the language have been ignored", sequential,
+                matchesOfCommand(1, new Properties()));
+
+        // every thread creates its own tokenizer, which has to ignore the literals too
+        CpdTokenIndex.remove(testProject);
+        Assert.assertEquals(sequential, matchesOfCommand(4, properties));
+    }
+
+    private List<String> matchesOfCommand() {
+        return matchesOfCommand(-1, new Properties());
+    }
+
+    private List<String> matchesOfCommand(int threads, Properties languageProperties) {
+        final List<String> matches = new ArrayList<>();
+        DetectCutAndPasteCmd cmd = new DetectCutAndPasteCmd();
+        cmd.setTokenizerThreads(threads);
+        cmd.setProject(testProject);
+        cmd.setCreateReport(true);
+        cmd.setReportName("cpd-test-report.txt");
+        cmd.setCPDRenderer(new CPDRenderer() {
+            @Override
+            public void render(Iterator<Match> rendered, Writer writer) throws IOException {
+                matches.addAll(renderEach(rendered));
+            }
+        });
+        cmd.setLanguage("java", languageProperties);
+        cmd.setMinTileSize(MIN_TILE_SIZE);
+        cmd.performExecute();
+        cmd.join();
+        return matches;
+    }
+
+    private List<String> matchesOfCpd() throws IOException {
+        CPDConfiguration configuration = new CPDConfiguration();
+        configuration.setMinimumTileSize(MIN_TILE_SIZE);
+        configuration.setLanguage(LanguageFactory.createLanguage("java"));
+        configuration.setEncoding(System.getProperty("file.encoding"));
+        CPD cpd = new CPD(configuration);
+        for (IFile file : sourceFiles) {
+            cpd.add(file.getLocation().toFile());
+        }
+        cpd.go();
+        return renderEach(cpd.getMatches());
+    }
+
+    /**
+     * Renders every match on its own. The order of matches with the same size is not defined.
+     */
+    private static List<String> renderEach(Iterator<Match> matches) throws IOException {
+        List<String> rendered = new ArrayList<>();
+        while (matches.hasNext()) {
+            StringWriter writer = new StringWriter();
+            new SimpleRenderer().render(Collections.singletonList(matches.next()).iterator(), writer);
+            rendered.add(writer.toString());
+        }
+        Collections.sort(rendered);
+        return rendered;
+    }
+}
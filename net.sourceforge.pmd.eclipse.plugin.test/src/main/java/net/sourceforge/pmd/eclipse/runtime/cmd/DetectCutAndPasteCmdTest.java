@@ -78,6 +78,7 @@ public class DetectCutAndPasteCmdTest {
 
         final IFile reportFile = reportFolder.getFile(PMDRuntimeConstants.SIMPLE_CPDREPORT_NAME);
         Assert.assertTrue("The report file doesn't exist: " + reportFile, reportFile.exists());
+        Assert.assertEquals("UTF-8", reportFile.getCharset());
 
         if (reportFile.exists()) {
             reportFile.delete(true, false, null);
@@ -109,6 +110,36 @@ public class DetectCutAndPasteCmdTest {
         Assert.assertFalse(reportFile.exists());
     }
 
+    /**
+     * An old report must not remain, once there are no more duplications.
+     */
+    @Test
+    public void testDetectCutAndPasteCmdDeletesOldReport() throws CoreException {
+        detectCutAndPasteWithReport(10);
+        final IFolder reportFolder = this.testProject.getFolder(PMDRuntimeConstants.REPORT_FOLDER);
+        final IFile reportFile = reportFolder.getFile(PMDRuntimeConstants.SIMPLE_CPDREPORT_NAME);
+        Assert.assertTrue("The report file doesn't exist: " + reportFile, reportFile.exists());
+        Assert.assertEquals("The encoding is not set for the report folder", "UTF-8",
+                reportFolder.getDefaultCharset(false));
+        Assert.assertNull("The encoding is set for every report", reportFile.getCharset(false));
+
+        // no duplications with such a tile size
+        detectCutAndPasteWithReport(100000);
+        Assert.assertFalse("The old report file still exists", reportFile.exists());
+    }
+
+    private void detectCutAndPasteWithReport(int minTileSize) {
+        final DetectCutAndPasteCmd cmd = new DetectCutAndPasteCmd();
+        cmd.setProject(this.testProject);
+        cmd.setCPDRenderer(new SimpleRenderer());
+        cmd.setReportName(PMDRuntimeConstants.SIMPLE_CPDREPORT_NAME);
+        cmd.setCreateReport(true);
+        cmd.setLanguage("java");
+        cmd.setMinTileSize(minTileSize);
+        cmd.performExecute();
+        cmd.join();
+    }
+
     /**
      * Test robustness #1
      */
@@ -0,0 +1,205 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.JarURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.Attributes.Name;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.Path;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+
+public class JavaProjectClassLoaderTest {
+    private static final String RESOURCE = "sample/resource.txt";
+    private static final String RESOURCE_CONTENT = "shared resource";
+
+    private IProject project1;
+    private IProject project2;
+    private File jar;
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Before
+    public void setUp() throws Exception {
+        jar = Files.createTempFile("JavaProjectClassLoaderTest", ".jar").toFile();
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(jar.toPath()))) {
+            out.putNextEntry(new JarEntry(RESOURCE));
+            out.write(RESOURCE_CONTENT.getBytes(StandardCharsets.UTF_8));
+            out.closeEntry();
+            String classFile = Sample.class.getName().replace('.', '/') + ".class";
+            out.putNextEntry(new JarEntry(classFile));
+            try (InputStream in = Sample.class.getClassLoader().getResourceAsStream(classFile)) {
+                IOUtils.copy(in, out);
+            }
+            out.closeEntry();
+        }
+        project1 = createProjectWithJar("JavaProjectClassLoaderTest1");
+        project2 = createProjectWithJar("JavaProjectClassLoaderTest2");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        for (IProject project : Arrays.asList(project1, project2)) {
+            if (project != null && project.exists() && project.isAccessible()) {
+                project.refreshLocal(IResource.DEPTH_INFINITE, null);
+                project.delete(true, true, null);
+            }
+        }
+        project1 = null;
+        project2 = null;
+        if (jar != null && !jar.delete()) {
+            jar.deleteOnExit();
+        }
+    }
+
+    @Test
+    public void projectsWithTheSameLibrariesShareTheClasses() throws Exception {
+        try (JavaProjectClassLoader loader1 = newClassLoader(project1);
+                JavaProjectClassLoader loader2 = newClassLoader(project2)) {
+            Class<?> class1 = loader1.loadClass(Sample.class.getName());
+            Assert.assertNotSame("The class is not loaded from the jar", Sample.class, class1);
+            Assert.assertSame(class1, loader2.loadClass(Sample.class.getName()));
+        }
+    }
+
+    @Test
+    public void resourcesAreReadFromTheSharedJar() throws Exception {
+        try (JavaProjectClassLoader loader = newClassLoader(project1)) {
+            URL url = loader.getResource(RESOURCE);
+            Assert.assertNotNull("The resource is not found", url);
+            Assert.assertFalse("The jar is opened again by the JDK", url.openConnection() instanceof JarURLConnection);
+            Assert.assertEquals(RESOURCE_CONTENT, read(url));
+            Assert.assertNull(loader.getResource("sample/missing.txt"));
+        }
+    }
+
+    @Test
+    public void librariesAreClosedWhenNoProjectUsesThem() throws Exception {
+        JavaProjectClassLoader loader1 = newClassLoader(project1);
+        JavaProjectClassLoader loader2 = newClassLoader(project2);
+        Class<?> sharedClass = loader1.loadClass(Sample.class.getName());
+        URL url = loader1.getResource(RESOURCE);
+
+        // still used by the second project
+        loader1.close();
+        Assert.assertEquals(RESOURCE_CONTENT, read(url));
+        Assert.assertSame(sharedClass, loader2.loadClass(Sample.class.getName()));
+
+        loader2.close();
+        try {
+            read(url);
+            Assert.fail("The jar has not been closed");
+        } catch (IOException e) {
+            // expected
+        }
+        try (JavaProjectClassLoader newLoader = newClassLoader(project1)) {
+            Assert.assertNotSame("The released class loader has been reused", sharedClass,
+                    newLoader.loadClass(Sample.class.getName()));
+        }
+    }
+
+    @Test
+    public void classesAreFoundWithTheClassNameIndex() throws Exception {
+        try (JavaProjectClassLoader loader = newClassLoader(project1)) {
+            // the class names of the jars are indexed in the background
+            EclipseUtils.waitForJobs();
+            Assert.assertNotSame(Sample.class, loader.loadClass(Sample.class.getName()));
+            try {
+                loader.loadClass("sample.Missing");
+                Assert.fail("A class, that doesn't exist, has been found");
+            } catch (ClassNotFoundException e) {
+                // expected
+            }
+            Assert.assertEquals(RESOURCE_CONTENT, read(loader.getResource(RESOURCE)));
+        } finally {
+            ClassNameIndex.remove(project1);
+        }
+    }
+
+    @Test
+    public void jarsOfTheManifestClassPathAreSearched() throws Exception {
+        File manifestJar = new File(jar.getParentFile(), "JavaProjectClassLoaderTestManifest.jar");
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Name.CLASS_PATH, "missing.jar " + jar.getName());
+        try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(manifestJar.toPath()), manifest)) {
+            out.putNextEntry(new JarEntry("sample/other.txt"));
+            out.closeEntry();
+        }
+        IProject project = null;
+        try {
+            project = createProjectWithJar("JavaProjectClassLoaderTest3", manifestJar);
+            try (JavaProjectClassLoader loader = newClassLoader(project)) {
+                Assert.assertEquals(RESOURCE_CONTENT, read(loader.getResource(RESOURCE)));
+                Assert.assertNotSame(Sample.class, loader.loadClass(Sample.class.getName()));
+                // right after the jar, that refers to it
+                List<URL> urls = Arrays.asList(loader.getURLs());
+                int index = urls.indexOf(manifestJar.toURI().toURL());
+                Assert.assertTrue("The jar is missing: " + urls, index >= 0 && index + 1 < urls.size());
+                Assert.assertEquals(jar.toURI().toURL(), urls.get(index + 1));
+            }
+        } finally {
+            if (project != null) {
+                project.delete(true, true, null);
+            }
+            if (!manifestJar.delete()) {
+                manifestJar.deleteOnExit();
+            }
+        }
+    }
+
+    private IProject createProjectWithJar(String name) throws Exception {
+        return createProjectWithJar(name, jar);
+    }
+
+    private IProject createProjectWithJar(String name, File library) throws Exception {
+        IProject project = EclipseUtils.createJavaProject(name);
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                project != null && project.exists() && project.isAccessible());
+        IJavaProject javaProject = JavaCore.create(project);
+        IClasspathEntry[] oldEntries = javaProject.getRawClasspath();
+        IClasspathEntry[] entries = Arrays.copyOf(oldEntries, oldEntries.length + 1);
+        entries[oldEntries.length] = JavaCore.newLibraryEntry(new Path(library.getAbsolutePath()), null, null);
+        javaProject.setRawClasspath(entries, null);
+        return project;
+    }
+
+    private static JavaProjectClassLoader newClassLoader(IProject project) {
+        // without a parent, the sample class can only be loaded from the jar
+        return new JavaProjectClassLoader(null, project);
+    }
+
+    private static String read(URL url) throws IOException {
+        try (InputStream in = url.openStream()) {
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        }
+    }
+
+    public static class Sample {
+    }
+}
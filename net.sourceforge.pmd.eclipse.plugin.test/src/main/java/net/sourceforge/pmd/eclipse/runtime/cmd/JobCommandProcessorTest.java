@@ -0,0 +1,155 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.junit.Assert;
+import org.junit.Test;
+
+import net.sourceforge.pmd.eclipse.LoggingRule;
+
+public class JobCommandProcessorTest {
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Test
+    public void mergedCommandIsTerminated() throws Exception {
+        ISchedulingRule rule = new TestRule();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        // blocks the rule, so that the following commands have to wait
+        TestCommand blocking = new TestCommand(rule, release, executions);
+        blocking.performExecute();
+
+        TestCommand waiting = new TestCommand(rule, null, executions);
+        waiting.performExecute();
+        TestCommand merged = new TestCommand(rule, null, executions);
+        merged.performExecute();
+        Assert.assertTrue("The command has not been merged", waiting.mergedOther);
+        Assert.assertFalse(merged.hasTerminated());
+
+        release.countDown();
+        Assert.assertTrue("Waiting for the merged command doesn't end", joinWithTimeout(merged));
+        Assert.assertTrue(waiting.hasTerminated());
+        Assert.assertTrue("The merged command is not terminated", merged.hasTerminated());
+        Assert.assertEquals("The merged command has been executed", 2, executions.get());
+    }
+
+    @Test
+    public void waitingCommandIsCanceled() throws Exception {
+        ISchedulingRule rule = new TestRule();
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger executions = new AtomicInteger();
+
+        TestCommand blocking = new TestCommand(rule, release, executions);
+        blocking.setUserInitiated(true);
+        blocking.performExecute();
+        try {
+            TestCommand waiting = new TestCommand(rule, null, executions);
+            waiting.setUserInitiated(true);
+            IProgressMonitor monitor = new NullProgressMonitor();
+            waiting.setMonitor(monitor);
+            waiting.performExecute();
+            Assert.assertFalse(waiting.hasTerminated());
+
+            monitor.setCanceled(true);
+            Assert.assertTrue("The canceled command is still waiting", joinWithTimeout(waiting));
+            Assert.assertTrue(waiting.hasTerminated());
+        } finally {
+            release.countDown();
+        }
+        Assert.assertTrue(joinWithTimeout(blocking));
+        Assert.assertEquals("The canceled command has been executed", 1, executions.get());
+    }
+
+    private static boolean joinWithTimeout(final AbstractDefaultCommand command) throws InterruptedException {
+        final CountDownLatch joined = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                command.join();
+                joined.countDown();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+        return joined.await(30, TimeUnit.SECONDS);
+    }
+
+    private static final class TestRule implements ISchedulingRule {
+        @Override
+        public boolean contains(ISchedulingRule rule) {
+            return rule == this;
+        }
+
+        @Override
+        public boolean isConflicting(ISchedulingRule rule) {
+            return rule == this;
+        }
+    }
+
+    private static final class TestCommand extends AbstractDefaultCommand {
+        private final ISchedulingRule rule;
+        private final CountDownLatch release;
+        private final AtomicInteger executions;
+        private volatile boolean mergedOther;
+
+        TestCommand(ISchedulingRule rule, CountDownLatch release, AtomicInteger executions) {
+            super("TestCommand", "A command for testing the processor");
+            this.rule = rule;
+            this.release = release;
+            this.executions = executions;
+            setReadOnly(true);
+            setOutputProperties(false);
+            setReadyToExecute(true);
+            setTerminated(false);
+        }
+
+        @Override
+        public void execute() {
+            executions.incrementAndGet();
+            if (release != null) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            done();
+        }
+
+        @Override
+        public void reset() {
+            setTerminated(false);
+        }
+
+        @Override
+        protected ISchedulingRule getSchedulingRule() {
+            return rule;
+        }
+
+        @Override
+        protected boolean merge(AbstractDefaultCommand other) {
+            if (release == null && other instanceof TestCommand && ((TestCommand) other).release == null) {
+                mergedOther = true;
+                return true;
+            }
+            return false;
+        }
+
+        // isTerminated() can't be called directly, the test bundle is loaded by another class loader
+        boolean hasTerminated() {
+            return isTerminated();
+        }
+    }
+}
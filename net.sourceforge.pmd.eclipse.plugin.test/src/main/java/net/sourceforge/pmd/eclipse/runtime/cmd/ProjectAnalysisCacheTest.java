@@ -0,0 +1,155 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IncrementalProjectBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+import net.sourceforge.pmd.eclipse.WaitingMonitor;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+
+public class ProjectAnalysisCacheTest {
+    private IProject testProject;
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("ProjectAnalysisCacheTest");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        EclipseUtils.createTestSourceFile(testProject);
+        PMDPlugin.getDefault().getPropertiesManager().loadProjectProperties(testProject).setPmdEnabled(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            EclipseUtils.removePMDNature(testProject);
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+        testProject = null;
+    }
+
+    @Test
+    public void fingerprintConsidersTheClassFilesOfFolders() throws Exception {
+        Path tempDir = Files.createTempDirectory("ProjectAnalysisCacheTest");
+        try {
+            File classes = Files.createDirectory(tempDir.resolve("classes")).toFile();
+            File classFile = new File(classes, "Test.class");
+            FileUtils.writeStringToFile(classFile, "class", StandardCharsets.UTF_8);
+            File jar = tempDir.resolve("lib.jar").toFile();
+            FileUtils.writeStringToFile(jar, "jar", StandardCharsets.UTF_8);
+
+            IProjectProperties properties = PMDPlugin.getDefault().loadProjectProperties(testProject);
+            List<RuleSet> ruleSets = Collections.singletonList(properties.getProjectRuleSet());
+            URL[] urls = { classes.toURI().toURL(), jar.toURI().toURL() };
+            try (URLClassLoader auxClasspath = new URLClassLoader(urls)) {
+                long fingerprint = ProjectAnalysisCache.fingerprintOf(ruleSets, properties, auxClasspath, null);
+
+                // a rebuild writes the same class files again
+                Thread.sleep(1000);
+                FileUtils.writeStringToFile(classFile, "class", StandardCharsets.UTF_8);
+                Assert.assertEquals(fingerprint,
+                        ProjectAnalysisCache.fingerprintOf(ruleSets, properties, auxClasspath, null));
+
+                // a changed class, that is used by unchanged files
+                FileUtils.writeStringToFile(classFile, "changed class", StandardCharsets.UTF_8);
+                long changedClass = ProjectAnalysisCache.fingerprintOf(ruleSets, properties, auxClasspath, null);
+                Assert.assertNotEquals(fingerprint, changedClass);
+
+                // an updated library
+                FileUtils.writeStringToFile(jar, "updated jar", StandardCharsets.UTF_8);
+                Assert.assertNotEquals(changedClass,
+                        ProjectAnalysisCache.fingerprintOf(ruleSets, properties, auxClasspath, null));
+            }
+        } finally {
+            FileUtils.deleteDirectory(tempDir.toFile());
+        }
+    }
+
+    @Test
+    public void cacheIsOnlyKeptWhileItIsUsed() {
+        ProjectAnalysisCache cache = ProjectAnalysisCache.forProject(testProject);
+        ProjectAnalysisCache other = ProjectAnalysisCache.forProject(testProject);
+        try {
+            Assert.assertSame(cache, other);
+        } finally {
+            other.release();
+        }
+        Assert.assertSame(cache, ProjectAnalysisCache.forProject(testProject));
+        cache.release();
+        cache.release();
+
+        ProjectAnalysisCache reloaded = ProjectAnalysisCache.forProject(testProject);
+        try {
+            Assert.assertNotSame("The released cache is still in memory", cache, reloaded);
+        } finally {
+            reloaded.release();
+        }
+    }
+
+    @Test
+    public void rebuildWithoutSourceChangeUsesTheCache() throws Exception {
+        boolean oldSetting = PMDPlugin.getDefault().getPreferencesManager().loadPreferences()
+                .isProjectBuildPathEnabled();
+        try {
+            // the output folder of the project is part of the aux classpath
+            PMDPlugin.getDefault().getPreferencesManager().loadPreferences().setProjectBuildPathEnabled(true);
+            build(IncrementalProjectBuilder.FULL_BUILD);
+
+            ReviewCodeCmd cmd = review();
+            Assert.assertTrue("No file analyzed", cmd.getFileCount() > 0);
+
+            // HFS+ under MacOS has a date resolution of 1 second only
+            Thread.sleep(1000);
+            build(IncrementalProjectBuilder.CLEAN_BUILD);
+            build(IncrementalProjectBuilder.FULL_BUILD);
+
+            ReviewCodeCmd secondCmd = review();
+            Assert.assertEquals(cmd.getFileCount(), secondCmd.getFileCount());
+            Assert.assertEquals("The cache has been discarded by the build", secondCmd.getFileCount(),
+                    secondCmd.getCachedFileCount());
+            Assert.assertEquals(cmd.getMarkers().keySet(), secondCmd.getMarkers().keySet());
+        } finally {
+            PMDPlugin.getDefault().getPreferencesManager().loadPreferences().setProjectBuildPathEnabled(oldSetting);
+        }
+    }
+
+    private void build(int kind) throws Exception {
+        WaitingMonitor monitor = new WaitingMonitor();
+        testProject.build(kind, monitor);
+        monitor.await();
+    }
+
+    private ReviewCodeCmd review() {
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.addResource(testProject);
+        cmd.performExecute();
+        cmd.join();
+        return cmd;
+    }
+}
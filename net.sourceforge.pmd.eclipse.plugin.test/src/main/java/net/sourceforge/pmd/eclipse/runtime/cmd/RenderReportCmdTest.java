@@ -5,9 +5,13 @@
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
@@ -16,8 +20,10 @@ import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
+import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.eclipse.EclipseUtils;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.renderers.AbstractIncrementingRenderer;
 import net.sourceforge.pmd.renderers.HTMLRenderer;
 
 /**
@@ -91,6 +97,64 @@ public class RenderReportCmdTest {
         }
     }
 
+    /**
+     * The package and the class are resolved once per file and set on all violations of the file.
+     * Markers of rules, that don't exist anymore, are skipped.
+     */
+    @Test
+    public void testRenderReportCmdResolvesPackageAndClassPerFile() throws Exception {
+        EclipseUtils.createFolders(this.testProject, "src/sample");
+        EclipseUtils.createTestSourceFile(this.testProject, "src/sample/Sample.java",
+                "package sample;\n\npublic class Sample {\n    public void foo() {\n        try {\n"
+                        + "        } catch (Exception e) {\n        }\n        try {\n"
+                        + "        } catch (Exception e) {\n        }\n    }\n}\n");
+        final ReviewCodeCmd reviewCmd = new ReviewCodeCmd();
+        reviewCmd.addResource(this.testProject);
+        reviewCmd.performExecute();
+
+        IFile testFile = this.testProject.getFile("/src/Test.java");
+        IMarker removedRuleMarker = testFile.createMarker(PMDRuntimeConstants.PMD_MARKER);
+        removedRuleMarker.setAttribute(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, "NoSuchRule");
+        removedRuleMarker.setAttribute(IMarker.MESSAGE, "Violation of a removed rule");
+        removedRuleMarker.setAttribute(IMarker.LINE_NUMBER, 1);
+
+        final List<RuleViolation> violations = new ArrayList<>();
+        final RenderReportsCmd cmd = new RenderReportsCmd();
+        cmd.setProject(this.testProject);
+        cmd.registerRenderer(new AbstractIncrementingRenderer("collecting", "Collects the violations") {
+            @Override
+            public String defaultFileExtension() {
+                return "txt";
+            }
+
+            @Override
+            public void renderFileViolations(Iterator<RuleViolation> rendered) {
+                while (rendered.hasNext()) {
+                    violations.add(rendered.next());
+                }
+            }
+        }, "collected.txt");
+        cmd.performExecute();
+        cmd.join();
+
+        int sampleViolations = 0;
+        for (RuleViolation violation : violations) {
+            Assert.assertNotEquals("NoSuchRule", violation.getRule().getName());
+            if (violation.getFilename().endsWith("Sample.java")) {
+                Assert.assertEquals("sample", violation.getPackageName());
+                Assert.assertEquals("Sample", violation.getClassName());
+                sampleViolations++;
+            } else {
+                Assert.assertEquals("(default)", violation.getPackageName());
+                Assert.assertEquals("Test", violation.getClassName());
+            }
+        }
+        Assert.assertTrue("Not all violations of the file are reported", sampleViolations >= 2);
+        Assert.assertTrue("The violations of the other file are missing", violations.size() > sampleViolations);
+
+        this.testProject.deleteMarkers(PMDRuntimeConstants.PMD_MARKER, true, IResource.DEPTH_INFINITE);
+    }
+
     /**
      * Test robustness #1
      */
@@ -9,6 +9,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -114,6 +115,143 @@ public class ReviewCmdTest {
         }
     }
 
+    /**
+     * Analyzing an unchanged file again must not recreate the markers.
+     */
+    @Test
+    public void testReviewCmdKeepsUnchangedMarkers() throws CoreException {
+        final IFile sourceFile = this.testProject.getFile("/src/Test.java");
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.addResource(sourceFile);
+        cmd.performExecute();
+        cmd.join();
+        IMarker[] before = sourceFile.findMarkers(PMDRuntimeConstants.PMD_MARKER, true, IResource.DEPTH_ZERO);
+        Assert.assertTrue("No markers found", before.length > 0);
+
+        cmd = new ReviewCodeCmd();
+        cmd.addResource(sourceFile);
+        cmd.performExecute();
+        cmd.join();
+        IMarker[] after = sourceFile.findMarkers(PMDRuntimeConstants.PMD_MARKER, true, IResource.DEPTH_ZERO);
+
+        Assert.assertEquals(before.length, after.length);
+        Set<Long> idsBefore = new HashSet<>();
+        for (IMarker marker : before) {
+            idsBefore.add(marker.getId());
+        }
+        for (IMarker marker : after) {
+            Assert.assertTrue("Marker has been recreated: " + marker, idsBefore.contains(marker.getId()));
+        }
+    }
+
+    /**
+     * Attributes of a reused marker, that are not part of the new result, must be removed.
+     */
+    @Test
+    public void testReviewCmdRemovesStaleMarkerAttributes() throws CoreException {
+        final IFile sourceFile = this.testProject.getFile("/src/Test.java");
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.addResource(sourceFile);
+        cmd.performExecute();
+        cmd.join();
+        IMarker[] before = sourceFile.findMarkers(PMDRuntimeConstants.PMD_MARKER, true, IResource.DEPTH_ZERO);
+        Assert.assertTrue("No markers found", before.length > 0);
+        before[0].setAttribute("staleAttribute", "stale");
+
+        cmd = new ReviewCodeCmd();
+        cmd.addResource(sourceFile);
+        cmd.performExecute();
+        cmd.join();
+
+        IMarker reused = sourceFile.findMarker(before[0].getId());
+        Assert.assertNotNull("Marker has been recreated", reused);
+        Assert.assertNull(reused.getAttribute("staleAttribute"));
+    }
+
+    /**
+     * The batch mode analyzes the files on several threads. The result must be the same
+     * as if the files are analyzed one after another.
+     */
+    @Test
+    public void testReviewCmdBatchMode() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            EclipseUtils.createTestSourceFile(testProject, "/src/Test" + i + ".java",
+                    "public class Test" + i + " {\n"
+                  + "    public void foo() {\n"
+                  + "        try {\n"
+                  + "            int i = 0;\n"
+                  + "        } catch (Exception e) {\n"
+                  + "        }\n"
+                  + "    }\n"
+                  + "}\n");
+        }
+        testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+
+        ReviewCodeCmd sequentialCmd = new ReviewCodeCmd();
+        sequentialCmd.setAnalysisThreads(1);
+        sequentialCmd.addResource(testProject);
+        sequentialCmd.performExecute();
+        sequentialCmd.join();
+
+        // otherwise the batch run restores all files from the cache and the workers are not used
+        ProjectAnalysisCache.remove(testProject);
+        ReviewCodeCmd batchCmd = new ReviewCodeCmd();
+        batchCmd.setAnalysisThreads(4);
+        batchCmd.addResource(testProject);
+        batchCmd.performExecute();
+        batchCmd.join();
+
+        Assert.assertEquals(11, batchCmd.getFileCount());
+        Assert.assertEquals("Files have been restored from the cache", 0, batchCmd.getCachedFileCount());
+        Assert.assertEquals(sequentialCmd.getFileCount(), batchCmd.getFileCount());
+        Assert.assertEquals(sequentialCmd.getMarkers().keySet(), batchCmd.getMarkers().keySet());
+        for (Map.Entry<IFile, Set<MarkerInfo2>> entry : sequentialCmd.getMarkers().entrySet()) {
+            Assert.assertEquals("Different markers for " + entry.getKey(), entry.getValue().size(),
+                    batchCmd.getMarkers().get(entry.getKey()).size());
+        }
+    }
+
+    /**
+     * The file is read only once. The same content, decoded with the charset of the file, is used
+     * for the analysis and for the search of reviewed violations.
+     */
+    @Test
+    public void testReviewCmdIgnoresReviewedViolations() throws Exception {
+        IProjectProperties projectProperties = PMDPlugin.getDefault().getPropertiesManager()
+                .loadProjectProperties(testProject);
+        RuleSet projectRuleSet = projectProperties.getProjectRuleSet();
+        Rule emptyCatchBlock = findRuleByName(projectRuleSet, "EmptyCatchBlock", "java");
+        projectProperties.setProjectRuleSet(RuleSetUtil.newSingle(emptyCatchBlock));
+        PMDPlugin.getDefault().getPropertiesManager().storeProjectProperties(projectProperties);
+
+        String source = "public class Reviewed {\n"
+                + "    public void foo() {\n"
+                + "        try {\n"
+                + "            String s = \"\u00e4\u00f6\u00fc\";\n"
+                + "        %s\n"
+                + "        } catch (Exception e) {\n" // line 6
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+        IFile sourceFile = EclipseUtils.createTestSourceFile(testProject, "/src/Reviewed.java",
+                String.format(source, ""));
+        sourceFile.setCharset("UTF-8", null);
+
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.addResource(sourceFile);
+        cmd.performExecute();
+        cmd.join();
+        Assert.assertEquals(1, cmd.getMarkers().get(sourceFile).size());
+
+        EclipseUtils.createTestSourceFile(testProject, "/src/Reviewed.java",
+                String.format(source, PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT + "EmptyCatchBlock: by tester"));
+        cmd = new ReviewCodeCmd();
+        cmd.addResource(sourceFile);
+        cmd.performExecute();
+        cmd.join();
+        Assert.assertTrue("Reviewed violation reported", cmd.getMarkers().get(sourceFile).isEmpty());
+    }
+
     private IFile createMissingOverrideTestCase(IProject project) throws Exception {
         EclipseUtils.createTestSourceFile(project, "/src/MyInterface.java", "public interface MyInterface { void run(); }");
         IFile sourceFile = EclipseUtils.createTestSourceFile(project, "/src/Foo.java",
@@ -0,0 +1,128 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.profiler;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.cmd.MarkerInfo2;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ProjectAnalysisCache;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCodeCmd;
+
+public class RuleProfilerTest {
+    private IProject testProject;
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("RuleProfilerTest");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        EclipseUtils.createTestSourceFile(testProject);
+        PMDPlugin.getDefault().getPropertiesManager().loadProjectProperties(testProject).setPmdEnabled(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        RuleProfiler.getInstance().setEnabled(false);
+        RuleProfiler.getInstance().reset();
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            EclipseUtils.removePMDNature(testProject);
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+        testProject = null;
+    }
+
+    @Test
+    public void profiledReviewFindsTheSameViolations() {
+        Set<String> expected = violationsOf(review());
+        Assert.assertFalse("No violations found", expected.isEmpty());
+
+        // the cached violations would not be measured
+        ProjectAnalysisCache.remove(testProject);
+        RuleProfiler profiler = RuleProfiler.getInstance();
+        profiler.reset();
+        profiler.setEnabled(true);
+        Set<String> profiled = violationsOf(review());
+
+        Assert.assertEquals(expected, profiled);
+        Assert.assertFalse("No rule has been measured", profiler.getRuleStatistics().isEmpty());
+        boolean totalMeasured = false;
+        for (TimingStatistics statistics : profiler.getPhaseStatistics()) {
+            if (RuleProfiler.PHASE_TOTAL.equals(statistics.getName())) {
+                totalMeasured = statistics.getCount() == 1;
+            }
+        }
+        Assert.assertTrue("The analysis of the file has not been measured", totalMeasured);
+    }
+
+    @Test
+    public void rulesOfTheRuleChainAreMarked() throws Exception {
+        ProjectAnalysisCache.remove(testProject);
+        RuleProfiler profiler = RuleProfiler.getInstance();
+        profiler.reset();
+        profiler.setEnabled(true);
+        review();
+
+        RuleSet ruleSet = PMDPlugin.getDefault().loadProjectProperties(testProject).getProjectRuleSet();
+        Assert.assertFalse("No rule has been measured", profiler.getRuleStatistics().isEmpty());
+        for (TimingStatistics statistics : profiler.getRuleStatistics()) {
+            Rule rule = ruleSet.getRuleByName(statistics.getName());
+            Assert.assertNotNull("Unknown rule " + statistics.getName(), rule);
+            Assert.assertEquals(statistics.getName(), rule.usesRuleChain(), statistics.isMeasuredWithoutRuleChain());
+        }
+    }
+
+    @Test
+    public void rulesAreWrappedOncePerRuleSets() throws Exception {
+        RuleSet ruleSet = PMDPlugin.getDefault().loadProjectProperties(testProject).getProjectRuleSet();
+        List<RuleSet> ruleSets = Collections.singletonList(ruleSet);
+        RuleProfiler profiler = RuleProfiler.getInstance();
+        Assert.assertNull("The profiler is disabled", profiler.timedRuleSets(ruleSets));
+
+        profiler.setEnabled(true);
+        RuleProfiler.TimedRuleSets timed = profiler.timedRuleSets(ruleSets);
+        Assert.assertTrue(timed.wraps(ruleSets));
+        Assert.assertFalse(timed.wraps(Collections.singletonList(ruleSet)));
+        Assert.assertEquals(ruleSet.size(), timed.getRuleSets().get(0).size());
+    }
+
+    private ReviewCodeCmd review() {
+        ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.addResource(testProject);
+        cmd.performExecute();
+        cmd.join();
+        return cmd;
+    }
+
+    private static Set<String> violationsOf(ReviewCodeCmd cmd) {
+        Set<String> violations = new HashSet<>();
+        for (Map.Entry<IFile, Set<MarkerInfo2>> entry : cmd.getMarkers().entrySet()) {
+            for (MarkerInfo2 marker : entry.getValue()) {
+                violations.add(entry.getKey().getName() + ": " + marker);
+            }
+        }
+        return violations;
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.properties.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectPropertiesManager;
+import net.sourceforge.pmd.eclipse.ui.actions.RuleSetUtil;
+import net.sourceforge.pmd.eclipse.ui.properties.UpdateProjectPropertiesCmd;
+
+public class ProjectPropertiesCacheTest {
+    private static final String PROPERTIES_FILE = ".pmd";
+    private static final String RULESET_FILE = ".pmd-ruleset.xml";
+    private static final String NOT_DERIVED = "<includeDerivedFiles>false</includeDerivedFiles>";
+    private static final String DERIVED = "<includeDerivedFiles>true</includeDerivedFiles>";
+
+    private IProject testProject;
+    private IProjectPropertiesManager manager;
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("ProjectPropertiesCacheTest");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        manager = PMDPlugin.getDefault().getPropertiesManager();
+
+        IProjectProperties properties = manager.loadProjectProperties(testProject);
+        properties.setIncludeDerivedFiles(false);
+        manager.storeProjectProperties(properties);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            EclipseUtils.removePMDNature(testProject);
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+        testProject = null;
+    }
+
+    @Test
+    public void unchangedPropertiesAreNotReadAgain() throws Exception {
+        IProjectProperties properties = manager.loadProjectProperties(testProject);
+        // only changed in memory, reading the properties file again would undo it
+        properties.setIncludeDerivedFiles(true);
+
+        IProjectProperties cached = manager.loadProjectProperties(testProject);
+        Assert.assertSame(properties, cached);
+        Assert.assertTrue("The properties have been read again", cached.isIncludeDerivedFiles());
+    }
+
+    @Test
+    public void propertiesChangedInTheWorkspaceAreReloaded() throws Exception {
+        IProjectProperties properties = manager.loadProjectProperties(testProject);
+        Assert.assertFalse(properties.isIncludeDerivedFiles());
+
+        waitASecond();
+        IFile propertiesFile = testProject.getFile(PROPERTIES_FILE);
+        propertiesFile.setContents(new ByteArrayInputStream(derivedProperties().getBytes(StandardCharsets.UTF_8)),
+                true, false, null);
+
+        IProjectProperties reloaded = manager.loadProjectProperties(testProject);
+        Assert.assertSame(properties, reloaded);
+        Assert.assertTrue("The changed properties have not been reloaded", reloaded.isIncludeDerivedFiles());
+    }
+
+    @Test
+    public void propertiesChangedOnDiskAreReloaded() throws Exception {
+        IProjectProperties properties = manager.loadProjectProperties(testProject);
+        Assert.assertFalse(properties.isIncludeDerivedFiles());
+
+        // without the workspace knowing about it, until the file is refreshed
+        waitASecond();
+        String content = derivedProperties();
+        IFile propertiesFile = testProject.getFile(PROPERTIES_FILE);
+        FileUtils.writeStringToFile(propertiesFile.getLocation().toFile(), content, StandardCharsets.UTF_8);
+        propertiesFile.refreshLocal(IResource.DEPTH_ZERO, null);
+
+        IProjectProperties reloaded = manager.loadProjectProperties(testProject);
+        Assert.assertTrue("The changed properties have not been reloaded", reloaded.isIncludeDerivedFiles());
+    }
+
+    @Test
+    public void ruleSetChangedInTheWorkspaceIsReloaded() throws Exception {
+        IFile ruleSetFile = testProject.getFile(RULESET_FILE);
+        ruleSetFile.create(ruleSet("AbstractClassWithoutAbstractMethod"), true, null);
+        UpdateProjectPropertiesCmd cmd = new UpdateProjectPropertiesCmd();
+        cmd.setPmdEnabled(true);
+        cmd.setProject(testProject);
+        cmd.setProjectWorkingSet(null);
+        cmd.setProjectRuleSetList(Collections.singletonList(RuleSetUtil.newEmpty("empty", "empty")));
+        cmd.setRuleSetStoredInProject(true);
+        cmd.setRuleSetFile(RULESET_FILE);
+        cmd.execute();
+
+        IProjectProperties properties = manager.loadProjectProperties(testProject);
+        Assert.assertEquals(1, properties.getProjectRuleSet().getRules().size());
+        Assert.assertEquals(1, manager.loadProjectProperties(testProject).getProjectRuleSet().getRules().size());
+
+        waitASecond();
+        ruleSetFile.setContents(ruleSet("AbstractClassWithoutAbstractMethod", "AvoidUsingHardCodedIP"), true,
+                false, null);
+        Assert.assertEquals(2, manager.loadProjectProperties(testProject).getProjectRuleSet().getRules().size());
+    }
+
+    @Test
+    public void ruleSetChangedOutsideOfTheWorkspaceIsReloadedAfterTheCheck() throws Exception {
+        File ruleSetFile = File.createTempFile("ProjectPropertiesCacheTest", ".xml");
+        try {
+            FileUtils.copyInputStreamToFile(ruleSet("AbstractClassWithoutAbstractMethod"), ruleSetFile);
+            UpdateProjectPropertiesCmd cmd = new UpdateProjectPropertiesCmd();
+            cmd.setPmdEnabled(true);
+            cmd.setProject(testProject);
+            cmd.setProjectWorkingSet(null);
+            cmd.setProjectRuleSetList(Collections.singletonList(RuleSetUtil.newEmpty("empty", "empty")));
+            cmd.setRuleSetStoredInProject(true);
+            cmd.setRuleSetFile(ruleSetFile.getAbsolutePath());
+            cmd.execute();
+            Assert.assertEquals(1, manager.loadProjectProperties(testProject).getProjectRuleSet().getRules().size());
+
+            waitASecond();
+            FileUtils.copyInputStreamToFile(ruleSet("AbstractClassWithoutAbstractMethod", "AvoidUsingHardCodedIP"),
+                    ruleSetFile);
+            // the file isn't asked for on every load
+            Assert.assertEquals(1, manager.loadProjectProperties(testProject).getProjectRuleSet().getRules().size());
+            manager.checkExternalFiles();
+            Assert.assertEquals(2, manager.loadProjectProperties(testProject).getProjectRuleSet().getRules().size());
+        } finally {
+            if (!ruleSetFile.delete()) {
+                ruleSetFile.deleteOnExit();
+            }
+        }
+    }
+
+    @Test
+    public void disposedManagerForgetsTheProperties() throws Exception {
+        ProjectPropertiesManagerImpl otherManager = new ProjectPropertiesManagerImpl();
+        try {
+            IProjectProperties properties = otherManager.loadProjectProperties(testProject);
+            Assert.assertSame(properties, otherManager.loadProjectProperties(testProject));
+            otherManager.dispose();
+            Assert.assertNotSame(properties, otherManager.loadProjectProperties(testProject));
+        } finally {
+            otherManager.dispose();
+        }
+    }
+
+    private String derivedProperties() throws Exception {
+        try (InputStream in = testProject.getFile(PROPERTIES_FILE).getContents(true)) {
+            String content = IOUtils.toString(in, StandardCharsets.UTF_8);
+            Assert.assertTrue("Unexpected properties file: " + content, content.contains(NOT_DERIVED));
+            return content.replace(NOT_DERIVED, DERIVED);
+        }
+    }
+
+    private static InputStream ruleSet(String... ruleNames) {
+        StringBuilder ruleSet = new StringBuilder();
+        ruleSet.append("<?xml version=\"1.0\"?>\n")
+            .append("<ruleset name=\"Custom Rules\" xmlns=\"http://pmd.sourceforge.net/ruleset/2.0.0\">\n")
+            .append("    <description>My custom rules</description>\n");
+        for (String ruleName : ruleNames) {
+            ruleSet.append("    <rule ref=\"category/java/bestpractices.xml/").append(ruleName).append("\" />\n");
+        }
+        ruleSet.append("</ruleset>\n");
+        return new ByteArrayInputStream(ruleSet.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // HFS+ under MacOS has a date resolution of 1 second only
+    private void waitASecond() throws InterruptedException {
+        Thread.sleep(1000);
+    }
+}
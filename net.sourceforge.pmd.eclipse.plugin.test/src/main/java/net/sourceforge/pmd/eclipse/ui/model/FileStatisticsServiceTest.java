@@ -0,0 +1,98 @@
+/*
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.ui.model;
+
+import java.util.Collections;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IFolder;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.sourceforge.pmd.eclipse.EclipseUtils;
+import net.sourceforge.pmd.eclipse.LoggingRule;
+
+public class FileStatisticsServiceTest {
+    private IProject testProject;
+    private IFile testFile;
+
+    @org.junit.Rule
+    public LoggingRule loggingRule = new LoggingRule();
+
+    @Before
+    public void setUp() throws Exception {
+        testProject = EclipseUtils.createJavaProject("FileStatisticsServiceTest");
+        Assert.assertTrue("A test project cannot be created; the tests cannot be performed.",
+                testProject != null && testProject.exists() && testProject.isAccessible());
+        testFile = EclipseUtils.createTestSourceFile(testProject);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (testProject != null && testProject.exists() && testProject.isAccessible()) {
+            testProject.refreshLocal(IResource.DEPTH_INFINITE, null);
+            testProject.delete(true, true, null);
+        }
+        testProject = null;
+    }
+
+    @Test
+    public void calculatedValuesAreCachedForNewRecords() throws Exception {
+        FileRecord record = calculate(testFile);
+        Assert.assertTrue("No lines of code calculated", record.getLOC() > 0);
+
+        FileRecord newRecord = new FileRecord(testFile, (FolderRecord) null);
+        Assert.assertEquals(record.getLOC(), newRecord.getLOC());
+        Assert.assertEquals(record.getNumberOfMethods(), newRecord.getNumberOfMethods());
+    }
+
+    @Test
+    public void collapsedFolderAddsUpTheCachedValues() throws Exception {
+        FileRecord record = calculate(testFile);
+        ProjectRecord projectRecord = new ProjectRecord(testProject,
+                new RootRecord(ResourcesPlugin.getWorkspace().getRoot()));
+        FolderRecord folderRecord = new FolderRecord((IFolder) testFile.getParent(), projectRecord);
+
+        // the file records of the folder have not been created yet
+        Assert.assertEquals(record.getLOC(), folderRecord.getLOC());
+        Assert.assertEquals(record.getNumberOfMethods(), folderRecord.getNumberOfMethods());
+        Assert.assertEquals(1, folderRecord.getChildren().length);
+        Assert.assertEquals(record.getLOC(), folderRecord.getLOC());
+    }
+
+    @Test
+    public void valuesOfDeletedFilesAreRemoved() throws Exception {
+        calculate(testFile);
+        Assert.assertTrue(FileStatisticsService.getInstance().isCached(testFile));
+
+        testFile.delete(true, null);
+        Assert.assertFalse("The values of the deleted file are still cached",
+                FileStatisticsService.getInstance().isCached(testFile));
+    }
+
+    @Test
+    public void valuesOfDeletedFoldersAreRemoved() throws Exception {
+        calculate(testFile);
+        Assert.assertTrue(FileStatisticsService.getInstance().isCached(testFile));
+
+        testFile.getParent().delete(true, null);
+        Assert.assertFalse("The values of the file in the deleted folder are still cached",
+                FileStatisticsService.getInstance().isCached(testFile));
+    }
+
+    private static FileRecord calculate(IFile file) throws InterruptedException {
+        FileRecord record = new FileRecord(file, (FolderRecord) null);
+        FileStatisticsService.getInstance().calculate(Collections.singletonList(record), false);
+        EclipseUtils.waitForJobs();
+        Assert.assertTrue("The values have not been cached",
+                FileStatisticsService.getInstance().isCached(file));
+        return record;
+    }
+}
@@ -0,0 +1,145 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.core.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.lang.Language;
+
+/**
+ * Looks up rules by name in constant time. There is one index for the rule set configured in the
+ * preferences and one for all registered rule sets.
+ *
+ * <p>An index is built on first use and is rebuilt only when the rule sets change: the configured
+ * rule set is compared by identity, as it is replaced by a new instance when it is reloaded
+ * from the state location, and the index is dropped when the rule set is stored in the
+ * preferences. The registered rule sets are compared by identity as well.
+ */
+public final class RuleRegistry {
+    private static final RuleRegistry INSTANCE = new RuleRegistry();
+
+    /** the index of the configured rule set - guarded by this. */
+    private Index configured;
+    /** the index of the registered rule sets - guarded by this. */
+    private Index registered;
+
+    private RuleRegistry() {
+        // singleton
+    }
+
+    public static RuleRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Drops the index of the configured rule set. Called when the rule set is stored, as its rules
+     * might have been modified in place.
+     */
+    public synchronized void ruleSetChanged() {
+        configured = null;
+    }
+
+    /**
+     * @return the rule with the given name of the rule set configured in the preferences, or
+     *     <code>null</code> if there is no such rule. If several rules have the same name, the first one is returned.
+     */
+    public Rule getRule(String name) {
+        return name == null ? null : configuredIndex().rulesByName.get(name);
+    }
+
+    /**
+     * @return the rule with the given name and language of the rule set configured in the preferences,
+     *     or <code>null</code> if there is no such rule
+     */
+    public Rule getRule(Language language, String name) {
+        if (name == null) {
+            return null;
+        }
+        Map<String, Rule> rules = configuredIndex().rulesByLanguage.get(language);
+        return rules == null ? null : rules.get(name);
+    }
+
+    /**
+     * @return the rule with the given name of all registered rule sets, or <code>null</code>
+     */
+    public Rule getRegisteredRule(String name) {
+        return name == null ? null : registeredIndex().rulesByName.get(name);
+    }
+
+    /**
+     * @return the names of the rules of all registered rule sets
+     */
+    public Set<String> getRegisteredRuleNames() {
+        return Collections.unmodifiableSet(registeredIndex().rulesByName.keySet());
+    }
+
+    private Index configuredIndex() {
+        // outside of the lock: the preferences manager might update the projects
+        RuleSet ruleSet = PMDPlugin.getDefault().getPreferencesManager().getRuleSet();
+        synchronized (this) {
+            List<RuleSet> ruleSets = Collections.singletonList(ruleSet);
+            if (configured == null || !configured.isIndexOf(ruleSets)) {
+                configured = new Index(ruleSets);
+            }
+            return configured;
+        }
+    }
+
+    private synchronized Index registeredIndex() {
+        Collection<RuleSet> ruleSets = PMDPlugin.getDefault().getRuleSetManager().getRegisteredRuleSets();
+        if (registered == null || !registered.isIndexOf(ruleSets)) {
+            registered = new Index(ruleSets);
+        }
+        return registered;
+    }
+
+    private static final class Index {
+        private final List<RuleSet> ruleSets;
+        private final Map<String, Rule> rulesByName = new HashMap<>();
+        private final Map<Language, Map<String, Rule>> rulesByLanguage = new HashMap<>();
+
+        Index(Collection<RuleSet> ruleSets) {
+            this.ruleSets = new ArrayList<>(ruleSets);
+            for (RuleSet ruleSet : this.ruleSets) {
+                for (Rule rule : ruleSet.getRules()) {
+                    // the first rule wins, like in RuleSet.getRuleByName
+                    if (!rulesByName.containsKey(rule.getName())) {
+                        rulesByName.put(rule.getName(), rule);
+                    }
+                    Map<String, Rule> rules = rulesByLanguage.get(rule.getLanguage());
+                    if (rules == null) {
+                        rules = new HashMap<>();
+                        rulesByLanguage.put(rule.getLanguage(), rules);
+                    }
+                    if (!rules.containsKey(rule.getName())) {
+                        rules.put(rule.getName(), rule);
+                    }
+                }
+            }
+        }
+
+        boolean isIndexOf(Collection<RuleSet> otherRuleSets) {
+            if (ruleSets.size() != otherRuleSets.size()) {
+                return false;
+            }
+            int i = 0;
+            for (RuleSet ruleSet : otherRuleSets) {
+                if (ruleSets.get(i++) != ruleSet) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
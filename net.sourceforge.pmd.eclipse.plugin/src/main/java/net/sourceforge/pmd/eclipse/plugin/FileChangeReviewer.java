@@ -4,7 +4,9 @@
 
 package net.sourceforge.pmd.eclipse.plugin;
 
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
@@ -15,7 +17,10 @@ import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IWorkspaceDescription;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
 import org.eclipse.core.runtime.NullProgressMonitor;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -24,14 +29,33 @@ import net.sourceforge.pmd.eclipse.runtime.cmd.ReviewCodeCmd;
 /**
  * Monitors for changes in the workspace and initiates the ReviewCodeCmd when
  * suitable file changes in some meaningful way.
+ *
+ * <p>The changes are collected until no more changes happen for a short quiet period,
+ * so that a burst of changes (e.g. a checkout) is analyzed in one pass. If a file,
+ * that is currently analyzed, changes again, the running analysis is cancelled and
+ * restarted with all the collected changes.
  * 
  * @author Brian Remedios
  */
 public class FileChangeReviewer implements IResourceChangeListener {
     private static final Logger LOG = LoggerFactory.getLogger(FileChangeReviewer.class);
 
+    /**
+     * Time in milliseconds without any further changes, before the changed files are analyzed.
+     */
+    private static final long QUIET_PERIOD = 500;
+
     private static boolean autoBuildingHintLogged;
 
+    /** the changed files, that are not yet analyzed - guarded by itself. */
+    private final Set<IFile> pendingFiles = new LinkedHashSet<>();
+    /** the files of the currently running analysis - guarded by pendingFiles. */
+    private Set<IFile> filesInProgress = Collections.emptySet();
+    /** whether the running analysis has been cancelled because of new changes - guarded by pendingFiles. */
+    private boolean restartRequested;
+
+    private final Job reviewJob = new ReviewJob();
+
     private enum ChangeType {
         ADDED, REMOVED, CHANGED
     }
@@ -92,17 +116,89 @@ public class FileChangeReviewer implements IResourceChangeListener {
             return;
         }
 
-        ReviewCodeCmd cmd = new ReviewCodeCmd(); // separate one for each thread
-        cmd.reset();
+        boolean inputsChanged = false;
+        synchronized (pendingFiles) {
+            for (ResourceChange chg : itemsChanged) {
+                // a file, that is already pending, is analyzed only once
+                pendingFiles.add(chg.file);
+                inputsChanged |= filesInProgress.contains(chg.file);
+            }
+            restartRequested |= inputsChanged;
+        }
+
+        if (inputsChanged) {
+            // the running analysis is outdated - it is rescheduled after it stopped
+            reviewJob.cancel();
+        } else if (reviewJob.getState() != Job.RUNNING) {
+            // restart the quiet period
+            reviewJob.cancel();
+        }
+        reviewJob.schedule(QUIET_PERIOD);
+    }
+
+    /**
+     * Stops analyzing the changed files.
+     */
+    public void dispose() {
+        synchronized (pendingFiles) {
+            pendingFiles.clear();
+        }
+        reviewJob.cancel();
+    }
 
-        for (ResourceChange chg : itemsChanged) {
-            cmd.addResource(chg.file);
+    /**
+     * Analyzes all the pending files in one run.
+     */
+    private class ReviewJob extends Job {
+        ReviewJob() {
+            super("Review changed files");
         }
 
-        try {
-            cmd.performExecute();
-        } catch (RuntimeException e) {
-            LOG.error("Error processing code review upon file changes: {}", e.toString(), e);
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            Set<IFile> files = new LinkedHashSet<>();
+            synchronized (pendingFiles) {
+                for (IFile file : pendingFiles) {
+                    // files, that have been deleted in the meantime, are skipped
+                    if (file.exists()) {
+                        files.add(file);
+                    }
+                }
+                pendingFiles.clear();
+                filesInProgress = files;
+                restartRequested = false;
+            }
+            if (files.isEmpty()) {
+                return Status.OK_STATUS;
+            }
+
+            ReviewCodeCmd cmd = new ReviewCodeCmd(); // separate one for each run
+            cmd.reset();
+            cmd.setRetainMarkers(false);
+            cmd.setPriorityWork(true);
+            // canceling this job cancels the command
+            cmd.setMonitor(monitor);
+            for (IFile file : files) {
+                cmd.addResource(file);
+            }
+
+            try {
+                // processed like the other reviews, so that reviews of the same project don't overlap
+                cmd.performExecute();
+                cmd.join();
+            } catch (RuntimeException e) {
+                LOG.error("Error processing code review upon file changes: {}", e.toString(), e);
+            } finally {
+                synchronized (pendingFiles) {
+                    filesInProgress = Collections.emptySet();
+                    if (restartRequested) {
+                        // the inputs changed while analyzing - the next run analyzes all the files again
+                        pendingFiles.addAll(files);
+                        restartRequested = false;
+                    }
+                }
+            }
+            return monitor.isCanceled() ? Status.CANCEL_STATUS : Status.OK_STATUS;
         }
     }
 
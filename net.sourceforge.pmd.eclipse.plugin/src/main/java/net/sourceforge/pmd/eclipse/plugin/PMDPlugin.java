@@ -15,6 +15,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
@@ -63,7 +64,10 @@ import net.sourceforge.pmd.eclipse.core.IRuleSetManager;
 import net.sourceforge.pmd.eclipse.core.ext.RuleSetsExtensionProcessor;
 import net.sourceforge.pmd.eclipse.core.impl.RuleSetManagerImpl;
 import net.sourceforge.pmd.eclipse.logging.internal.LogbackConfiguration;
-import net.sourceforge.pmd.eclipse.runtime.cmd.JavaProjectClassLoader;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerIndex;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ClassNameIndex;
+import net.sourceforge.pmd.eclipse.runtime.cmd.CpdTokenIndex;
+import net.sourceforge.pmd.eclipse.runtime.cmd.ProjectAnalysisCache;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferencesFactory;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferencesManager;
@@ -79,6 +83,7 @@ import net.sourceforge.pmd.eclipse.runtime.writer.impl.WriterFactoryImpl;
 import net.sourceforge.pmd.eclipse.ui.RuleLabelDecorator;
 import net.sourceforge.pmd.eclipse.ui.actions.RuleSetUtil;
 import net.sourceforge.pmd.eclipse.ui.actions.internal.InternalRuleSetUtil;
+import net.sourceforge.pmd.eclipse.ui.model.FileStatisticsService;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.ui.nls.StringTable;
 import net.sourceforge.pmd.eclipse.ui.priority.PriorityDescriptorCache;
@@ -95,7 +100,7 @@ import net.sourceforge.pmd.lang.rule.RuleReference;
 public class PMDPlugin extends AbstractUIPlugin {
     private static final Logger LOG = LoggerFactory.getLogger(PMDPlugin.class);
 
-    private static Map<IProject, IJavaProject> javaProjectsByIProject = new HashMap<>();
+    private static Map<IProject, IJavaProject> javaProjectsByIProject = new ConcurrentHashMap<>();
 
     // The shared instance
     private static PMDPlugin plugin;
@@ -148,9 +153,10 @@ public class PMDPlugin extends AbstractUIPlugin {
         IPreferences preferences = getDefault().loadPreferences();
         try {
             if (preferences.isProjectBuildPathEnabled() && project.hasNature(JavaCore.NATURE_ID)) {
-                config.setClassLoader(new JavaProjectClassLoader(config.getClass().getClassLoader(), project));
+                // the class loader of the project properties is closed, when the build path changes
+                config.setClassLoader(getDefault().loadProjectProperties(project).getAuxClasspath());
             }
-        } catch (CoreException e) {
+        } catch (CoreException | PropertiesException e) {
             throw new RuntimeException(e);
         }
     }
@@ -237,14 +243,24 @@ public class PMDPlugin extends AbstractUIPlugin {
         IPreferences prefs = loadPreferences();
         logbackConfiguration.applyLogPreferences(prefs.getLogFileName(), prefs.getLogLevelName());
         registerAdditionalRuleSets();
+        // registered before the other listeners, so that they already see the updated markers
+        MarkerIndex.getInstance().start(ResourcesPlugin.getWorkspace());
+        FileStatisticsService.getInstance().start(ResourcesPlugin.getWorkspace());
         fileChangeListenerEnabled(prefs.isCheckAfterSaveEnabled());
 
         // if a project is deleted, remove the cached project properties
+        // if a project is closed, drop its analysis cache from memory
         ResourcesPlugin.getWorkspace().addResourceChangeListener(new IResourceChangeListener() {
             @Override
             public void resourceChanged(IResourceChangeEvent arg0) {
                 if (arg0.getType() == IResourceChangeEvent.PRE_DELETE && arg0.getResource() instanceof IProject) {
                     getPropertiesManager().removeProjectProperties((IProject) arg0.getResource());
+                    ProjectAnalysisCache.remove((IProject) arg0.getResource());
+                    CpdTokenIndex.remove((IProject) arg0.getResource());
+                    ClassNameIndex.remove((IProject) arg0.getResource());
+                } else if (arg0.getType() == IResourceChangeEvent.PRE_CLOSE
+                        && arg0.getResource() instanceof IProject) {
+                    ProjectAnalysisCache.unload((IProject) arg0.getResource());
                 }
             }
         });
@@ -307,6 +323,7 @@ public class PMDPlugin extends AbstractUIPlugin {
         } else {
             if (changeReviewer != null) {
                 workspace.removeResourceChangeListener(changeReviewer);
+                changeReviewer.dispose();
                 changeReviewer = null;
             }
         }
@@ -365,6 +382,9 @@ public class PMDPlugin extends AbstractUIPlugin {
     @Override
     public void stop(BundleContext context) throws Exception {
         fileChangeListenerEnabled(false);
+        MarkerIndex.getInstance().stop();
+        FileStatisticsService.getInstance().stop();
+        getPropertiesManager().dispose();
 
         disposeResources();
         ResourceManager.dispose();
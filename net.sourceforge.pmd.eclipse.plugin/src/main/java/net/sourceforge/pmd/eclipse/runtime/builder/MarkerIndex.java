@@ -0,0 +1,524 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.builder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IMarkerDelta;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.RulePriority;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+
+/**
+ * Keeps the PMD rule markers of the workspace in memory, indexed by file, so that the views
+ * and the label decorator don't need to search the workspace tree once per marker type for
+ * every element they show. The number of markers per priority is additionally counted for
+ * every container, so that questions about folders and projects are answered without
+ * visiting their members.
+ *
+ * <p>The index is built once in the background, when it is started, and is then kept up to date
+ * with the marker deltas of the resource change events. The workspace is searched without holding
+ * the lock of the index, so that neither the queries nor the resource change events wait for it.
+ * Until the index has been built, the queries search the markers of the given resource directly.
+ * As the index is updated in a {@code POST_CHANGE} listener,
+ * markers, that are created within a workspace operation, are only visible after the operation
+ * has ended. Code, that needs the current markers within an operation (e.g. while publishing
+ * the markers of a review), should keep using {@link MarkerUtil#findMarkers(IResource, String[])}.
+ */
+public final class MarkerIndex implements IResourceChangeListener {
+    private static final Logger LOG = LoggerFactory.getLogger(MarkerIndex.class);
+
+    private static final MarkerIndex INSTANCE = new MarkerIndex();
+
+    private static final int PRIORITIES = RulePriority.LOW.getPriority();
+
+    /** the markers of every file by marker id - guarded by this. */
+    private final Map<IPath, Map<Long, IndexedMarker>> markersByFile = new HashMap<>();
+    /** the number of markers per priority of every file and container - guarded by this. */
+    private final Map<IPath, int[]> counts = new HashMap<>();
+    private IWorkspace workspace;
+    private volatile boolean built;
+    /** the resources with changed markers, while the index is built - guarded by this. */
+    private List<IResource> changedWhileBuilding;
+
+    private MarkerIndex() {
+        // singleton
+    }
+
+    public static MarkerIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Starts listening for marker changes and builds the index in the background.
+     */
+    public void start(IWorkspace workspace) {
+        synchronized (this) {
+            this.workspace = workspace;
+        }
+        workspace.addResourceChangeListener(this,
+                IResourceChangeEvent.POST_CHANGE | IResourceChangeEvent.PRE_CLOSE | IResourceChangeEvent.PRE_DELETE);
+
+        Job job = new Job("Indexing PMD markers") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                build();
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
+    }
+
+    /**
+     * Stops listening and forgets all markers.
+     */
+    public void stop() {
+        IWorkspace current;
+        synchronized (this) {
+            current = workspace;
+            workspace = null;
+            built = false;
+            changedWhileBuilding = null;
+            markersByFile.clear();
+            counts.clear();
+        }
+        if (current != null) {
+            current.removeResourceChangeListener(this);
+        }
+    }
+
+    /**
+     * @return whether the index has been built, the queries are answered by the index only then
+     */
+    public boolean isBuilt() {
+        return built;
+    }
+
+    private void build() {
+        IWorkspace current;
+        synchronized (this) {
+            if (built || workspace == null) {
+                return;
+            }
+            current = workspace;
+            changedWhileBuilding = new ArrayList<>();
+        }
+
+        long start = System.currentTimeMillis();
+        List<IndexedMarker> markers = scan(current.getRoot());
+
+        synchronized (this) {
+            if (workspace != current || changedWhileBuilding == null) {
+                // stopped in the meantime
+                return;
+            }
+            for (IndexedMarker marker : markers) {
+                add(marker);
+            }
+            // the scan might have missed these changes
+            for (IResource resource : changedWhileBuilding) {
+                removeAll(resource.getFullPath());
+                if (resource.isAccessible()) {
+                    addMarkersIn(resource);
+                }
+            }
+            changedWhileBuilding = null;
+            built = true;
+            LOG.debug("Indexed the PMD markers of {} files in {} ms", markersByFile.size(),
+                    System.currentTimeMillis() - start);
+        }
+    }
+
+    private void addMarkersIn(IResource resource) {
+        for (IndexedMarker marker : scan(resource)) {
+            add(marker);
+        }
+    }
+
+    /**
+     * Searches the PMD rule markers of the resource and all its members.
+     */
+    private static List<IndexedMarker> scan(IResource resource) {
+        List<IndexedMarker> result = new ArrayList<>();
+        for (String markerType : PMDRuntimeConstants.RULE_MARKER_TYPES) {
+            try {
+                for (IMarker marker : resource.findMarkers(markerType, false, IResource.DEPTH_INFINITE)) {
+                    result.add(new IndexedMarker(marker, MarkerUtil.ruleNameFor(marker),
+                            priorityOf(marker, markerType)));
+                }
+            } catch (CoreException e) {
+                LOG.warn("Couldn't index the markers of {}: {}", resource, e.toString());
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        synchronized (this) {
+            if (!built) {
+                rememberChangesWhileBuilding(event);
+                return;
+            }
+            switch (event.getType()) {
+            case IResourceChangeEvent.PRE_CLOSE:
+            case IResourceChangeEvent.PRE_DELETE:
+                removeAll(event.getResource().getFullPath());
+                break;
+            case IResourceChangeEvent.POST_CHANGE:
+                for (IMarkerDelta delta : MarkerUtil.markerDeltasIn(event)) {
+                    apply(delta);
+                }
+                addMarkersOfOpenedProjects(event.getDelta());
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * The markers will be read, when the index is built. If it is currently built, the markers of
+     * the changed resources are read again afterwards.
+     */
+    private void rememberChangesWhileBuilding(IResourceChangeEvent event) {
+        if (changedWhileBuilding == null) {
+            return;
+        }
+        if (event.getType() == IResourceChangeEvent.POST_CHANGE) {
+            for (IMarkerDelta delta : MarkerUtil.markerDeltasIn(event)) {
+                changedWhileBuilding.add(delta.getResource());
+            }
+            IResourceDelta rootDelta = event.getDelta();
+            if (rootDelta != null) {
+                for (IResourceDelta delta : rootDelta.getAffectedChildren(IResourceDelta.CHANGED)) {
+                    if ((delta.getFlags() & IResourceDelta.OPEN) != 0) {
+                        changedWhileBuilding.add(delta.getResource());
+                    }
+                }
+            }
+        } else if (event.getResource() != null) {
+            changedWhileBuilding.add(event.getResource());
+        }
+    }
+
+    private void apply(IMarkerDelta delta) {
+        IMarker marker = delta.getMarker();
+        remove(delta.getResource().getFullPath(), delta.getId());
+        if (delta.getKind() != IResourceDelta.REMOVED && marker.exists()) {
+            add(new IndexedMarker(marker, MarkerUtil.ruleNameFor(marker), priorityOf(marker, delta.getType())));
+        }
+    }
+
+    /**
+     * The markers of projects, that have just been opened, are not reported as marker deltas.
+     */
+    private void addMarkersOfOpenedProjects(IResourceDelta rootDelta) {
+        if (rootDelta == null) {
+            return;
+        }
+        for (IResourceDelta delta : rootDelta.getAffectedChildren(IResourceDelta.CHANGED)) {
+            IResource resource = delta.getResource();
+            if ((delta.getFlags() & IResourceDelta.OPEN) != 0 && resource instanceof IProject
+                    && ((IProject) resource).isOpen()) {
+                removeAll(resource.getFullPath());
+                addMarkersIn(resource);
+            }
+        }
+    }
+
+    private static int priorityOf(IMarker marker, String markerType) {
+        int defaultPriority = RulePriority.LOW.getPriority();
+        for (int i = 0; i < PMDRuntimeConstants.RULE_MARKER_TYPES.length; i++) {
+            if (PMDRuntimeConstants.RULE_MARKER_TYPES[i].equals(markerType)) {
+                defaultPriority = i + 1;
+            }
+        }
+        int priority = MarkerUtil.rulePriorityFor(marker, defaultPriority);
+        return priority < 1 || priority > PRIORITIES ? defaultPriority : priority;
+    }
+
+    private void add(IndexedMarker marker) {
+        IPath file = marker.marker.getResource().getFullPath();
+        Map<Long, IndexedMarker> markers = markersByFile.get(file);
+        if (markers == null) {
+            markers = new HashMap<>();
+            markersByFile.put(file, markers);
+        }
+        IndexedMarker previous = markers.put(marker.marker.getId(), marker);
+        if (previous != null) {
+            count(file, previous.priority, -1);
+        }
+        count(file, marker.priority, 1);
+    }
+
+    private void remove(IPath file, long id) {
+        Map<Long, IndexedMarker> markers = markersByFile.get(file);
+        if (markers == null) {
+            return;
+        }
+        IndexedMarker previous = markers.remove(id);
+        if (previous != null) {
+            count(file, previous.priority, -1);
+        }
+        if (markers.isEmpty()) {
+            markersByFile.remove(file);
+        }
+    }
+
+    private void removeAll(IPath container) {
+        Iterator<Map.Entry<IPath, Map<Long, IndexedMarker>>> files = markersByFile.entrySet().iterator();
+        while (files.hasNext()) {
+            Map.Entry<IPath, Map<Long, IndexedMarker>> file = files.next();
+            if (container.isPrefixOf(file.getKey())) {
+                for (IndexedMarker marker : file.getValue().values()) {
+                    count(file.getKey(), marker.priority, -1);
+                }
+                files.remove();
+            }
+        }
+    }
+
+    /**
+     * Updates the counts of the file and all its parents up to the workspace root.
+     */
+    private void count(IPath file, int priority, int delta) {
+        for (IPath path = file; ; path = path.removeLastSegments(1)) {
+            int[] pathCounts = counts.get(path);
+            if (pathCounts == null) {
+                pathCounts = new int[PRIORITIES + 1];
+                counts.put(path, pathCounts);
+            }
+            pathCounts[0] += delta;
+            pathCounts[priority] += delta;
+            if (pathCounts[0] == 0) {
+                counts.remove(path);
+            }
+            if (path.segmentCount() == 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return whether the resource or any of its members has a PMD rule marker
+     */
+    public boolean hasMarkers(IResource resource) {
+        if (!built) {
+            return !scan(resource).isEmpty();
+        }
+        synchronized (this) {
+            return counts.containsKey(resource.getFullPath());
+        }
+    }
+
+    /**
+     * @return the number of PMD rule markers with the given priority in the resource and all its members
+     */
+    public int countMarkers(IResource resource, int priority) {
+        return countMarkers(resource, priority, IResource.DEPTH_INFINITE);
+    }
+
+    /**
+     * @param depth {@link IResource#DEPTH_ZERO} for the markers of the resource itself,
+     *     {@link IResource#DEPTH_ONE} for the markers of the resource and its direct members,
+     *     {@link IResource#DEPTH_INFINITE} for the markers of the resource and all its members
+     * @return the number of PMD rule markers with the given priority in the resource up to the given depth
+     */
+    public int countMarkers(IResource resource, int priority, int depth) {
+        if (priority < 1 || priority > PRIORITIES) {
+            return 0;
+        }
+        if (!built) {
+            return count(scan(resource), resource.getFullPath(), priority, depth);
+        }
+        synchronized (this) {
+            IPath path = resource.getFullPath();
+            int[] pathCounts = counts.get(path);
+            if (pathCounts == null || pathCounts[priority] == 0) {
+                return 0;
+            }
+            if (depth == IResource.DEPTH_INFINITE || resource.getType() == IResource.FILE) {
+                return pathCounts[priority];
+            }
+            if (depth == IResource.DEPTH_ONE && resource instanceof IContainer) {
+                try {
+                    return pathCounts[priority] - countBelowMembers((IContainer) resource, priority);
+                } catch (CoreException e) {
+                    // not accessible anymore, the files are searched below
+                    LOG.debug("Couldn't get the members of {}: {}", path, e.toString());
+                }
+            }
+            int result = 0;
+            for (Map.Entry<IPath, Map<Long, IndexedMarker>> file : markersByFile.entrySet()) {
+                if (isWithinDepth(path, file.getKey(), depth)) {
+                    result += count(file.getValue().values(), path, priority, IResource.DEPTH_INFINITE);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Counts the markers of the members of the members of the container, which are not within
+     * depth one. The container counts are used, so that only the direct members are visited.
+     */
+    private int countBelowMembers(IContainer container, int priority) throws CoreException {
+        int result = 0;
+        int memberFlags = IContainer.INCLUDE_HIDDEN | IContainer.INCLUDE_TEAM_PRIVATE_MEMBERS;
+        for (IResource member : container.members(memberFlags)) {
+            if (member.getType() == IResource.FILE) {
+                continue;
+            }
+            IPath memberPath = member.getFullPath();
+            int[] memberCounts = counts.get(memberPath);
+            if (memberCounts != null) {
+                Map<Long, IndexedMarker> ownMarkers = markersByFile.get(memberPath);
+                int own = ownMarkers == null ? 0
+                        : count(ownMarkers.values(), memberPath, priority, IResource.DEPTH_INFINITE);
+                result += memberCounts[priority] - own;
+            }
+        }
+        return result;
+    }
+
+    private static int count(Collection<IndexedMarker> markers, IPath path, int priority, int depth) {
+        int result = 0;
+        for (IndexedMarker marker : markers) {
+            if (marker.priority == priority
+                    && (depth == IResource.DEPTH_INFINITE
+                    || isWithinDepth(path, marker.marker.getResource().getFullPath(), depth))) {
+                result++;
+            }
+        }
+        return result;
+    }
+
+    private static boolean isWithinDepth(IPath container, IPath file, int depth) {
+        int segments = file.segmentCount() - container.segmentCount();
+        return container.isPrefixOf(file) && (segments == 0 || depth == IResource.DEPTH_ONE && segments == 1);
+    }
+
+    /**
+     * @return the priorities of the PMD rule markers in the resource and all its members, highest first
+     */
+    public Set<Integer> prioritiesIn(IResource resource) {
+        Set<Integer> priorities = new TreeSet<>();
+        if (!built) {
+            for (IndexedMarker marker : scan(resource)) {
+                priorities.add(marker.priority);
+            }
+            return priorities;
+        }
+        synchronized (this) {
+            int[] pathCounts = counts.get(resource.getFullPath());
+            if (pathCounts == null) {
+                return Collections.emptySet();
+            }
+            for (int priority = 1; priority <= PRIORITIES; priority++) {
+                if (pathCounts[priority] > 0) {
+                    priorities.add(priority);
+                }
+            }
+            return priorities;
+        }
+    }
+
+    /**
+     * @return the PMD rule markers of the resource and all its members
+     */
+    public IMarker[] findMarkers(IResource resource) {
+        return findMarkers(resource, 0, null);
+    }
+
+    /**
+     * @return the PMD rule markers with the given priority of the resource and all its members
+     */
+    public IMarker[] findMarkers(IResource resource, int priority) {
+        return findMarkers(resource, priority, null);
+    }
+
+    /**
+     * @return the PMD rule markers of the given rule of the resource and all its members
+     */
+    public IMarker[] findMarkers(IResource resource, String ruleName) {
+        return findMarkers(resource, 0, ruleName);
+    }
+
+    private IMarker[] findMarkers(IResource resource, int priority, String ruleName) {
+        List<IMarker> result = new ArrayList<>();
+        if (!built) {
+            collect(scan(resource), priority, ruleName, result);
+            return result.toArray(MarkerUtil.EMPTY_MARKERS);
+        }
+        synchronized (this) {
+            IPath path = resource.getFullPath();
+            int[] pathCounts = counts.get(path);
+            if (pathCounts == null || priority > 0 && priority <= PRIORITIES && pathCounts[priority] == 0) {
+                return MarkerUtil.EMPTY_MARKERS;
+            }
+
+            Map<Long, IndexedMarker> fileMarkers = markersByFile.get(path);
+            if (fileMarkers != null) {
+                collect(fileMarkers.values(), priority, ruleName, result);
+            }
+            if (resource.getType() != IResource.FILE) {
+                for (Map.Entry<IPath, Map<Long, IndexedMarker>> file : markersByFile.entrySet()) {
+                    if (!path.equals(file.getKey()) && path.isPrefixOf(file.getKey())) {
+                        collect(file.getValue().values(), priority, ruleName, result);
+                    }
+                }
+            }
+        }
+        return result.toArray(MarkerUtil.EMPTY_MARKERS);
+    }
+
+    private static void collect(Collection<IndexedMarker> markers, int priority, String ruleName,
+            List<IMarker> result) {
+        for (IndexedMarker marker : markers) {
+            if ((priority == 0 || marker.priority == priority)
+                    && (ruleName == null || ruleName.equals(marker.ruleName))) {
+                result.add(marker.marker);
+            }
+        }
+    }
+
+    private static final class IndexedMarker {
+        private final IMarker marker;
+        private final String ruleName;
+        private final int priority;
+
+        IndexedMarker(IMarker marker, String ruleName, int priority) {
+            this.marker = marker;
+            this.ruleName = ruleName;
+            this.priority = priority;
+        }
+    }
+}
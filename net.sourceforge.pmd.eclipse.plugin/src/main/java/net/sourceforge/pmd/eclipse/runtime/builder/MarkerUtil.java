@@ -5,11 +5,9 @@
 package net.sourceforge.pmd.eclipse.runtime.builder;
 
 import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -19,12 +17,11 @@ import org.eclipse.core.resources.IMarkerDelta;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceChangeEvent;
-import org.eclipse.core.resources.IResourceVisitor;
 import org.eclipse.core.resources.IWorkspaceRoot;
 import org.eclipse.core.runtime.CoreException;
 
 import net.sourceforge.pmd.Rule;
-import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.core.internal.RuleRegistry;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
@@ -41,51 +38,14 @@ public final class MarkerUtil {
 
     public static final IMarker[] EMPTY_MARKERS = new IMarker[0];
 
-    private static Map<String, Rule> rulesByName;
-
     private MarkerUtil() {
     }
 
+    /**
+     * Answered by the {@link MarkerIndex}, without visiting the members of the resource.
+     */
     public static boolean hasAnyRuleMarkers(IResource resource) throws CoreException {
-
-        final boolean[] foundOne = new boolean[] { false };
-
-        IResourceVisitor ruleMarkerFinder = new IResourceVisitor() {
-            @Override
-            public boolean visit(IResource resource) {
-
-                if (foundOne[0]) {
-                    return false;
-                }
-
-                if (resource instanceof IFile) {
-
-                    for (String markerType : PMDRuntimeConstants.RULE_MARKER_TYPES) {
-                        IMarker[] ruleMarkers = null;
-                        try {
-                            ruleMarkers = resource.findMarkers(markerType, true, IResource.DEPTH_INFINITE);
-                        } catch (CoreException ignored) {
-                            // what do to?
-                        }
-                        if (ruleMarkers != null && ruleMarkers.length > 0) {
-                            foundOne[0] = true;
-                            return false;
-                        }
-                    }
-                }
-
-                return true;
-            }
-        };
-
-        try {
-            resource.accept(ruleMarkerFinder);
-        } catch (CoreException e) {
-            // TODO Auto-generated catch block
-            e.printStackTrace();
-        }
-
-        return foundOne[0];
+        return MarkerIndex.getInstance().hasMarkers(resource);
     }
 
     private static IProject projectFor(IResource resource) {
@@ -185,14 +145,14 @@ public final class MarkerUtil {
     public static List<Rule> rulesFor(IMarker[] markers) {
 
         List<Rule> rules = new ArrayList<>(markers.length);
-        RuleSet ruleset = PMDPlugin.getDefault().getPreferencesManager().getRuleSet();
+        RuleRegistry registry = RuleRegistry.getInstance();
 
         for (IMarker marker : markers) {
             String name = ruleNameFor(marker);
             if (StringUtils.isBlank(name)) {
                 continue;
             }
-            Rule rule = ruleset.getRuleByName(name);
+            Rule rule = registry.getRule(name);
             if (rule == null) {
                 continue;
             }
@@ -264,6 +224,16 @@ public final class MarkerUtil {
 
         Set<Integer> priorityLevels = new HashSet<>(sizeLimit);
 
+        if (Arrays.equals(PMDRuntimeConstants.RULE_MARKER_TYPES, markerTypes)) {
+            for (Integer priority : MarkerIndex.getInstance().prioritiesIn(resource)) {
+                if (priorityLevels.size() == sizeLimit) {
+                    break;
+                }
+                priorityLevels.add(priority);
+            }
+            return priorityLevels;
+        }
+
         for (String markerType : markerTypes) {
             for (IMarker marker : resource.findMarkers(markerType, true, IResource.DEPTH_INFINITE)) {
                 priorityLevels.add(rulePriorityFor(marker));
@@ -277,19 +247,7 @@ public final class MarkerUtil {
     }
 
     public static Set<String> currentRuleNames() {
-        gatherRuleNames();
-        return rulesByName.keySet();
-    }
-
-    private static void gatherRuleNames() {
-
-        rulesByName = new HashMap<>();
-        Collection<RuleSet> ruleSets = PMDPlugin.getDefault().getRuleSetManager().getRegisteredRuleSets();
-        for (RuleSet rs : ruleSets) {
-            for (Rule rule : rs.getRules()) {
-                rulesByName.put(rule.getName(), rule);
-            }
-        }
+        return RuleRegistry.getInstance().getRegisteredRuleNames();
     }
 
     private static Rule ruleFrom(IMarker marker) {
@@ -297,13 +255,11 @@ public final class MarkerUtil {
         if (StringUtils.isBlank(ruleName)) {
             return null; // printValues(marker);
         }
-        return rulesByName.get(ruleName);
+        return RuleRegistry.getInstance().getRegisteredRule(ruleName);
     }
 
     public static Set<IFile> allMarkedFiles(RootRecord root) {
 
-        gatherRuleNames();
-
         Set<IFile> files = new HashSet<>();
 
         for (AbstractPMDRecord projectRecord : root.getChildren()) {
@@ -99,7 +99,9 @@ public class PMDBuilder extends IncrementalProjectBuilder {
             ReviewCodeCmd cmd = new ReviewCodeCmd();
             cmd.setResourceDelta(resourceDelta);
             cmd.setTaskMarker(false);
-            cmd.setMonitor(monitor);
+            cmd.setRetainMarkers(false);
+            // no monitor: the review runs after the build and must not be canceled with it,
+            // e.g. when the auto build is interrupted
             // a builder is always asynchronous;
             // execute a command synchronously
             // whatever its processor
@@ -119,7 +121,8 @@ public class PMDBuilder extends IncrementalProjectBuilder {
         ReviewCodeCmd cmd = new ReviewCodeCmd();
         cmd.addResource(project);
         cmd.setTaskMarker(false);
-        cmd.setMonitor(monitor);
+        cmd.setRetainMarkers(false);
+        // no monitor: the review runs after the build and must not be canceled with it
         // a builder is always asynchronous; execute a command synchronously whatever its processor
         cmd.performExecute(); 
     }
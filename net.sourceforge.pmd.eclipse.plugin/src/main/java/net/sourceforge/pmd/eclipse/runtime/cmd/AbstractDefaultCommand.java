@@ -6,6 +6,7 @@ package net.sourceforge.pmd.eclipse.runtime.cmd;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.lang.Language;
@@ -173,6 +174,37 @@ public abstract class AbstractDefaultCommand {
 
     public abstract void reset();
 
+    /**
+     * Tells whether the command should be executed before the other, waiting commands,
+     * e.g. because the user is waiting for the result.
+     *
+     * @return by default, whether the command is user initiated
+     */
+    protected boolean isPriorityWork() {
+        return isUserInitiated();
+    }
+
+    /**
+     * The rule, that must not conflict with the rules of the running commands. Commands
+     * with conflicting rules are executed one after another.
+     *
+     * @return the rule or <code>null</code>, if the command can run at any time
+     */
+    protected ISchedulingRule getSchedulingRule() {
+        return null;
+    }
+
+    /**
+     * Merges the work of another command into this command, which hasn't been started yet.
+     * If the commands can't be merged, nothing is changed.
+     *
+     * @param other the command, that has been submitted later
+     * @return <code>true</code> if the work of the other command is now done by this command
+     */
+    protected boolean merge(AbstractDefaultCommand other) {
+        return false;
+    }
+
     /**
      * delegate method for monitor.beginTask
      * 
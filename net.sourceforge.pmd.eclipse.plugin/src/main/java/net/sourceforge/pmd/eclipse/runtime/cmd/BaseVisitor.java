@@ -7,10 +7,11 @@ package net.sourceforge.pmd.eclipse.runtime.cmd;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -25,8 +26,6 @@ import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.ui.IWorkingSet;
-import org.eclipse.ui.ResourceWorkingSetFilter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -42,13 +41,11 @@ import net.sourceforge.pmd.RuleSets;
 import net.sourceforge.pmd.RuleViolation;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.profiler.RuleProfiler;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
 import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
 import net.sourceforge.pmd.eclipse.ui.actions.internal.InternalRuleSetUtil;
-import net.sourceforge.pmd.lang.LanguageRegistry;
 import net.sourceforge.pmd.lang.LanguageVersion;
-import net.sourceforge.pmd.lang.LanguageVersionDiscoverer;
-import net.sourceforge.pmd.lang.java.JavaLanguageModule;
 import net.sourceforge.pmd.renderers.Renderer;
 import net.sourceforge.pmd.util.datasource.DataSource;
 import net.sourceforge.pmd.util.datasource.ReaderDataSource;
@@ -69,8 +66,15 @@ public class BaseVisitor {
     private List<RuleSet> ruleSets;
     private Set<String> fileExtensions;
     private int fileCount;
+    private int cachedFileCount;
     private long pmdDuration;
     private IProjectProperties projectProperties;
+    private Collection<IFile> batch;
+    private ProjectAnalysisCache analysisCache;
+    private ProjectAnalysisContext analysisContext;
+    private MarkerPublisher markerPublisher;
+    /** the rule sets wrapped for the profiler, created once for all the files. */
+    private RuleProfiler.TimedRuleSets timedRuleSets;
 
     private PMDConfiguration configuration;
 
@@ -85,6 +89,8 @@ public class BaseVisitor {
     protected PMDConfiguration configuration() {
         if (configuration == null) {
             configuration = new PMDConfiguration();
+            // Avoid warnings about not providing cache for incremental analysis
+            configuration.setIgnoreIncrementalAnalysis(true);
         }
         return configuration;
     }
@@ -223,6 +229,7 @@ public class BaseVisitor {
 
     public void setRuleSetList(List<RuleSet> ruleSets) {
         this.ruleSets = ruleSets;
+        this.timedRuleSets = null;
     }
 
     public void setFileExtensions(Set<String> fileExtensions) {
@@ -236,6 +243,13 @@ public class BaseVisitor {
         return fileCount;
     }
 
+    /**
+     * @return the number of processed files, whose violations were restored from the analysis cache
+     */
+    public int getCachedFilesCount() {
+        return cachedFileCount;
+    }
+
     /**
      * @return actual PMD duration
      */
@@ -250,9 +264,58 @@ public class BaseVisitor {
         this.projectProperties = projectProperties;
     }
 
-    private boolean isIncluded(IFile file) throws PropertiesException {
-        return projectProperties.isIncludeDerivedFiles()
-                || !projectProperties.isIncludeDerivedFiles() && !file.isDerived();
+    /**
+     * Sets the batch the visited files should be collected into. If a batch is set,
+     * the files are not analyzed while visiting, but only collected. The analysis is
+     * then done later on by {@link ReviewBatch}.
+     *
+     * @param batch
+     *            the collection of files to fill or <code>null</code> to analyze the files directly
+     */
+    public void setBatch(Collection<IFile> batch) {
+        this.batch = batch;
+    }
+
+    /**
+     * Sets the cache, the results of the analysis are taken from and stored into.
+     *
+     * @param analysisCache
+     *            the cache of the project or <code>null</code> to always analyze the files
+     */
+    public void setAnalysisCache(ProjectAnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+
+    protected ProjectAnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+
+    /**
+     * Sets the context of the project, that is shared by all visitors of a command run.
+     * If no context is set, the visitor creates its own context from the project properties,
+     * rulesets and file extensions.
+     */
+    void setAnalysisContext(ProjectAnalysisContext analysisContext) {
+        this.analysisContext = analysisContext;
+    }
+
+    /**
+     * Sets the publisher, the markers of a file are handed over to, as soon as the file is finished.
+     */
+    void setMarkerPublisher(MarkerPublisher markerPublisher) {
+        this.markerPublisher = markerPublisher;
+    }
+
+    private ProjectAnalysisContext analysisContext(IFile file) throws PropertiesException {
+        if (analysisContext == null) {
+            analysisContext = new ProjectAnalysisContext(file.getProject(), projectProperties, ruleSets,
+                    fileExtensions, PMDPlugin.getDefault().loadPreferences());
+        }
+        return analysisContext;
+    }
+
+    private boolean isIncluded(IFile file, ProjectAnalysisContext context) {
+        return context.isIncludeDerivedFiles() || !file.isDerived();
     }
 
     /**
@@ -271,54 +334,72 @@ public class BaseVisitor {
             return;
         }
 
-        if (PMDPlugin.getDefault().loadPreferences().isDetermineFiletypesAutomatically()) {
-            if (fileExtensions != null) {
-                if (!fileExtensions.contains(file.getFileExtension().toLowerCase(Locale.ROOT))) {
-                    LOG.debug("Skipping file {} based on file extension", file);
-                    return;
+        boolean prepared = false;
+        try {
+            final ProjectAnalysisContext context = analysisContext(file);
+            if (context.isCheckFileExtensions()) {
+                if (fileExtensions != null) {
+                    if (!fileExtensions.contains(file.getFileExtension().toLowerCase(Locale.ROOT))) {
+                        LOG.debug("Skipping file {} based on file extension", file);
+                        return;
+                    }
+                } else {
+                    LOG.warn("Can't check for file extensions.");
                 }
-            } else {
-                LOG.warn("Can't check for file extensions.");
             }
-        }
 
-        try {
-            boolean included = isIncluded(file);
-            LOG.debug("Derived files included: " + projectProperties.isIncludeDerivedFiles());
-            LOG.debug("file " + file.getName() + " is derived: " + file.isDerived());
-            LOG.debug("file checked: " + included);
+            if (batch != null) {
+                batch.add(file);
+                return;
+            }
+
+            boolean included = isIncluded(file, context);
+            LOG.debug("file {} checked: {} (derived: {}, derived files included: {})", file.getName(), included,
+                    file.isDerived(), context.isIncludeDerivedFiles());
 
             prepareMarkerAccumulator(file);
+            prepared = true;
 
-            LanguageVersionDiscoverer languageDiscoverer = new LanguageVersionDiscoverer();
-            LanguageVersion languageVersion = languageDiscoverer.getDefaultLanguageVersionForFile(file.getName());
-            // in case it is java, select the correct java version
-            if (languageVersion != null
-                    && LanguageRegistry.getLanguage(JavaLanguageModule.NAME).equals(languageVersion.getLanguage())) {
-                languageVersion = PMDPlugin.javaVersionFor(file.getProject());
-            }
+            LanguageVersion languageVersion = context.getLanguageVersion(file);
             if (languageVersion != null) {
                 configuration().setDefaultLanguageVersion(languageVersion);
             }
             LOG.debug("discovered language: {}", languageVersion);
 
-            if (PMDPlugin.getDefault().loadPreferences().isProjectBuildPathEnabled()) {
-                configuration().setClassLoader(projectProperties.getAuxClasspath());
+            if (context.getAuxClasspath() != null) {
+                configuration().setClassLoader(context.getAuxClasspath());
             }
 
-            // Avoid warnings about not providing cache for incremental analysis
-            configuration().setIgnoreIncrementalAnalysis(true);
-
             final File sourceCodeFile = file.getRawLocation().toFile();
-            if (included && InternalRuleSetUtil.ruleSetsApplies(ruleSets, sourceCodeFile) && isFileInWorkingSet(file)
-                    && languageVersion != null) {
+            if (included && InternalRuleSetUtil.ruleSetsApplies(ruleSets, sourceCodeFile)
+                    && context.isInWorkingSet(file) && languageVersion != null) {
                 subTask("PMD checking: " + file.getProject() + ": " + file.getName());
 
+                // the file is read only once, the same content is used for the analysis
+                // and the search for reviewed violations
+                SourceBuffer source = SourceBuffer.read(file);
+                long checksum = 0;
+                if (analysisCache != null) {
+                    checksum = source.getChecksum();
+                    Set<MarkerInfo2> cachedMarkers = analysisCache.get(file, checksum);
+                    if (cachedMarkers != null) {
+                        LOG.debug("Restored {} violations for unchanged file {} from cache", cachedMarkers.size(),
+                                file);
+                        if (getAccumulator() != null) {
+                            getAccumulator().put(file, cachedMarkers);
+                        }
+                        worked(1);
+                        fileCount++;
+                        cachedFileCount++;
+                        return;
+                    }
+                }
+
                 long start = System.currentTimeMillis();
 
                 Report collectingReport = null;
 
-                try (Reader input = new InputStreamReader(file.getContents(), file.getCharset());
+                try (Reader input = new StringReader(source.getText());
                      DataSource dataSource = new ReaderDataSource(input, file.getRawLocation().toFile().getPath());) {
                     
                     // getPmdEngine().processFile(input, getRuleSet(), context);
@@ -332,8 +413,19 @@ public class BaseVisitor {
                     // here.
                     configuration().setThreads(0);
                     LOG.debug("PMD running on file {}", file.getName());
-                    collectingReport = PMD.processFiles(configuration(), ruleSets, Arrays.asList(dataSource),
-                            Collections.<Renderer>emptyList());
+                    RuleProfiler profiler = RuleProfiler.getInstance();
+                    RuleProfiler.TimedRuleSets timed = timedRuleSets(profiler);
+                    RuleProfiler.Measurement measurement = timed == null ? null : profiler.startFile(timed);
+                    try {
+                        collectingReport = PMD.processFiles(configuration(),
+                                timed == null ? ruleSets : timed.getRuleSets(),
+                                Arrays.asList(dataSource), Collections.<Renderer>emptyList());
+                    } finally {
+                        if (measurement != null) {
+                            profiler.finishFile(timed, measurement, file.getFullPath().toString(),
+                                    languageVersion.getLanguage().getName());
+                        }
+                    }
                     LOG.debug("PMD run finished.");
                 }
 
@@ -359,12 +451,15 @@ public class BaseVisitor {
                     throw new PMDException(message.toString());
                 }
 
-                updateMarkers(file, collectingReport.getViolations());
+                Set<MarkerInfo2> markers = updateMarkers(file, source, collectingReport.getViolations(), context);
+                if (analysisCache != null) {
+                    analysisCache.put(file, checksum, markers);
+                }
 
                 worked(1);
                 fileCount++;
             } else {
-                LOG.debug("The file " + file.getName() + " is not in the working set");
+                LOG.debug("The file {} is not in the working set", file.getName());
             }
 
         } catch (CoreException e) {
@@ -381,26 +476,24 @@ public class BaseVisitor {
             LOG.error("Properties exception visiting " + file.getName(), e);
         } catch (IllegalArgumentException e) {
             LOG.error("Illegal argument: {}", e.toString(), e);
+        } finally {
+            if (prepared) {
+                publishMarkers(file);
+            }
         }
 
     }
 
     /**
-     * Test if a file is in the PMD working set.
-     *
-     * @param file
-     * @return true if the file should be checked
+     * @return the rule sets wrapped for the profiler or <code>null</code>, if the profiler is disabled
      */
-    private boolean isFileInWorkingSet(final IFile file) throws PropertiesException {
-        boolean fileInWorkingSet = true;
-        IWorkingSet workingSet = projectProperties.getProjectWorkingSet();
-        if (workingSet != null) {
-            ResourceWorkingSetFilter filter = new ResourceWorkingSetFilter();
-            filter.setWorkingSet(workingSet);
-            fileInWorkingSet = filter.select(null, null, file);
+    private RuleProfiler.TimedRuleSets timedRuleSets(RuleProfiler profiler) {
+        if (!profiler.isEnabled()) {
+            timedRuleSets = null;
+        } else if (timedRuleSets == null || !timedRuleSets.wraps(ruleSets)) {
+            timedRuleSets = profiler.timedRuleSets(ruleSets);
         }
-
-        return fileInWorkingSet;
+        return timedRuleSets;
     }
 
     public static String markerTypeFor(RuleViolation violation) {
@@ -427,12 +520,23 @@ public class BaseVisitor {
         }
     }
 
-    private void updateMarkers(IFile file, List<RuleViolation> violations)
-            throws CoreException, PropertiesException {
+    private void publishMarkers(IFile file) {
+        Map<IFile, Set<MarkerInfo2>> accumulator = getAccumulator();
+        if (markerPublisher != null && accumulator != null) {
+            Set<MarkerInfo2> markers = accumulator.get(file);
+            if (markers != null) {
+                markerPublisher.add(file, markers);
+            }
+        }
+    }
+
+    private Set<MarkerInfo2> updateMarkers(IFile file, SourceBuffer source, List<RuleViolation> violations,
+            ProjectAnalysisContext context) {
 
         Map<IFile, Set<MarkerInfo2>> accumulator = getAccumulator();
         Set<MarkerInfo2> markerSet = new HashSet<>();
-        List<Review> reviewsList = findReviewedViolations(file);
+        Set<Review> reviews = violations.isEmpty() ? Collections.<Review>emptySet()
+                : findReviewedViolations(source.getText());
         Review review = new Review();
         // final IPreferences preferences =
         // PMDPlugin.getDefault().loadPreferences();
@@ -443,7 +547,7 @@ public class BaseVisitor {
             review.ruleName = rule.getName();
             review.lineNumber = violation.getBeginLine();
 
-            if (reviewsList.contains(review)) {
+            if (reviews.contains(review)) {
                 LOG.debug("Ignoring violation of rule " + rule.getName() + " at line " + violation.getBeginLine()
                         + " because of a review.");
                 continue;
@@ -455,7 +559,7 @@ public class BaseVisitor {
             // markerSet.add(getMarkerInfo(violation, fTask ?
             // PMDRuntimeConstants.PMD_TASKMARKER :
             // PMDRuntimeConstants.PMD_MARKER));
-            markerSet.add(getMarkerInfo(violation, markerTypeFor(violation)));
+            markerSet.add(getMarkerInfo(violation, markerTypeFor(violation), context));
             /*
              * if (isDfaEnabled && violation.getRule().usesDFA()) { markerSet.add(getMarkerInfo(violation,
              * PMDRuntimeConstants.PMD_DFA_MARKER)); } else { markerSet.add(getMarkerInfo(violation, fTask ?
@@ -469,44 +573,42 @@ public class BaseVisitor {
             LOG.debug("Adding markerSet to accumulator for file " + file.getName());
             accumulator.put(file, markerSet);
         }
+        return markerSet;
     }
 
     /**
-     * Search for reviewed violations in that file
+     * Search for reviewed violations in the content of a file
      *
-     * @param file
+     * @param source the content of the file
      */
-    private List<Review> findReviewedViolations(final IFile file) {
-        final List<Review> reviews = new ArrayList<>();
+    static Set<Review> findReviewedViolations(final String source) {
+        final Set<Review> reviews = new HashSet<>();
         int lineNumber = 0;
         boolean findLine = false;
         boolean comment = false;
         final Stack<String> pendingReviews = new Stack<>();
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(file.getContents()))) {
-            while (reader.ready()) {
-                String line = reader.readLine();
-                if (line != null) {
-                    line = line.trim();
-                    lineNumber++;
-                    if (line.startsWith("/*")) {
-                        comment = line.indexOf("*/") == -1;
-                    } else if (comment && line.indexOf("*/") != -1) {
-                        comment = false;
-                    } else if (!comment && line.startsWith(PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT)) {
-                        final String tail = line.substring(PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT.length());
-                        final String ruleName = tail.substring(0, tail.indexOf(':'));
-                        pendingReviews.push(ruleName);
-                        findLine = true;
-                    } else if (!comment && findLine && StringUtils.isNotBlank(line) && !line.startsWith("//")) {
-                        findLine = false;
-                        while (!pendingReviews.empty()) {
-                            // @PMD:REVIEWED:AvoidInstantiatingObjectsInLoops:
-                            // by Herlin on 01/05/05 18:36
-                            final Review review = new Review();
-                            review.ruleName = pendingReviews.pop();
-                            review.lineNumber = lineNumber;
-                            reviews.add(review);
-                        }
+        try (BufferedReader reader = new BufferedReader(new StringReader(source))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                line = line.trim();
+                lineNumber++;
+                if (line.startsWith("/*")) {
+                    comment = line.indexOf("*/") == -1;
+                } else if (comment && line.indexOf("*/") != -1) {
+                    comment = false;
+                } else if (!comment && line.startsWith(PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT)) {
+                    final String tail = line.substring(PMDRuntimeConstants.PLUGIN_STYLE_REVIEW_COMMENT.length());
+                    final String ruleName = tail.substring(0, tail.indexOf(':'));
+                    pendingReviews.push(ruleName);
+                    findLine = true;
+                } else if (!comment && findLine && StringUtils.isNotBlank(line) && !line.startsWith("//")) {
+                    findLine = false;
+                    while (!pendingReviews.empty()) {
+                        // @PMD:REVIEWED:AvoidInstantiatingObjectsInLoops:
+                        // by Herlin on 01/05/05 18:36
+                        final Review review = new Review();
+                        review.ruleName = pendingReviews.pop();
+                        review.lineNumber = lineNumber;
+                        reviews.add(review);
                     }
                 }
             }
@@ -519,8 +621,6 @@ public class BaseVisitor {
             // }
             // }
 
-        } catch (CoreException e) {
-            PMDPlugin.getDefault().logError("Core Exception when searching reviewed violations", e);
         } catch (IOException e) {
             PMDPlugin.getDefault().logError("IO Exception when searching reviewed violations", e);
         }
@@ -528,7 +628,7 @@ public class BaseVisitor {
         return reviews;
     }
 
-    private MarkerInfo2 getMarkerInfo(RuleViolation violation, String type) throws PropertiesException {
+    private MarkerInfo2 getMarkerInfo(RuleViolation violation, String type, ProjectAnalysisContext context) {
 
         Rule rule = violation.getRule();
 
@@ -546,7 +646,7 @@ public class BaseVisitor {
         case HIGH:
         case MEDIUM_HIGH:
             info.add(IMarker.SEVERITY,
-                    projectProperties.violationsAsErrors() ? IMarker.SEVERITY_ERROR : IMarker.SEVERITY_WARNING);
+                    context.isViolationsAsErrors() ? IMarker.SEVERITY_ERROR : IMarker.SEVERITY_WARNING);
             break;
 
         case MEDIUM:
@@ -564,9 +664,9 @@ public class BaseVisitor {
     }
 
     /**
-     * Private inner type to handle reviews.
+     * Inner type to handle reviews.
      */
-    private class Review {
+    static class Review {
         public String ruleName;
         public int lineNumber;
 
@@ -5,6 +5,7 @@
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.lang3.StringUtils;
@@ -34,6 +35,7 @@ public class CPDVisitor implements IResourceVisitor {
     private ResourceWorkingSetFilter workingSetFilter;
     private Language language;
     private List<File> files;
+    private final List<IFile> resources = new ArrayList<>();
 
     /**
      * @param includeDerivedFiles
@@ -67,6 +69,13 @@ public class CPDVisitor implements IResourceVisitor {
         return this.files;
     }
 
+    /**
+     * @return the visited files, that have been added to the list of files
+     */
+    public List<IFile> getResources() {
+        return resources;
+    }
+
     /**
      * @param files
      *            the list of files to set
@@ -92,6 +101,7 @@ public class CPDVisitor implements IResourceVisitor {
                         && (includeDerivedFiles || !file.isDerived())) {
                     LOG.debug("Add file " + resource.getName());
                     files.add(ioFile);
+                    resources.add(file);
                     return false;
                 }
             } catch (PropertiesException e) {
@@ -0,0 +1,166 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+
+/**
+ * The names of the classes of the library jars of a project, so that the auxclasspath answers
+ * lookups of classes, that don't exist, without searching the jars, and reads existing classes
+ * directly from the right jar.
+ *
+ * <p>The index is built in the background, whenever the class loader of a project is created,
+ * i.e. also after the build path has changed. It is stored in the plugin state location together
+ * with the modification stamps of the jars, so that only new or modified jars have to be read
+ * in the next session.
+ */
+public final class ClassNameIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(ClassNameIndex.class);
+
+    private static final String INDEX_FOLDER = "classIndex";
+    private static final int FORMAT_VERSION = 1;
+
+    private ClassNameIndex() {
+        // utility
+    }
+
+    /**
+     * Builds the index of the libraries of the project in the background, unless the libraries
+     * are indexed already, because they are shared with another project.
+     */
+    static void schedule(final IProject project, final LibraryClassLoader libraries) {
+        if (libraries.isIndexed() || PMDPlugin.getDefault() == null) {
+            return;
+        }
+        Job job = new Job("Indexing the classes of " + project.getName()) {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                build(project, libraries);
+                return Status.OK_STATUS;
+            }
+        };
+        job.setSystem(true);
+        job.schedule();
+    }
+
+    private static void build(IProject project, LibraryClassLoader libraries) {
+        long start = System.currentTimeMillis();
+        File indexFile = indexFileFor(project);
+        Map<String, Set<String>> persisted = load(indexFile);
+
+        List<LibraryJar> jars = libraries.getJars();
+        boolean modified = persisted.size() != jars.size();
+        for (LibraryJar jar : jars) {
+            Set<String> classNames = persisted.get(jar.getKey());
+            if (classNames == null) {
+                modified = true;
+            } else if (jar.getClassNames() == null) {
+                jar.setClassNames(classNames);
+            }
+        }
+
+        if (!libraries.buildIndex()) {
+            // the class loader has been released in the meantime
+            return;
+        }
+        if (modified) {
+            store(indexFile, jars);
+        }
+        LOG.debug("auxclasspath: Indexed the classes of {} jars of {} in {} ms", jars.size(), project.getName(),
+                System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Removes the index of the given project, e.g. because the project is deleted.
+     */
+    public static void remove(IProject project) {
+        File file = indexFileFor(project);
+        if (file.exists() && !file.delete()) {
+            LOG.warn("Couldn't delete class name index {}", file);
+        }
+    }
+
+    private static File indexFileFor(IProject project) {
+        IPath location = PMDPlugin.getDefault().getStateLocation().append(INDEX_FOLDER);
+        return location.append(project.getName() + ".index").toFile();
+    }
+
+    private static Map<String, Set<String>> load(File indexFile) {
+        if (!indexFile.isFile()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Set<String>> classNamesByJar = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new GZIPInputStream(Files.newInputStream(indexFile.toPath()))))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOG.debug("Ignoring class name index {} with unknown format", indexFile);
+                return Collections.emptyMap();
+            }
+            int jarCount = in.readInt();
+            for (int i = 0; i < jarCount; i++) {
+                String key = in.readUTF();
+                int classCount = in.readInt();
+                Set<String> classNames = new HashSet<>(classCount * 4 / 3 + 1);
+                for (int j = 0; j < classCount; j++) {
+                    classNames.add(in.readUTF());
+                }
+                classNamesByJar.put(key, classNames);
+            }
+        } catch (IOException | RuntimeException e) {
+            // a broken index is not a problem, the jars are just read again
+            LOG.warn("Couldn't read class name index {}: {}", indexFile, e.toString());
+            return Collections.emptyMap();
+        }
+        return classNamesByJar;
+    }
+
+    private static void store(File indexFile, List<LibraryJar> jars) {
+        File folder = indexFile.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            LOG.warn("Couldn't create folder {} for the class name index", folder);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(indexFile.toPath()))))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(jars.size());
+            for (LibraryJar jar : jars) {
+                Set<String> classNames = jar.getClassNames();
+                out.writeUTF(jar.getKey());
+                out.writeInt(classNames.size());
+                for (String className : classNames) {
+                    out.writeUTF(className);
+                }
+            }
+        } catch (IOException e) {
+            PMDPlugin.getDefault().logError("Couldn't write class name index " + indexFile, e);
+        }
+    }
+}
@@ -0,0 +1,753 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.cpd.Language;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokenizer;
+import net.sourceforge.pmd.cpd.Tokens;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+
+/**
+ * Persistent index of the tokens of the files of a project, used to detect duplicated code
+ * incrementally. The token images are interned in an image table of the index, for every file the
+ * image ids of its tokens are stored together with the modification stamp of the file, so that
+ * only modified files have to be tokenized again. The duplications found in the last run are
+ * stored as well: only the duplications, that involve a modified file, are searched again.
+ *
+ * <p>The duplications are found like in the match algorithm of CPD: the hashes of all windows of
+ * the minimum tile size are compared, windows with the same hash are extended as long as the
+ * tokens have the same image.
+ *
+ * <p>The indexes are stored in the plugin state location. In memory they are only softly
+ * referenced, as they can get big for large projects.
+ */
+public final class CpdTokenIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(CpdTokenIndex.class);
+
+    private static final String INDEX_FOLDER = "cpdIndex";
+    private static final int FORMAT_VERSION = 2;
+    private static final int HASH_BASE = 37;
+
+    private static final Map<String, SoftReference<CpdTokenIndex>> INDEXES_BY_PROJECT = new HashMap<>();
+
+    private static final String PROBE_IMAGE = "probe";
+
+    private static Boolean supported;
+
+    private final File indexFile;
+    /** the tokens by project relative path of the file. */
+    private final Map<String, FileTokens> files = new HashMap<>();
+    /** the files, whose duplications haven't been searched since they have been tokenized. */
+    private final Set<String> unmatched = new LinkedHashSet<>();
+    private final List<Duplication> duplications = new ArrayList<>();
+    /** the images of the tokens by id. */
+    private final List<String> images = new ArrayList<>();
+    private final Map<String, Integer> imageIds = new HashMap<>();
+    private String configuration = "";
+    private int minTileSize;
+    private boolean dirty;
+
+    private CpdTokenIndex(File indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Gets the index of the given project. The index is loaded from the state location, if it is
+     * not in memory.
+     */
+    static CpdTokenIndex forProject(IProject project) {
+        synchronized (INDEXES_BY_PROJECT) {
+            SoftReference<CpdTokenIndex> reference = INDEXES_BY_PROJECT.get(project.getName());
+            CpdTokenIndex index = reference == null ? null : reference.get();
+            if (index == null) {
+                index = new CpdTokenIndex(indexFileFor(project));
+                index.load();
+                INDEXES_BY_PROJECT.put(project.getName(), new SoftReference<>(index));
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Removes the index of the given project, e.g. because the project is deleted.
+     */
+    public static void remove(IProject project) {
+        synchronized (INDEXES_BY_PROJECT) {
+            INDEXES_BY_PROJECT.remove(project.getName());
+            File file = indexFileFor(project);
+            if (file.exists() && !file.delete()) {
+                LOG.warn("Couldn't delete CPD index {}", file);
+            }
+        }
+    }
+
+    private static File indexFileFor(IProject project) {
+        IPath location = PMDPlugin.getDefault().getStateLocation().append(INDEX_FOLDER);
+        return location.append(project.getName() + ".index").toFile();
+    }
+
+    /**
+     * A token entry only knows the id of its image in the thread local image table of CPD. The
+     * image itself is provided by {@link TokenEntry#toString()}, which is verified once.
+     *
+     * @return whether the tokens can be indexed with this PMD version
+     */
+    static synchronized boolean isSupported() {
+        if (supported == null) {
+            TokenEntry.clearImages();
+            try {
+                TokenEntry probe = new TokenEntry(PROBE_IMAGE, PROBE_IMAGE, 1, 1, PROBE_IMAGE.length());
+                supported = PROBE_IMAGE.equals(probe.toString());
+            } finally {
+                TokenEntry.clearImages();
+            }
+            if (!supported) {
+                LOG.warn("Incremental CPD is not available with this PMD version");
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Makes sure, the index belongs to the given configuration. The tokens are discarded, if the
+     * language, its properties, the encoding or the PMD version changed. The duplications are searched again, if
+     * the minimum tile size changed.
+     */
+    synchronized void checkValidity(Language language, Properties languageProperties, String encoding,
+            int newMinTileSize) {
+        String newConfiguration = PMDVersion.VERSION + '|' + language.getTerseName() + '|'
+                + new TreeMap<>(languageProperties) + '|' + encoding;
+        if (!configuration.equals(newConfiguration)) {
+            if (!files.isEmpty()) {
+                LOG.debug("CPD configuration changed - discarding the tokens of {} files", files.size());
+            }
+            files.clear();
+            unmatched.clear();
+            duplications.clear();
+            clearImages();
+            configuration = newConfiguration;
+            minTileSize = newMinTileSize;
+            dirty = true;
+        } else if (minTileSize != newMinTileSize) {
+            duplications.clear();
+            unmatched.addAll(files.keySet());
+            minTileSize = newMinTileSize;
+            dirty = true;
+        }
+    }
+
+    static String keyFor(IFile file) {
+        return file.getProjectRelativePath().toPortableString();
+    }
+
+    /**
+     * @return whether the file has been tokenized since its last modification
+     */
+    synchronized boolean isUpToDate(IFile file) {
+        FileTokens tokens = files.get(keyFor(file));
+        return tokens != null && tokens.modificationStamp == file.getModificationStamp();
+    }
+
+    /**
+     * Forgets the files, that are not part of the given files anymore.
+     */
+    synchronized void retainFiles(Collection<IFile> candidates) {
+        Set<String> keys = new HashSet<>(candidates.size());
+        for (IFile file : candidates) {
+            keys.add(keyFor(file));
+        }
+        Set<String> removed = new HashSet<>(files.keySet());
+        removed.removeAll(keys);
+        if (!removed.isEmpty()) {
+            files.keySet().removeAll(removed);
+            unmatched.removeAll(removed);
+            removeDuplicationsOf(removed);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Tokenizes the file. This doesn't modify the index and can be called concurrently, as long as
+     * every thread uses its own tokenizer (the tokenizers are not thread safe).
+     *
+     * @param file the file
+     * @param tokenizer the tokenizer of the language
+     * @param encoding the encoding of the file
+     * @return the tokens to be stored with {@link #put(IFile, FileTokens)}
+     */
+    static FileTokens tokenize(IFile file, Tokenizer tokenizer, String encoding) throws IOException {
+        // the stamp before reading, so that a concurrent change is noticed in the next run
+        long modificationStamp = file.getModificationStamp();
+        return tokenize(file.getLocation().toFile(), tokenizer, encoding, modificationStamp);
+    }
+
+    /**
+     * Stores the tokens of the file. Their images are interned in the image table of the index.
+     * The duplications of the file are searched with the next call of {@link #findDuplications()}.
+     */
+    synchronized void put(IFile file, FileTokens tokens) {
+        int[] ids = new int[tokens.images.length];
+        for (int i = 0; i < ids.length; i++) {
+            if (tokens.images[i] != null) {
+                ids[i] = idOf(tokens.images[i]);
+            }
+        }
+        for (int i = 0; i < tokens.ids.length; i++) {
+            tokens.ids[i] = ids[tokens.ids[i]];
+        }
+        tokens.images = null;
+
+        String key = keyFor(file);
+        files.put(key, tokens);
+        unmatched.add(key);
+        dirty = true;
+    }
+
+    /**
+     * Forgets the file, e.g. because it couldn't be tokenized. The old tokens and duplications of
+     * the file are not valid anymore.
+     */
+    synchronized void remove(IFile file) {
+        String key = keyFor(file);
+        if (files.remove(key) != null) {
+            unmatched.remove(key);
+            removeDuplicationsOf(Collections.singleton(key));
+            dirty = true;
+        }
+    }
+
+    private static FileTokens tokenize(File file, Tokenizer tokenizer, String encoding, long modificationStamp)
+            throws IOException {
+        // the image table of CPD is kept per thread and is only used for this file
+        TokenEntry.clearImages();
+        try {
+            SourceCode sourceCode = new SourceCode(new SourceCode.FileCodeLoader(file, encoding));
+            Tokens tokens = new Tokens();
+            tokenizer.tokenize(sourceCode, tokens);
+
+            List<TokenEntry> entries = tokens.getTokens();
+            int count = entries.size();
+            if (count > 0 && entries.get(count - 1) == TokenEntry.EOF) {
+                count--;
+            }
+            // the ids of the image table of this file, they are replaced by the ids of the index in put
+            List<String> images = new ArrayList<>();
+            FileTokens result = new FileTokens(modificationStamp, count);
+            for (int i = 0; i < count; i++) {
+                TokenEntry entry = entries.get(i);
+                int identifier = entry.getIdentifier();
+                while (images.size() <= identifier) {
+                    images.add(null);
+                }
+                if (images.get(identifier) == null) {
+                    // looks the image up in the image table, so it is done once per image
+                    images.set(identifier, entry.toString());
+                }
+                result.ids[i] = identifier;
+                result.lines[i] = entry.getBeginLine();
+                result.columns[i] = packColumns(entry.getBeginColumn(), entry.getEndColumn());
+            }
+            result.images = images.toArray(new String[0]);
+            return result;
+        } finally {
+            TokenEntry.clearImages();
+        }
+    }
+
+    private int idOf(String image) {
+        Integer id = imageIds.get(image);
+        if (id == null) {
+            id = images.size();
+            images.add(image);
+            imageIds.put(image, id);
+        }
+        return id;
+    }
+
+    private void clearImages() {
+        images.clear();
+        imageIds.clear();
+    }
+
+    /**
+     * Removes the images, that are not used by any file anymore, and renumbers the others.
+     */
+    private void compactImages() {
+        int[] newIds = new int[images.size()];
+        Arrays.fill(newIds, -1);
+        List<String> used = new ArrayList<>();
+        for (FileTokens tokens : files.values()) {
+            for (int i = 0; i < tokens.ids.length; i++) {
+                int id = tokens.ids[i];
+                if (newIds[id] < 0) {
+                    newIds[id] = used.size();
+                    used.add(images.get(id));
+                }
+                tokens.ids[i] = newIds[id];
+            }
+        }
+        clearImages();
+        for (String image : used) {
+            idOf(image);
+        }
+    }
+
+    private static int packColumns(int beginColumn, int endColumn) {
+        return Math.min(Math.max(beginColumn, 0), 0xFFFF) << 16 | Math.min(Math.max(endColumn, 0), 0xFFFF);
+    }
+
+    /**
+     * @return the tokens of the file or <code>null</code>, if the file is not indexed. The ids of the
+     *         tokens are only valid until the index is persisted.
+     */
+    synchronized FileTokens tokensOf(String key) {
+        return files.get(key);
+    }
+
+    /**
+     * Searches the duplications of all files, that have been tokenized since the last search.
+     *
+     * @return all duplications of the indexed files
+     */
+    synchronized List<Duplication> findDuplications() {
+        if (!unmatched.isEmpty()) {
+            long start = System.currentTimeMillis();
+            removeDuplicationsOf(unmatched);
+            int found = new DuplicationFinder().find();
+            LOG.debug("Found {} duplications of {} modified files in {} ms", found, unmatched.size(),
+                    System.currentTimeMillis() - start);
+            unmatched.clear();
+            dirty = true;
+        }
+        return new ArrayList<>(duplications);
+    }
+
+    private void removeDuplicationsOf(Set<String> keys) {
+        Iterator<Duplication> iterator = duplications.iterator();
+        while (iterator.hasNext()) {
+            Duplication duplication = iterator.next();
+            if (keys.contains(duplication.file1) || keys.contains(duplication.file2)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Writes the index to the state location, if it has been modified.
+     */
+    synchronized void persist() {
+        if (!dirty) {
+            return;
+        }
+        File folder = indexFile.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            LOG.warn("Couldn't create folder {} for the CPD index", folder);
+            return;
+        }
+        compactImages();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(indexFile.toPath())))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(configuration);
+            out.writeInt(minTileSize);
+            out.writeInt(images.size());
+            for (String image : images) {
+                // an image can be longer than the 64k bytes supported by writeUTF
+                byte[] bytes = image.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+            Map<String, Integer> fileNumbers = new HashMap<>(files.size());
+            out.writeInt(files.size());
+            for (Map.Entry<String, FileTokens> file : files.entrySet()) {
+                fileNumbers.put(file.getKey(), fileNumbers.size());
+                out.writeUTF(file.getKey());
+                out.writeBoolean(unmatched.contains(file.getKey()));
+                file.getValue().write(out);
+            }
+            out.writeInt(duplications.size());
+            for (Duplication duplication : duplications) {
+                out.writeInt(fileNumbers.get(duplication.file1));
+                out.writeInt(duplication.offset1);
+                out.writeInt(fileNumbers.get(duplication.file2));
+                out.writeInt(duplication.offset2);
+                out.writeInt(duplication.tokenCount);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            PMDPlugin.getDefault().logError("Couldn't write CPD index " + indexFile, e);
+        }
+    }
+
+    private void load() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(indexFile.toPath())))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOG.debug("Ignoring CPD index {} with unknown format", indexFile);
+                return;
+            }
+            configuration = in.readUTF();
+            minTileSize = in.readInt();
+            int imageCount = in.readInt();
+            for (int i = 0; i < imageCount; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                idOf(new String(bytes, StandardCharsets.UTF_8));
+            }
+            int fileCount = in.readInt();
+            String[] keys = new String[fileCount];
+            for (int i = 0; i < fileCount; i++) {
+                keys[i] = in.readUTF();
+                if (in.readBoolean()) {
+                    unmatched.add(keys[i]);
+                }
+                files.put(keys[i], FileTokens.read(in, imageCount));
+            }
+            int duplicationCount = in.readInt();
+            for (int i = 0; i < duplicationCount; i++) {
+                duplications.add(new Duplication(keys[in.readInt()], in.readInt(), keys[in.readInt()], in.readInt(),
+                        in.readInt()));
+            }
+        } catch (IOException | RuntimeException e) {
+            // a broken index is not a problem, the files are just tokenized again
+            LOG.warn("Couldn't read CPD index {}: {}", indexFile, e.toString());
+            files.clear();
+            unmatched.clear();
+            duplications.clear();
+            clearImages();
+            configuration = "";
+        }
+    }
+
+    /**
+     * The tokens of a single file.
+     */
+    static final class FileTokens {
+        private final long modificationStamp;
+        /** the ids of the token images in the image table of the index. */
+        private final int[] ids;
+        private final int[] lines;
+        /** the begin column in the upper, the end column in the lower 16 bits. */
+        private final int[] columns;
+        /** the images of the tokens by id, until the tokens are put into the index. */
+        private String[] images;
+
+        FileTokens(long modificationStamp, int count) {
+            this.modificationStamp = modificationStamp;
+            ids = new int[count];
+            lines = new int[count];
+            columns = new int[count];
+        }
+
+        int size() {
+            return ids.length;
+        }
+
+        int idAt(int index) {
+            return ids[index];
+        }
+
+        /**
+         * @return whether the tokens starting at the offset have the same images as the tokens of
+         *         the other file starting at the other offset
+         */
+        boolean sameTokens(int offset, FileTokens other, int otherOffset, int count) {
+            for (int i = 0; i < count; i++) {
+                if (ids[offset + i] != other.ids[otherOffset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        int lineAt(int index) {
+            return lines[index];
+        }
+
+        /**
+         * @return the begin column or -1, if the tokenizer doesn't provide columns
+         */
+        int beginColumnAt(int index) {
+            int column = columns[index] >>> 16;
+            return column == 0 ? -1 : column;
+        }
+
+        /**
+         * @return the end column or -1, if the tokenizer doesn't provide columns
+         */
+        int endColumnAt(int index) {
+            int column = columns[index] & 0xFFFF;
+            return column == 0 ? -1 : column;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(modificationStamp);
+            out.writeInt(ids.length);
+            for (int i = 0; i < ids.length; i++) {
+                out.writeInt(ids[i]);
+                out.writeInt(lines[i]);
+                out.writeInt(columns[i]);
+            }
+        }
+
+        static FileTokens read(DataInputStream in, int imageCount) throws IOException {
+            FileTokens tokens = new FileTokens(in.readLong(), in.readInt());
+            for (int i = 0; i < tokens.ids.length; i++) {
+                tokens.ids[i] = in.readInt();
+                if (tokens.ids[i] < 0 || tokens.ids[i] >= imageCount) {
+                    throw new IOException("Invalid image id " + tokens.ids[i]);
+                }
+                tokens.lines[i] = in.readInt();
+                tokens.columns[i] = in.readInt();
+            }
+            return tokens;
+        }
+    }
+
+    /**
+     * Two code fragments with the same tokens.
+     */
+    static final class Duplication {
+        final String file1;
+        final int offset1;
+        final String file2;
+        final int offset2;
+        final int tokenCount;
+
+        Duplication(String file1, int offset1, String file2, int offset2, int tokenCount) {
+            this.file1 = file1;
+            this.offset1 = offset1;
+            this.file2 = file2;
+            this.offset2 = offset2;
+            this.tokenCount = tokenCount;
+        }
+    }
+
+    /**
+     * Finds the duplications between the unmatched files and all other files. The windows of all
+     * files are numbered consecutively, the unmatched files first. Windows are represented as
+     * longs with the hash in the upper and the window number in the lower 32 bits, so that they
+     * can be sorted by hash without creating objects.
+     */
+    private final class DuplicationFinder {
+        private final String[] keys;
+        private final FileTokens[] tokens;
+        /** the number of the first token of every file. */
+        private final int[] starts;
+        private final int unmatchedCount;
+        private final int hashPower;
+
+        DuplicationFinder() {
+            List<String> ordered = new ArrayList<>(unmatched);
+            for (String key : files.keySet()) {
+                if (!unmatched.contains(key)) {
+                    ordered.add(key);
+                }
+            }
+            keys = ordered.toArray(new String[0]);
+            tokens = new FileTokens[keys.length];
+            starts = new int[keys.length];
+            int start = 0;
+            for (int i = 0; i < keys.length; i++) {
+                tokens[i] = files.get(keys[i]);
+                starts[i] = start;
+                start += tokens[i].size();
+            }
+            unmatchedCount = unmatched.size();
+            int power = 1;
+            for (int i = 1; i < minTileSize; i++) {
+                power *= HASH_BASE;
+            }
+            hashPower = power;
+        }
+
+        int find() {
+            final LongList unmatchedWindows = new LongList();
+            for (int i = 0; i < unmatchedCount; i++) {
+                addWindows(i, unmatchedWindows, null);
+            }
+            final long[] sortedUnmatched = unmatchedWindows.toSortedArray();
+            // only the windows of the other files, that occur in an unmatched file, are needed
+            LongList otherWindows = new LongList();
+            for (int i = unmatchedCount; i < keys.length; i++) {
+                addWindows(i, otherWindows, sortedUnmatched);
+            }
+            long[] sortedOthers = otherWindows.toSortedArray();
+
+            int found = 0;
+            int other = 0;
+            int group = 0;
+            while (group < sortedUnmatched.length) {
+                int hash = hashOf(sortedUnmatched[group]);
+                int groupEnd = group;
+                while (groupEnd < sortedUnmatched.length && hashOf(sortedUnmatched[groupEnd]) == hash) {
+                    groupEnd++;
+                }
+                while (other < sortedOthers.length && hashOf(sortedOthers[other]) < hash) {
+                    other++;
+                }
+                int otherEnd = other;
+                while (otherEnd < sortedOthers.length && hashOf(sortedOthers[otherEnd]) == hash) {
+                    otherEnd++;
+                }
+                for (int i = group; i < groupEnd; i++) {
+                    for (int j = i + 1; j < groupEnd; j++) {
+                        found += compare(positionOf(sortedUnmatched[i]), positionOf(sortedUnmatched[j]));
+                    }
+                    for (int j = other; j < otherEnd; j++) {
+                        found += compare(positionOf(sortedUnmatched[i]), positionOf(sortedOthers[j]));
+                    }
+                }
+                group = groupEnd;
+                other = otherEnd;
+            }
+            return found;
+        }
+
+        /**
+         * Adds the windows of the file with the rolling hash of the image ids. If a filter is given,
+         * only the windows with a hash contained in the filter are added.
+         */
+        private void addWindows(int file, LongList windows, long[] filter) {
+            FileTokens fileTokens = tokens[file];
+            int count = fileTokens.size() - minTileSize + 1;
+            if (count <= 0) {
+                return;
+            }
+            int hash = 0;
+            for (int i = 0; i < minTileSize; i++) {
+                hash = hash * HASH_BASE + fileTokens.idAt(i);
+            }
+            for (int offset = 0; ; offset++) {
+                if (filter == null || containsHash(filter, hash)) {
+                    windows.add((long) hash << 32 | starts[file] + offset);
+                }
+                if (offset + 1 == count) {
+                    break;
+                }
+                hash = (hash - fileTokens.idAt(offset) * hashPower) * HASH_BASE
+                        + fileTokens.idAt(offset + minTileSize);
+            }
+        }
+
+        /**
+         * Compares the tokens at the two positions and records a duplication, if they start a
+         * maximal sequence of at least the minimum tile size.
+         *
+         * @return 1, if a duplication has been recorded, 0 otherwise
+         */
+        private int compare(int position1, int position2) {
+            int file1 = fileOf(position1);
+            int file2 = fileOf(position2);
+            int offset1 = position1 - starts[file1];
+            int offset2 = position2 - starts[file2];
+            FileTokens tokens1 = tokens[file1];
+            FileTokens tokens2 = tokens[file2];
+            if (offset1 > 0 && offset2 > 0 && tokens1.idAt(offset1 - 1) == tokens2.idAt(offset2 - 1)) {
+                // part of a duplication, that starts earlier
+                return 0;
+            }
+            int length = 0;
+            while (offset1 + length < tokens1.size() && offset2 + length < tokens2.size()
+                    && tokens1.idAt(offset1 + length) == tokens2.idAt(offset2 + length)) {
+                length++;
+            }
+            if (length < minTileSize) {
+                // a hash collision
+                return 0;
+            }
+            if (file1 == file2 && Math.abs(offset1 - offset2) < length) {
+                // overlapping
+                return 0;
+            }
+            duplications.add(new Duplication(keys[file1], offset1, keys[file2], offset2, length));
+            return 1;
+        }
+
+        private int fileOf(int position) {
+            int index = Arrays.binarySearch(starts, position);
+            if (index < 0) {
+                index = -index - 2;
+            }
+            // skip files without tokens, they have the same start as the next file
+            while (index + 1 < starts.length && starts[index + 1] == position) {
+                index++;
+            }
+            return index;
+        }
+    }
+
+    private static int hashOf(long window) {
+        return (int) (window >> 32);
+    }
+
+    private static int positionOf(long window) {
+        return (int) window;
+    }
+
+    private static boolean containsHash(long[] sortedWindows, int hash) {
+        int index = Arrays.binarySearch(sortedWindows, (long) hash << 32);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return index < sortedWindows.length && hashOf(sortedWindows[index]) == hash;
+    }
+
+    /**
+     * A growing array of primitive longs.
+     */
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toSortedArray() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+}
@@ -4,21 +4,30 @@
 
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
-import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.swt.widgets.Display;
 import org.eclipse.ui.IPropertyListener;
@@ -29,11 +38,17 @@ import net.sourceforge.pmd.cpd.CPD;
 import net.sourceforge.pmd.cpd.CPDConfiguration;
 import net.sourceforge.pmd.cpd.Language;
 import net.sourceforge.pmd.cpd.LanguageFactory;
+import net.sourceforge.pmd.cpd.Mark;
 import net.sourceforge.pmd.cpd.Match;
 import net.sourceforge.pmd.cpd.Renderer;
+import net.sourceforge.pmd.cpd.SourceCode;
+import net.sourceforge.pmd.cpd.TokenEntry;
+import net.sourceforge.pmd.cpd.Tokenizer;
 import net.sourceforge.pmd.cpd.renderer.CPDRenderer;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.cmd.CpdTokenIndex.Duplication;
+import net.sourceforge.pmd.eclipse.runtime.cmd.CpdTokenIndex.FileTokens;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
 import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
 
@@ -46,7 +61,14 @@ import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
 public class DetectCutAndPasteCmd extends AbstractProjectCommand {
 
     private Language language;
+    private String languageName;
+    private Properties languageProperties;
     private int minTileSize;
+    /**
+     * The number of threads to use for tokenizing the files. A negative value means,
+     * that the number is taken from the preferences.
+     */
+    private int tokenizerThreads = -1;
     private CPDRenderer renderer;
     private String reportName;
     private boolean createReport;
@@ -66,13 +88,13 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
         listeners = new ArrayList<>();
     }
 
-    private void notifyListeners(final CPD cpd) {
+    private void notifyListeners(final List<Match> matches) {
         // trigger event propertyChanged for all listeners
         Display.getDefault().asyncExec(new Runnable() {
             @Override
             public void run() {
                 for (IPropertyListener listener : listeners) {
-                    listener.propertyChanged(cpd.getMatches(), PMDRuntimeConstants.PROPERTY_CPD);
+                    listener.propertyChanged(matches.iterator(), PMDRuntimeConstants.PROPERTY_CPD);
                 }
             }
         });
@@ -81,7 +103,7 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
     @Override
     public void execute() {
         try {
-            List<File> files = findCandidateFiles();
+            List<IFile> files = findCandidateFiles();
 
             if (files.isEmpty()) {
                 logInfo("No files found for specified language.");
@@ -92,13 +114,13 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
             beginTask("Finding suspect Cut And Paste", getStepCount() * 2);
 
             if (!isCanceled()) {
-                final CPD cpd = detectCutAndPaste(files);
+                final List<Match> matches = detectCutAndPaste(files);
 
                 if (!isCanceled()) {
                     if (createReport) {
-                        renderReport(cpd.getMatches());
+                        renderReport(matches.iterator());
                     }
-                    notifyListeners(cpd);
+                    notifyListeners(matches);
                 }
             }
         } catch (CoreException e) {
@@ -120,6 +142,7 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
         setReportName(null);
         setCPDRenderer(null);
         setLanguage("java");
+        setTokenizerThreads(-1);
         setMinTileSize(PMDPlugin.getDefault().loadPreferences().getMinTileSize());
         setCreateReport(false);
         addPropertyListener(null);
@@ -131,7 +154,32 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
      *            The language to set.
      */
     public void setLanguage(String theLanguage) {
-        language = LanguageFactory.createLanguage(theLanguage);
+        setLanguage(theLanguage, new Properties());
+    }
+
+    /**
+     * @param theLanguage
+     *            The language to set.
+     * @param properties
+     *            The properties of the language, e.g. {@link Tokenizer#IGNORE_LITERALS}.
+     */
+    public void setLanguage(String theLanguage, Properties properties) {
+        languageName = theLanguage;
+        languageProperties = properties;
+        language = LanguageFactory.createLanguage(theLanguage, properties);
+    }
+
+    /**
+     * Sets the number of threads used to tokenize the files. By default, the
+     * number is taken from the preferences.
+     *
+     * @param tokenizerThreads
+     *            the number of threads, 0 to use all available processors, 1 to
+     *            tokenize the files one after another
+     * @see net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences#getAnalysisThreads()
+     */
+    public void setTokenizerThreads(int tokenizerThreads) {
+        this.tokenizerThreads = tokenizerThreads;
     }
 
     /**
@@ -207,7 +255,7 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
      * @throws PropertiesException
      * @throws CoreException
      */
-    private List<File> findCandidateFiles() throws PropertiesException, CoreException {
+    private List<IFile> findCandidateFiles() throws PropertiesException, CoreException {
 
         final IProjectProperties properties = projectProperties();
         final CPDVisitor visitor = new CPDVisitor();
@@ -216,27 +264,146 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
         visitor.setLanguage(language);
         visitor.setFiles(new ArrayList<File>());
         visitProjectResourcesWith(visitor);
-        return visitor.getFiles();
+        return visitor.getResources();
     }
 
     /**
-     * Run the cut and paste detector. At first all files have to be added to
-     * the cpd. Then the CPD can be executed.
+     * Run the cut and paste detector. Only the files, that have been modified since the last run,
+     * are tokenized, and only their duplications are searched again. The tokens and the
+     * duplications are kept in the {@link CpdTokenIndex} of the project.
      * 
      * @param files
      *            List of files to be checked.
-     * @return the CPD itself for retrieving the matches.
-     * @throws CoreException
+     * @return the matches found, sorted like the matches of the CPD.
      */
-    private CPD detectCutAndPaste(final List<File> files) {
-        LOG.debug("Searching for project files");
+    private List<Match> detectCutAndPaste(final List<IFile> files) {
+        if (!CpdTokenIndex.isSupported()) {
+            return detectCutAndPasteWithoutIndex(files);
+        }
+
+        final String encoding = encoding();
+        final CpdTokenIndex index = CpdTokenIndex.forProject(project());
+        index.checkValidity(language, languageProperties, encoding, minTileSize);
+        index.retainFiles(files);
+
+        subTask("Collecting files for CPD");
+        final List<IFile> modifiedFiles = new ArrayList<>();
+        for (IFile file : files) {
+            if (index.isUpToDate(file)) {
+                worked(1);
+            } else {
+                modifiedFiles.add(file);
+            }
+        }
+        tokenize(index, modifiedFiles, encoding);
+        LOG.debug("Tokenized {} of {} files", modifiedFiles.size(), files.size());
+
+        List<Match> matches = Collections.emptyList();
+        if (!isCanceled()) {
+            subTask("Performing CPD");
+            LOG.debug("Performing CPD");
+            matches = toMatches(index, files, encoding);
+            worked(getStepCount());
+        }
+        index.persist();
+        return matches;
+    }
 
+    /**
+     * Tokenizes the files on a pool of worker threads. The tokens are stored in the index in the
+     * order of the files, so that the result doesn't depend on the scheduling of the threads.
+     */
+    private void tokenize(final CpdTokenIndex index, final List<IFile> files, final String encoding) {
+        if (files.isEmpty()) {
+            return;
+        }
+        int threads = Math.min(determineTokenizerThreads(), files.size());
+        final boolean shareTokenizer = threads == 1;
+        final ThreadLocal<Tokenizer> tokenizers = new ThreadLocal<Tokenizer>() {
+            @Override
+            protected Tokenizer initialValue() {
+                return shareTokenizer ? language.getTokenizer() : newTokenizer();
+            }
+        };
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new TokenizerThreadFactory());
+        try {
+            List<Future<FileTokens>> results = new ArrayList<>(files.size());
+            for (final IFile file : files) {
+                results.add(executor.submit(new Callable<FileTokens>() {
+                    @Override
+                    public FileTokens call() throws IOException {
+                        return CpdTokenIndex.tokenize(file, tokenizers.get(), encoding);
+                    }
+                }));
+            }
+            for (int i = 0; i < files.size() && !isCanceled(); i++) {
+                IFile file = files.get(i);
+                try {
+                    index.put(file, results.get(i).get());
+                } catch (ExecutionException e) {
+                    index.remove(file);
+                    if (!(e.getCause() instanceof IOException)) {
+                        throw new RuntimeException("Error while tokenizing " + file.getName(), e.getCause());
+                    }
+                    LOG.warn("IOException when adding file " + file.getName() + " to CPD. Continuing.", e.getCause());
+                }
+                worked(1);
+            }
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while waiting for the tokenizers to finish");
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The tokenizers keep state while tokenizing a file, every thread needs its own instance.
+     * The language is created again with the same properties, so that the tokenizer is
+     * configured like the tokenizer of the language.
+     *
+     * @return a new tokenizer of the language
+     */
+    private Tokenizer newTokenizer() {
+        return LanguageFactory.createLanguage(languageName, languageProperties).getTokenizer();
+    }
+
+    private int determineTokenizerThreads() {
+        int threads = tokenizerThreads;
+        if (threads < 0) {
+            threads = PMDPlugin.getDefault().loadPreferences().getAnalysisThreads();
+        }
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
+    }
+
+    /**
+     * Creates the daemon threads for tokenizing the files.
+     */
+    private static final class TokenizerThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PMD CPD Tokenizer " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Runs the CPD on all files, used if the tokens can't be indexed.
+     */
+    private List<Match> detectCutAndPasteWithoutIndex(final List<IFile> files) {
         final CPD cpd = newCPD();
 
         subTask("Collecting files for CPD");
-        final Iterator<File> fileIterator = files.iterator();
+        final Iterator<IFile> fileIterator = files.iterator();
         while (fileIterator.hasNext() && !isCanceled()) {
-            final File file = fileIterator.next();
+            final File file = fileIterator.next().getLocation().toFile();
             try {
                 cpd.add(file);
                 worked(1);
@@ -245,21 +412,152 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
             }
         }
 
+        final List<Match> matches = new ArrayList<>();
         if (!isCanceled()) {
             subTask("Performing CPD");
             LOG.debug("Performing CPD");
             cpd.go();
             worked(getStepCount());
+            for (Iterator<Match> iterator = cpd.getMatches(); iterator.hasNext();) {
+                matches.add(iterator.next());
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Creates the matches of the duplications. Like in the CPD, all fragments with the same
+     * tokens are marks of the same match.
+     */
+    private List<Match> toMatches(CpdTokenIndex index, List<IFile> files, String encoding) {
+        final Map<String, File> filesByKey = new HashMap<>(files.size());
+        for (IFile file : files) {
+            filesByKey.put(CpdTokenIndex.keyFor(file), file.getLocation().toFile());
+        }
+
+        final Map<TokenSequence, Fragments> fragmentsByContent = new HashMap<>();
+        for (Duplication duplication : index.findDuplications()) {
+            TokenSequence content = new TokenSequence(index.tokensOf(duplication.file1), duplication.offset1,
+                    duplication.tokenCount);
+            Fragments fragments = fragmentsByContent.get(content);
+            if (fragments == null) {
+                fragments = new Fragments(duplication.tokenCount);
+                fragmentsByContent.put(content, fragments);
+            }
+            fragments.add(duplication.file1, duplication.offset1);
+            fragments.add(duplication.file2, duplication.offset2);
+        }
+
+        final Map<String, SourceCode> sources = new HashMap<>();
+        final List<Match> matches = new ArrayList<>(fragmentsByContent.size());
+        for (Fragments fragments : fragmentsByContent.values()) {
+            List<Mark> marks = new ArrayList<>();
+            for (Map.Entry<String, Set<Integer>> file : fragments.offsetsByFile.entrySet()) {
+                File ioFile = filesByKey.get(file.getKey());
+                FileTokens tokens = index.tokensOf(file.getKey());
+                if (ioFile == null || tokens == null) {
+                    continue;
+                }
+                SourceCode sourceCode = sources.get(file.getKey());
+                if (sourceCode == null) {
+                    sourceCode = new SourceCode(new SourceCode.FileCodeLoader(ioFile, encoding));
+                    sources.put(file.getKey(), sourceCode);
+                }
+                for (int offset : file.getValue()) {
+                    marks.add(markFor(tokens, offset, fragments.tokenCount, sourceCode));
+                }
+            }
+            if (marks.size() > 1) {
+                Match match = new Match(fragments.tokenCount, marks.get(0), marks.get(1));
+                match.getMarkSet().addAll(marks.subList(2, marks.size()));
+                matches.add(match);
+            }
+        }
+        Collections.sort(matches);
+        return matches;
+    }
+
+    private static Mark markFor(FileTokens tokens, int offset, int tokenCount, SourceCode sourceCode) {
+        int end = offset + tokenCount - 1;
+        String fileName = sourceCode.getFileName();
+        Mark mark = new Mark(new TokenEntry("", fileName, tokens.lineAt(offset), tokens.beginColumnAt(offset),
+                tokens.endColumnAt(offset)));
+        mark.setEndToken(new TokenEntry("", fileName, tokens.lineAt(end), tokens.beginColumnAt(end),
+                tokens.endColumnAt(end)));
+        mark.setLineCount(tokens.lineAt(end) - tokens.lineAt(offset) + 1);
+        mark.setSourceCode(sourceCode);
+        return mark;
+    }
+
+    /**
+     * The images of a sequence of tokens, compared by the image ids of the index.
+     */
+    private static final class TokenSequence {
+        private final FileTokens tokens;
+        private final int offset;
+        private final int tokenCount;
+        private final int hashCode;
+
+        TokenSequence(FileTokens tokens, int offset, int tokenCount) {
+            this.tokens = tokens;
+            this.offset = offset;
+            this.tokenCount = tokenCount;
+            int hash = tokenCount;
+            for (int i = 0; i < tokenCount; i++) {
+                hash = hash * 31 + tokens.idAt(offset + i);
+            }
+            hashCode = hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof TokenSequence)) {
+                return false;
+            }
+            TokenSequence other = (TokenSequence) obj;
+            return hashCode == other.hashCode && tokenCount == other.tokenCount
+                    && tokens.sameTokens(offset, other.tokens, other.offset, tokenCount);
+        }
+    }
+
+    /**
+     * The code fragments with the same tokens, sorted by file and position.
+     */
+    private static final class Fragments {
+        private final int tokenCount;
+        private final Map<String, Set<Integer>> offsetsByFile = new TreeMap<>();
+
+        Fragments(int tokenCount) {
+            this.tokenCount = tokenCount;
         }
 
-        return cpd;
+        void add(String file, int offset) {
+            Set<Integer> offsets = offsetsByFile.get(file);
+            if (offsets == null) {
+                offsets = new TreeSet<>();
+                offsetsByFile.put(file, offsets);
+            }
+            offsets.add(offset);
+        }
+    }
+
+    private static String encoding() {
+        return System.getProperty("file.encoding");
     }
 
     private CPD newCPD() {
         CPDConfiguration config = new CPDConfiguration();
         config.setMinimumTileSize(minTileSize);
         config.setLanguage(language);
-        config.setEncoding(System.getProperty("file.encoding"));
+        config.setEncoding(encoding());
         return new CPD(config);
     }
 
@@ -285,31 +583,15 @@ public class DetectCutAndPasteCmd extends AbstractProjectCommand {
             LOG.debug("Create the report file");
             final IFile reportFile = folder.getFile(reportName);
 
-            byte[] data = new byte[0];
-            try (ByteArrayOutputStream renderedReport = new ByteArrayOutputStream();
-                 Writer writer = new OutputStreamWriter(renderedReport);) {
-                renderer.render(matches, writer);
-                data = renderedReport.toByteArray();
+            // the report is streamed into the report file
+            try (ReportFile renderedReport = new ReportFile(reportFile)) {
+                renderer.render(matches, renderedReport.getWriter());
+                renderedReport.commit(getMonitor());
             } catch (IOException e) {
                 LOG.error("Error while renderering CPD Report", e);
                 throw new RuntimeException(e);
             }
 
-            try (InputStream contentsStream = new ByteArrayInputStream(data)) {
-                if (reportFile.exists()) {
-                    LOG.debug("   Overwriting report file");
-                    reportFile.setContents(contentsStream, true, false, getMonitor());
-                } else {
-                    LOG.debug("   Creating report file");
-                    reportFile.create(contentsStream, true, getMonitor());
-                }
-            } catch (IOException e) {
-                LOG.error("Error while writing CPD Report", e);
-                throw new RuntimeException(e);
-            }
-
-            reportFile.refreshLocal(IResource.DEPTH_INFINITE, getMonitor());
-
         } catch (CoreException e) {
             LOG.debug("Core Exception: " + e.getMessage(), e);
             throw new RuntimeException(e);
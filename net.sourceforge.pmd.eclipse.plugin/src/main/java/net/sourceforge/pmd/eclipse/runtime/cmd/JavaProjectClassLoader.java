@@ -1,158 +1,234 @@
-/**
- * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
- */
-
-package net.sourceforge.pmd.eclipse.runtime.cmd;
-
-import java.io.File;
-import java.net.MalformedURLException;
-import java.net.URL;
-import java.net.URLClassLoader;
-import java.util.HashSet;
-import java.util.Set;
-
-import org.eclipse.core.resources.IFile;
-import org.eclipse.core.resources.IProject;
-import org.eclipse.core.resources.IWorkspace;
-import org.eclipse.core.runtime.CoreException;
-import org.eclipse.core.runtime.IPath;
-import org.eclipse.jdt.core.IClasspathEntry;
-import org.eclipse.jdt.core.IJavaProject;
-import org.eclipse.jdt.core.JavaCore;
-import org.eclipse.jdt.core.JavaModelException;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import net.sourceforge.pmd.eclipse.core.internal.FileModificationUtil;
-
-/**
- * This is a ClassLoader for the Build Path of an IJavaProject.
- */
-public class JavaProjectClassLoader extends URLClassLoader {
-    private static final Logger LOG = LoggerFactory.getLogger(JavaProjectClassLoader.class);
-
-    private final IJavaProject javaProject;
-    private final long lastModTimestamp;
-    private final IWorkspace workspace;
-    private Set<IJavaProject> javaProjects = new HashSet<>();
-
-
-    public JavaProjectClassLoader(ClassLoader parent, IProject project) {
-        super(new URL[0], parent);
-        try {
-            if (!project.hasNature(JavaCore.NATURE_ID)) {
-                throw new IllegalArgumentException("The project " + project + " is not a java project");
-            }
-        } catch (CoreException e) {
-            throw new IllegalArgumentException("The project " + project + " is not a java project", e);
-        }
-
-        workspace = project.getWorkspace();
-        javaProject = JavaCore.create(project);
-        lastModTimestamp = getClasspathModificationTimestamp();
-        addURLs(javaProject, false);
-
-        // No longer need these things, drop references
-        javaProjects = null;
-    }
-
-    public boolean isModified() {
-        long newTimestamp = getClasspathModificationTimestamp();
-        return newTimestamp != lastModTimestamp;
-    }
-
-    private long getClasspathModificationTimestamp() {
-        IFile classpathFile = javaProject.getProject().getFile(IJavaProject.CLASSPATH_FILE_NAME);
-        return FileModificationUtil.getFileModificationTimestamp(classpathFile.getLocation().toFile());
-    }
-
-    private IProject projectFor(IClasspathEntry classpathEntry) {
-        return workspace.getRoot().getProject(classpathEntry.getPath().toString());
-    }
-
-    private void addURLs(IJavaProject javaProject, boolean exportsOnly) {
-
-        if (javaProjects.contains(javaProject)) {
-            return;
-        }
-
-        javaProjects.add(javaProject);
-
-        try {
-            // Add default output location
-            IPath projectLocation = javaProject.getProject().getLocation();
-            addURL(projectLocation.append(javaProject.getOutputLocation().removeFirstSegments(1)));
-
-            // Add each classpath entry
-            IClasspathEntry[] classpathEntries = javaProject.getResolvedClasspath(true);
-            for (IClasspathEntry classpathEntry : classpathEntries) {
-                if (classpathEntry.isExported() || !exportsOnly) {
-                    switch (classpathEntry.getEntryKind()) {
-
-                    // Recurse on projects
-                    case IClasspathEntry.CPE_PROJECT:
-                        IProject project = projectFor(classpathEntry);
-                        IJavaProject javaProj = JavaCore.create(project);
-                        if (javaProj != null) {
-                            addURLs(javaProj, true);
-                        }
-                        break;
-
-                    // Library
-                    case IClasspathEntry.CPE_LIBRARY:
-                        addURL(classpathEntry);
-                        break;
-
-                    // Only Source entries with custom output location need to
-                    // be added
-                    case IClasspathEntry.CPE_SOURCE:
-                        IPath outputLocation = classpathEntry.getOutputLocation();
-                        if (outputLocation != null) {
-                            addURL(projectLocation.append(outputLocation.removeFirstSegments(1)));
-                        }
-                        break;
-
-                    // Variable and Container entries should not be happening,
-                    // because we've asked for resolved entries.
-                    case IClasspathEntry.CPE_VARIABLE:
-                    case IClasspathEntry.CPE_CONTAINER:
-                    default:
-                        break;
-                    }
-                }
-            }
-        } catch (JavaModelException e) {
-            LOG.warn("JavaModelException occurred: {}", e.getMessage(), e);
-        }
-    }
-
-    private void addURL(IClasspathEntry classpathEntry) {
-        addURL(classpathEntry.getPath());
-    }
-
-    private void addURL(IPath path) {
-        try {
-            File absoluteFile = null;
-            IPath location = workspace.getRoot().getFile(path).getLocation();
-            if (location != null) {
-                // location is only present, if a project exists in the workspace
-                // in other words: only if path referenced something inside an existing project
-                absoluteFile = location.toFile().getAbsoluteFile();
-            }
-
-            if (absoluteFile == null) {
-                // if location couldn't be resolved, then it is already an absolute path
-                absoluteFile = path.toFile().getAbsoluteFile();
-            }
-
-            if (!absoluteFile.exists()) {
-                LOG.warn("auxclasspath: Resolved file {} does not exist", absoluteFile);
-            }
-            URL url = absoluteFile.toURI().toURL();
-            LOG.debug("auxclasspath: Adding url {}", url);
-            addURL(url);
-        } catch (MalformedURLException e) {
-            LOG.warn("MalformedURLException occurred: {}", e.getMessage(), e);
-        }
-    }
-}
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+import org.eclipse.jdt.core.IClasspathEntry;
+import org.eclipse.jdt.core.IJavaProject;
+import org.eclipse.jdt.core.JavaCore;
+import org.eclipse.jdt.core.JavaModelException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.eclipse.core.internal.FileModificationUtil;
+
+/**
+ * This is a ClassLoader for the Build Path of an IJavaProject.
+ *
+ * <p>The output folders (and class folders) are loaded by this class loader. The library jars are
+ * loaded by a {@link LibraryClassLoader}, that is shared by all projects with the same libraries.
+ * The folders are searched before the jars.
+ */
+public class JavaProjectClassLoader extends URLClassLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(JavaProjectClassLoader.class);
+
+    private final IJavaProject javaProject;
+    private final long lastModTimestamp;
+    private final IWorkspace workspace;
+    private final LibraryClassLoader libraries;
+    private Set<IJavaProject> javaProjects = new HashSet<>();
+    private Set<File> libraryFiles = new LinkedHashSet<>();
+    private boolean closed;
+
+
+    public JavaProjectClassLoader(ClassLoader parent, IProject project) {
+        super(new URL[0], parent);
+        try {
+            if (!project.hasNature(JavaCore.NATURE_ID)) {
+                throw new IllegalArgumentException("The project " + project + " is not a java project");
+            }
+        } catch (CoreException e) {
+            throw new IllegalArgumentException("The project " + project + " is not a java project", e);
+        }
+
+        workspace = project.getWorkspace();
+        javaProject = JavaCore.create(project);
+        lastModTimestamp = getClasspathModificationTimestamp();
+        addURLs(javaProject, false);
+        libraries = LibraryClassLoader.acquire(parent, new ArrayList<>(libraryFiles));
+        ClassNameIndex.schedule(project, libraries);
+
+        // No longer need these things, drop references
+        javaProjects = null;
+        libraryFiles = null;
+    }
+
+    /**
+     * The library jars are not asked again, they are checked for modifications once per build.
+     *
+     * @return whether the build path or one of the library jars has been modified
+     */
+    public boolean isModified() {
+        long newTimestamp = getClasspathModificationTimestamp();
+        return newTimestamp != lastModTimestamp || libraries.isModified();
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        try {
+            return super.findClass(name);
+        } catch (ClassNotFoundException e) {
+            Class<?> libraryClass = libraries.findLibraryClass(name);
+            if (libraryClass == null) {
+                throw e;
+            }
+            return libraryClass;
+        }
+    }
+
+    @Override
+    public URL findResource(String name) {
+        URL url = super.findResource(name);
+        return url != null ? url : libraries.findResource(name);
+    }
+
+    @Override
+    public Enumeration<URL> findResources(String name) throws IOException {
+        List<URL> urls = Collections.list(super.findResources(name));
+        urls.addAll(Collections.list(libraries.findResources(name)));
+        return Collections.enumeration(urls);
+    }
+
+    /**
+     * @return the folders and the jars of the build path
+     */
+    @Override
+    public URL[] getURLs() {
+        List<URL> urls = new ArrayList<>(Arrays.asList(super.getURLs()));
+        urls.addAll(libraries.getURLs());
+        return urls.toArray(new URL[0]);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            super.close();
+        } finally {
+            synchronized (this) {
+                if (!closed) {
+                    closed = true;
+                    libraries.release();
+                }
+            }
+        }
+    }
+
+    private long getClasspathModificationTimestamp() {
+        IFile classpathFile = javaProject.getProject().getFile(IJavaProject.CLASSPATH_FILE_NAME);
+        return FileModificationUtil.getFileModificationTimestamp(classpathFile.getLocation().toFile());
+    }
+
+    private IProject projectFor(IClasspathEntry classpathEntry) {
+        return workspace.getRoot().getProject(classpathEntry.getPath().toString());
+    }
+
+    private void addURLs(IJavaProject javaProject, boolean exportsOnly) {
+
+        if (javaProjects.contains(javaProject)) {
+            return;
+        }
+
+        javaProjects.add(javaProject);
+
+        try {
+            // Add default output location
+            IPath projectLocation = javaProject.getProject().getLocation();
+            addURL(projectLocation.append(javaProject.getOutputLocation().removeFirstSegments(1)));
+
+            // Add each classpath entry
+            IClasspathEntry[] classpathEntries = javaProject.getResolvedClasspath(true);
+            for (IClasspathEntry classpathEntry : classpathEntries) {
+                if (classpathEntry.isExported() || !exportsOnly) {
+                    switch (classpathEntry.getEntryKind()) {
+
+                    // Recurse on projects
+                    case IClasspathEntry.CPE_PROJECT:
+                        IProject project = projectFor(classpathEntry);
+                        IJavaProject javaProj = JavaCore.create(project);
+                        if (javaProj != null) {
+                            addURLs(javaProj, true);
+                        }
+                        break;
+
+                    // Library
+                    case IClasspathEntry.CPE_LIBRARY:
+                        addURL(classpathEntry);
+                        break;
+
+                    // Only Source entries with custom output location need to
+                    // be added
+                    case IClasspathEntry.CPE_SOURCE:
+                        IPath outputLocation = classpathEntry.getOutputLocation();
+                        if (outputLocation != null) {
+                            addURL(projectLocation.append(outputLocation.removeFirstSegments(1)));
+                        }
+                        break;
+
+                    // Variable and Container entries should not be happening,
+                    // because we've asked for resolved entries.
+                    case IClasspathEntry.CPE_VARIABLE:
+                    case IClasspathEntry.CPE_CONTAINER:
+                    default:
+                        break;
+                    }
+                }
+            }
+        } catch (JavaModelException e) {
+            LOG.warn("JavaModelException occurred: {}", e.getMessage(), e);
+        }
+    }
+
+    private void addURL(IClasspathEntry classpathEntry) {
+        addURL(classpathEntry.getPath());
+    }
+
+    private void addURL(IPath path) {
+        try {
+            File absoluteFile = null;
+            IPath location = workspace.getRoot().getFile(path).getLocation();
+            if (location != null) {
+                // location is only present, if a project exists in the workspace
+                // in other words: only if path referenced something inside an existing project
+                absoluteFile = location.toFile().getAbsoluteFile();
+            }
+
+            if (absoluteFile == null) {
+                // if location couldn't be resolved, then it is already an absolute path
+                absoluteFile = path.toFile().getAbsoluteFile();
+            }
+
+            if (!absoluteFile.exists()) {
+                LOG.warn("auxclasspath: Resolved file {} does not exist", absoluteFile);
+            } else if (absoluteFile.isFile()) {
+                LOG.debug("auxclasspath: Adding library {}", absoluteFile);
+                libraryFiles.add(absoluteFile);
+                return;
+            }
+            URL url = absoluteFile.toURI().toURL();
+            LOG.debug("auxclasspath: Adding url {}", url);
+            addURL(url);
+        } catch (MalformedURLException e) {
+            LOG.warn("MalformedURLException occurred: {}", e.getMessage(), e);
+        }
+    }
+}
@@ -9,15 +9,22 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.core.runtime.IProgressMonitor;
 import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.IJobChangeEvent;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.JobChangeAdapter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -25,17 +32,38 @@ import org.slf4j.LoggerFactory;
  * This is a particular processor for Eclipse in order to handle long running
  * commands.
  *
+ * <p>Only a limited number of commands - depending on the available processors - is
+ * executed at the same time. The waiting commands are kept in two lanes: the priority
+ * lane for user initiated commands and just saved work, that is always served first,
+ * and the background lane for everything else. A waiting command is only started, if
+ * its scheduling rule doesn't conflict with the rules of the running commands, so that
+ * e.g. the reviews of one project run one after another, while different projects are
+ * reviewed at the same time. A new command, that can be merged into a waiting command,
+ * is not queued at all.
+ *
+ * <p>The scheduling rules are only evaluated by this processor and are not set on the
+ * jobs, so that the commands are still free to run workspace operations.
+ *
+ * <p>If a command has been given a progress monitor before it is processed, canceling that
+ * monitor cancels the command, while it is waiting and while it is running.
+ *
  * @author Philippe Herlin
  *
  */
 public class JobCommandProcessor {
     private static final Logger LOG = LoggerFactory.getLogger(JobCommandProcessor.class);
-    private final Map<AbstractDefaultCommand, Job> jobs = Collections
-            .synchronizedMap(new HashMap<AbstractDefaultCommand, Job>());
 
-    private static ConcurrentLinkedQueue<Job> outstanding = new ConcurrentLinkedQueue<>();
-    private static AtomicInteger count = new AtomicInteger();
-    
+    /** maximum number of commands, that are executed at the same time. */
+    private static final int MAX_RUNNING_COMMANDS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private final Map<AbstractDefaultCommand, CommandJob> jobs = Collections
+            .synchronizedMap(new HashMap<AbstractDefaultCommand, CommandJob>());
+
+    // the lanes and the running jobs are guarded by this
+    private final List<CommandJob> priorityLane = new LinkedList<>();
+    private final List<CommandJob> backgroundLane = new LinkedList<>();
+    private final List<CommandJob> running = new ArrayList<>();
+
     private static final JobCommandProcessor INSTANCE = new JobCommandProcessor();
 
     public static JobCommandProcessor getInstance() {
@@ -49,53 +77,115 @@ public class JobCommandProcessor {
             throw new IllegalStateException();
         }
 
-        final Job job = new Job(aCommand.getName()) {
-            @Override
-            protected IStatus run(IProgressMonitor monitor) {
-                try {
-                    if (aCommand instanceof AbstractDefaultCommand) {
-                        ((AbstractDefaultCommand) aCommand).setMonitor(monitor);
-                    }
-                    long start = System.currentTimeMillis();
-                    aCommand.execute();
-                    long duration = System.currentTimeMillis() - start;
-                    LOG.debug("Command {} executed in {} ms", aCommand.getName(), duration);
-                } catch (RuntimeException e) {
-                    LOG.error("Error executing command {}: {}", aCommand.getName(), e.toString(), e);
+        synchronized (this) {
+            CommandJob job = mergeIntoWaitingJob(aCommand);
+            if (job == null) {
+                job = new CommandJob(aCommand);
+                if (aCommand.isPriorityWork()) {
+                    priorityLane.add(job);
+                } else {
+                    backgroundLane.add(job);
                 }
+            }
+            this.addJob(aCommand, job);
+            startWaitingJobs();
+        }
+        LOG.debug("Ending job command {}", aCommand.getName());
+    }
 
-                synchronized (outstanding) {
-                    count.decrementAndGet();
-                    Job job = outstanding.poll();
-                    if (job != null) {
-                        job.schedule();
-                    }
+    /**
+     * Tries to merge the command into one of the waiting commands.
+     *
+     * @return the job of the waiting command or <code>null</code>, if the command couldn't be merged
+     */
+    private CommandJob mergeIntoWaitingJob(AbstractDefaultCommand aCommand) {
+        List<CommandJob> waiting = new ArrayList<>(priorityLane);
+        waiting.addAll(backgroundLane);
+        for (CommandJob job : waiting) {
+            if (job.command.merge(aCommand)) {
+                LOG.debug("Command {} merged into waiting command", aCommand.getName());
+                job.mergedCommands.add(aCommand);
+                job.rule = job.command.getSchedulingRule();
+                if (job.command.isPriorityWork() && backgroundLane.remove(job)) {
+                    priorityLane.add(job);
                 }
-                return Status.OK_STATUS;
+                return job;
             }
-        };
+        }
+        return null;
+    }
 
-        if (aCommand instanceof AbstractDefaultCommand) {
-            job.setUser(((AbstractDefaultCommand) aCommand).isUserInitiated());
+    /**
+     * Starts as many waiting jobs as possible. The priority lane is served first.
+     */
+    private synchronized void startWaitingJobs() {
+        while (running.size() < MAX_RUNNING_COMMANDS) {
+            CommandJob job = pollStartable(priorityLane);
+            if (job == null) {
+                job = pollStartable(backgroundLane);
+            }
+            if (job == null) {
+                break;
+            }
+            running.add(job);
+            job.setUser(job.command.isUserInitiated());
+            job.setPriority(job.command.isPriorityWork() ? Job.INTERACTIVE : Job.LONG);
+            job.schedule();
         }
+        LOG.debug("{} commands running, {} priority and {} background commands waiting", running.size(),
+                priorityLane.size(), backgroundLane.size());
+    }
 
-        synchronized (outstanding) {
-            if (count.incrementAndGet() > 10) {
-                // too many already running, put in a queue to run later
-                outstanding.add(job);
-            } else {
-                job.schedule();
+    /**
+     * Removes and returns the first job of the lane, that doesn't conflict with a running job.
+     * Canceled jobs are removed on the way.
+     */
+    private CommandJob pollStartable(List<CommandJob> lane) {
+        Iterator<CommandJob> i = lane.iterator();
+        while (i.hasNext()) {
+            CommandJob job = i.next();
+            if (job.isCallerCanceled()) {
+                i.remove();
+                job.discard();
+            } else if (!conflictsWithRunningJob(job)) {
+                i.remove();
+                return job;
             }
         }
-        this.addJob(aCommand, job);
-        LOG.debug("Ending job command {}", aCommand.getName());
+        return null;
+    }
+
+    /**
+     * Removes the job from the lanes, if it has been canceled while waiting.
+     */
+    private synchronized void discardIfCanceled(CommandJob job) {
+        if (job.isCallerCanceled() && (priorityLane.remove(job) || backgroundLane.remove(job))) {
+            job.discard();
+        }
+    }
+
+    private boolean conflictsWithRunningJob(CommandJob job) {
+        if (job.rule == null) {
+            return false;
+        }
+        for (CommandJob runningJob : running) {
+            if (runningJob.rule != null && runningJob.rule.isConflicting(job.rule)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void jobFinished(CommandJob job) {
+        running.remove(job);
+        startWaitingJobs();
     }
 
     public void waitCommandToFinish(final AbstractDefaultCommand aCommand) {
-        final Job job = this.jobs.get(aCommand);
+        final CommandJob job = this.jobs.get(aCommand);
         if (job != null) {
             try {
-                job.join();
+                job.await();
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
                 throw new RuntimeException(e);
@@ -103,11 +193,14 @@ public class JobCommandProcessor {
         } else {
             // no specific command given - wait for all jobs to finish
             clearTerminatedJobs();
-            Collection<Job> runningJobs = new ArrayList<>(this.jobs.values());
+            Collection<CommandJob> runningJobs;
+            synchronized (this.jobs) {
+                runningJobs = new LinkedHashSet<>(this.jobs.values());
+            }
             LOG.debug("Waiting for {} jobs to finish...", runningJobs.size());
-            for (Job runningJob : runningJobs) {
+            for (CommandJob runningJob : runningJobs) {
                 try {
-                    runningJob.join();
+                    runningJob.await();
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                     throw new RuntimeException(e);
@@ -121,13 +214,13 @@ public class JobCommandProcessor {
 
     /**
      * Add a job to the map. Also, clear all finished jobs
-     * 
+     *
      * @param command
      *            for which to keep the job
      * @param job
      *            a job to keep until it is finished
      */
-    private void addJob(final AbstractDefaultCommand command, final Job job) {
+    private void addJob(final AbstractDefaultCommand command, final CommandJob job) {
         this.jobs.put(command, job);
         clearTerminatedJobs();
     }
@@ -138,11 +231,97 @@ public class JobCommandProcessor {
             final Iterator<AbstractDefaultCommand> i = keySet.iterator();
             while (i.hasNext()) {
                 final AbstractDefaultCommand aCommand = i.next();
-                final Job aJob = this.jobs.get(aCommand);
-                if (aJob == null || aJob.getResult() != null) {
+                final CommandJob aJob = this.jobs.get(aCommand);
+                if (aJob == null || aJob.isFinished()) {
                     i.remove();
                 }
             }
         }
     }
+
+    /**
+     * The job, that executes a command. The job can be waited for, even before it has been scheduled.
+     */
+    private final class CommandJob extends Job {
+        /** how often a waiting job checks, whether it has been canceled. */
+        private static final long CANCEL_CHECK_INTERVAL = 100;
+
+        private final AbstractDefaultCommand command;
+        /** the monitor of the caller, that submitted the command, might be <code>null</code>. */
+        private final IProgressMonitor callerMonitor;
+        private ISchedulingRule rule;
+        /** the commands, whose work is done by this job - guarded by the processor. */
+        private final List<AbstractDefaultCommand> mergedCommands = new ArrayList<>();
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        CommandJob(AbstractDefaultCommand command) {
+            super(command.getName());
+            this.command = command;
+            this.callerMonitor = command.getMonitor();
+            this.rule = command.getSchedulingRule();
+            // also called, if the job is canceled before it is running
+            addJobChangeListener(new JobChangeAdapter() {
+                @Override
+                public void done(IJobChangeEvent event) {
+                    markMergedCommandsTerminated();
+                    finished.countDown();
+                    jobFinished(CommandJob.this);
+                }
+            });
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            if (isCallerCanceled()) {
+                return Status.CANCEL_STATUS;
+            }
+            try {
+                command.setMonitor(callerMonitor == null ? monitor : new ProgressMonitorWrapper(monitor) {
+                    @Override
+                    public boolean isCanceled() {
+                        return super.isCanceled() || callerMonitor.isCanceled();
+                    }
+                });
+                long start = System.currentTimeMillis();
+                command.execute();
+                long duration = System.currentTimeMillis() - start;
+                LOG.debug("Command {} executed in {} ms", command.getName(), duration);
+            } catch (RuntimeException e) {
+                LOG.error("Error executing command {}: {}", command.getName(), e.toString(), e);
+            }
+            return Status.OK_STATUS;
+        }
+
+        private void markMergedCommandsTerminated() {
+            synchronized (JobCommandProcessor.this) {
+                for (AbstractDefaultCommand mergedCommand : mergedCommands) {
+                    mergedCommand.setTerminated(true);
+                }
+            }
+        }
+
+        boolean isCallerCanceled() {
+            return callerMonitor != null && callerMonitor.isCanceled();
+        }
+
+        /**
+         * Finishes the job without running it.
+         */
+        void discard() {
+            LOG.debug("Command {} canceled while waiting", command.getName());
+            command.setTerminated(true);
+            markMergedCommandsTerminated();
+            finished.countDown();
+        }
+
+        void await() throws InterruptedException {
+            while (!finished.await(CANCEL_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                discardIfCanceled(this);
+            }
+        }
+
+        boolean isFinished() {
+            return finished.getCount() == 0;
+        }
+    }
 }
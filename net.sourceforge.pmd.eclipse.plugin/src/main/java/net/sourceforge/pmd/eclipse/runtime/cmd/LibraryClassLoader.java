@@ -0,0 +1,310 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Loads the classes of the library jars of java projects. Projects with the same libraries share
+ * one instance, so that the classes of the libraries are loaded only once. The jar files
+ * themselves are shared by all instances, that contain them, see {@link LibraryJar}.
+ *
+ * <p>The classes of all jars are defined by this one class loader, as the classes of one jar
+ * usually refer to the classes of other jars.
+ *
+ * <p>Type resolution asks for many classes, that don't exist. Once the {@link ClassNameIndex} has
+ * been built, these lookups are answered without searching the jars and existing classes are read
+ * directly from the jar, that contains them.
+ *
+ * <p>Like the {@link java.net.URLClassLoader}, the jars of the Class-Path attribute of a jar manifest
+ * are searched right after the jar itself.
+ */
+final class LibraryClassLoader extends ClassLoader {
+    private static final Logger LOG = LoggerFactory.getLogger(LibraryClassLoader.class);
+
+    /** the shared class loaders by parent and jar keys - guarded by itself. */
+    private static final Map<List<Object>, LibraryClassLoader> LOADERS = new HashMap<>();
+    /** the shared jars by key - guarded by LOADERS. */
+    private static final Map<String, LibraryJar> JARS = new HashMap<>();
+    /** the number of class loaders, that use a jar - guarded by LOADERS. */
+    private static final Map<LibraryJar, Integer> JAR_REFERENCES = new HashMap<>();
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final List<Object> key;
+    private final List<LibraryJar> jars;
+    /** the number of project class loaders, that use this loader - guarded by LOADERS. */
+    private int references;
+    /** the jar of every class, <code>null</code> as long as the index hasn't been built. */
+    private volatile Map<String, LibraryJar> classIndex;
+
+    private LibraryClassLoader(ClassLoader parent, List<Object> key, List<LibraryJar> jars) {
+        super(parent);
+        this.key = key;
+        this.jars = jars;
+    }
+
+    /**
+     * Gets the shared class loader for the given jar files. It needs to be released, when it is
+     * not used anymore. A shared class loader, whose jars have been modified, is replaced by a
+     * new one.
+     *
+     * @param parent the parent class loader
+     * @param files the jar files, in the order of the build path
+     */
+    static LibraryClassLoader acquire(ClassLoader parent, List<File> files) {
+        List<Object> key = new ArrayList<>(files.size() + 1);
+        key.add(parent);
+        for (File file : files) {
+            key.add(LibraryJar.keyOf(file));
+        }
+
+        synchronized (LOADERS) {
+            LibraryClassLoader loader = LOADERS.get(key);
+            // the keys contain only the jars of the build path, not the jars of the manifests
+            if (loader == null || loader.isModified()) {
+                loader = new LibraryClassLoader(parent, key, acquireJars(files));
+                LOADERS.put(key, loader);
+                LOG.debug("auxclasspath: Created library class loader for {} jars, {} loaders are shared",
+                        loader.jars.size(), LOADERS.size());
+            }
+            loader.references++;
+            return loader;
+        }
+    }
+
+    private static List<LibraryJar> acquireJars(List<File> files) {
+        List<LibraryJar> jars = new ArrayList<>(files.size());
+        Set<File> added = new HashSet<>();
+        for (File file : files) {
+            acquireJar(file, added, jars);
+        }
+        return jars;
+    }
+
+    /**
+     * Adds the jar followed by the jars of its manifest Class-Path. Every jar is added only once,
+     * the first occurrence wins.
+     */
+    private static void acquireJar(File file, Set<File> added, List<LibraryJar> jars) {
+        if (!added.add(file)) {
+            return;
+        }
+        String jarKey = LibraryJar.keyOf(file);
+        LibraryJar jar = JARS.get(jarKey);
+        if (jar == null) {
+            try {
+                jar = new LibraryJar(file);
+            } catch (MalformedURLException e) {
+                LOG.warn("MalformedURLException occurred: {}", e.getMessage(), e);
+                return;
+            }
+            JARS.put(jarKey, jar);
+        }
+        Integer count = JAR_REFERENCES.get(jar);
+        JAR_REFERENCES.put(jar, count == null ? 1 : count + 1);
+        jars.add(jar);
+        for (File referenced : jar.getManifestClassPath()) {
+            acquireJar(referenced, added, jars);
+        }
+    }
+
+    /**
+     * Checks all shared jars for modifications. This is done once per build instead of every time
+     * a project asks for its class loader, as it asks the file system for every jar. The result
+     * is then answered by {@link #isModified()}.
+     */
+    static void checkModifiedJars() {
+        List<LibraryJar> jars;
+        synchronized (LOADERS) {
+            jars = new ArrayList<>(JARS.values());
+        }
+        for (LibraryJar jar : jars) {
+            jar.checkModified();
+        }
+    }
+
+    /**
+     * Releases the class loader. When it isn't used by any project anymore, its jars are closed,
+     * unless they are still used by other class loaders.
+     */
+    void release() {
+        synchronized (LOADERS) {
+            references--;
+            if (references > 0) {
+                return;
+            }
+            // unless the loader has been replaced already
+            if (LOADERS.get(key) == this) {
+                LOADERS.remove(key);
+            }
+            for (LibraryJar jar : jars) {
+                int count = JAR_REFERENCES.get(jar) - 1;
+                if (count > 0) {
+                    JAR_REFERENCES.put(jar, count);
+                } else {
+                    JAR_REFERENCES.remove(jar);
+                    JARS.remove(jar.getKey());
+                    jar.close();
+                }
+            }
+        }
+    }
+
+    List<LibraryJar> getJars() {
+        return Collections.unmodifiableList(jars);
+    }
+
+    boolean isIndexed() {
+        return classIndex != null;
+    }
+
+    /**
+     * Builds the index of the classes of all jars. The class names of the jars, that are not known
+     * yet, are read from the jars.
+     *
+     * @return <code>false</code> if a jar has been closed in the meantime
+     */
+    boolean buildIndex() {
+        Map<String, LibraryJar> index = new HashMap<>();
+        for (LibraryJar jar : jars) {
+            Set<String> classNames = jar.readClassNames();
+            if (classNames == null) {
+                return false;
+            }
+            for (String className : classNames) {
+                // the first jar wins, like on the build path
+                if (!index.containsKey(className)) {
+                    index.put(className, jar);
+                }
+            }
+        }
+        classIndex = index;
+        return true;
+    }
+
+    /**
+     * @return whether any of the jars has been found modified by the last {@link #checkModifiedJars()}
+     */
+    boolean isModified() {
+        for (LibraryJar jar : jars) {
+            if (jar.isModified()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<URL> getURLs() {
+        List<URL> urls = new ArrayList<>(jars.size());
+        for (LibraryJar jar : jars) {
+            urls.add(jar.getURL());
+        }
+        return urls;
+    }
+
+    /**
+     * Loads a class of the jars, without asking the parent class loader.
+     *
+     * @return the class, <code>null</code> if none of the jars contains it
+     */
+    Class<?> findLibraryClass(String name) {
+        synchronized (getClassLoadingLock(name)) {
+            Class<?> loaded = findLoadedClass(name);
+            if (loaded == null) {
+                loaded = defineLibraryClass(name);
+            }
+            return loaded;
+        }
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Class<?> loaded = defineLibraryClass(name);
+        if (loaded == null) {
+            throw new ClassNotFoundException(name);
+        }
+        return loaded;
+    }
+
+    private Class<?> defineLibraryClass(String name) {
+        List<LibraryJar> candidates = jars;
+        Map<String, LibraryJar> index = classIndex;
+        if (index != null) {
+            LibraryJar jar = index.get(name);
+            if (jar == null) {
+                return null;
+            }
+            candidates = Collections.singletonList(jar);
+        }
+
+        String entryName = name.replace('.', '/') + ".class";
+        for (LibraryJar jar : candidates) {
+            try {
+                byte[] bytes = jar.read(entryName);
+                if (bytes != null) {
+                    definePackageOf(name);
+                    return defineClass(name, bytes, 0, bytes.length);
+                }
+            } catch (IOException e) {
+                LOG.debug("auxclasspath: Couldn't read {} from {}: {}", entryName, jar, e.toString());
+            }
+        }
+        return null;
+    }
+
+    private void definePackageOf(String className) {
+        int lastDot = className.lastIndexOf('.');
+        if (lastDot > 0) {
+            String packageName = className.substring(0, lastDot);
+            if (getPackage(packageName) == null) {
+                try {
+                    definePackage(packageName, null, null, null, null, null, null, null);
+                } catch (IllegalArgumentException e) {
+                    // defined concurrently by another thread
+                }
+            }
+        }
+    }
+
+    @Override
+    protected URL findResource(String name) {
+        for (LibraryJar jar : jars) {
+            URL url = jar.findResource(name);
+            if (url != null) {
+                return url;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    protected Enumeration<URL> findResources(String name) {
+        List<URL> urls = new ArrayList<>();
+        for (LibraryJar jar : jars) {
+            URL url = jar.findResource(name);
+            if (url != null) {
+                urls.add(url);
+            }
+        }
+        return Collections.enumeration(urls);
+    }
+}
@@ -0,0 +1,339 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLStreamHandler;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.jar.Attributes.Name;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A jar file of the build path of one or more java projects. The jar file is opened only once,
+ * whatever the number of projects, that reference it, is. A jar, that is modified, gets a new key
+ * and therefore a new instance.
+ *
+ * <p>The names of the classes of the jar are known, once they have been read from the jar or
+ * from a persisted {@link ClassNameIndex}. The jar itself is only opened, when a class or a
+ * resource is read from it. The URLs of the resources are served from the opened jar as well,
+ * a plain <code>jar:</code> URL would open the jar again in the cache of the JDK.
+ *
+ * <p>The jar file is read with a read lock and closed with the write lock, so that it isn't closed
+ * while a class or resource is read from it.
+ */
+final class LibraryJar {
+    private static final Logger LOG = LoggerFactory.getLogger(LibraryJar.class);
+
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final String key;
+    private final URL url;
+    private final URLStreamHandler entryHandler = new EntryHandler();
+    /**
+     * Held while the jar file is read, so that it isn't closed in the meantime. The jar file is
+     * only closed with the write lock.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** the opened jar file, <code>null</code> if it couldn't be opened - guarded by this. */
+    private JarFile jarFile;
+    private boolean opened;
+    private boolean closed;
+    /** the binary names of the classes, <code>null</code> if not known yet. */
+    private volatile Set<String> classNames;
+    /** the jars of the Class-Path attribute of the manifest, <code>null</code> if not read yet. */
+    private volatile List<File> manifestClassPath;
+    /** whether the jar file has been modified, see {@link #checkModified()}. */
+    private volatile boolean modified;
+
+    LibraryJar(File file) throws MalformedURLException {
+        this.file = file;
+        this.lastModified = file.lastModified();
+        this.length = file.length();
+        this.key = keyOf(file);
+        this.url = file.toURI().toURL();
+    }
+
+    /**
+     * @return the key of the jar file, changes whenever the jar file is modified
+     */
+    static String keyOf(File file) {
+        return file.getPath() + '|' + file.lastModified() + '|' + file.length();
+    }
+
+    String getKey() {
+        return key;
+    }
+
+    URL getURL() {
+        return url;
+    }
+
+    /**
+     * Checks the jar file for modifications. Called once per build for all jars, see
+     * {@link LibraryClassLoader#checkModifiedJars()}.
+     *
+     * @return whether the jar file has been modified since it has been opened
+     */
+    boolean checkModified() {
+        if (!modified && (file.lastModified() != lastModified || file.length() != length)) {
+            modified = true;
+        }
+        return modified;
+    }
+
+    /**
+     * @return whether the jar file has been found modified by the last check, the file itself is not asked
+     */
+    boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Reads the Class-Path attribute of the manifest, like the {@link java.net.URLClassLoader} does.
+     * The jar is opened only temporarily, if it hasn't been opened yet.
+     *
+     * @return the existing jar files of the manifest Class-Path, resolved against the directory of this jar
+     */
+    List<File> getManifestClassPath() {
+        List<File> result = manifestClassPath;
+        if (result != null) {
+            return result;
+        }
+        result = new ArrayList<>();
+        try (JarFile jar = new JarFile(file)) {
+            Manifest manifest = jar.getManifest();
+            String classPath = manifest == null ? null : manifest.getMainAttributes().getValue(Name.CLASS_PATH);
+            if (classPath != null) {
+                for (String entry : classPath.trim().split("\\s+")) {
+                    if (entry.isEmpty()) {
+                        continue;
+                    }
+                    try {
+                        File referenced = new File(new URL(url, entry).toURI()).getAbsoluteFile();
+                        if (referenced.isFile()) {
+                            result.add(referenced);
+                        }
+                    } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+                        LOG.debug("auxclasspath: Invalid Class-Path entry {} in {}", entry, file);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOG.debug("auxclasspath: Couldn't read the manifest of {}: {}", file, e.toString());
+        }
+        manifestClassPath = Collections.unmodifiableList(result);
+        return manifestClassPath;
+    }
+
+    /**
+     * @return the binary names of the classes of the jar, <code>null</code> if they are not known yet
+     */
+    Set<String> getClassNames() {
+        return classNames;
+    }
+
+    void setClassNames(Set<String> classNames) {
+        this.classNames = Collections.unmodifiableSet(classNames);
+    }
+
+    /**
+     * Reads the names of the classes from the jar, if they are not known yet.
+     *
+     * @return the binary names of the classes, <code>null</code> if the jar has been closed in the meantime
+     */
+    Set<String> readClassNames() {
+        Set<String> names = classNames;
+        if (names != null) {
+            return names;
+        }
+        names = new HashSet<>();
+        lock.readLock().lock();
+        try {
+            JarFile jar = jarFile();
+            if (isClosed()) {
+                return null;
+            }
+            if (jar != null) {
+                for (Enumeration<? extends ZipEntry> entries = jar.entries(); entries.hasMoreElements();) {
+                    String entryName = entries.nextElement().getName();
+                    if (entryName.endsWith(".class")) {
+                        names.add(entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.'));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        setClassNames(names);
+        return classNames;
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Opens the jar file, if not done yet. Must be called with the read lock, which has to be
+     * held as long as the jar file is used.
+     */
+    private synchronized JarFile jarFile() {
+        if (!opened && !closed) {
+            opened = true;
+            try {
+                jarFile = new JarFile(file);
+            } catch (IOException e) {
+                LOG.warn("auxclasspath: Couldn't open {}: {}", file, e.toString());
+            }
+        }
+        return jarFile;
+    }
+
+    /**
+     * @return the content of the entry, <code>null</code> if there is no such entry or the jar has been closed
+     */
+    byte[] read(String entryName) throws IOException {
+        lock.readLock().lock();
+        try {
+            JarFile jar = jarFile();
+            ZipEntry entry = jar == null ? null : jar.getEntry(entryName);
+            if (entry == null) {
+                return null;
+            }
+            try (InputStream in = jar.getInputStream(entry)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(
+                        entry.getSize() > 0 ? (int) entry.getSize() : 8192);
+                byte[] buffer = new byte[8192];
+                int count = in.read(buffer);
+                while (count != -1) {
+                    out.write(buffer, 0, count);
+                    count = in.read(buffer);
+                }
+                return out.toByteArray();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the URL of the entry, <code>null</code> if there is no such entry
+     */
+    URL findResource(String entryName) {
+        lock.readLock().lock();
+        try {
+            JarFile jar = jarFile();
+            if (jar == null || jar.getEntry(entryName) == null) {
+                return null;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        try {
+            return new URL("jar", null, -1, url + "!/" + entryName, entryHandler);
+        } catch (MalformedURLException e) {
+            LOG.debug("auxclasspath: Invalid entry {} in {}", entryName, file);
+            return null;
+        }
+    }
+
+    /**
+     * The entry is read completely, so that the jar file can be closed while the stream is still used.
+     *
+     * @return the stream of the entry, <code>null</code> if there is no such entry
+     */
+    private InputStream open(String entryName) throws IOException {
+        byte[] content = read(entryName);
+        return content == null ? null : new ByteArrayInputStream(content);
+    }
+
+    /**
+     * Closes the jar file, after the current reads have finished.
+     */
+    void close() {
+        lock.writeLock().lock();
+        try {
+            closeJarFile();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private synchronized void closeJarFile() {
+        closed = true;
+        if (jarFile != null) {
+            try {
+                jarFile.close();
+            } catch (IOException e) {
+                LOG.debug("auxclasspath: Couldn't close {}: {}", file, e.toString());
+            }
+            jarFile = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return file.getPath();
+    }
+
+    /**
+     * Opens the resource URLs of the jar.
+     */
+    private final class EntryHandler extends URLStreamHandler {
+        @Override
+        protected URLConnection openConnection(URL entryUrl) {
+            return new EntryConnection(entryUrl);
+        }
+    }
+
+    /**
+     * Reads a resource from the opened jar.
+     */
+    private final class EntryConnection extends URLConnection {
+        private final String entryName;
+
+        EntryConnection(URL entryUrl) {
+            super(entryUrl);
+            // the URL is the URL of the jar file followed by "!/" and the entry name
+            entryName = entryUrl.getFile().substring(url.toString().length() + 2);
+        }
+
+        @Override
+        public void connect() {
+            connected = true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            connect();
+            InputStream in = open(entryName);
+            if (in == null) {
+                throw new FileNotFoundException(getURL().toString());
+            }
+            return in;
+        }
+    }
+}
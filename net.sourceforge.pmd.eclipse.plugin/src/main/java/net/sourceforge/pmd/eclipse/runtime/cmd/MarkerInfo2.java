@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -33,6 +34,17 @@ public class MarkerInfo2 {
         add(name, Integer.valueOf(value));
     }
 
+    public String getType() {
+        return type;
+    }
+
+    /**
+     * @return the attributes of the marker (read-only)
+     */
+    public Map<String, Object> getAttributes() {
+        return Collections.unmodifiableMap(data);
+    }
+
     public void addAsMarkerTo(IFile file) throws CoreException {
 
         IMarker marker = file.createMarker(type);
@@ -0,0 +1,253 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResourceRuleFactory;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRunnable;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.Job;
+import org.eclipse.core.runtime.jobs.MultiRule;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes the markers of the analyzed files in small chunks, while the analysis is still running.
+ * Every chunk is applied in its own short workspace operation on a separate thread, so that the
+ * workspace is never locked for a long time and the results don't need to be kept in memory
+ * until the whole analysis is finished.
+ *
+ * <p>If the command is executed while the current thread already owns a scheduling rule, the
+ * chunks are applied on the calling thread in {@link #finish()}, as another thread couldn't
+ * enter a workspace operation anyway.
+ *
+ * <p>Once the command is canceled, the remaining chunks are discarded.
+ */
+final class MarkerPublisher {
+    private static final Logger LOG = LoggerFactory.getLogger(MarkerPublisher.class);
+
+    /** maximum number of files per chunk. */
+    private static final int MAX_CHUNK_FILES = 50;
+    /** maximum number of markers per chunk. A single file with more markers is still one chunk. */
+    private static final int MAX_CHUNK_MARKERS = 5000;
+    /** maximum number of chunks, that wait to be applied, before the analysis is blocked. */
+    private static final int MAX_PENDING_CHUNKS = 4;
+
+    private final Map<IFile, Set<MarkerInfo2>> accumulator;
+    private final boolean retainMarkers;
+    private final IProgressMonitor monitor;
+    private final ExecutorService executor;
+    private final Semaphore pendingChunks = new Semaphore(MAX_PENDING_CHUNKS);
+    private final List<Map<IFile, Set<MarkerInfo2>>> deferredChunks = new ArrayList<>();
+    private final MarkerReconciler reconciler = new MarkerReconciler();
+    private final long start;
+    /** the time spent in the workspace operations, that apply the markers. */
+    private final AtomicLong publishNanos = new AtomicLong();
+
+    private Map<IFile, Set<MarkerInfo2>> chunk = new LinkedHashMap<>();
+    private int chunkMarkers;
+    private int publishedFiles;
+
+    /**
+     * @param accumulator the map, the analysis results are collected in
+     * @param retainMarkers whether the markers should be kept in the accumulator after they
+     *     are published. If not, only the file stays in the accumulator with an empty set.
+     * @param monitor the progress monitor of the command, might be <code>null</code>
+     */
+    MarkerPublisher(Map<IFile, Set<MarkerInfo2>> accumulator, boolean retainMarkers, IProgressMonitor monitor) {
+        this.accumulator = accumulator;
+        this.retainMarkers = retainMarkers;
+        this.monitor = monitor;
+        this.start = System.currentTimeMillis();
+        if (Job.getJobManager().currentRule() == null) {
+            executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PMD Marker Publisher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Adds the final markers of an analyzed file. This method is thread-safe.
+     */
+    void add(IFile file, Set<MarkerInfo2> markers) {
+        Map<IFile, Set<MarkerInfo2>> fullChunk = null;
+        synchronized (this) {
+            chunk.put(file, markers);
+            chunkMarkers += markers.size();
+            if (chunk.size() >= MAX_CHUNK_FILES || chunkMarkers >= MAX_CHUNK_MARKERS) {
+                fullChunk = takeChunk();
+            }
+        }
+        if (fullChunk != null) {
+            submit(fullChunk);
+        }
+    }
+
+    private Map<IFile, Set<MarkerInfo2>> takeChunk() {
+        Map<IFile, Set<MarkerInfo2>> result = chunk;
+        chunk = new LinkedHashMap<>();
+        chunkMarkers = 0;
+        return result;
+    }
+
+    private void submit(final Map<IFile, Set<MarkerInfo2>> fullChunk) {
+        if (executor == null) {
+            synchronized (deferredChunks) {
+                deferredChunks.add(fullChunk);
+            }
+            return;
+        }
+
+        // blocks the analysis, if the markers can't be applied fast enough
+        try {
+            pendingChunks.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    publish(fullChunk);
+                } finally {
+                    pendingChunks.release();
+                }
+            }
+        });
+    }
+
+    private boolean isCanceled() {
+        return monitor != null && monitor.isCanceled();
+    }
+
+    private void publish(final Map<IFile, Set<MarkerInfo2>> markersByFile) {
+        if (isCanceled()) {
+            LOG.debug("Canceled - discarding the markers of {} files", markersByFile.size());
+            return;
+        }
+
+        final IWorkspace workspace = ResourcesPlugin.getWorkspace();
+        IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
+        ISchedulingRule rule = null;
+        for (IFile file : markersByFile.keySet()) {
+            rule = MultiRule.combine(rule, ruleFactory.markerRule(file));
+        }
+
+        IWorkspaceRunnable action = new IWorkspaceRunnable() {
+            @Override
+            public void run(IProgressMonitor operationMonitor) {
+                for (Map.Entry<IFile, Set<MarkerInfo2>> entry : markersByFile.entrySet()) {
+                    if (isCanceled()) {
+                        break;
+                    }
+                    try {
+                        reconciler.reconcile(entry.getKey(), entry.getValue());
+                        publishedFiles++;
+                    } catch (CoreException e) {
+                        // TODO: NLS
+                        LOG.warn("CoreException when setting marker for file {}: {}", entry.getKey().getName(),
+                                e.toString(), e);
+                    }
+                }
+            }
+        };
+        long publishStart = System.nanoTime();
+        try {
+            workspace.run(action, rule, IWorkspace.AVOID_UPDATE, null);
+        } catch (CoreException e) {
+            LOG.warn("CoreException when applying markers: {}", e.toString(), e);
+        } finally {
+            publishNanos.addAndGet(System.nanoTime() - publishStart);
+        }
+
+        if (!retainMarkers) {
+            for (IFile file : markersByFile.keySet()) {
+                accumulator.put(file, Collections.<MarkerInfo2>emptySet());
+            }
+        }
+    }
+
+    /**
+     * Publishes the remaining markers and waits, until all markers are applied.
+     */
+    void finish() {
+        Map<IFile, Set<MarkerInfo2>> lastChunk;
+        synchronized (this) {
+            lastChunk = takeChunk();
+        }
+        if (!lastChunk.isEmpty()) {
+            submit(lastChunk);
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                    LOG.debug("Waiting for the markers to be applied...");
+                }
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted while waiting for the markers to be applied");
+                Thread.currentThread().interrupt();
+            }
+        } else {
+            synchronized (deferredChunks) {
+                for (Map<IFile, Set<MarkerInfo2>> deferred : deferredChunks) {
+                    publish(deferred);
+                }
+                deferredChunks.clear();
+            }
+        }
+
+        long duration = System.currentTimeMillis() - start;
+        LOG.debug("Markers of {} files updated within {} ms: {} added, {} removed, {} changed, {} unchanged.",
+                publishedFiles, duration, reconciler.getAdded(), reconciler.getRemoved(), reconciler.getChanged(),
+                reconciler.getUnchanged());
+        LOG.info("End of processing marker directives. {} violations for {} files.",
+                reconciler.getAdded() + reconciler.getChanged() + reconciler.getUnchanged(), publishedFiles);
+    }
+
+    /**
+     * @return the time in milliseconds spent for applying the markers so far. As the markers are
+     *     mostly applied while the analysis is running, this is not part of the wall clock time
+     *     of the command.
+     */
+    long getPublishDuration() {
+        return TimeUnit.NANOSECONDS.toMillis(publishNanos.get());
+    }
+
+    /**
+     * Stops publishing, e.g. if the command failed. Markers, that are not yet applied, are discarded.
+     */
+    void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.runtime.CoreException;
+
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+
+/**
+ * Updates the PMD markers of a file, so that they match the result of a new analysis.
+ * Instead of deleting all markers and creating them again, the existing markers are
+ * matched by type, rule, line and message. Only the markers, that are really new, are
+ * created and only the markers, that are gone, are deleted. This keeps the number of
+ * marker deltas - and therefore the work of all the marker listeners - small, if a file
+ * is analyzed again without any or with only a few changes.
+ *
+ * <p>The reconciler should be called within a workspace operation, so that all the changes
+ * of a file are reported as one resource change event.
+ */
+final class MarkerReconciler {
+    private int added;
+    private int removed;
+    private int changed;
+    private int unchanged;
+
+    /**
+     * Updates the markers of the file.
+     *
+     * @param file the file
+     * @param markers the markers, the file should have after the update
+     */
+    void reconcile(IFile file, Collection<MarkerInfo2> markers) throws CoreException {
+        IMarker[] existingMarkers = MarkerUtil.findAllMarkers(file);
+        Map<String, List<IMarker>> existingByKey = new HashMap<>(existingMarkers.length * 2);
+        for (IMarker marker : existingMarkers) {
+            String key = keyOf(marker.getType(), marker.getAttribute(PMDRuntimeConstants.KEY_MARKERATT_RULENAME),
+                    marker.getAttribute(IMarker.LINE_NUMBER), marker.getAttribute(IMarker.MESSAGE));
+            List<IMarker> sameKey = existingByKey.get(key);
+            if (sameKey == null) {
+                sameKey = new LinkedList<>();
+                existingByKey.put(key, sameKey);
+            }
+            sameKey.add(marker);
+        }
+
+        for (MarkerInfo2 info : markers) {
+            Map<String, Object> attributes = info.getAttributes();
+            String key = keyOf(info.getType(), attributes.get(PMDRuntimeConstants.KEY_MARKERATT_RULENAME),
+                    attributes.get(IMarker.LINE_NUMBER), attributes.get(IMarker.MESSAGE));
+            List<IMarker> sameKey = existingByKey.get(key);
+            if (sameKey == null || sameKey.isEmpty()) {
+                info.addAsMarkerTo(file);
+                added++;
+            } else {
+                updateAttributes(sameKey.remove(0), attributes);
+            }
+        }
+
+        List<IMarker> obsolete = new ArrayList<>();
+        for (List<IMarker> sameKey : existingByKey.values()) {
+            obsolete.addAll(sameKey);
+        }
+        if (!obsolete.isEmpty()) {
+            file.getWorkspace().deleteMarkers(obsolete.toArray(new IMarker[obsolete.size()]));
+            removed += obsolete.size();
+        }
+    }
+
+    private void updateAttributes(IMarker marker, Map<String, Object> attributes) throws CoreException {
+        Map<String, Object> existing = marker.getAttributes();
+        if (existing == null) {
+            existing = Collections.emptyMap();
+        }
+        List<String> names = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            Object value = attribute.getValue();
+            Object existingValue = existing.get(attribute.getKey());
+            if (value == null ? existingValue != null : !value.equals(existingValue)) {
+                names.add(attribute.getKey());
+                values.add(value);
+            }
+        }
+        // attributes, that are not part of the new result anymore, are removed by setting them to null
+        for (String name : existing.keySet()) {
+            if (!attributes.containsKey(name)) {
+                names.add(name);
+                values.add(null);
+            }
+        }
+        if (names.isEmpty()) {
+            unchanged++;
+        } else {
+            marker.setAttributes(names.toArray(new String[names.size()]), values.toArray());
+            changed++;
+        }
+    }
+
+    private static String keyOf(String type, Object ruleName, Object line, Object message) {
+        return type + '\u0000' + ruleName + '\u0000' + line + '\u0000' + message;
+    }
+
+    int getAdded() {
+        return added;
+    }
+
+    int getRemoved() {
+        return removed;
+    }
+
+    int getChanged() {
+        return changed;
+    }
+
+    int getUnchanged() {
+        return unchanged;
+    }
+}
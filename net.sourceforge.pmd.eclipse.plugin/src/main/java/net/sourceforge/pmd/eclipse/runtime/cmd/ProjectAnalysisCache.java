@@ -0,0 +1,488 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.IPath;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.PMDVersion;
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.properties.PropertyDescriptor;
+
+/**
+ * Persistent cache of the analysis results of a single project. The markers of a file are
+ * stored together with the checksum of the file content. As long as the content of the file
+ * doesn't change, the markers can be restored without running PMD again.
+ *
+ * <p>The whole cache is only valid for one configuration, which is identified by a fingerprint
+ * of the rulesets, the project properties, that influence the markers, and the aux classpath. If
+ * the fingerprint changes, the cache is cleared.
+ *
+ * <p>The caches are stored in the plugin state location and survive restarts and clean builds.
+ * A cache is only kept in memory, while a command uses it.
+ */
+public final class ProjectAnalysisCache {
+    private static final Logger LOG = LoggerFactory.getLogger(ProjectAnalysisCache.class);
+
+    private static final String CACHE_FOLDER = "analysisCache";
+    private static final int FORMAT_VERSION = 1;
+
+    private static final Map<String, ProjectAnalysisCache> CACHES_BY_PROJECT = new HashMap<>();
+
+    /**
+     * The digests of the class files per class folder. They can always be computed again.
+     */
+    private static final Map<File, SoftReference<Map<String, ClassFileDigest>>> CLASS_FOLDER_DIGESTS =
+            new HashMap<>();
+
+    private final String projectName;
+    private final File cacheFile;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private long fingerprint;
+    private volatile boolean dirty;
+    private int users;
+
+    private ProjectAnalysisCache(String projectName, File cacheFile) {
+        this.projectName = projectName;
+        this.cacheFile = cacheFile;
+    }
+
+    /**
+     * Gets the cache for the given project. The cache is loaded from the state location, if no other
+     * command uses it at the moment. Every call must be followed by a call to {@link #release()}.
+     */
+    public static ProjectAnalysisCache forProject(IProject project) {
+        synchronized (CACHES_BY_PROJECT) {
+            ProjectAnalysisCache cache = CACHES_BY_PROJECT.get(project.getName());
+            if (cache == null) {
+                cache = new ProjectAnalysisCache(project.getName(), cacheFileFor(project));
+                cache.load();
+                CACHES_BY_PROJECT.put(project.getName(), cache);
+            }
+            cache.users++;
+            return cache;
+        }
+    }
+
+    /**
+     * Releases the cache. If no other command uses it anymore, the cache is dropped from memory.
+     * It should have been persisted before.
+     */
+    public void release() {
+        synchronized (CACHES_BY_PROJECT) {
+            users--;
+            if (users <= 0 && CACHES_BY_PROJECT.get(projectName) == this) {
+                CACHES_BY_PROJECT.remove(projectName);
+            }
+        }
+    }
+
+    /**
+     * Drops the cache of the given project from memory, e.g. because the project is closed.
+     * The persisted cache is kept.
+     */
+    public static void unload(IProject project) {
+        synchronized (CACHES_BY_PROJECT) {
+            CACHES_BY_PROJECT.remove(project.getName());
+        }
+    }
+
+    /**
+     * Removes the cache of the given project, e.g. because the project is deleted.
+     */
+    public static void remove(IProject project) {
+        synchronized (CACHES_BY_PROJECT) {
+            CACHES_BY_PROJECT.remove(project.getName());
+            File file = cacheFileFor(project);
+            if (file.exists() && !file.delete()) {
+                LOG.warn("Couldn't delete analysis cache {}", file);
+            }
+        }
+    }
+
+    private static File cacheFileFor(IProject project) {
+        IPath location = PMDPlugin.getDefault().getStateLocation().append(CACHE_FOLDER);
+        return location.append(project.getName() + ".cache").toFile();
+    }
+
+    /**
+     * Makes sure, the cache belongs to the given configuration. If the fingerprint is different,
+     * all entries are discarded.
+     *
+     * @param newFingerprint the fingerprint as computed by
+     *     {@link #fingerprintOf(List, IProjectProperties, ClassLoader, LanguageVersion)}
+     */
+    public synchronized void checkValidity(long newFingerprint) {
+        if (fingerprint != newFingerprint) {
+            if (!entries.isEmpty()) {
+                LOG.debug("Analysis configuration changed - discarding {} cached files of {}", entries.size(),
+                        cacheFile.getName());
+            }
+            entries.clear();
+            fingerprint = newFingerprint;
+            dirty = true;
+        }
+    }
+
+    /**
+     * Gets the cached markers of the file.
+     *
+     * @param file the file
+     * @param checksum the checksum of the current content of the file
+     * @return the markers or <code>null</code> if the file is not cached or has been changed
+     */
+    public Set<MarkerInfo2> get(IFile file, long checksum) {
+        Entry entry = entries.get(keyFor(file));
+        if (entry == null || entry.checksum != checksum) {
+            return null;
+        }
+        Set<MarkerInfo2> markers = new HashSet<>(entry.markers.size());
+        for (CachedMarker cached : entry.markers) {
+            MarkerInfo2 marker = new MarkerInfo2(cached.type, cached.attributes.size());
+            for (Map.Entry<String, Object> attribute : cached.attributes.entrySet()) {
+                marker.add(attribute.getKey(), attribute.getValue());
+            }
+            markers.add(marker);
+        }
+        return markers;
+    }
+
+    /**
+     * Stores the markers of the file.
+     */
+    public void put(IFile file, long checksum, Collection<MarkerInfo2> markers) {
+        List<CachedMarker> cachedMarkers = new ArrayList<>(markers.size());
+        for (MarkerInfo2 marker : markers) {
+            cachedMarkers.add(new CachedMarker(marker.getType(), new HashMap<>(marker.getAttributes())));
+        }
+        entries.put(keyFor(file), new Entry(checksum, cachedMarkers));
+        dirty = true;
+    }
+
+    private static String keyFor(IFile file) {
+        return file.getProjectRelativePath().toPortableString();
+    }
+
+    /**
+     * Computes the fingerprint of the configuration, that determines the markers of a file.
+     *
+     * @param ruleSets the (filtered) rulesets used for the analysis
+     * @param properties the project properties
+     * @param auxClasspath the aux classpath used for type resolution, might be <code>null</code>
+     * @param javaVersion the java version of the project, might be <code>null</code>
+     */
+    public static long fingerprintOf(List<RuleSet> ruleSets, IProjectProperties properties, ClassLoader auxClasspath,
+            LanguageVersion javaVersion) throws PropertiesException {
+        StringBuilder config = new StringBuilder(4096);
+        config.append(PMDVersion.VERSION).append('|').append(PMDPlugin.version).append('|');
+        config.append(properties.violationsAsErrors()).append('|').append(javaVersion).append('|');
+        for (RuleSet ruleSet : ruleSets) {
+            config.append(ruleSet.getFileInclusions()).append('|').append(ruleSet.getFileExclusions()).append('|');
+            for (Rule rule : ruleSet.getRules()) {
+                appendRule(config, rule);
+            }
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(config.toString().getBytes(StandardCharsets.UTF_8));
+        return crc.getValue() << 32 ^ auxClasspathFingerprint(auxClasspath);
+    }
+
+    private static void appendRule(StringBuilder config, Rule rule) {
+        config.append(rule.getName()).append(',').append(rule.getRuleClass()).append(',')
+            .append(rule.getLanguage().getTerseName()).append(',').append(rule.getPriority().getPriority());
+        // sorted by name, so that the order of the properties doesn't matter
+        Map<String, Object> properties = new TreeMap<>();
+        for (Map.Entry<PropertyDescriptor<?>, Object> property : rule.getPropertiesByPropertyDescriptor().entrySet()) {
+            properties.put(property.getKey().name(), property.getValue());
+        }
+        config.append(properties).append('|');
+    }
+
+    /**
+     * The aux classpath changes e.g. when a dependency is updated. Instead of hashing the content
+     * of each jar, only the timestamps and sizes are considered. The class folders, like the output
+     * folders of the project, are considered by the content of their class files: the results of
+     * type resolution of an unchanged file depend on the classes it uses. A build, that writes the
+     * same class files again, doesn't change the fingerprint.
+     */
+    private static long auxClasspathFingerprint(ClassLoader auxClasspath) {
+        CRC32 crc = new CRC32();
+        if (auxClasspath instanceof URLClassLoader) {
+            for (URL url : ((URLClassLoader) auxClasspath).getURLs()) {
+                crc.update(url.toString().getBytes(StandardCharsets.UTF_8));
+                try {
+                    File entry = new File(url.toURI());
+                    if (entry.isFile()) {
+                        updateWithLong(crc, entry.lastModified());
+                        updateWithLong(crc, entry.length());
+                    } else if (entry.isDirectory()) {
+                        updateWithLong(crc, classFolderFingerprint(entry));
+                    }
+                } catch (URISyntaxException | IllegalArgumentException e) {
+                    LOG.debug("Ignoring aux classpath entry {}: {}", url, e.toString());
+                }
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Computes the fingerprint of the class files in the folder. The checksums of the class files
+     * are remembered together with their timestamps and sizes, so that only new or modified class
+     * files are read.
+     */
+    private static long classFolderFingerprint(File folder) {
+        final Map<String, ClassFileDigest> known;
+        synchronized (CLASS_FOLDER_DIGESTS) {
+            SoftReference<Map<String, ClassFileDigest>> reference = CLASS_FOLDER_DIGESTS.get(folder);
+            Map<String, ClassFileDigest> digests = reference != null ? reference.get() : null;
+            known = digests != null ? digests : new HashMap<String, ClassFileDigest>();
+        }
+        final Map<String, ClassFileDigest> current = new HashMap<>(known.size());
+        final Path root = folder.toPath();
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    String name = root.relativize(file).toString();
+                    if (name.endsWith(".class")) {
+                        long lastModified = attributes.lastModifiedTime().toMillis();
+                        ClassFileDigest digest = known.get(name);
+                        if (digest == null || digest.lastModified != lastModified
+                                || digest.size != attributes.size()) {
+                            CRC32 content = new CRC32();
+                            content.update(Files.readAllBytes(file));
+                            digest = new ClassFileDigest(lastModified, attributes.size(), content.getValue());
+                        }
+                        current.put(name, digest);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            // e.g. a class file, that is deleted by a concurrent build
+            LOG.debug("Couldn't read the class folder {}: {}", folder, e.toString());
+        }
+        synchronized (CLASS_FOLDER_DIGESTS) {
+            CLASS_FOLDER_DIGESTS.put(folder, new SoftReference<>(current));
+        }
+
+        // independent of the order, in which the files are visited
+        long fingerprint = current.size();
+        for (Map.Entry<String, ClassFileDigest> entry : current.entrySet()) {
+            fingerprint += 31L * entry.getKey().hashCode() + entry.getValue().checksum;
+        }
+        return fingerprint;
+    }
+
+    private static void updateWithLong(CRC32 crc, long value) {
+        for (int i = 0; i < 8; i++) {
+            crc.update((int) (value >>> (i * 8)));
+        }
+    }
+
+    /**
+     * Removes the entries of files, that don't exist anymore.
+     */
+    public void prune(IProject project) {
+        Iterator<String> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (!project.getFile(keys.next()).exists()) {
+                keys.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * Writes the cache to the state location, if it has been modified.
+     */
+    public synchronized void persist() {
+        if (!dirty) {
+            return;
+        }
+        File folder = cacheFile.getParentFile();
+        if (!folder.isDirectory() && !folder.mkdirs()) {
+            LOG.warn("Couldn't create folder {} for the analysis cache", folder);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(cacheFile.toPath())))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(fingerprint);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().write(out);
+            }
+            dirty = false;
+        } catch (IOException e) {
+            PMDPlugin.getDefault().logError("Couldn't write analysis cache " + cacheFile, e);
+        }
+    }
+
+    private void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(Files.newInputStream(cacheFile.toPath())))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOG.debug("Ignoring analysis cache {} with unknown format", cacheFile);
+                return;
+            }
+            fingerprint = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                entries.put(key, Entry.read(in));
+            }
+        } catch (IOException e) {
+            // a broken cache is not a problem, the files are just analyzed again
+            LOG.warn("Couldn't read analysis cache {}: {}", cacheFile, e.toString());
+            entries.clear();
+            fingerprint = 0;
+        }
+    }
+
+    private static final class Entry {
+        private static final byte TYPE_STRING = 0;
+        private static final byte TYPE_INTEGER = 1;
+        private static final byte TYPE_BOOLEAN = 2;
+
+        private final long checksum;
+        private final List<CachedMarker> markers;
+
+        Entry(long checksum, List<CachedMarker> markers) {
+            this.checksum = checksum;
+            this.markers = markers;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeLong(checksum);
+            out.writeInt(markers.size());
+            for (CachedMarker marker : markers) {
+                out.writeUTF(marker.type);
+                out.writeInt(marker.attributes.size());
+                for (Map.Entry<String, Object> attribute : marker.attributes.entrySet()) {
+                    out.writeUTF(attribute.getKey());
+                    Object value = attribute.getValue();
+                    if (value instanceof Integer) {
+                        out.writeByte(TYPE_INTEGER);
+                        out.writeInt((Integer) value);
+                    } else if (value instanceof Boolean) {
+                        out.writeByte(TYPE_BOOLEAN);
+                        out.writeBoolean((Boolean) value);
+                    } else {
+                        out.writeByte(TYPE_STRING);
+                        writeString(out, String.valueOf(value));
+                    }
+                }
+            }
+        }
+
+        static Entry read(DataInputStream in) throws IOException {
+            long checksum = in.readLong();
+            int markerCount = in.readInt();
+            List<CachedMarker> markers = new ArrayList<>(markerCount);
+            for (int i = 0; i < markerCount; i++) {
+                String type = in.readUTF();
+                int attributeCount = in.readInt();
+                Map<String, Object> attributes = new HashMap<>(attributeCount);
+                for (int j = 0; j < attributeCount; j++) {
+                    String name = in.readUTF();
+                    byte valueType = in.readByte();
+                    switch (valueType) {
+                    case TYPE_INTEGER:
+                        attributes.put(name, in.readInt());
+                        break;
+                    case TYPE_BOOLEAN:
+                        attributes.put(name, in.readBoolean());
+                        break;
+                    case TYPE_STRING:
+                        attributes.put(name, readString(in));
+                        break;
+                    default:
+                        throw new IOException("Unknown attribute type " + valueType);
+                    }
+                }
+                markers.add(new CachedMarker(type, attributes));
+            }
+            return new Entry(checksum, markers);
+        }
+
+        // writeUTF is limited to 64k, violation messages could be longer
+        private static void writeString(DataOutputStream out, String value) throws IOException {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        private static String readString(DataInputStream in) throws IOException {
+            byte[] bytes = new byte[in.readInt()];
+            in.readFully(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static final class ClassFileDigest {
+        private final long lastModified;
+        private final long size;
+        private final long checksum;
+
+        ClassFileDigest(long lastModified, long size, long checksum) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.checksum = checksum;
+        }
+    }
+
+    private static final class CachedMarker {
+        private final String type;
+        private final Map<String, Object> attributes;
+
+        CachedMarker(String type, Map<String, Object> attributes) {
+            this.type = type;
+            this.attributes = attributes;
+        }
+    }
+}
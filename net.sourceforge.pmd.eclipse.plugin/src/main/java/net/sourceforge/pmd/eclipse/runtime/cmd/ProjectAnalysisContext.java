@@ -0,0 +1,149 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IProject;
+import org.eclipse.ui.IWorkingSet;
+import org.eclipse.ui.ResourceWorkingSetFilter;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
+import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
+import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
+import net.sourceforge.pmd.lang.Language;
+import net.sourceforge.pmd.lang.LanguageRegistry;
+import net.sourceforge.pmd.lang.LanguageVersion;
+import net.sourceforge.pmd.lang.java.JavaLanguageModule;
+
+/**
+ * Everything, that is needed to analyze the files of one project and doesn't change
+ * during a command run. The context is created once per project and shared by all visitors,
+ * so that the checks for a single file are reduced to simple lookups.
+ *
+ * <p>Instances are immutable and can be shared between threads. Note that the rulesets
+ * itself are not thread-safe.
+ */
+final class ProjectAnalysisContext {
+    private final IProject project;
+    private final IProjectProperties properties;
+    private final List<RuleSet> ruleSets;
+    private final Set<String> fileExtensions;
+    private final boolean checkFileExtensions;
+    private final boolean includeDerivedFiles;
+    private final boolean violationsAsErrors;
+    private final ClassLoader auxClasspath;
+    private final LanguageVersion javaVersion;
+    private final Map<String, LanguageVersion> languageVersionsByExtension;
+    private final ResourceWorkingSetFilter workingSetFilter;
+
+    ProjectAnalysisContext(IProject project, IProjectProperties properties, List<RuleSet> ruleSets,
+            Set<String> fileExtensions, IPreferences preferences) throws PropertiesException {
+        this.project = project;
+        this.properties = properties;
+        this.ruleSets = ruleSets;
+        this.fileExtensions = fileExtensions;
+        this.checkFileExtensions = preferences.isDetermineFiletypesAutomatically();
+        this.includeDerivedFiles = properties.isIncludeDerivedFiles();
+        this.violationsAsErrors = properties.violationsAsErrors();
+        this.auxClasspath = preferences.isProjectBuildPathEnabled() ? properties.getAuxClasspath() : null;
+        this.javaVersion = PMDPlugin.javaVersionFor(project);
+        this.languageVersionsByExtension = languageVersionsByExtension(javaVersion);
+
+        IWorkingSet workingSet = properties.getProjectWorkingSet();
+        if (workingSet != null) {
+            workingSetFilter = new ResourceWorkingSetFilter();
+            workingSetFilter.setWorkingSet(workingSet);
+        } else {
+            workingSetFilter = null;
+        }
+    }
+
+    /**
+     * Same as the {@link net.sourceforge.pmd.lang.LanguageVersionDiscoverer}, but the java
+     * version is the one configured for the project.
+     */
+    private static Map<String, LanguageVersion> languageVersionsByExtension(LanguageVersion javaVersion) {
+        Language java = LanguageRegistry.getLanguage(JavaLanguageModule.NAME);
+        Map<String, LanguageVersion> versions = new HashMap<>();
+        for (Language language : LanguageRegistry.getLanguages()) {
+            for (String extension : language.getExtensions()) {
+                if (!versions.containsKey(extension)) {
+                    versions.put(extension, language.equals(java) ? javaVersion : language.getDefaultVersion());
+                }
+            }
+        }
+        return Collections.unmodifiableMap(versions);
+    }
+
+    IProject getProject() {
+        return project;
+    }
+
+    IProjectProperties getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return the filtered rulesets of the project
+     */
+    List<RuleSet> getRuleSets() {
+        return ruleSets;
+    }
+
+    Set<String> getFileExtensions() {
+        return fileExtensions;
+    }
+
+    /**
+     * @return whether only files with the extensions of the languages of the rules should be analyzed
+     */
+    boolean isCheckFileExtensions() {
+        return checkFileExtensions;
+    }
+
+    boolean isIncludeDerivedFiles() {
+        return includeDerivedFiles;
+    }
+
+    boolean isViolationsAsErrors() {
+        return violationsAsErrors;
+    }
+
+    /**
+     * @return the aux classpath or <code>null</code>, if the project build path should not be used
+     */
+    ClassLoader getAuxClasspath() {
+        return auxClasspath;
+    }
+
+    LanguageVersion getJavaVersion() {
+        return javaVersion;
+    }
+
+    /**
+     * @return the language version to use for the file or <code>null</code> if PMD doesn't support the file
+     */
+    LanguageVersion getLanguageVersion(IFile file) {
+        String extension = file.getFileExtension();
+        return extension != null ? languageVersionsByExtension.get(extension) : null;
+    }
+
+    /**
+     * Test if a file is in the PMD working set.
+     *
+     * @return true if the file should be checked
+     */
+    boolean isInWorkingSet(IFile file) {
+        return workingSetFilter == null || workingSetFilter.select(null, null, file);
+    }
+}
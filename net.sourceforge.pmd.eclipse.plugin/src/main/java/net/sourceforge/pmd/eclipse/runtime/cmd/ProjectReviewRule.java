@@ -0,0 +1,42 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import org.eclipse.core.resources.IProject;
+import org.eclipse.core.runtime.jobs.ISchedulingRule;
+import org.eclipse.core.runtime.jobs.MultiRule;
+
+/**
+ * A scheduling rule, that only conflicts with the rules for the same project. It is used by the
+ * {@link JobCommandProcessor} to run the commands for one project one after another, while
+ * commands for different projects can run at the same time.
+ *
+ * <p>The rule doesn't conflict with any resource rule, so it doesn't block any workspace operation.
+ */
+final class ProjectReviewRule implements ISchedulingRule {
+    private final IProject project;
+
+    ProjectReviewRule(IProject project) {
+        this.project = project;
+    }
+
+    @Override
+    public boolean contains(ISchedulingRule rule) {
+        return rule == this || rule instanceof ProjectReviewRule && project.equals(((ProjectReviewRule) rule).project);
+    }
+
+    @Override
+    public boolean isConflicting(ISchedulingRule rule) {
+        if (rule instanceof MultiRule) {
+            return rule.isConflicting(this);
+        }
+        return contains(rule);
+    }
+
+    @Override
+    public String toString() {
+        return "ProjectReviewRule[" + project.getName() + "]";
+    }
+}
@@ -4,14 +4,15 @@
 
 package net.sourceforge.pmd.eclipse.runtime.cmd;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
-import org.apache.commons.lang3.StringUtils;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IFolder;
 import org.eclipse.core.resources.IMarker;
@@ -28,11 +29,9 @@ import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.Report;
 import net.sourceforge.pmd.Rule;
-import net.sourceforge.pmd.RuleSet;
-import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.core.internal.RuleRegistry;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
-import net.sourceforge.pmd.eclipse.util.IOUtil;
 import net.sourceforge.pmd.renderers.Renderer;
 
 /**
@@ -76,6 +75,7 @@ public class RenderReportsCmd extends AbstractProjectCommand {
     }
 
     /**
+     * Renders the report directly into the report file.
      * 
      * @param report
      * @param folder
@@ -87,35 +87,19 @@ public class RenderReportsCmd extends AbstractProjectCommand {
     private void render(Report report, IFolder folder, String reportName, Renderer renderer)
             throws IOException, CoreException {
 
-        StringWriter writer = new StringWriter();
-        String reportString = null;
-
-        try {
-            renderer.setWriter(writer);
+        IFile reportFile = folder.getFile(reportName);
+        try (ReportFile renderedReport = new ReportFile(reportFile)) {
+            renderer.setWriter(renderedReport.getWriter());
             renderer.start();
             renderer.renderFileReport(report);
             renderer.end();
+            renderer.flush();
 
-            reportString = writer.toString();
-        } finally {
-            IOUtil.closeQuietly(writer);
-        }
-
-        if (StringUtils.isBlank(reportString)) {
-            LOG.debug("Missing content for report: " + reportName);
-            return;
-        }
-
-        LOG.debug("   Creating the report file");
-        IFile reportFile = folder.getFile(reportName);
-        InputStream contentsStream = new ByteArrayInputStream(reportString.getBytes());
-        if (reportFile.exists()) {
-            reportFile.setContents(contentsStream, true, false, getMonitor());
-        } else {
-            reportFile.create(contentsStream, true, getMonitor());
+            LOG.debug("   Creating the report file");
+            if (!renderedReport.commit(getMonitor())) {
+                LOG.debug("Missing content for report - deleted an old report: " + reportName);
+            }
         }
-        reportFile.refreshLocal(IResource.DEPTH_INFINITE, getMonitor());
-        contentsStream.close();
     }
 
     @Override
@@ -159,18 +143,9 @@ public class RenderReportsCmd extends AbstractProjectCommand {
         return super.isReadyToExecute() && !renderers.isEmpty();
     }
 
-    private static void classAndPackageFrom(IMarker marker, FakeRuleViolation violation) throws JavaModelException {
-        ICompilationUnit unit = JavaCore.createCompilationUnitFrom((IFile) marker.getResource());
-
-        IPackageDeclaration[] packages = unit.getPackageDeclarations();
-        violation.setPackageName(packages.length > 0 ? packages[0].getElementName() : "(default)");
-
-        IType[] types = unit.getAllTypes();
-        violation.setClassName(types.length > 0 ? types[0].getElementName() : marker.getResource().getName());
-    }
-
     /**
-     * Create a Report object from the markers of a project.
+     * Create a Report object from the markers of a project. The violations are created file by
+     * file, so that the package and the class of a compilation unit are only resolved once.
      * 
      * @param project
      * @return
@@ -180,23 +155,67 @@ public class RenderReportsCmd extends AbstractProjectCommand {
         Report report = new Report();
 
         IMarker[] markers = MarkerUtil.findAllMarkers(project);
-        RuleSet ruleSet = PMDPlugin.getDefault().getPreferencesManager().getRuleSet();
+        RuleRegistry rules = RuleRegistry.getInstance();
         boolean isJavaProject = project.hasNature(JavaCore.NATURE_ID);
+        Set<String> unknownRules = new TreeSet<>();
+
+        for (Map.Entry<IResource, List<IMarker>> file : markersByResource(markers).entrySet()) {
+            String packageName = null;
+            String className = null;
+            if (isJavaProject && file.getKey() instanceof IFile) {
+                // null for files, that are not java source files
+                ICompilationUnit unit = JavaCore.createCompilationUnitFrom((IFile) file.getKey());
+                if (unit != null) {
+                    packageName = packageNameOf(unit);
+                    className = classNameOf(unit, file.getKey());
+                }
+            }
 
-        for (IMarker marker : markers) {
-            String ruleName = marker.getAttribute(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, "");
-            Rule rule = ruleSet.getRuleByName(ruleName);
+            for (IMarker marker : file.getValue()) {
+                String ruleName = marker.getAttribute(PMDRuntimeConstants.KEY_MARKERATT_RULENAME, "");
+                Rule rule = rules.getRule(ruleName);
+                if (rule == null) {
+                    // the rule has been removed from the rule set since the marker has been created
+                    unknownRules.add(ruleName);
+                    continue;
+                }
+                FakeRuleViolation ruleViolation = createViolation(marker, rule);
+                if (packageName != null) {
+                    ruleViolation.setPackageName(packageName);
+                    ruleViolation.setClassName(className);
+                }
+                report.addRuleViolation(ruleViolation);
+            }
+        }
+        if (!unknownRules.isEmpty()) {
+            LOG.warn("Skipped the violations of the unknown rules {} in the report of {}", unknownRules,
+                    project.getName());
+        }
 
-            FakeRuleViolation ruleViolation = createViolation(marker, rule);
+        return report;
+    }
 
-            if (isJavaProject && marker.getResource() instanceof IFile) {
-                classAndPackageFrom(marker, ruleViolation);
+    private static Map<IResource, List<IMarker>> markersByResource(IMarker[] markers) {
+        Map<IResource, List<IMarker>> markersByResource = new LinkedHashMap<>();
+        for (IMarker marker : markers) {
+            List<IMarker> resourceMarkers = markersByResource.get(marker.getResource());
+            if (resourceMarkers == null) {
+                resourceMarkers = new ArrayList<>();
+                markersByResource.put(marker.getResource(), resourceMarkers);
             }
-
-            report.addRuleViolation(ruleViolation);
+            resourceMarkers.add(marker);
         }
+        return markersByResource;
+    }
 
-        return report;
+    private static String packageNameOf(ICompilationUnit unit) throws JavaModelException {
+        IPackageDeclaration[] packages = unit.getPackageDeclarations();
+        return packages.length > 0 ? packages[0].getElementName() : "(default)";
+    }
+
+    private static String classNameOf(ICompilationUnit unit, IResource file) throws JavaModelException {
+        IType[] types = unit.getAllTypes();
+        return types.length > 0 ? types[0].getElementName() : file.getName();
     }
 
     private static FakeRuleViolation createViolation(IMarker marker, Rule rule) {
@@ -0,0 +1,101 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.eclipse.core.resources.IContainer;
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+/**
+ * A report, that is rendered into a temporary file and then copied into the report file in
+ * the workspace with one call. The report is streamed and never held in memory, whatever its
+ * size is. The report is written with the UTF-8 encoding.
+ */
+final class ReportFile implements Closeable {
+    private final IFile file;
+    private final Path tempFile;
+    private final Writer writer;
+
+    ReportFile(IFile file) throws IOException {
+        this.file = file;
+        tempFile = Files.createTempFile("pmd-report", ".tmp");
+        try {
+            writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    /**
+     * @return the writer for the renderer
+     */
+    Writer getWriter() {
+        return writer;
+    }
+
+    /**
+     * Creates or overwrites the report file with the rendered report.
+     *
+     * @return <code>false</code> if nothing has been rendered, an old report file is deleted then
+     */
+    boolean commit(IProgressMonitor monitor) throws IOException, CoreException {
+        // the renderer might have closed the writer already, closing it again doesn't hurt
+        writer.close();
+        if (Files.size(tempFile) == 0) {
+            // an old report would pretend, that it is still valid
+            if (file.exists()) {
+                file.delete(true, monitor);
+            }
+            return false;
+        }
+
+        setFolderCharset(monitor);
+        try (InputStream contents = Files.newInputStream(tempFile)) {
+            if (file.exists()) {
+                file.setContents(contents, true, false, monitor);
+            } else {
+                file.create(contents, true, monitor);
+            }
+        }
+        file.refreshLocal(IResource.DEPTH_ZERO, monitor);
+        return true;
+    }
+
+    /**
+     * Sets the encoding of the reports folder once, so that the reports are not decoded with the
+     * default encoding of the workspace. The project settings get a single entry for the folder
+     * instead of one for every report.
+     */
+    private void setFolderCharset(IProgressMonitor monitor) throws CoreException {
+        IContainer folder = file.getParent();
+        if (folder.getType() == IResource.FOLDER
+                && !StandardCharsets.UTF_8.name().equals(folder.getDefaultCharset(false))) {
+            folder.setDefaultCharset(StandardCharsets.UTF_8.name(), monitor);
+        }
+    }
+
+    /**
+     * Deletes the temporary file.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+}
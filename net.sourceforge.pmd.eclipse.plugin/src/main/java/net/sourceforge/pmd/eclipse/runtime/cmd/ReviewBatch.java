@@ -0,0 +1,126 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.runtime.IProgressMonitor;
+
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.ui.actions.RuleSetUtil;
+
+/**
+ * A batch of files of one project, that are analyzed with the same rulesets and project properties.
+ * The files are collected first by a visitor (see {@link BaseVisitor#setBatch(Collection)})
+ * and are then analyzed by one or more {@link Worker}s concurrently.
+ *
+ * <p>Rules are not thread-safe, therefore every worker uses its own copy of the
+ * rulesets and its own PMD configuration.
+ */
+final class ReviewBatch {
+    private final ProjectAnalysisContext context;
+    private final boolean useTaskMarker;
+    private final ProjectAnalysisCache analysisCache;
+    private final List<IFile> files = new ArrayList<>();
+
+    ReviewBatch(ProjectAnalysisContext context, boolean useTaskMarker, ProjectAnalysisCache analysisCache) {
+        this.context = context;
+        this.useTaskMarker = useTaskMarker;
+        this.analysisCache = analysisCache;
+    }
+
+    /**
+     * @return the collection, into which the files of this batch are collected
+     */
+    Collection<IFile> getFiles() {
+        return files;
+    }
+
+    int size() {
+        return files.size();
+    }
+
+    /**
+     * Creates the workers for this batch. All workers share the same queue of files,
+     * so that a worker that is finished early, takes over the remaining files.
+     *
+     * @param maxWorkers the maximum number of workers
+     * @param accumulator the map, into which the markers are collected. Must be thread-safe.
+     * @param monitor the progress monitor. Must be thread-safe.
+     * @param markerPublisher the publisher for the markers of the finished files, might be <code>null</code>
+     * @return the workers, at most one per file
+     */
+    List<Worker> createWorkers(int maxWorkers, Map<IFile, Set<MarkerInfo2>> accumulator, IProgressMonitor monitor,
+            MarkerPublisher markerPublisher) {
+        Queue<IFile> queue = new ConcurrentLinkedQueue<>(files);
+        int count = Math.min(maxWorkers, files.size());
+        List<Worker> workers = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // the rulesets of the context are already a private copy of the command,
+            // so the first worker can use them directly
+            Worker worker = new Worker(queue, context.getRuleSets(), i > 0);
+            worker.setMonitor(monitor);
+            worker.setFileExtensions(context.getFileExtensions());
+            worker.setAccumulator(accumulator);
+            worker.setUseTaskMarker(useTaskMarker);
+            worker.setProjectProperties(context.getProperties());
+            worker.setAnalysisContext(context);
+            worker.setAnalysisCache(analysisCache);
+            worker.setMarkerPublisher(markerPublisher);
+            workers.add(worker);
+        }
+        return workers;
+    }
+
+    /**
+     * A worker analyzes files of a batch until the queue is empty. A worker must only be
+     * executed by one thread at a time.
+     */
+    static final class Worker extends BaseVisitor implements Callable<Worker> {
+        private final Queue<IFile> queue;
+        private final List<RuleSet> sourceRuleSets;
+        private final boolean copyRuleSets;
+
+        Worker(Queue<IFile> queue, List<RuleSet> ruleSets, boolean copyRuleSets) {
+            this.queue = queue;
+            this.sourceRuleSets = ruleSets;
+            this.copyRuleSets = copyRuleSets;
+        }
+
+        @Override
+        public Worker call() {
+            // the copy is only created, when the worker actually starts, so that
+            // the number of copies in memory is limited by the number of threads
+            setRuleSetList(copyRuleSets ? copyOf(sourceRuleSets) : sourceRuleSets);
+            try {
+                IFile file = queue.poll();
+                while (file != null && !isCanceled()) {
+                    reviewResource(file);
+                    file = queue.poll();
+                }
+            } finally {
+                // only the statistics are needed after the worker finished
+                setRuleSetList(null);
+            }
+            return this;
+        }
+
+        private static List<RuleSet> copyOf(List<RuleSet> ruleSets) {
+            List<RuleSet> copies = new ArrayList<>(ruleSets.size());
+            for (RuleSet ruleSet : ruleSets) {
+                copies.add(RuleSetUtil.newCopyOf(ruleSet));
+            }
+            return copies;
+        }
+    }
+}
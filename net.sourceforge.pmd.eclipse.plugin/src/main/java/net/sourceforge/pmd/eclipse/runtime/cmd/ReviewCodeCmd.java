@@ -9,10 +9,19 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.lang3.StringUtils;
 import org.eclipse.core.resources.IContainer;
@@ -21,14 +30,12 @@ import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.core.resources.IResourceDeltaVisitor;
-import org.eclipse.core.resources.IResourceRuleFactory;
 import org.eclipse.core.resources.IResourceVisitor;
-import org.eclipse.core.resources.IWorkspace;
 import org.eclipse.core.resources.IWorkspaceRoot;
-import org.eclipse.core.resources.IWorkspaceRunnable;
 import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.ProgressMonitorWrapper;
 import org.eclipse.core.runtime.jobs.ISchedulingRule;
 import org.eclipse.core.runtime.jobs.MultiRule;
 import org.eclipse.jdt.core.IClasspathEntry;
@@ -47,7 +54,6 @@ import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
-import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
 import net.sourceforge.pmd.eclipse.runtime.properties.PropertiesException;
@@ -74,7 +80,7 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
 
     private final List<IResource> resources = new ArrayList<>();
     private IResourceDelta resourceDelta;
-    private Map<IFile, Set<MarkerInfo2>> markersByFile = new HashMap<>();
+    private Map<IFile, Set<MarkerInfo2>> markersByFile = new ConcurrentHashMap<>();
     private boolean taskMarker;
     private boolean openPmdPerspective;
     private boolean openPmdViolationsOverviewView;
@@ -82,6 +88,44 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     private int ruleCount;
     private int fileCount;
     private long pmdDuration;
+    private long markerDuration;
+    private int cachedFileCount;
+
+    /**
+     * The number of threads to use for analyzing the files. A negative value means,
+     * that the number is taken from the preferences.
+     */
+    private int analysisThreads = -1;
+
+    /**
+     * The files to analyze, if the batch mode is active. In batch mode, the files are
+     * first collected and then analyzed on a pool of worker threads.
+     */
+    private final Map<IProject, ReviewBatch> batches = new LinkedHashMap<>();
+    private int effectiveAnalysisThreads;
+
+    /**
+     * The analysis contexts of the projects reviewed by this command. A context is only
+     * created once per project and command run and is shared by all visitors.
+     */
+    private final Map<IProject, ProjectAnalysisContext> analysisContexts = new HashMap<>();
+
+    /**
+     * The analysis caches of the projects reviewed by this command. The validity of a cache
+     * is checked only once per command run.
+     */
+    private final Map<IProject, ProjectAnalysisCache> analysisCaches = new HashMap<>();
+
+    /**
+     * Applies the markers in small chunks, while the analysis is still running.
+     */
+    private MarkerPublisher markerPublisher;
+
+    /**
+     * Whether the markers should be kept after they have been applied, so that they are
+     * available via {@link #getMarkers()}.
+     */
+    private boolean retainMarkers = true;
 
     /**
      * Whether to run the review command, even if PMD is disabled in the project settings.
@@ -89,7 +133,16 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
      */
     private boolean runAlways = false;
 
-    private IProjectProperties propertyCache = null;
+    /**
+     * Whether the review is the result of just saved work.
+     */
+    private boolean priorityWork;
+
+    /**
+     * The properties of the projects reviewed by this command, so that they are looked up only
+     * once per project and command run.
+     */
+    private final Map<IProject, IProjectProperties> projectProperties = new HashMap<>();
 
     public ReviewCodeCmd() {
         super("ReviewCode", "Run PMD on a list of workbench resources");
@@ -112,6 +165,7 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         ReviewCodeCmd cmd = new ReviewCodeCmd();
         cmd.setStepCount(files.size());
         cmd.setTaskMarker(true);
+        cmd.setRetainMarkers(false);
         cmd.setOpenPmdPerspective(PMDPlugin.getDefault().loadPreferences().isPmdPerspectiveEnabled());
         cmd.setOpenPmdViolationsOverviewView(PMDPlugin.getDefault().loadPreferences().isPmdViolationsOverviewEnabled());
         cmd.setOpenPmdViolationsOutlineView(PMDPlugin.getDefault().loadPreferences().isPmdViolationsOutlineEnabled());
@@ -176,6 +230,14 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             fileCount = 0;
             ruleCount = 0;
             pmdDuration = 0;
+            markerDuration = 0;
+            cachedFileCount = 0;
+            effectiveAnalysisThreads = determineAnalysisThreads();
+            markerPublisher = new MarkerPublisher(markersByFile, retainMarkers, getMonitor());
+            // the projects only ask for the result, when they get their auxclasspath
+            LibraryClassLoader.checkModifiedJars();
+            // the rule set files outside of the workspace are not watched
+            PMDPlugin.getDefault().getPropertiesManager().checkExternalFiles();
 
             String projectList = determineProjectList();
             int totalWork = determineTotalWork();
@@ -194,37 +256,11 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             } else {
                 processResources();
             }
+            analyzeBatches();
 
-            // do we really need to do any of the rest of this if
-            // fileCount and ruleCount are both 0?
-
-            // skip the marking processing if the markersByFile set is empty
-            // (avoids grabbing the "run" lock for nothing)
-            if (!markersByFile.isEmpty()) {
-                // Appliquer les marqueurs
-                IWorkspaceRunnable action = new IWorkspaceRunnable() {
-                    @Override
-                    public void run(IProgressMonitor monitor) throws CoreException {
-                        applyMarkers();
-                    }
-                };
-
-                // clear the markers here. The call to Resource.deleteMarkers
-                // will
-                // also call the Workspace.prepareOperation so do that
-                // outside the larger "applyMarkers" call to avoid doubly
-                // holding locks
-                // for too long
-                for (IFile file : markersByFile.keySet()) {
-                    if (isCanceled()) {
-                        break;
-                    }
-                    MarkerUtil.deleteAllMarkersIn(file);
-                }
-
-                final IWorkspace workspace = ResourcesPlugin.getWorkspace();
-                workspace.run(action, getSchedulingRule(), IWorkspace.AVOID_UPDATE, getMonitor());
-            }
+            // most of the markers have already been applied while analyzing,
+            // apply the rest and wait until all are done
+            markerPublisher.finish();
 
             // Switch to the PMD perspective if required
             if (openPmdPerspective) {
@@ -244,9 +280,13 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                 PMDPlugin.getDefault().showView(PMDPlugin.VIOLATIONS_OUTLINE_ID);
             }
 
-        } catch (CoreException e) {
-            throw new RuntimeException("Core exception when reviewing code", e);
         } finally {
+            if (markerPublisher != null) {
+                markerDuration = markerPublisher.getPublishDuration();
+                markerPublisher.shutdown();
+                markerPublisher = null;
+            }
+            persistAnalysisCaches();
             LOG.debug("ReviewCode command has ended.");
             setTerminated(true);
             done();
@@ -257,6 +297,10 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                         + "Actual PMD duration is about {}ms, that is about {}ms/file, {}ms/rule, {}ms/filerule",
                         ruleCount, fileCount, pmdDuration, (float) pmdDuration / fileCount,
                         (float) pmdDuration / ruleCount, (float) pmdDuration / ((long) fileCount * (long) ruleCount));
+                if (cachedFileCount > 0) {
+                    LOG.info("The violations of {} unchanged files were restored from the analysis cache.",
+                            cachedFileCount);
+                }
             } else {
                 LOG.info("Review code command finished. {} rules were executed against {} files. "
                         + "PMD has not been executed.", ruleCount, fileCount);
@@ -302,9 +346,7 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         IProject project = resource.getProject();
         if (project != null && !fileExtensionsPerProject.containsKey(project)) {
             try {
-                List<RuleSet> rulesets = rulesetsFrom(resource);
-                Set<String> fileExtensions = determineFileExtensions(rulesets);
-                fileExtensionsPerProject.put(project, fileExtensions);
+                fileExtensionsPerProject.put(project, analysisContextFor(project).getFileExtensions());
             } catch (PropertiesException e) {
                 LOG.warn("Error while determining file extensions for project {}", project, e);
                 fileExtensionsPerProject.put(project, Collections.<String>emptySet());
@@ -384,6 +426,28 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         return fileCount;
     }
 
+    /**
+     * @return the number of files of the last execution, whose violations have been restored from
+     *     the analysis cache
+     */
+    public int getCachedFileCount() {
+        return cachedFileCount;
+    }
+
+    /**
+     * @return the time in milliseconds, PMD needed to analyze the files of the last execution
+     */
+    public long getPmdDuration() {
+        return pmdDuration;
+    }
+
+    /**
+     * @return the time in milliseconds spent for applying the markers of the last execution
+     */
+    public long getMarkerDuration() {
+        return markerDuration;
+    }
+
     public void setResources(Collection<ISchedulingRule> resources) {
         resources.clear();
         resources.addAll(resources);
@@ -415,6 +479,43 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         this.runAlways = runAlways;
     }
 
+    /**
+     * Sets whether the markers should be available via {@link #getMarkers()} after the
+     * command finished. If not, the markers are released as soon as they have been applied,
+     * and only the analyzed files are known afterwards. Default is <code>true</code>.
+     */
+    public void setRetainMarkers(boolean retainMarkers) {
+        this.retainMarkers = retainMarkers;
+    }
+
+    /**
+     * Sets the number of threads used to analyze the files. By default, the
+     * number is taken from the preferences.
+     *
+     * @param analysisThreads
+     *            the number of threads, 0 to use all available processors, 1 to
+     *            analyze the files one after another
+     * @see IPreferences#getAnalysisThreads()
+     */
+    public void setAnalysisThreads(int analysisThreads) {
+        this.analysisThreads = analysisThreads;
+    }
+
+    private int determineAnalysisThreads() {
+        int threads = analysisThreads;
+        if (threads < 0) {
+            threads = PMDPlugin.getDefault().loadPreferences().getAnalysisThreads();
+        }
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
+        }
+        return threads;
+    }
+
+    private boolean isBatchMode() {
+        return effectiveAnalysisThreads > 1;
+    }
+
     /**
      * @param openPmdPerspective
      *            Tell whether the PMD perspective should be opened after processing.
@@ -446,12 +547,17 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     @Override
     public void reset() {
         resources.clear();
-        markersByFile = new HashMap<>();
+        batches.clear();
+        analysisCaches.clear();
+        analysisContexts.clear();
+        projectProperties.clear();
+        markersByFile = new ConcurrentHashMap<>();
         setTerminated(false);
         openPmdPerspective = false;
         openPmdViolationsOverviewView = false;
         openPmdViolationsOutlineView = false;
         runAlways = false;
+        priorityWork = false;
     }
 
     @Override
@@ -460,26 +566,87 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
 
     /**
-     * @return the scheduling rule needed to apply markers
+     * Marks the review as the result of just saved work, so that it is preferred like the
+     * user initiated reviews.
      */
-    private ISchedulingRule getSchedulingRule() {
-        final IWorkspace workspace = ResourcesPlugin.getWorkspace();
-        final IResourceRuleFactory ruleFactory = workspace.getRuleFactory();
-        ISchedulingRule rule;
+    public void setPriorityWork(boolean priorityWork) {
+        this.priorityWork = priorityWork;
+    }
+
+    /**
+     * Incremental builds are the result of just saved work, so they are preferred like the
+     * user initiated reviews.
+     */
+    @Override
+    protected boolean isPriorityWork() {
+        return super.isPriorityWork() || priorityWork || resourceDelta != null;
+    }
 
-        if (resources.isEmpty()) {
-            rule = ruleFactory.markerRule(resourceDelta.getResource().getProject());
-        } else {
-            ISchedulingRule[] rules = new ISchedulingRule[resources.size()];
-            for (int i = 0; i < rules.length; i++) {
-                rules[i] = ruleFactory.markerRule((IResource) resources.get(i));
+    /**
+     * The reviews of the same project are executed one after another, reviews of different
+     * projects can run at the same time.
+     */
+    @Override
+    protected ISchedulingRule getSchedulingRule() {
+        Set<IProject> projects = new LinkedHashSet<>();
+        for (IResource resource : resources) {
+            if (resource.getProject() != null) {
+                projects.add(resource.getProject());
             }
-            rule = new MultiRule(resources.toArray(rules));
+        }
+        if (resourceDelta != null && resourceDelta.getResource().getProject() != null) {
+            projects.add(resourceDelta.getResource().getProject());
         }
 
+        ISchedulingRule rule = null;
+        for (IProject project : projects) {
+            rule = MultiRule.combine(rule, new ProjectReviewRule(project));
+        }
         return rule;
     }
 
+    /**
+     * Another review can be merged, if nobody is interested in the markers of both reviews
+     * and both reviews are configured the same way. The resources of the other review, that
+     * are not already covered by this review, are added. A resource delta can only be merged,
+     * if the complete project of the delta is already reviewed.
+     */
+    @Override
+    protected boolean merge(AbstractDefaultCommand command) {
+        if (!(command instanceof ReviewCodeCmd)) {
+            return false;
+        }
+        ReviewCodeCmd other = (ReviewCodeCmd) command;
+        if (retainMarkers || other.retainMarkers || resourceDelta != null || taskMarker != other.taskMarker
+                || runAlways != other.runAlways || analysisThreads != other.analysisThreads) {
+            return false;
+        }
+        if (other.resourceDelta != null && !isCovered(other.resourceDelta.getResource().getProject())) {
+            return false;
+        }
+
+        for (IResource resource : other.resources) {
+            if (!isCovered(resource)) {
+                resources.add(resource);
+            }
+        }
+        openPmdPerspective |= other.openPmdPerspective;
+        openPmdViolationsOverviewView |= other.openPmdViolationsOverviewView;
+        openPmdViolationsOutlineView |= other.openPmdViolationsOutlineView;
+        setUserInitiated(isUserInitiated() || other.isUserInitiated());
+        priorityWork |= other.priorityWork;
+        return true;
+    }
+
+    private boolean isCovered(IResource resource) {
+        for (IResource reviewed : resources) {
+            if (reviewed.getFullPath().isPrefixOf(resource.getFullPath())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Process the list of workbench resources
      */
@@ -497,17 +664,41 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
 
     private IProjectProperties getProjectProperties(IProject project) throws PropertiesException {
-        if (propertyCache == null || !propertyCache.getProject().getName().equals(project.getName())) {
-            propertyCache = PMDPlugin.getDefault().loadProjectProperties(project);
+        IProjectProperties properties = projectProperties.get(project);
+        if (properties == null) {
+            properties = PMDPlugin.getDefault().loadProjectProperties(project);
+            projectProperties.put(project, properties);
         }
-        return propertyCache;
+        return properties;
     }
 
-    private List<RuleSet> rulesetsFrom(IResource resource) throws PropertiesException {
-        IProject project = resource.getProject();
-        IProjectProperties properties = getProjectProperties(project);
+    /**
+     * Gets the analysis context of the project. The context, including the filtered rulesets,
+     * is only created once per command run.
+     */
+    private ProjectAnalysisContext analysisContextFor(IProject project) throws PropertiesException {
+        ProjectAnalysisContext context = analysisContexts.get(project);
+        if (context == null) {
+            IProjectProperties properties = getProjectProperties(project);
+            List<RuleSet> ruleSets = filteredRuleSets(properties);
+            context = new ProjectAnalysisContext(project, properties, ruleSets, determineFileExtensions(ruleSets),
+                    PMDPlugin.getDefault().loadPreferences());
+            analysisContexts.put(project, context);
+        }
+        return context;
+    }
 
-        return filteredRuleSets(properties); // properties.getProjectRuleSet();
+    /**
+     * Gets the batch of the project, so that all the files of a project are analyzed together,
+     * even if they are collected from different source folders.
+     */
+    private ReviewBatch batchFor(ProjectAnalysisContext context, ProjectAnalysisCache analysisCache) {
+        ReviewBatch batch = batches.get(context.getProject());
+        if (batch == null) {
+            batch = new ReviewBatch(context, taskMarker, analysisCache);
+            batches.put(context.getProject(), batch);
+        }
+        return batch;
     }
 
     /**
@@ -522,8 +713,9 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                 return;
             }
 
-            List<RuleSet> ruleSets = rulesetsFrom(resource);
-            Set<String> fileExtensions = determineFileExtensions(ruleSets);
+            ProjectAnalysisContext context = analysisContextFor(project);
+            List<RuleSet> ruleSets = context.getRuleSets();
+            Set<String> fileExtensions = context.getFileExtensions();
             // final PMDEngine pmdEngine = getPmdEngineForProject(project);
             int targetCount = 0;
             if (resource.exists()) {
@@ -542,11 +734,16 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                     visitor.setAccumulator(markersByFile);
                     visitor.setUseTaskMarker(taskMarker);
                     visitor.setProjectProperties(properties);
+                    visitor.setAnalysisContext(context);
+                    visitor.setAnalysisCache(analysisCacheFor(context));
+                    visitor.setMarkerPublisher(markerPublisher);
+                    if (isBatchMode()) {
+                        visitor.setBatch(batchFor(context, visitor.getAnalysisCache()).getFiles());
+                    }
                     resource.accept(visitor);
 
                     ruleCount = InternalRuleSetUtil.countRules(ruleSets);
-                    fileCount += visitor.getProcessedFilesCount();
-                    pmdDuration += visitor.getActualPmdDuration();
+                    addStatistics(visitor);
                 } else {
                     LOG.debug("Skipping resource {} because it doesn't exist.", resource.getName());
                 }
@@ -679,15 +876,6 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
         return filteredRuleSets;
     }
 
-    private List<RuleSet> rulesetsFromResourceDelta() throws PropertiesException {
-
-        IResource resource = resourceDelta.getResource();
-        final IProject project = resource.getProject();
-        final IProjectProperties properties = getProjectProperties(project);
-
-        return filteredRuleSets(properties); // properties.getProjectRuleSet();
-    }
-
     /**
      * Review a resource delta.
      */
@@ -698,8 +886,9 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
             final IProjectProperties properties = getProjectProperties(project);
             LOG.info("ReviewCodeCmd started on resource delta {} in {}", resource.getName(), project);
 
-            final List<RuleSet> ruleSets = rulesetsFromResourceDelta();
-            Set<String> fileExtensions = determineFileExtensions(ruleSets);
+            ProjectAnalysisContext context = analysisContextFor(project);
+            final List<RuleSet> ruleSets = context.getRuleSets();
+            Set<String> fileExtensions = context.getFileExtensions();
 
             // PMDEngine pmdEngine = getPmdEngineForProject(project);
             int targetCount = countDeltaElement(resourceDelta);
@@ -716,11 +905,16 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
                 visitor.setAccumulator(markersByFile);
                 visitor.setUseTaskMarker(taskMarker);
                 visitor.setProjectProperties(properties);
+                visitor.setAnalysisContext(context);
+                visitor.setAnalysisCache(analysisCacheFor(context));
+                visitor.setMarkerPublisher(markerPublisher);
+                if (isBatchMode()) {
+                    visitor.setBatch(batchFor(context, visitor.getAnalysisCache()).getFiles());
+                }
                 resourceDelta.accept(visitor);
 
                 ruleCount = InternalRuleSetUtil.countRules(ruleSets);
-                fileCount += visitor.getProcessedFilesCount();
-                pmdDuration += visitor.getActualPmdDuration();
+                addStatistics(visitor);
             } else {
                 LOG.info("Skipping resourceDelta {} because of fullBuildEnabled flag and targetCount is {}. "
                         + "This is more than {}. If you want to execute PMD, please check \"Full build enabled\" "
@@ -732,39 +926,124 @@ public class ReviewCodeCmd extends AbstractDefaultCommand {
     }
 
     /**
-     * Apply PMD markers after the review.
+     * Analyzes the files, that have been collected in batch mode, on a pool of worker threads.
      */
-    private void applyMarkers() {
-        LOG.debug("Processing marker directives");
-        int violationCount = 0;
-        long start = System.currentTimeMillis();
+    private void analyzeBatches() {
+        int totalFiles = 0;
+        for (ReviewBatch batch : batches.values()) {
+            totalFiles += batch.size();
+        }
+        if (totalFiles == 0) {
+            batches.clear();
+            return;
+        }
 
-        String currentFile = ""; // for logging
+        int threads = Math.min(effectiveAnalysisThreads, totalFiles);
+        IProgressMonitor monitor = getMonitor() != null ? new SynchronizedProgressMonitor(getMonitor()) : null;
+        List<ReviewBatch.Worker> workers = new ArrayList<>();
+        for (ReviewBatch batch : batches.values()) {
+            workers.addAll(batch.createWorkers(threads, markersByFile, monitor, markerPublisher));
+        }
+        batches.clear();
+        LOG.debug("Analyzing {} files with {} workers on {} threads", totalFiles, workers.size(), threads);
 
-        beginTask("PMD Applying markers", markersByFile.size());
+        if (threads == 1) {
+            // no need for a thread pool
+            for (ReviewBatch.Worker worker : workers) {
+                addStatistics(worker.call());
+            }
+            return;
+        }
 
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new AnalysisThreadFactory());
         try {
-            for (IFile file : markersByFile.keySet()) {
-                if (isCanceled()) {
-                    break;
-                }
-                currentFile = file.getName();
-                Set<MarkerInfo2> markerInfoSet = markersByFile.get(file);
-                for (MarkerInfo2 markerInfo : markerInfoSet) {
-                    markerInfo.addAsMarkerTo(file);
-                    violationCount++;
-                }
-
-                worked(1);
+            for (Future<ReviewBatch.Worker> result : executor.invokeAll(workers)) {
+                addStatistics(result.get());
             }
-        } catch (CoreException e) {
-            // TODO: NLS
-            LOG.warn("CoreException when setting marker for file {}: {}", currentFile, e.toString(), e);
+        } catch (InterruptedException e) {
+            LOG.warn("Interrupted while waiting for the analysis to finish");
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error while analyzing files", e.getCause());
         } finally {
-            long duration = System.currentTimeMillis() - start;
-            int count = markersByFile.size();
-            LOG.debug("applyMarkers: {} markers applied on {} files in {} ms.", violationCount, count, duration);
-            LOG.info("End of processing marker directives. " + violationCount + " violations for " + count + " files.");
+            executor.shutdownNow();
+        }
+    }
+
+    private void addStatistics(BaseVisitor visitor) {
+        fileCount += visitor.getProcessedFilesCount();
+        cachedFileCount += visitor.getCachedFilesCount();
+        pmdDuration += visitor.getActualPmdDuration();
+    }
+
+    /**
+     * Gets the analysis cache of the project and makes sure, it matches the current configuration.
+     */
+    private ProjectAnalysisCache analysisCacheFor(ProjectAnalysisContext context) throws PropertiesException {
+        ProjectAnalysisCache cache = analysisCaches.get(context.getProject());
+        if (cache == null) {
+            long fingerprint = ProjectAnalysisCache.fingerprintOf(context.getRuleSets(), context.getProperties(),
+                    context.getAuxClasspath(), context.getJavaVersion());
+            cache = ProjectAnalysisCache.forProject(context.getProject());
+            cache.checkValidity(fingerprint);
+            analysisCaches.put(context.getProject(), cache);
+        }
+        return cache;
+    }
+
+    private void persistAnalysisCaches() {
+        for (Map.Entry<IProject, ProjectAnalysisCache> entry : analysisCaches.entrySet()) {
+            if (entry.getKey().isAccessible()) {
+                entry.getValue().prune(entry.getKey());
+                entry.getValue().persist();
+            }
+            entry.getValue().release();
+        }
+        analysisCaches.clear();
+        analysisContexts.clear();
+        projectProperties.clear();
+    }
+
+    /**
+     * Creates the daemon threads for analyzing the files in batch mode.
+     */
+    private static final class AnalysisThreadFactory implements ThreadFactory {
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "PMD Analysis Worker " + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * The progress monitor of the job is shared between all the worker threads.
+     */
+    private static final class SynchronizedProgressMonitor extends ProgressMonitorWrapper {
+        SynchronizedProgressMonitor(IProgressMonitor monitor) {
+            super(monitor);
+        }
+
+        @Override
+        public synchronized boolean isCanceled() {
+            return super.isCanceled();
+        }
+
+        @Override
+        public synchronized void subTask(String name) {
+            super.subTask(name);
+        }
+
+        @Override
+        public synchronized void worked(int work) {
+            super.worked(work);
+        }
+
+        @Override
+        public synchronized void internalWorked(double work) {
+            super.internalWorked(work);
         }
     }
 
@@ -0,0 +1,80 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.cmd;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.zip.CRC32;
+
+import org.eclipse.core.resources.IFile;
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
+
+/**
+ * The content of a file, that is read only once and then used for the analysis, the
+ * search for reviewed violations and the analysis cache.
+ */
+final class SourceBuffer {
+    private final byte[] bytes;
+    private final String charset;
+    private String text;
+
+    private SourceBuffer(byte[] bytes, String charset) {
+        this.bytes = bytes;
+        this.charset = charset;
+    }
+
+    /**
+     * Reads the complete content of the file. If the file is in sync with the file system,
+     * it is read directly from the local file system, otherwise it is read through the
+     * workspace.
+     */
+    static SourceBuffer read(IFile file) throws CoreException, IOException {
+        byte[] bytes;
+        IPath location = file.getLocation();
+        if (location != null && file.isSynchronized(IResource.DEPTH_ZERO)) {
+            bytes = Files.readAllBytes(location.toFile().toPath());
+        } else {
+            try (InputStream in = file.getContents(true)) {
+                bytes = readFully(in);
+            }
+        }
+        return new SourceBuffer(bytes, file.getCharset());
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(8192);
+        byte[] buffer = new byte[8192];
+        int count = in.read(buffer);
+        while (count != -1) {
+            out.write(buffer, 0, count);
+            count = in.read(buffer);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * @return the content decoded with the charset of the file
+     */
+    String getText() {
+        if (text == null) {
+            text = new String(bytes, Charset.forName(charset));
+        }
+        return text;
+    }
+
+    /**
+     * @return the checksum of the (undecoded) content
+     */
+    long getChecksum() {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+}
@@ -32,8 +32,10 @@ public interface IPreferences {
     String REVIEW_ADDITIONAL_COMMENT_DEFAULT = "by {0} on {1}";
     boolean REVIEW_PMD_STYLE_ENABLED_DEFAULT = true;
     int MIN_TILE_SIZE_DEFAULT = 25;
+    int CPD_MAX_MATCHES_DEFAULT = 100;
     String LOG_FILENAME_DEFAULT = System.getProperty("user.home") + "/pmd-eclipse.log";
     String LOG_LEVEL_DEFAULT = "WARN";
+    int ANALYSIS_THREADS_DEFAULT = 0;
 
     // default renderer
     String ACTIVE_RENDERERS = "text";
@@ -162,6 +164,21 @@ public interface IPreferences {
      */
     void setDetermineFiletypesAutomatically(boolean determineFiletypesAutomatically);
 
+    /**
+     * Get the number of worker threads used to analyze files. A value of 0 means
+     * that one thread per available processor is used, a value of 1 disables
+     * the batch mode and files are analyzed one after another.
+     */
+    int getAnalysisThreads();
+
+    /**
+     * Set the number of worker threads used to analyze files.
+     *
+     * @param analysisThreads
+     *            the number of threads, 0 to use all available processors
+     */
+    void setAnalysisThreads(int analysisThreads);
+
     /**
      * Get the review additional comment. This comment is a text appended to the
      * review comment that is inserted into the code when a violation is
@@ -207,6 +224,17 @@ public interface IPreferences {
      */
     void setMinTileSize(int minTileSize);
 
+    /**
+     * Get the maximum number of matches shown in the CPD view. Only the largest
+     * matches are shown, 0 shows all matches.
+     */
+    int getCpdMaxMatches();
+
+    /**
+     * Set the maximum number of matches shown in the CPD view.
+     */
+    void setCpdMaxMatches(int cpdMaxMatches);
+
     /**
      * Get the log filename
      */
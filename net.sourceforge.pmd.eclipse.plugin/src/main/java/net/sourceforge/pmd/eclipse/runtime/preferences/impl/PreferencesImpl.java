@@ -38,9 +38,11 @@ class PreferencesImpl implements IPreferences {
     private boolean useCustomPriorityNames;
     private int maxViolationsPerFilePerRule;
     private boolean determineFiletypesAutomatically;
+    private int analysisThreads;
     private String reviewAdditionalComment;
     private boolean reviewPmdStyleEnabled;
     private int minTileSize;
+    private int cpdMaxMatches;
     private String logFileName;
     private String logLevel;
     private boolean globalRuleManagement;
@@ -137,6 +139,16 @@ class PreferencesImpl implements IPreferences {
         this.determineFiletypesAutomatically = newDetermineFiletypesAutomatically;
     }
 
+    @Override
+    public int getAnalysisThreads() {
+        return analysisThreads;
+    }
+
+    @Override
+    public void setAnalysisThreads(int newAnalysisThreads) {
+        this.analysisThreads = newAnalysisThreads;
+    }
+
     @Override
     public String getReviewAdditionalComment() {
         return reviewAdditionalComment;
@@ -167,6 +179,16 @@ class PreferencesImpl implements IPreferences {
         this.minTileSize = newMinTileSize;
     }
 
+    @Override
+    public int getCpdMaxMatches() {
+        return cpdMaxMatches;
+    }
+
+    @Override
+    public void setCpdMaxMatches(int newCpdMaxMatches) {
+        this.cpdMaxMatches = newCpdMaxMatches;
+    }
+
     @Override
     public String getLogFileName() {
         return logFileName;
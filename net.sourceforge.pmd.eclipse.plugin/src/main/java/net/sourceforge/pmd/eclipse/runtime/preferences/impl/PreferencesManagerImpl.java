@@ -39,6 +39,7 @@ import net.sourceforge.pmd.RuleSetLoadException;
 import net.sourceforge.pmd.RuleSetLoader;
 import net.sourceforge.pmd.eclipse.core.IRuleSetManager;
 import net.sourceforge.pmd.eclipse.core.internal.FileModificationUtil;
+import net.sourceforge.pmd.eclipse.core.internal.RuleRegistry;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferences;
 import net.sourceforge.pmd.eclipse.runtime.preferences.IPreferencesFactory;
@@ -71,10 +72,12 @@ class PreferencesManagerImpl implements IPreferencesManager {
     private static final String PMD_VIOLATIONS_OUTLINE_ENABLED = PMDPlugin.PLUGIN_ID + ".pmd_outline_enabled";
     private static final String PMD_CHECK_AFTER_SAVE_ENABLED = PMDPlugin.PLUGIN_ID + ".pmd_check_after_save_enabled";
     private static final String DETERMINE_FILETYPES_AUTOMATICALLY = PMDPlugin.PLUGIN_ID + ".determine_filetypes_automatically";
+    private static final String ANALYSIS_THREADS = PMDPlugin.PLUGIN_ID + ".analysis_threads";
     private static final String REVIEW_ADDITIONAL_COMMENT = PMDPlugin.PLUGIN_ID + ".review_additional_comment";
     private static final String REVIEW_PMD_STYLE_ENABLED = PMDPlugin.PLUGIN_ID + ".review_pmd_style_enabled";
     private static final String PMD_USE_CUSTOM_PRIORITY_NAMES = PMDPlugin.PLUGIN_ID + ".use_custom_priority_names";
     private static final String MIN_TILE_SIZE = PMDPlugin.PLUGIN_ID + ".min_tile_size";
+    private static final String CPD_MAX_MATCHES = PMDPlugin.PLUGIN_ID + ".cpd_max_matches";
     private static final String LOG_FILENAME = PMDPlugin.PLUGIN_ID + ".log_filename";
     private static final String LOG_LEVEL = PMDPlugin.PLUGIN_ID + ".log_level";
     private static final String GLOBAL_RULE_MANAGEMENT = PMDPlugin.PLUGIN_ID + ".globalRuleManagement";
@@ -138,7 +141,7 @@ class PreferencesManagerImpl implements IPreferencesManager {
     }
 
     @Override
-    public IPreferences loadPreferences() {
+    public synchronized IPreferences loadPreferences() {
         if (preferences == null) {
             reloadPreferences();
         } else if (preferencesTimestamp != getPreferencesTimestamp()) {
@@ -167,7 +170,7 @@ class PreferencesManagerImpl implements IPreferencesManager {
     }
 
     @Override
-    public IPreferences reloadPreferences() {
+    public synchronized IPreferences reloadPreferences() {
 
         initLoadPreferencesStore();
         IPreferencesFactory factory = new PreferencesFactoryImpl();
@@ -180,9 +183,11 @@ class PreferencesManagerImpl implements IPreferencesManager {
         loadCheckAfterSaveEnabled();
         loadUseCustomPriorityNames();
         loadDetermineFiletypesAutomatically();
+        loadAnalysisThreads();
         loadReviewAdditionalComment();
         loadReviewPmdStyleEnabled();
         loadMinTileSize();
+        loadCpdMaxMatches();
         loadLogFileName();
         loadLogLevel();
         loadGlobalRuleManagement();
@@ -252,9 +257,11 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storeCheckAfterSaveEnabled();
         storeUseCustomPriorityNames();
         storeDetermineFiletypesAutomatically();
+        storeAnalysisThreads();
         storeReviewAdditionalComment();
         storeReviewPmdStyleEnabled();
         storeMinTileSize();
+        storeCpdMaxMatches();
         storeLogFileName();
         storeLogLevel();
         storeGlobalRuleManagement();
@@ -289,6 +296,7 @@ class PreferencesManagerImpl implements IPreferencesManager {
             RuleSet newRuleSet = getRuleSetFromStateLocation();
             updateConfiguredProjects(newRuleSet);
             ruleSet = newRuleSet;
+            PMDPlugin.getDefault().getPropertiesManager().ruleSetChanged();
         }
         return ruleSet;
     }
@@ -297,6 +305,8 @@ class PreferencesManagerImpl implements IPreferencesManager {
     public void setRuleSet(RuleSet newRuleSet) {
         updateConfiguredProjects(newRuleSet);
         ruleSet = newRuleSet;
+        RuleRegistry.getInstance().ruleSetChanged();
+        PMDPlugin.getDefault().getPropertiesManager().ruleSetChanged();
         storeRuleSetInStateLocation(ruleSet);
     }
 
@@ -336,6 +346,11 @@ class PreferencesManagerImpl implements IPreferencesManager {
         preferences.setDetermineFiletypesAutomatically(loadPreferencesStore.getBoolean(DETERMINE_FILETYPES_AUTOMATICALLY));
     }
 
+    private void loadAnalysisThreads() {
+        loadPreferencesStore.setDefault(ANALYSIS_THREADS, IPreferences.ANALYSIS_THREADS_DEFAULT);
+        preferences.setAnalysisThreads(loadPreferencesStore.getInt(ANALYSIS_THREADS));
+    }
+
     private void loadReviewAdditionalComment() {
         loadPreferencesStore.setDefault(REVIEW_ADDITIONAL_COMMENT, IPreferences.REVIEW_ADDITIONAL_COMMENT_DEFAULT);
         preferences.setReviewAdditionalComment(loadPreferencesStore.getString(REVIEW_ADDITIONAL_COMMENT));
@@ -351,6 +366,11 @@ class PreferencesManagerImpl implements IPreferencesManager {
         preferences.setMinTileSize(this.loadPreferencesStore.getInt(MIN_TILE_SIZE));
     }
 
+    private void loadCpdMaxMatches() {
+        loadPreferencesStore.setDefault(CPD_MAX_MATCHES, IPreferences.CPD_MAX_MATCHES_DEFAULT);
+        preferences.setCpdMaxMatches(loadPreferencesStore.getInt(CPD_MAX_MATCHES));
+    }
+
     private void loadLogFileName() {
         loadPreferencesStore.setDefault(LOG_FILENAME, IPreferences.LOG_FILENAME_DEFAULT);
         preferences.setLogFileName(loadPreferencesStore.getString(LOG_FILENAME));
@@ -521,6 +541,10 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storePreferencesStore.setValue(DETERMINE_FILETYPES_AUTOMATICALLY, preferences.isDetermineFiletypesAutomatically());
     }
 
+    private void storeAnalysisThreads() {
+        storePreferencesStore.setValue(ANALYSIS_THREADS, preferences.getAnalysisThreads());
+    }
+
     private void storeReviewAdditionalComment() {
         storePreferencesStore.setValue(REVIEW_ADDITIONAL_COMMENT, preferences.getReviewAdditionalComment());
     }
@@ -533,6 +557,10 @@ class PreferencesManagerImpl implements IPreferencesManager {
         storePreferencesStore.setValue(MIN_TILE_SIZE, preferences.getMinTileSize());
     }
 
+    private void storeCpdMaxMatches() {
+        storePreferencesStore.setValue(CPD_MAX_MATCHES, preferences.getCpdMaxMatches());
+    }
+
     private void storeLogFileName() {
         storePreferencesStore.setValue(LOG_FILENAME, preferences.getLogFileName());
     }
@@ -0,0 +1,294 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.profiler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.RuleContext;
+import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.RuleSetFactory;
+import net.sourceforge.pmd.RulesetsFactoryUtils;
+import net.sourceforge.pmd.eclipse.ui.actions.internal.InternalRuleSetUtil;
+import net.sourceforge.pmd.lang.ast.Node;
+import net.sourceforge.pmd.lang.rule.AbstractDelegateRule;
+
+/**
+ * Collects the execution times of the single rules, accumulated over all analysis runs since
+ * the profiler has been enabled or reset.
+ *
+ * <p>The rules are measured with a local timer: while the profiler is enabled, every rule is
+ * wrapped into a rule, that measures the time of its application. The wrapped rules are created
+ * once per analysis run, see {@link #timedRuleSets(List)}. They are applied directly to the whole
+ * file instead of through the rule chain. The timings of rules, that would be executed by the rule
+ * chain, are therefore not representative and are marked as such, see
+ * {@link TimingStatistics#isMeasuredWithoutRuleChain()}. The remaining time of the analysis - mostly
+ * the parser - is accounted as phase {@link #PHASE_PARSING_AND_OTHER}. The profiler is disabled by default.
+ */
+public final class RuleProfiler {
+    private static final Logger LOG = LoggerFactory.getLogger(RuleProfiler.class);
+
+    public static final String PHASE_PARSING_AND_OTHER = "Parsing and other";
+    public static final String PHASE_RULES = "Rules";
+    public static final String PHASE_TOTAL = "Total";
+
+    private static final RuleProfiler INSTANCE = new RuleProfiler();
+
+    private final Map<String, TimingStatistics> ruleStatistics = new ConcurrentHashMap<>();
+    private final Map<String, TimingStatistics> phaseStatistics = new ConcurrentHashMap<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean enabled;
+
+    /**
+     * Gets notified, whenever new measurements are available.
+     */
+    public interface Listener {
+        void statisticsChanged();
+    }
+
+    /**
+     * The rule sets of an analysis run, in which every rule is wrapped into a timed rule. They are
+     * created once and used for all the files of the run, one file after another.
+     */
+    public static final class TimedRuleSets {
+        private final List<RuleSet> sourceRuleSets;
+        private final List<RuleSet> ruleSets;
+        private Measurement current;
+
+        private TimedRuleSets(List<RuleSet> sourceRuleSets) {
+            this.sourceRuleSets = sourceRuleSets;
+            RuleSetFactory factory = RulesetsFactoryUtils.defaultFactory();
+            this.ruleSets = new ArrayList<>(sourceRuleSets.size());
+            for (RuleSet ruleSet : sourceRuleSets) {
+                List<Rule> timedRules = new ArrayList<>(ruleSet.size());
+                for (Rule rule : ruleSet.getRules()) {
+                    timedRules.add(new TimedRule(rule, this));
+                }
+                this.ruleSets.add(factory.createNewRuleSet(ruleSet.getName(), ruleSet.getDescription(),
+                        ruleSet.getFileName(), InternalRuleSetUtil.convert(ruleSet.getFileExclusions()),
+                        InternalRuleSetUtil.convert(ruleSet.getFileInclusions()), timedRules));
+            }
+        }
+
+        /**
+         * @return whether these rule sets wrap the given rule sets
+         */
+        public boolean wraps(List<RuleSet> ruleSets) {
+            return sourceRuleSets == ruleSets;
+        }
+
+        /**
+         * @return the rule sets, that must be used for the analysis, so that the rules are measured
+         */
+        public List<RuleSet> getRuleSets() {
+            return ruleSets;
+        }
+    }
+
+    /**
+     * The measurement of the analysis of one file.
+     */
+    public static final class Measurement {
+        private final long start = System.nanoTime();
+        private final Map<String, Long> nanosByRule = new HashMap<>();
+        private final Set<String> withoutRuleChain = new HashSet<>();
+
+        private Measurement() {
+            // created by the profiler
+        }
+
+        synchronized void add(Rule rule, long nanos) {
+            Long previous = nanosByRule.get(rule.getName());
+            nanosByRule.put(rule.getName(), previous == null ? nanos : previous + nanos);
+            if (rule.usesRuleChain()) {
+                withoutRuleChain.add(rule.getName());
+            }
+        }
+
+        synchronized Map<String, Long> getNanosByRule() {
+            return new HashMap<>(nanosByRule);
+        }
+
+        synchronized boolean isMeasuredWithoutRuleChain(String rule) {
+            return withoutRuleChain.contains(rule);
+        }
+    }
+
+    /**
+     * Measures the application of a rule. The rule is not part of the rule chain, as the rule
+     * chain visits the nodes with the underlying rule directly.
+     */
+    private static final class TimedRule extends AbstractDelegateRule {
+        private final TimedRuleSets owner;
+
+        TimedRule(Rule rule, TimedRuleSets owner) {
+            setRule(rule);
+            this.owner = owner;
+        }
+
+        @Override
+        public void apply(List<? extends Node> nodes, RuleContext ctx) {
+            long start = System.nanoTime();
+            try {
+                getRule().apply(nodes, ctx);
+            } finally {
+                Measurement measurement = owner.current;
+                if (measurement != null) {
+                    measurement.add(getRule(), System.nanoTime() - start);
+                }
+            }
+        }
+
+        @Override
+        public boolean usesRuleChain() {
+            return false;
+        }
+
+        @Override
+        public List<String> getRuleChainVisits() {
+            return new ArrayList<>();
+        }
+
+        @Override
+        public Rule deepCopy() {
+            return new TimedRule(getRule().deepCopy(), owner);
+        }
+    }
+
+    private RuleProfiler() {
+        // singleton
+    }
+
+    public static RuleProfiler getInstance() {
+        return INSTANCE;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Removes all measurements.
+     */
+    public void reset() {
+        ruleStatistics.clear();
+        phaseStatistics.clear();
+        fireStatisticsChanged();
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Wraps the rules of an analysis run, if the profiler is enabled.
+     *
+     * @param ruleSets the rule sets of the analysis run
+     * @return the timed rule sets or <code>null</code>, if the profiler is disabled
+     */
+    public TimedRuleSets timedRuleSets(List<RuleSet> ruleSets) {
+        if (!enabled) {
+            return null;
+        }
+        return new TimedRuleSets(ruleSets);
+    }
+
+    /**
+     * Starts the measurement for the analysis of a file. The file must be analyzed with the
+     * given timed rule sets and {@link #finishFile(TimedRuleSets, Measurement, String, String)}
+     * must be called in any case.
+     *
+     * @param ruleSets the timed rule sets, the file is analyzed with
+     * @return the measurement
+     */
+    public Measurement startFile(TimedRuleSets ruleSets) {
+        Measurement measurement = new Measurement();
+        ruleSets.current = measurement;
+        return measurement;
+    }
+
+    /**
+     * Finishes the measurement for the analysis of a file and adds the results.
+     *
+     * @param ruleSets the timed rule sets, the file has been analyzed with
+     * @param measurement the measurement of the file
+     * @param file the workspace path of the file
+     * @param language the name of the language of the file
+     */
+    public void finishFile(TimedRuleSets ruleSets, Measurement measurement, String file, String language) {
+        ruleSets.current = null;
+        long totalNanos = System.nanoTime() - measurement.start;
+        try {
+            addMeasurement(measurement, file, language, totalNanos);
+        } catch (RuntimeException e) {
+            LOG.warn("Could not collect the rule timings for {}: {}", file, e.toString(), e);
+        }
+        fireStatisticsChanged();
+    }
+
+    private void addMeasurement(Measurement measurement, String file, String language, long totalNanos) {
+        long rulesNanos = 0;
+        for (Map.Entry<String, Long> entry : measurement.getNanosByRule().entrySet()) {
+            statisticsFor(ruleStatistics, entry.getKey(), language,
+                    measurement.isMeasuredWithoutRuleChain(entry.getKey())).add(file, entry.getValue());
+            rulesNanos += entry.getValue();
+        }
+
+        statisticsFor(phaseStatistics, PHASE_PARSING_AND_OTHER, language, false).add(file,
+                Math.max(0, totalNanos - rulesNanos));
+        statisticsFor(phaseStatistics, PHASE_RULES, language, false).add(file, rulesNanos);
+        statisticsFor(phaseStatistics, PHASE_TOTAL, language, false).add(file, totalNanos);
+    }
+
+    private static synchronized TimingStatistics statisticsFor(Map<String, TimingStatistics> statistics,
+            String name, String language, boolean measuredWithoutRuleChain) {
+        String key = language + '\u0000' + name;
+        TimingStatistics result = statistics.get(key);
+        if (result == null) {
+            result = new TimingStatistics(name, language, measuredWithoutRuleChain);
+            statistics.put(key, result);
+        }
+        return result;
+    }
+
+    private void fireStatisticsChanged() {
+        for (Listener listener : listeners) {
+            listener.statisticsChanged();
+        }
+    }
+
+    /**
+     * @return the statistics per rule and language
+     */
+    public List<TimingStatistics> getRuleStatistics() {
+        return new ArrayList<>(ruleStatistics.values());
+    }
+
+    /**
+     * @return the statistics per phase ({@link #PHASE_PARSING_AND_OTHER}, {@link #PHASE_RULES},
+     *     {@link #PHASE_TOTAL}) and language
+     */
+    public List<TimingStatistics> getPhaseStatistics() {
+        return new ArrayList<>(phaseStatistics.values());
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.runtime.profiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The accumulated execution times of a rule or an analysis phase for one language.
+ * Only a fixed size random sample of the single measurements is kept to estimate the
+ * percentiles, so that the memory usage doesn't grow with the number of analyzed files.
+ *
+ * <p>This class is thread-safe.
+ */
+public final class TimingStatistics {
+    private static final int SAMPLE_SIZE = 1024;
+    private static final int SLOWEST_FILES = 10;
+    private static final double NANOS_PER_MILLI = 1000000.0;
+
+    private final String name;
+    private final String language;
+    private final boolean measuredWithoutRuleChain;
+    private final long[] samples = new long[SAMPLE_SIZE];
+    private final Random random = new Random();
+    private final List<FileTiming> slowestFiles = new ArrayList<>(SLOWEST_FILES + 1);
+    private int count;
+    private long totalNanos;
+
+    TimingStatistics(String name, String language, boolean measuredWithoutRuleChain) {
+        this.name = name;
+        this.language = language;
+        this.measuredWithoutRuleChain = measuredWithoutRuleChain;
+    }
+
+    synchronized void add(String file, long nanos) {
+        if (count < SAMPLE_SIZE) {
+            samples[count] = nanos;
+        } else {
+            // reservoir sampling: every measurement has the same chance to be in the sample
+            int index = random.nextInt(count + 1);
+            if (index < SAMPLE_SIZE) {
+                samples[index] = nanos;
+            }
+        }
+        count++;
+        totalNanos += nanos;
+        addSlowFile(file, nanos);
+    }
+
+    private void addSlowFile(String file, long nanos) {
+        for (int i = 0; i < slowestFiles.size(); i++) {
+            if (slowestFiles.get(i).getFile().equals(file)) {
+                if (slowestFiles.get(i).getNanos() < nanos) {
+                    slowestFiles.set(i, new FileTiming(file, nanos));
+                }
+                return;
+            }
+        }
+        slowestFiles.add(new FileTiming(file, nanos));
+        if (slowestFiles.size() > SLOWEST_FILES) {
+            slowestFiles.remove(Collections.min(slowestFiles, FileTiming.BY_DURATION));
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getLanguage() {
+        return language;
+    }
+
+    /**
+     * @return whether the rule would be executed by the rule chain, but has been measured without it.
+     *     The rule visits the whole file then, so its timings are not representative.
+     */
+    public boolean isMeasuredWithoutRuleChain() {
+        return measuredWithoutRuleChain;
+    }
+
+    /**
+     * @return the number of measurements, usually the number of analyzed files
+     */
+    public synchronized int getCount() {
+        return count;
+    }
+
+    public synchronized double getTotalMillis() {
+        return totalNanos / NANOS_PER_MILLI;
+    }
+
+    public synchronized double getMeanMillis() {
+        return count == 0 ? 0.0 : totalNanos / NANOS_PER_MILLI / count;
+    }
+
+    /**
+     * @return the 95th percentile of the measurements
+     */
+    public synchronized double getP95Millis() {
+        int size = Math.min(count, SAMPLE_SIZE);
+        if (size == 0) {
+            return 0.0;
+        }
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(size * 0.95) - 1;
+        return sorted[Math.max(0, index)] / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return the slowest files, the slowest first
+     */
+    public synchronized List<FileTiming> getSlowestFiles() {
+        List<FileTiming> result = new ArrayList<>(slowestFiles);
+        Collections.sort(result, Collections.reverseOrder(FileTiming.BY_DURATION));
+        return result;
+    }
+
+    /**
+     * The execution time for a single file.
+     */
+    public static final class FileTiming {
+        static final Comparator<FileTiming> BY_DURATION = new Comparator<FileTiming>() {
+            @Override
+            public int compare(FileTiming o1, FileTiming o2) {
+                return Long.compare(o1.nanos, o2.nanos);
+            }
+        };
+
+        private final String file;
+        private final long nanos;
+
+        FileTiming(String file, long nanos) {
+            this.file = file;
+            this.nanos = nanos;
+        }
+
+        /**
+         * @return the workspace path of the file
+         */
+        public String getFile() {
+            return file;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double getMillis() {
+            return nanos / NANOS_PER_MILLI;
+        }
+    }
+}
@@ -37,4 +37,22 @@ public interface IProjectPropertiesManager {
      *            the project
      */
     void removeProjectProperties(IProject project);
+
+    /**
+     * Invalidate the properties of all projects, because the rule set of the preferences has changed.
+     * The project rule sets are synchronized again, when the properties are loaded next.
+     */
+    void ruleSetChanged();
+
+    /**
+     * Invalidate the properties of the projects, whose rule set files outside of the workspace
+     * have been modified on disk. The files in the workspace are watched, the files outside of
+     * it are only checked by this method, e.g. once per build.
+     */
+    void checkExternalFiles();
+
+    /**
+     * Stop listening to the changes of the workspace, e.g. because the plugin is stopped.
+     */
+    void dispose();
 }
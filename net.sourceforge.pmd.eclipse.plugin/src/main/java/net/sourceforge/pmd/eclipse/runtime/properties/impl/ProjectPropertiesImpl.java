@@ -473,7 +473,7 @@ public class ProjectPropertiesImpl implements IProjectProperties {
     }
 
     @Override
-    public ClassLoader getAuxClasspath() {
+    public synchronized ClassLoader getAuxClasspath() {
         try {
             if (project != null && project.hasNature(JavaCore.NATURE_ID)) {
                 String projectName = project.getName();
@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.regex.Pattern;
 import javax.xml.bind.DataBindingException;
 import javax.xml.bind.JAXBContext;
@@ -29,7 +30,13 @@ import javax.xml.transform.stream.StreamSource;
 import org.apache.commons.io.IOUtils;
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.eclipse.ui.IWorkingSetManager;
 import org.eclipse.ui.PlatformUI;
 import org.slf4j.Logger;
@@ -39,6 +46,7 @@ import net.sourceforge.pmd.Rule;
 import net.sourceforge.pmd.RuleSet;
 import net.sourceforge.pmd.RuleSetLoadException;
 import net.sourceforge.pmd.RuleSetLoader;
+import net.sourceforge.pmd.eclipse.core.internal.RuleRegistry;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.builder.PMDNature;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
@@ -58,8 +66,23 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
 
     private static final JAXBContext JAXB_CONTEXT = initJaxbContext();
 
+    /** the content changes of the watched files, that invalidate the project properties. */
+    private static final int CHANGE_FLAGS = IResourceDelta.CONTENT | IResourceDelta.REPLACED
+            | IResourceDelta.MOVED_FROM | IResourceDelta.MOVED_TO;
+
     private final ConcurrentMap<IProject, ProjectPropertiesTimestampTupel> projectsProperties = new ConcurrentHashMap<>();
 
+    private final AtomicBoolean listening = new AtomicBoolean();
+
+    private final IResourceChangeListener resourceChangeListener = new IResourceChangeListener() {
+        @Override
+        public void resourceChanged(IResourceChangeEvent event) {
+            if (event.getDelta() != null) {
+                ProjectPropertiesManagerImpl.this.resourceChanged(event.getDelta());
+            }
+        }
+    };
+
     private static JAXBContext initJaxbContext() {
         try {
             return JAXBContext.newInstance(ProjectPropertiesTO.class);
@@ -69,17 +92,25 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
     }
 
     /**
-     * Load a project properties.
+     * Load a project properties. The properties are read and synchronized only, when they are loaded
+     * the first time or when they have been invalidated since, see {@link #resourceChanged(IResourceDelta)}
+     * and {@link #checkExternalFiles()}.
      *
      * @param project
      *            a project
      */
     @Override
     public IProjectProperties loadProjectProperties(final IProject project) throws PropertiesException {
+        ProjectPropertiesTimestampTupel projectPropertiesTupel = this.projectsProperties.get(project);
+        if (projectPropertiesTupel != null && projectPropertiesTupel.isUpToDate()) {
+            return projectPropertiesTupel.getProjectProperties();
+        }
+
         LOG.debug("Loading project properties for project {}", project.getName());
+        listenToResourceChanges();
         try {
-            ProjectPropertiesTimestampTupel projectPropertiesTupel = this.projectsProperties.get(project);
             final IProjectProperties projectProperties;
+            final long generation;
             if (projectPropertiesTupel == null) {
                 LOG.debug("Creating new poject properties for {}", project.getName());
                 IProjectProperties projectPropertiesNew = new PropertiesFactoryImpl().newProjectProperties(project, this);
@@ -91,16 +122,21 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
                 } else {
                     LOG.debug("project properties already existed for {}", project.getName());
                 }
+                generation = projectPropertiesTupel.getGeneration();
                 projectProperties = projectPropertiesTupel.getProjectProperties();
-            } else if (projectPropertiesTupel.isOutOfSync()) {
-                LOG.info("Project properties for project {} have been changed on disk - reloading", project.getName());
-                projectProperties = projectPropertiesTupel.getProjectProperties();
-                final ProjectPropertiesTO to = readProjectProperties(project);
-                fillProjectProperties(projectProperties, to);
-                projectProperties.setNeedRebuild(true);
             } else {
-                LOG.debug("Project properties found and are up to date for project {}", project.getName());
-                projectProperties = projectPropertiesTupel.getProjectProperties();
+                generation = projectPropertiesTupel.getGeneration();
+                if (projectPropertiesTupel.isOutOfSync()) {
+                    LOG.info("Project properties for project {} have been changed on disk - reloading",
+                            project.getName());
+                    projectProperties = projectPropertiesTupel.getProjectProperties();
+                    final ProjectPropertiesTO to = readProjectProperties(project);
+                    fillProjectProperties(projectProperties, to);
+                    projectProperties.setNeedRebuild(true);
+                } else {
+                    LOG.debug("Project properties found and are up to date for project {}", project.getName());
+                    projectProperties = projectPropertiesTupel.getProjectProperties();
+                }
             }
 
             // if the ruleset is stored in the project reload it when it changed on disk (modification time stamp)
@@ -112,6 +148,7 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
                 projectProperties.setNeedRebuild(projectProperties.isNeedRebuild() || needRebuild);
             }
 
+            validated(projectPropertiesTupel, generation);
             return projectProperties;
 
         } catch (CoreException e) {
@@ -120,6 +157,90 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
         }
     }
 
+    /**
+     * Marks the loaded properties as up to date. The rule set files in the workspace are watched by
+     * the resource change listener, the rule set files outside of the workspace are checked by
+     * {@link #checkExternalFiles()}. A missing rule set file can't be watched, so the properties
+     * of such a project are synchronized on every load, as before.
+     */
+    private void validated(ProjectPropertiesTimestampTupel projectPropertiesTupel, long generation) {
+        IProjectProperties projectProperties = projectPropertiesTupel.getProjectProperties();
+        List<IPath> ruleSetPaths = new ArrayList<>();
+        List<File> externalFiles = new ArrayList<>();
+        boolean watchable = true;
+        try {
+            if (projectProperties.isRuleSetStoredInProject()) {
+                List<File> ruleSetFiles = projectProperties.getResolvedRuleSetFiles();
+                watchable = ruleSetFiles.size() == projectProperties.getRuleSetFile().split(",").length;
+                IWorkspaceRoot root = projectProperties.getProject().getWorkspace().getRoot();
+                for (File ruleSetFile : ruleSetFiles) {
+                    IFile[] files = root.findFilesForLocationURI(ruleSetFile.toURI());
+                    if (files.length == 0) {
+                        externalFiles.add(ruleSetFile);
+                    }
+                    for (IFile file : files) {
+                        ruleSetPaths.add(file.getFullPath());
+                    }
+                }
+            }
+        } catch (PropertiesException e) {
+            LOG.debug("Couldn't determine the rule set files of project {}", projectProperties.getProject(), e);
+            watchable = false;
+        }
+        projectPropertiesTupel.validated(generation, ruleSetPaths, externalFiles, watchable);
+    }
+
+    private void listenToResourceChanges() {
+        if (listening.compareAndSet(false, true)) {
+            ResourcesPlugin.getWorkspace().addResourceChangeListener(resourceChangeListener,
+                    IResourceChangeEvent.POST_CHANGE);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        if (listening.compareAndSet(true, false)) {
+            ResourcesPlugin.getWorkspace().removeResourceChangeListener(resourceChangeListener);
+        }
+        // without the listener, the cached properties wouldn't be invalidated anymore
+        projectsProperties.clear();
+    }
+
+    /**
+     * Invalidates the properties of the projects, whose properties file or rule set files have
+     * been changed, so that they are read again on the next load.
+     */
+    private void resourceChanged(IResourceDelta delta) {
+        for (ProjectPropertiesTimestampTupel projectPropertiesTupel : projectsProperties.values()) {
+            for (IPath path : projectPropertiesTupel.getWatchedPaths()) {
+                IResourceDelta member = delta.findMember(path);
+                if (member != null && isChanged(member)) {
+                    LOG.debug("{} has been changed, invalidating the project properties", path);
+                    projectPropertiesTupel.invalidate();
+                    break;
+                }
+            }
+        }
+    }
+
+    private static boolean isChanged(IResourceDelta delta) {
+        return delta.getKind() != IResourceDelta.CHANGED || (delta.getFlags() & CHANGE_FLAGS) != 0;
+    }
+
+    @Override
+    public void checkExternalFiles() {
+        for (ProjectPropertiesTimestampTupel projectPropertiesTupel : projectsProperties.values()) {
+            projectPropertiesTupel.checkExternalFiles();
+        }
+    }
+
+    @Override
+    public void ruleSetChanged() {
+        for (ProjectPropertiesTimestampTupel projectPropertiesTupel : projectsProperties.values()) {
+            projectPropertiesTupel.invalidate();
+        }
+    }
+
     @Override
     public void storeProjectProperties(IProjectProperties projectProperties) throws PropertiesException {
         LOG.debug("Storing project properties for project {}", projectProperties.getProject().getName());
@@ -262,8 +383,9 @@ public class ProjectPropertiesManagerImpl implements IProjectPropertiesManager {
         }
 
         List<Rule> rulesToAdd = new ArrayList<>();
+        RuleRegistry registry = RuleRegistry.getInstance();
         for (String ruleName : ruleNamesToAdd) {
-            Rule rule = pluginRuleSet.getRuleByName(ruleName);
+            Rule rule = registry.getRule(ruleName);
             if (rule != null) {
                 rulesToAdd.add(rule);
             } else {
@@ -5,17 +5,31 @@
 package net.sourceforge.pmd.eclipse.runtime.properties.impl;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.eclipse.core.resources.IFile;
 import org.eclipse.core.resources.IProject;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IPath;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import net.sourceforge.pmd.eclipse.core.internal.FileModificationUtil;
 import net.sourceforge.pmd.eclipse.runtime.properties.IProjectProperties;
 
+/**
+ * The cached properties of a project. Once they have been loaded and synchronized, they are
+ * up to date, until the properties file or one of the rule set files changes in the workspace
+ * or the rule set of the preferences changes.
+ *
+ * <p>Rule set files outside of the workspace are not watched by the workspace. Their modification
+ * timestamps are compared only by an explicit {@link #checkExternalFiles()}, so that loading the
+ * properties doesn't ask the file system.
+ */
 class ProjectPropertiesTimestampTupel {
     private static final Logger LOG = LoggerFactory.getLogger(ProjectPropertiesTimestampTupel.class);
 
@@ -24,6 +38,17 @@ class ProjectPropertiesTimestampTupel {
     private final IProjectProperties projectProperties;
     private long lastReadTimestamp;
 
+    /** incremented by every invalidation - guarded by this. */
+    private long generation;
+    private volatile boolean upToDate;
+    /** the rule set files in the workspace, the properties depend on. */
+    private volatile List<IPath> ruleSetPaths = Collections.emptyList();
+    /**
+     * the rule set files outside of the workspace and their timestamps, when the properties have
+     * been validated, <code>null</code> if there are none.
+     */
+    private volatile FileTimestamps externalTimestamps;
+
     ProjectPropertiesTimestampTupel(IProjectProperties projectProperties) {
         super();
         this.projectProperties = projectProperties;
@@ -38,6 +63,61 @@ class ProjectPropertiesTimestampTupel {
         return projectProperties.getProject();
     }
 
+    /**
+     * @return whether the properties can be used as they are, without reading them again
+     */
+    boolean isUpToDate() {
+        return upToDate;
+    }
+
+    synchronized long getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Marks the properties as up to date, unless they have been invalidated since the given
+     * generation.
+     *
+     * @param synchronizedGeneration the generation, before the properties have been synchronized
+     * @param paths the rule set files in the workspace, the properties depend on
+     * @param externalFiles the rule set files outside of the workspace, the properties depend on
+     * @param watchable <code>false</code> if the properties depend on files, that can't be checked
+     */
+    synchronized void validated(long synchronizedGeneration, Collection<IPath> paths, Collection<File> externalFiles,
+            boolean watchable) {
+        ruleSetPaths = Collections.unmodifiableList(new ArrayList<>(paths));
+        externalTimestamps = externalFiles.isEmpty() ? null : new FileTimestamps(new ArrayList<>(externalFiles));
+        upToDate = watchable && generation == synchronizedGeneration;
+    }
+
+    /**
+     * Invalidates the properties, if one of the rule set files outside of the workspace has been
+     * modified since the properties have been validated.
+     */
+    void checkExternalFiles() {
+        FileTimestamps timestamps = externalTimestamps;
+        if (upToDate && timestamps != null && timestamps.isModified()) {
+            LOG.debug("A rule set file of project {} has been changed on disk, invalidating the project properties",
+                    getProject().getName());
+            invalidate();
+        }
+    }
+
+    synchronized void invalidate() {
+        generation++;
+        upToDate = false;
+    }
+
+    /**
+     * @return the properties file and the rule set files in the workspace, the properties depend on
+     */
+    List<IPath> getWatchedPaths() {
+        List<IPath> paths = new ArrayList<>(ruleSetPaths.size() + 1);
+        paths.add(getProject().getFile(PROPERTIES_FILE).getFullPath());
+        paths.addAll(ruleSetPaths);
+        return paths;
+    }
+
     boolean isOutOfSync() throws CoreException {
         IProject project = projectProperties.getProject();
         IFile propertiesFile = project.getFile(PROPERTIES_FILE);
@@ -60,7 +140,36 @@ class ProjectPropertiesTimestampTupel {
         IProject project = projectProperties.getProject();
         IFile propertiesFile = project.getFile(PROPERTIES_FILE);
 
-        File propertiesFileReal = propertiesFile.getLocation().toFile();
-        return FileModificationUtil.getFileModificationTimestamp(propertiesFileReal);
+        // e.g. a project, that is not stored in the local file system
+        IPath location = propertiesFile.getLocation();
+        if (location == null) {
+            return 0L;
+        }
+        return FileModificationUtil.getFileModificationTimestamp(location.toFile());
+    }
+
+    /**
+     * The modification timestamps of some files on disk.
+     */
+    private static final class FileTimestamps {
+        private final File[] files;
+        private final long[] timestamps;
+
+        FileTimestamps(List<File> files) {
+            this.files = files.toArray(new File[0]);
+            timestamps = new long[this.files.length];
+            for (int i = 0; i < this.files.length; i++) {
+                timestamps[i] = FileModificationUtil.getFileModificationTimestamp(this.files[i]);
+            }
+        }
+
+        boolean isModified() {
+            for (int i = 0; i < files.length; i++) {
+                if (FileModificationUtil.getFileModificationTimestamp(files[i]) != timestamps[i]) {
+                    return true;
+                }
+            }
+            return false;
+        }
     }
 }
@@ -92,6 +92,7 @@ public final class PMDUiConstants {
     public static final String ID_DATAFLOWVIEW = PLUGIN_ID + ".views.dataflowView";
     public static final String ID_CPDVIEW = PLUGIN_ID + ".views.CPDView";
     public static final String ID_CPDVIEW2 = PLUGIN_ID + ".views.br.CPDView2";
+    public static final String ID_RULE_TIMINGS = PLUGIN_ID + ".views.ruleTimings";
 
     public static final String MEMENTO_OUTLINE_FILE = "/violationOutline_memento.xml";
     public static final String MEMENTO_OVERVIEW_FILE = "/violationOverview_memento.xml";
@@ -9,7 +9,6 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.eclipse.core.resources.IResource;
-import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jface.resource.ImageDescriptor;
 import org.eclipse.jface.viewers.IDecoration;
 import org.eclipse.jface.viewers.ILabelProviderListener;
@@ -17,9 +16,7 @@ import org.eclipse.jface.viewers.ILightweightLabelDecorator;
 import org.eclipse.jface.viewers.LabelProviderChangedEvent;
 
 import net.sourceforge.pmd.RulePriority;
-import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
-import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
-import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerIndex;
 import net.sourceforge.pmd.eclipse.ui.priority.PriorityDescriptorCache;
 import net.sourceforge.pmd.eclipse.ui.views.PriorityFilter;
 
@@ -76,12 +73,8 @@ public class RuleLabelDecorator implements ILightweightLabelDecorator {
 
         IResource resource = (IResource) element;
 
-        Set<Integer> range = null;
-        try {
-            range = MarkerUtil.priorityRangeOf(resource, PMDRuntimeConstants.RULE_MARKER_TYPES, 5);
-        } catch (CoreException e1) {
-            return;
-        }
+        // answered by the marker index, without searching the workspace
+        Set<Integer> range = MarkerIndex.getInstance().prioritiesIn(resource);
 
         if (range.isEmpty()) {
             return;
@@ -103,13 +96,6 @@ public class RuleLabelDecorator implements ILightweightLabelDecorator {
 
         ImageDescriptor overlay = PriorityDescriptorCache.INSTANCE.descriptorFor(RulePriority.valueOf(highestPriority)).getAnnotationImageDescriptor();
 
-        try {
-            boolean hasMarkers = MarkerUtil.hasAnyRuleMarkers(resource);
-            if (hasMarkers) {
-                decoration.addOverlay(overlay);
-            }
-        } catch (CoreException e) {
-            PMDPlugin.getDefault().logError("Error while adding overlay icon", e);
-        }
+        decoration.addOverlay(overlay);
     }
 }
@@ -73,6 +73,7 @@ public class PMDCheckAction extends AbstractUIAction {
      */
     private void reviewSelectedResources(IStructuredSelection selection) {
         ReviewCodeCmd cmd = new ReviewCodeCmd();
+        cmd.setRetainMarkers(false);
 
         // Add selected resources to the list of resources to be reviewed
         for (Iterator<?> i = selection.iterator(); i.hasNext();) {
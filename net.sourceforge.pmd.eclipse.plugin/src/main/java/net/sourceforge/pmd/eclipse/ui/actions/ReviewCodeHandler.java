@@ -77,6 +77,7 @@ public class ReviewCodeHandler extends AbstractHandler {
                 // separate one for each thread
                 ReviewCodeCmd cmd = new ReviewCodeCmd(); 
                 cmd.reset();
+                cmd.setRetainMarkers(false);
 
                 for (IResource rsc : fResources) {
                     cmd.addResource(rsc);
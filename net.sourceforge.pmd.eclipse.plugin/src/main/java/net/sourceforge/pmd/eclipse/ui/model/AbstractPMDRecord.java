@@ -119,8 +119,9 @@ public abstract class AbstractPMDRecord {
     public abstract int getNumberOfMethods();
 
     /**
-     * Creates the children Elements. This method should be called in every
-     * Constructor to create a Model recursively.
+     * Creates the children Elements. The records call this method, when their
+     * children are requested for the first time, so that the Model is only
+     * created for the Elements, that are actually shown.
      *
      * @return an Array of child-Records for the Element.
      */
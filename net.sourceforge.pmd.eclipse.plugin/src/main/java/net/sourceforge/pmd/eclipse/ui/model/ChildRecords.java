@@ -0,0 +1,48 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.ui.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The children of a record, indexed by the element they represent (a project, a package
+ * fragment, a folder or a file), so that a record is found, added and removed in constant time.
+ * The array returned by {@link #toArray()} is created once after every modification.
+ *
+ * @param <K> the type of the key
+ */
+final class ChildRecords<K> {
+    private final Map<K, AbstractPMDRecord> records = new LinkedHashMap<>();
+    private AbstractPMDRecord[] array;
+
+    AbstractPMDRecord get(K key) {
+        return records.get(key);
+    }
+
+    void put(K key, AbstractPMDRecord record) {
+        records.put(key, record);
+        array = null;
+    }
+
+    AbstractPMDRecord remove(K key) {
+        AbstractPMDRecord removed = records.remove(key);
+        if (removed != null) {
+            array = null;
+        }
+        return removed;
+    }
+
+    boolean isEmpty() {
+        return records.isEmpty();
+    }
+
+    AbstractPMDRecord[] toArray() {
+        if (array == null) {
+            array = records.values().toArray(new AbstractPMDRecord[0]);
+        }
+        return array;
+    }
+}
@@ -4,9 +4,9 @@
 
 package net.sourceforge.pmd.eclipse.ui.model;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -27,7 +27,9 @@ import org.eclipse.jdt.core.JavaModelException;
 
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerIndex;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
 /**
@@ -62,7 +64,6 @@ public class FileRecord extends AbstractPMDRecord {
         this.parent = null;
         this.numberOfLOC = 0;
         this.numberOfMethods = 0;
-        this.children = createChildren();
     }
 
     /**
@@ -82,7 +83,7 @@ public class FileRecord extends AbstractPMDRecord {
         this.parent = record;
         this.numberOfLOC = 0;
         this.numberOfMethods = 0;
-        this.children = createChildren();
+        FileStatisticsService.getInstance().applyCached(this);
     }
 
     /**
@@ -102,7 +103,7 @@ public class FileRecord extends AbstractPMDRecord {
         this.parent = record;
         this.numberOfLOC = 0;
         this.numberOfMethods = 0;
-        this.children = createChildren();
+        FileStatisticsService.getInstance().applyCached(this);
     }
 
     public long getTimestamp() {
@@ -122,6 +123,10 @@ public class FileRecord extends AbstractPMDRecord {
      */
     @Override
     public AbstractPMDRecord[] getChildren() {
+        // the markers are only grouped, when they are needed for the first time
+        if (children == null) {
+            children = createChildren();
+        }
         return children; // NOPMD by Sven on 13.11.06 11:57
     }
 
@@ -200,14 +205,10 @@ public class FileRecord extends AbstractPMDRecord {
     @Override
     public final IMarker[] findMarkers() {
 
-        try {
-            // this is the overwritten Function from AbstractPMDRecord
-            // we simply call the IResource-function to find Markers
-            if (resource.isAccessible()) {
-                return MarkerUtil.findMarkers(resource, PMDRuntimeConstants.RULE_MARKER_TYPES);
-            }
-        } catch (CoreException ce) {
-            PMDPlugin.getDefault().logError(StringKeys.ERROR_FIND_MARKER + this.toString(), ce);
+        // this is the overwritten Function from AbstractPMDRecord
+        // the markers are taken from the index instead of searching the workspace
+        if (resource.isAccessible()) {
+            return MarkerIndex.getInstance().findMarkers(resource);
         }
 
         return MarkerUtil.EMPTY_MARKERS;
@@ -242,6 +243,16 @@ public class FileRecord extends AbstractPMDRecord {
      */
     @Override
     public IMarker[] findMarkersByAttribute(String attributeName, Object value) {
+        // the index knows the priorities and rule names of the markers
+        if (resource.isAccessible() && PMDUiConstants.KEY_MARKERATT_PRIORITY.equals(attributeName)
+                && value instanceof Integer) {
+            return MarkerIndex.getInstance().findMarkers(resource, (Integer) value);
+        }
+        if (resource.isAccessible() && PMDUiConstants.KEY_MARKERATT_RULENAME.equals(attributeName)
+                && value instanceof String) {
+            return MarkerIndex.getInstance().findMarkers(resource, (String) value);
+        }
+
         final IMarker[] markers = findMarkers();
         final List<IMarker> attributeMarkers = new ArrayList<>();
         try {
@@ -333,10 +344,12 @@ public class FileRecord extends AbstractPMDRecord {
     protected String resourceToString(IResource resource) {
         final StringBuilder fileContents = new StringBuilder();
         IFile file = (IFile) resource.getAdapter(IFile.class);
-        try (BufferedReader bReader = new BufferedReader(new InputStreamReader(file.getContents(), file.getCharset()))) {
-            // ... and read the File line by line
-            while (bReader.ready()) {
-                fileContents.append(bReader.readLine()).append('\n');
+        try (Reader reader = new InputStreamReader(file.getContents(), file.getCharset())) {
+            // Reader.ready() is not reliable to detect the end of the file, so read until -1
+            final char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                fileContents.append(buffer, 0, read);
             }
         } catch (CoreException e) {
             PMDPlugin.getDefault()
@@ -345,6 +358,10 @@ public class FileRecord extends AbstractPMDRecord {
             PMDPlugin.getDefault().logError(StringKeys.ERROR_IO_EXCEPTION + this.toString(), ioe);
         }
 
+        // linesOfCodeIn expects the content to end with a line break
+        if (fileContents.length() > 0 && fileContents.charAt(fileContents.length() - 1) != '\n') {
+            fileContents.append('\n');
+        }
         return fileContents.toString();
     }
 
@@ -372,12 +389,18 @@ public class FileRecord extends AbstractPMDRecord {
                     PMDPlugin.getDefault().logError(StringKeys.ERROR_JAVAMODEL_EXCEPTION + toString(), jme);
                 }
             }
-            if (!methods.isEmpty()) {
-                numberOfMethods = methods.size();
-            }
+            numberOfMethods = methods.size();
         }
     }
 
+    /**
+     * Sets the statistics, that have been calculated before.
+     */
+    void setStatistics(int linesOfCode, int methods) {
+        numberOfLOC = linesOfCode;
+        numberOfMethods = methods;
+    }
+
     /**
      * Gets the Number of Methods, this class contains.
      *
@@ -415,11 +438,7 @@ public class FileRecord extends AbstractPMDRecord {
 
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, false);
-        }
-        return number;
+        // counted by the marker index, so the markers don't need to be grouped
+        return MarkerIndex.getInstance().countMarkers(resource, prio);
     }
 }
@@ -0,0 +1,471 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.ui.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.core.resources.IResource;
+import org.eclipse.core.resources.IResourceChangeEvent;
+import org.eclipse.core.resources.IResourceChangeListener;
+import org.eclipse.core.resources.IResourceDelta;
+import org.eclipse.core.resources.IResourceDeltaVisitor;
+import org.eclipse.core.resources.IWorkspace;
+import org.eclipse.core.resources.IWorkspaceRoot;
+import org.eclipse.core.resources.ResourcesPlugin;
+import org.eclipse.core.runtime.CoreException;
+import org.eclipse.core.runtime.IProgressMonitor;
+import org.eclipse.core.runtime.IStatus;
+import org.eclipse.core.runtime.Status;
+import org.eclipse.core.runtime.jobs.Job;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
+
+/**
+ * Calculates the lines of code and the number of methods of the files shown in the violations
+ * overview. The values are calculated in the background on several threads and are cached by the
+ * modification stamp of the files. The cache is kept in the state location of the plugin, so that
+ * the values are still available in the next session. The cache is read in the background, values
+ * of deleted files are dropped. Listeners are notified, whenever new values are available.
+ */
+public final class FileStatisticsService implements IResourceChangeListener {
+    private static final Logger LOG = LoggerFactory.getLogger(FileStatisticsService.class);
+
+    private static final String CACHE_FILE = "fileStatistics.dat";
+    private static final int FORMAT_VERSION = 1;
+    /** the number of files, after which the listeners are notified. */
+    private static final int NOTIFICATION_CHUNK = 100;
+
+    private static final FileStatisticsService INSTANCE = new FileStatisticsService();
+
+    private final ConcurrentMap<String, Statistics> cache = new ConcurrentHashMap<>();
+    private final Set<FileRecord> pending = new LinkedHashSet<>();
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private Job job;
+    private IWorkspace workspace;
+    private volatile boolean loaded;
+    private volatile boolean dirty;
+
+    /**
+     * Gets notified, whenever statistics have been calculated.
+     */
+    public interface Listener {
+        /**
+         * @param records the file records, that got new values. Called from a background thread.
+         */
+        void statisticsCalculated(Collection<FileRecord> records);
+    }
+
+    private FileStatisticsService() {
+        // singleton
+    }
+
+    public static FileStatisticsService getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts to listen for deleted files and reads the cached values in the background.
+     *
+     * @param workspace the workspace
+     */
+    public void start(IWorkspace workspace) {
+        synchronized (this) {
+            this.workspace = workspace;
+        }
+        workspace.addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
+
+        Job loadJob = new Job("Loading PMD file statistics") {
+            @Override
+            protected IStatus run(IProgressMonitor monitor) {
+                ensureLoaded();
+                return Status.OK_STATUS;
+            }
+        };
+        loadJob.setSystem(true);
+        loadJob.schedule();
+    }
+
+    /**
+     * Stops listening for deleted files and writes the cached values.
+     */
+    public void stop() {
+        IWorkspace current;
+        synchronized (this) {
+            current = workspace;
+            workspace = null;
+        }
+        if (current != null) {
+            current.removeResourceChangeListener(this);
+        }
+        persist();
+    }
+
+    @Override
+    public void resourceChanged(IResourceChangeEvent event) {
+        IResourceDelta delta = event.getDelta();
+        if (delta == null) {
+            return;
+        }
+        try {
+            delta.accept(new IResourceDeltaVisitor() {
+                @Override
+                public boolean visit(IResourceDelta child) {
+                    if (child.getKind() == IResourceDelta.REMOVED) {
+                        remove(child.getResource());
+                        return false;
+                    }
+                    return true;
+                }
+            });
+        } catch (CoreException e) {
+            LOG.warn("Couldn't remove the statistics of deleted files: {}", e.toString(), e);
+        }
+    }
+
+    /**
+     * Removes the values of a deleted or moved resource and - if it is a container - of all its members.
+     */
+    private void remove(IResource resource) {
+        String key = keyFor(resource);
+        if (resource.getType() == IResource.FILE) {
+            if (cache.remove(key) != null) {
+                dirty = true;
+            }
+            return;
+        }
+        String prefix = key + '/';
+        Iterator<String> keys = cache.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+                dirty = true;
+            }
+        }
+    }
+
+    /**
+     * @param resource a file
+     * @return whether values are cached for the file, even if they are outdated
+     */
+    public boolean isCached(IResource resource) {
+        return cache.containsKey(keyFor(resource));
+    }
+
+    /**
+     * Sets the cached values on the record, if the file hasn't been modified since they have
+     * been calculated. Doesn't wait for the cache to be read, so that it can be called from the
+     * UI thread.
+     *
+     * @return <code>true</code> if cached values have been found
+     */
+    boolean applyCached(FileRecord record) {
+        if (!loaded) {
+            return false;
+        }
+        IResource resource = record.getResource();
+        Statistics statistics = cache.get(keyFor(resource));
+        if (statistics != null && statistics.modificationStamp == resource.getModificationStamp()) {
+            record.setStatistics(statistics.linesOfCode, statistics.methods);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds up the cached values of the given files, that haven't been modified since they have
+     * been calculated. Used for the totals of a package or folder, whose file records haven't
+     * been created yet. Doesn't wait for the cache to be read.
+     *
+     * @param files the files
+     * @return the lines of code and the number of methods
+     */
+    int[] cachedTotals(Collection<IResource> files) {
+        int[] totals = new int[2];
+        if (!loaded) {
+            return totals;
+        }
+        for (IResource file : files) {
+            Statistics statistics = cache.get(keyFor(file));
+            if (statistics != null && statistics.modificationStamp == file.getModificationStamp()) {
+                totals[0] += statistics.linesOfCode;
+                totals[1] += statistics.methods;
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Calculates the statistics of the given files in the background. Files with valid cached
+     * values get them immediately.
+     *
+     * @param records the file records
+     * @param user whether the calculation has been requested explicitly by the user
+     */
+    public void calculate(Collection<FileRecord> records, boolean user) {
+        List<FileRecord> cached = new ArrayList<>();
+        boolean added = false;
+        synchronized (pending) {
+            for (FileRecord record : records) {
+                if (applyCached(record)) {
+                    cached.add(record);
+                } else {
+                    added |= pending.add(record);
+                }
+            }
+        }
+        if (!cached.isEmpty()) {
+            fireStatisticsCalculated(cached);
+        }
+        if (added) {
+            scheduleJob(user);
+        }
+    }
+
+    private synchronized void scheduleJob(boolean user) {
+        if (job == null) {
+            job = new CalculationJob();
+        }
+        job.setUser(user);
+        job.schedule();
+    }
+
+    private void fireStatisticsCalculated(Collection<FileRecord> records) {
+        Collection<FileRecord> unmodifiable = Collections.unmodifiableCollection(records);
+        for (Listener listener : listeners) {
+            listener.statisticsCalculated(unmodifiable);
+        }
+    }
+
+    private static String keyFor(IResource resource) {
+        return resource.getFullPath().toString();
+    }
+
+    private List<FileRecord> takePending() {
+        synchronized (pending) {
+            List<FileRecord> result = new ArrayList<>(pending);
+            pending.clear();
+            return result;
+        }
+    }
+
+    private void calculate(FileRecord record) {
+        if (applyCached(record)) {
+            // the record has been created before the cache was read
+            return;
+        }
+        IResource resource = record.getResource();
+        // the stamp before reading, so that a concurrent change invalidates the value
+        long modificationStamp = resource.getModificationStamp();
+        record.calculateLinesOfCode();
+        record.calculateNumberOfMethods();
+        if (modificationStamp != IResource.NULL_STAMP) {
+            cache.put(keyFor(resource),
+                    new Statistics(modificationStamp, record.getLOC(), record.getNumberOfMethods()));
+            dirty = true;
+        }
+    }
+
+    private File cacheFile() {
+        return PMDPlugin.getDefault().getStateLocation().append(CACHE_FILE).toFile();
+    }
+
+    /**
+     * Reads the cached values, if not done yet. Values of files, that have been deleted while the
+     * plugin was not running, are dropped.
+     */
+    private synchronized void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        File file = cacheFile();
+        if (file.isFile()) {
+            read(file);
+        }
+        loaded = true;
+    }
+
+    private void read(File file) {
+        IWorkspaceRoot root = ResourcesPlugin.getWorkspace().getRoot();
+        Map<String, Statistics> values = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                LOG.debug("Ignoring file statistics {} with unknown format", file);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                Statistics statistics = new Statistics(in.readLong(), in.readInt(), in.readInt());
+                if (root.findMember(key) != null) {
+                    values.put(key, statistics);
+                } else {
+                    dirty = true;
+                }
+            }
+        } catch (IOException e) {
+            // the statistics are just calculated again
+            LOG.warn("Couldn't read file statistics {}: {}", file, e.toString());
+            return;
+        }
+        for (Map.Entry<String, Statistics> entry : values.entrySet()) {
+            // values calculated in the meantime are newer
+            cache.putIfAbsent(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Writes the cached values to the state location, if they have been modified.
+     */
+    public synchronized void persist() {
+        // without the read values, the file would lose them
+        if (!dirty || !loaded) {
+            return;
+        }
+        dirty = false;
+        File file = cacheFile();
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file.toPath())))) {
+            List<Map.Entry<String, Statistics>> entries = new ArrayList<>(cache.entrySet());
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Statistics> entry : entries) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().modificationStamp);
+                out.writeInt(entry.getValue().linesOfCode);
+                out.writeInt(entry.getValue().methods);
+            }
+        } catch (IOException e) {
+            PMDPlugin.getDefault().logError("Couldn't write file statistics " + file, e);
+        }
+    }
+
+    private static final class Statistics {
+        private final long modificationStamp;
+        private final int linesOfCode;
+        private final int methods;
+
+        Statistics(long modificationStamp, int linesOfCode, int methods) {
+            this.modificationStamp = modificationStamp;
+            this.linesOfCode = linesOfCode;
+            this.methods = methods;
+        }
+    }
+
+    /**
+     * Calculates the pending files on a pool of threads. Files, that are requested while the
+     * job is running, are calculated in the same run.
+     */
+    private final class CalculationJob extends Job {
+
+        CalculationJob() {
+            super(PMDPlugin.getDefault().getStringTable().getString(StringKeys.MONITOR_CALC_STATS_TASK));
+            setSystem(false);
+            setPriority(Job.LONG);
+        }
+
+        @Override
+        protected IStatus run(IProgressMonitor monitor) {
+            int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+            ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                private final AtomicInteger counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "PMD Statistics " + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+            try {
+                ensureLoaded();
+                List<FileRecord> records = takePending();
+                while (!records.isEmpty() && !monitor.isCanceled()) {
+                    calculateAll(records, executor, monitor);
+                    records = takePending();
+                }
+            } finally {
+                executor.shutdownNow();
+                persist();
+            }
+            if (monitor.isCanceled()) {
+                takePending();
+                return Status.CANCEL_STATUS;
+            }
+            return Status.OK_STATUS;
+        }
+
+        private void calculateAll(List<FileRecord> records, ExecutorService executor, IProgressMonitor monitor) {
+            monitor.beginTask(getName(), records.size());
+            List<Future<FileRecord>> futures = new ArrayList<>(records.size());
+            for (final FileRecord record : records) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        calculate(record);
+                    }
+                }, record));
+            }
+
+            List<FileRecord> calculated = new ArrayList<>(NOTIFICATION_CHUNK);
+            for (Future<FileRecord> future : futures) {
+                if (monitor.isCanceled()) {
+                    break;
+                }
+                try {
+                    calculated.add(future.get());
+                } catch (ExecutionException e) {
+                    LOG.warn("Couldn't calculate the statistics: {}", e.getCause().toString(), e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                monitor.worked(1);
+                if (calculated.size() >= NOTIFICATION_CHUNK) {
+                    fireStatisticsCalculated(calculated);
+                    calculated = new ArrayList<>(NOTIFICATION_CHUNK);
+                }
+            }
+            if (!calculated.isEmpty()) {
+                fireStatisticsCalculated(calculated);
+            }
+            monitor.done();
+        }
+    }
+}
@@ -12,12 +12,13 @@ import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerIndex;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
 public class FolderRecord extends AbstractPMDRecord {
     private final IFolder folder;
     private final ProjectRecord parent;
-    private AbstractPMDRecord[] children;
+    private ChildRecords<IResource> children;
 
     public FolderRecord(IFolder folder, ProjectRecord record) {
         super();
@@ -32,7 +33,6 @@ public class FolderRecord extends AbstractPMDRecord {
 
         this.folder = folder;
         this.parent = record;
-        this.children = createChildren();
     }
 
     @Override
@@ -42,7 +42,20 @@ public class FolderRecord extends AbstractPMDRecord {
 
     @Override
     public AbstractPMDRecord[] getChildren() {
-        return children; // NOPMD by Herlin on 09/10/06 00:22
+        return children().toArray(); // NOPMD by Herlin on 09/10/06 00:22
+    }
+
+    /**
+     * The files by their resource. They are created, when they are needed for the first time.
+     */
+    private ChildRecords<IResource> children() {
+        if (children == null) {
+            children = new ChildRecords<>();
+            for (AbstractPMDRecord file : createChildren()) {
+                children.put(file.getResource(), file);
+            }
+        }
+        return children;
     }
 
     @Override
@@ -82,52 +95,36 @@ public class FolderRecord extends AbstractPMDRecord {
 
     @Override
     public AbstractPMDRecord addResource(IResource resource) {
-        // final ICompilationUnit unit =
-        // this.packageFragment.getCompilationUnit(resource.getName());
-        FileRecord file;
-
         // TODO This should be more question of whether PMD is interested in the
         // File!
-        // we want the File to be a java-File
-        // if (unit != null) {
-        // we create a new FileRecord and add it to the List
-        file = new FileRecord(resource, this);
-        final List<AbstractPMDRecord> files = getChildrenAsList();
-        files.add(file);
-
-        children = new AbstractPMDRecord[files.size()];
-        files.toArray(this.children);
-        // }
+        // the children are created lazily, they might already contain the file
+        AbstractPMDRecord file = children().get(resource);
+        if (file == null) {
+            file = new FileRecord(resource, this);
+            children.put(resource, file);
+        }
 
         return file;
     }
 
     @Override
     public AbstractPMDRecord removeResource(IResource resource) {
-        final List<AbstractPMDRecord> files = getChildrenAsList();
-        AbstractPMDRecord removedFile = null;
-        boolean removed = false;
-
-        for (int i = 0; i < files.size() && !removed; i++) {
-            final AbstractPMDRecord file = files.get(i);
-
-            // if the file is in here, remove it
-            if (file.getResource().equals(resource)) {
-                files.remove(i);
-
-                children = new AbstractPMDRecord[files.size()]; // NOPMD
-                // by
-                // Herlin
-                // on
-                // 09/10/06
-                // 00:31
-                files.toArray(this.children);
-                removed = true;
-                removedFile = file;
-            }
-        }
+        return children().remove(resource);
+    }
+
+    /**
+     * Looks up the record of a file of this folder without searching.
+     */
+    @Override
+    public AbstractPMDRecord findResource(IResource resource) {
+        return children().get(resource);
+    }
 
-        return removedFile;
+    /**
+     * @return whether the folder has no more files
+     */
+    boolean isEmpty() {
+        return children().isEmpty();
     }
 
     @Override
@@ -150,33 +147,54 @@ public class FolderRecord extends AbstractPMDRecord {
         return folder.hashCode();
     }
 
+    /**
+     * Asks the marker index, so that the files of a collapsed folder don't need to be created.
+     */
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, false);
-        }
+        return MarkerIndex.getInstance().countMarkers(folder, prio);
+    }
 
-        return number;
+    @Override
+    public boolean hasMarkers() {
+        return MarkerIndex.getInstance().hasMarkers(folder);
     }
 
     @Override
     public int getLOC() {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getLOC();
-        }
-
-        return number;
+        return statistics()[0];
     }
 
     @Override
     public int getNumberOfMethods() {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfMethods();
-        }
+        return statistics()[1];
+    }
 
-        return number;
+    /**
+     * Adds up the lines of code and the number of methods of the files. Until the folder has been
+     * expanded, the cached values of its files are used, without creating the file records.
+     */
+    private int[] statistics() {
+        if (children == null) {
+            List<IResource> files = new ArrayList<>();
+            if (folder.isAccessible()) {
+                try {
+                    for (IResource member : folder.members()) {
+                        if (member.getType() == IResource.FILE) {
+                            files.add(member);
+                        }
+                    }
+                } catch (CoreException ce) {
+                    PMDPlugin.getDefault().logError(StringKeys.ERROR_CORE_EXCEPTION + this.toString(), ce);
+                }
+            }
+            return FileStatisticsService.getInstance().cachedTotals(files);
+        }
+        int[] totals = new int[2];
+        for (AbstractPMDRecord element : getChildren()) {
+            totals[0] += element.getLOC();
+            totals[1] += element.getNumberOfMethods();
+        }
+        return totals;
     }
 }
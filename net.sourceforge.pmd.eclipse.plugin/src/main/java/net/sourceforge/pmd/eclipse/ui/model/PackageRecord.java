@@ -7,13 +7,17 @@ package net.sourceforge.pmd.eclipse.ui.model;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.eclipse.core.resources.IContainer;
 import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.jdt.core.ICompilationUnit;
 import org.eclipse.jdt.core.IPackageFragment;
+import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 
+import net.sourceforge.pmd.RulePriority;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerIndex;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
 /**
@@ -25,7 +29,7 @@ import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 public class PackageRecord extends AbstractPMDRecord {
     private final IPackageFragment packageFragment;
     private final ProjectRecord parent;
-    private AbstractPMDRecord[] children;
+    private ChildRecords<IResource> children;
 
     /**
      * Constructor
@@ -48,7 +52,6 @@ public class PackageRecord extends AbstractPMDRecord {
 
         this.packageFragment = fragment;
         this.parent = record;
-        this.children = createChildren();
     }
 
     @Override
@@ -58,7 +61,20 @@ public class PackageRecord extends AbstractPMDRecord {
 
     @Override
     public AbstractPMDRecord[] getChildren() {
-        return children; // NOPMD by Herlin on 09/10/06 00:22
+        return children().toArray(); // NOPMD by Herlin on 09/10/06 00:22
+    }
+
+    /**
+     * The files by their resource. They are created, when they are needed for the first time.
+     */
+    private ChildRecords<IResource> children() {
+        if (children == null) {
+            children = new ChildRecords<>();
+            for (AbstractPMDRecord file : createChildren()) {
+                children.put(file.getResource(), file);
+            }
+        }
+        return children;
     }
 
     @Override
@@ -106,52 +122,36 @@ public class PackageRecord extends AbstractPMDRecord {
 
     @Override
     public AbstractPMDRecord addResource(IResource resource) {
-        // final ICompilationUnit unit =
-        // this.packageFragment.getCompilationUnit(resource.getName());
-        FileRecord file;
-
         // TODO This should be more question of whether PMD is interested in the
         // File!
-        // we want the File to be a java-File
-        // if (unit != null) {
-        // we create a new FileRecord and add it to the List
-        file = new FileRecord(resource, this);
-        final List<AbstractPMDRecord> files = getChildrenAsList();
-        files.add(file);
-
-        children = new AbstractPMDRecord[files.size()];
-        files.toArray(this.children);
-        // }
+        // the children are created lazily, they might already contain the file
+        AbstractPMDRecord file = children().get(resource);
+        if (file == null) {
+            file = new FileRecord(resource, this);
+            children.put(resource, file);
+        }
 
         return file;
     }
 
     @Override
     public AbstractPMDRecord removeResource(IResource resource) {
-        final List<AbstractPMDRecord> files = getChildrenAsList();
-        AbstractPMDRecord removedFile = null;
-        boolean removed = false;
-
-        for (int i = 0; i < files.size() && !removed; i++) {
-            final AbstractPMDRecord file = files.get(i);
-
-            // if the file is in here, remove it
-            if (file.getResource().equals(resource)) {
-                files.remove(i);
-
-                children = new AbstractPMDRecord[files.size()]; // NOPMD
-                // by
-                // Herlin
-                // on
-                // 09/10/06
-                // 00:31
-                files.toArray(this.children);
-                removed = true;
-                removedFile = file;
-            }
-        }
+        return children().remove(resource);
+    }
 
-        return removedFile;
+    /**
+     * Looks up the record of a file of this package without searching.
+     */
+    @Override
+    public AbstractPMDRecord findResource(IResource resource) {
+        return children().get(resource);
+    }
+
+    /**
+     * @return whether the package has no more files
+     */
+    boolean isEmpty() {
+        return children().isEmpty();
     }
 
     @Override
@@ -181,33 +181,66 @@ public class PackageRecord extends AbstractPMDRecord {
         return packageFragment.hashCode();
     }
 
+    /**
+     * Asks the marker index, so that the files of a collapsed package don't need to be created.
+     * The subpackages are not part of the package.
+     */
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, false);
-        }
-
-        return number;
+        IResource resource = getResource();
+        return resource == null ? 0 : MarkerIndex.getInstance().countMarkers(resource, prio, IResource.DEPTH_ONE);
     }
 
     @Override
-    public int getLOC() {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getLOC();
+    public boolean hasMarkers() {
+        for (int prio = 1; prio <= RulePriority.LOW.getPriority(); prio++) {
+            if (getNumberOfViolationsToPriority(prio, false) > 0) {
+                return true;
+            }
         }
+        return false;
+    }
 
-        return number;
+    @Override
+    public int getLOC() {
+        return statistics()[0];
     }
 
     @Override
     public int getNumberOfMethods() {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfMethods();
+        return statistics()[1];
+    }
+
+    /**
+     * Adds up the lines of code and the number of methods of the files. Until the package has been
+     * expanded, the cached values of its files are used, without creating the file records.
+     */
+    private int[] statistics() {
+        if (children == null) {
+            return FileStatisticsService.getInstance().cachedTotals(javaFiles());
+        }
+        int[] totals = new int[2];
+        for (AbstractPMDRecord element : getChildren()) {
+            totals[0] += element.getLOC();
+            totals[1] += element.getNumberOfMethods();
         }
+        return totals;
+    }
 
-        return number;
+    private List<IResource> javaFiles() {
+        List<IResource> files = new ArrayList<>();
+        IResource resource = getResource();
+        if (resource instanceof IContainer && resource.isAccessible()) {
+            try {
+                for (IResource member : ((IContainer) resource).members()) {
+                    if (member.getType() == IResource.FILE && JavaCore.isJavaLikeFileName(member.getName())) {
+                        files.add(member);
+                    }
+                }
+            } catch (CoreException ce) {
+                PMDPlugin.getDefault().logError(StringKeys.ERROR_CORE_EXCEPTION + this.toString(), ce);
+            }
+        }
+        return files;
     }
 }
@@ -5,7 +5,6 @@
 package net.sourceforge.pmd.eclipse.ui.model;
 
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 
 import org.eclipse.core.resources.IFile;
@@ -21,6 +20,7 @@ import org.eclipse.jdt.core.JavaCore;
 import org.eclipse.jdt.core.JavaModelException;
 
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerIndex;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 
 /**
@@ -32,7 +32,8 @@ import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 public class ProjectRecord extends AbstractPMDRecord {
     private final IProject project;
     private final RootRecord parent;
-    private AbstractPMDRecord[] children;
+    /** the packages by their fragment, or the folders of other projects by their folder. */
+    private ChildRecords<Object> children;
     private boolean isJavaProject = false;
 
     /**
@@ -65,12 +66,9 @@ public class ProjectRecord extends AbstractPMDRecord {
             e.printStackTrace();
         }
 
-        if (project.isAccessible()) {
-            children = createChildren();
-        } else {
-            children = EMPTY_RECORDS;
+        if (!project.isAccessible()) {
+            children = new ChildRecords<>();
         }
-
     }
 
     @Override
@@ -80,7 +78,41 @@ public class ProjectRecord extends AbstractPMDRecord {
 
     @Override
     public AbstractPMDRecord[] getChildren() {
-        return children; // NOPMD by Herlin on 09/10/06 00:43
+        return children().toArray(); // NOPMD by Herlin on 09/10/06 00:43
+    }
+
+    /**
+     * The packages or folders. They are created, when they are needed for the first time.
+     */
+    private ChildRecords<Object> children() {
+        if (children == null) {
+            children = new ChildRecords<>();
+            for (AbstractPMDRecord record : createChildren()) {
+                children.put(keyOfRecord(record), record);
+            }
+        }
+        return children;
+    }
+
+    private static Object keyOfRecord(AbstractPMDRecord record) {
+        return record instanceof PackageRecord ? ((PackageRecord) record).getFragment()
+                : ((FolderRecord) record).getFolder();
+    }
+
+    /**
+     * Gets the key of the package or folder record for the given container.
+     *
+     * @return the package fragment, the folder or null if the container can't be part of the model
+     */
+    private Object keyOf(IResource container) {
+        if (!isJavaProject) {
+            return container instanceof IFolder ? container : null;
+        }
+        IJavaElement javaMember = JavaCore.create(container);
+        if (javaMember instanceof IPackageFragmentRoot) {
+            javaMember = ((IPackageFragmentRoot) javaMember).getPackageFragment("");
+        }
+        return javaMember instanceof IPackageFragment ? javaMember : null;
     }
 
     @Override
@@ -168,7 +200,8 @@ public class ProjectRecord extends AbstractPMDRecord {
             // search for all children
             fragments = root.getChildren();
             for (IJavaElement fragment : fragments) {
-                if (fragment instanceof IPackageFragment) {
+                // packages without any violations are not shown
+                if (fragment instanceof IPackageFragment && hasMarkers(fragment.getResource())) {
                     // create a PackageRecord for the Fragment
                     // and add it to the list
                     packages.add(new PackageRecord((IPackageFragment) fragment, this));
@@ -186,7 +219,7 @@ public class ProjectRecord extends AbstractPMDRecord {
 
         try {
             for (IResource resource : rootFolder.members()) {
-                if (resource instanceof IFolder) {
+                if (resource instanceof IFolder && hasMarkers(resource)) {
                     folder.add(new FolderRecord((IFolder) resource, this)); // NOPMD
                 }
             }
@@ -197,6 +230,14 @@ public class ProjectRecord extends AbstractPMDRecord {
         return folder;
     }
 
+    /**
+     * Asks the marker index, whether the container or any of its members has violations.
+     * Used to skip the packages, that are not shown anyway.
+     */
+    private static boolean hasMarkers(IResource container) {
+        return container != null && MarkerIndex.getInstance().hasMarkers(container);
+    }
+
     @Override
     public String getName() {
         return project.getName();
@@ -218,185 +259,84 @@ public class ProjectRecord extends AbstractPMDRecord {
 
     @Override
     public AbstractPMDRecord addResource(IResource resource) {
-        AbstractPMDRecord added = null;
-
         // we only care about Files
-        if (resource instanceof IFile) {
-            if (isJavaProject) {
-                added = addToJavaProject(resource);
-            } else {
-                added = addToOtherProject(resource);
-            }
+        final Object key = resource instanceof IFile ? keyOf(resource.getParent()) : null;
+        if (key == null) {
+            return null;
         }
 
-        return added;
+        AbstractPMDRecord packageRec = children().get(key);
+        if (packageRec == null) {
+            // ... else we create a new Record for the new Package
+            packageRec = key instanceof IPackageFragment ? new PackageRecord((IPackageFragment) key, this)
+                    : new FolderRecord((IFolder) key, this);
+            children.put(key, packageRec);
+        }
+
+        // we delegate to its addResource-function
+        return packageRec.addResource(resource);
     }
 
     @Override
     public AbstractPMDRecord removeResource(IResource resource) {
-        AbstractPMDRecord removed = null;
-
         // we only care about Files
-        if (resource instanceof IFile) {
-            if (isJavaProject) {
-                removed = removeFromJavaProject(resource);
-            } else {
-                removed = removeFromOtherProject(resource);
-            }
-        }
-
-        return removed;
-    }
-
-    private AbstractPMDRecord removeFromJavaProject(IResource resource) {
-        AbstractPMDRecord removedResource = null;
-
-        IPackageFragment fragment;
-
-        final IJavaElement element = JavaCore.create(resource.getParent());
-        if (element instanceof IPackageFragment) {
-            fragment = (IPackageFragment) element;
-        } else {
-            fragment = ((IPackageFragmentRoot) element).getPackageFragment("");
-        }
-
-        PackageRecord packageRec;
-
-        // like above we compare Fragments to find the right Package
-        for (int k = 0; k < children.length && removedResource == null; k++) {
-            packageRec = (PackageRecord) children[k];
-            if (packageRec.getFragment().equals(fragment)) {
-
-                // if we found it, we remove the File
-                final AbstractPMDRecord fileRec = packageRec.removeResource(resource);
-                if (packageRec.getChildren().length == 0) {
-                    // ... and if the Package is empty too
-                    // we also remove it
-                    final List<AbstractPMDRecord> packages = getChildrenAsList();
-                    packages.remove(packageRec);
-
-                    children = new AbstractPMDRecord[packages.size()];
-                    packages.toArray(children);
-                }
-
-                removedResource = fileRec;
-            }
+        final Object key = resource instanceof IFile ? keyOf(resource.getParent()) : null;
+        final AbstractPMDRecord packageRec = key == null ? null : children().get(key);
+        if (packageRec == null) {
+            return null;
         }
 
-        return removedResource;
-    }
-
-    private AbstractPMDRecord removeFromOtherProject(IResource resource) {
-        AbstractPMDRecord removedResource = null;
-
-        IFolder folder = (IFolder) resource.getParent();
-        FolderRecord folderRec;
-
-        // like above we compare Fragments to find the right Package
-        for (int k = 0; k < children.length && removedResource == null; k++) {
-            folderRec = (FolderRecord) children[k];
-            if (folderRec.getFolder().equals(folder)) {
-
-                // if we found it, we remove the File
-                final AbstractPMDRecord fileRec = folderRec.removeResource(resource);
-                if (folderRec.getChildren().length == 0) {
-                    // ... and if the Package is empty too
-                    // we also remove it
-                    final List<AbstractPMDRecord> packages = getChildrenAsList();
-                    packages.remove(folderRec);
-
-                    children = new AbstractPMDRecord[packages.size()];
-                    packages.toArray(children);
-                }
-
-                removedResource = fileRec;
-            }
+        // if we found it, we remove the File
+        final AbstractPMDRecord fileRec = packageRec.removeResource(resource);
+        final boolean empty = packageRec instanceof PackageRecord ? ((PackageRecord) packageRec).isEmpty()
+                : ((FolderRecord) packageRec).isEmpty();
+        if (empty) {
+            // ... and if the Package is empty too we also remove it
+            children.remove(key);
         }
 
-        return removedResource;
+        return fileRec;
     }
 
-    private AbstractPMDRecord addToJavaProject(IResource resource) {
-        AbstractPMDRecord addedResource = null;
-
-        IJavaElement javaMember = JavaCore.create(resource.getParent());
-        if (javaMember instanceof IPackageFragmentRoot) {
-            javaMember = ((IPackageFragmentRoot) javaMember).getPackageFragment("");
-        }
-
-        final IPackageFragment fragment = (IPackageFragment) javaMember;
-
-        // we search int the children Packages for the File's Package
-        // by comparing their Fragments
-        for (int k = 0; k < children.length && addedResource == null; k++) {
-            final PackageRecord packageRec = (PackageRecord) children[k];
-            if (packageRec.getFragment().equals(fragment)) {
-                // if the Package exists
-                // we delegate to its addResource-function
-                addedResource = packageRec.addResource(resource);
-            }
-        }
-
-        // ... else we create a new Record for the new Package
-        if (addedResource == null) {
-            final PackageRecord packageRec = new PackageRecord(fragment, this);
-            final List<AbstractPMDRecord> packages = getChildrenAsList();
-            packages.add(packageRec);
-
-            // ... and we add a new FileRecord to it
-            children = new AbstractPMDRecord[packages.size()];
-            packages.toArray(children);
-            addedResource = packageRec.addResource(resource);
-        }
-
-        return addedResource;
-    }
-
-    private AbstractPMDRecord addToOtherProject(IResource resource) {
-        AbstractPMDRecord addedResource = null;
-
-        IFolder folder = (IFolder) resource.getParent();
-
-        // we search int the children Packages for the File's Package
-        // by comparing their Fragments
-        for (int k = 0; k < children.length && addedResource == null; k++) {
-            final FolderRecord folderRec = (FolderRecord) children[k];
-            if (folderRec.getFolder().equals(folder)) {
-                // if the Package exists
-                // we delegate to its addResource-function
-                addedResource = folderRec.addResource(resource);
-            }
+    /**
+     * Looks up the record of a package, folder or file of this project without searching the
+     * whole model.
+     */
+    @Override
+    public AbstractPMDRecord findResource(IResource resource) {
+        if (resource instanceof IFile) {
+            final Object key = keyOf(resource.getParent());
+            final AbstractPMDRecord packageRec = key == null ? null : children().get(key);
+            return packageRec == null ? null : packageRec.findResource(resource);
         }
-
-        // ... else we create a new Record for the new Package
-        if (addedResource == null) {
-            final FolderRecord packageRec = new FolderRecord(folder, this);
-            final List<AbstractPMDRecord> packages = getChildrenAsList();
-            packages.add(packageRec);
-
-            // ... and we add a new FileRecord to it
-            children = new AbstractPMDRecord[packages.size()];
-            packages.toArray(children);
-            addedResource = packageRec.addResource(resource);
+        if (resource instanceof IFolder) {
+            final Object key = keyOf(resource);
+            return key == null ? null : children().get(key);
         }
-
-        return addedResource;
+        return null;
     }
 
+    /**
+     * Asks the marker index, so that neither the packages nor their files need to be created.
+     */
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
-        int number = 0;
-        for (AbstractPMDRecord element : children) {
-            number += element.getNumberOfViolationsToPriority(prio, invertMarkerAndFileRecords);
-        }
+        return MarkerIndex.getInstance().countMarkers(project, prio);
+    }
 
-        return number;
+    @Override
+    public boolean hasMarkers() {
+        return MarkerIndex.getInstance().hasMarkers(project);
     }
 
+    /**
+     * Adds up the lines of code of the packages, which are shown anyway. The packages don't
+     * create their files for it.
+     */
     @Override
     public int getLOC() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : getChildren()) {
             number += element.getLOC();
         }
 
@@ -406,7 +346,7 @@ public class ProjectRecord extends AbstractPMDRecord {
     @Override
     public int getNumberOfMethods() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : getChildren()) {
             number += element.getNumberOfMethods();
         }
 
@@ -20,7 +20,7 @@ import org.eclipse.core.resources.IWorkspaceRoot;
  */
 public class RootRecord extends AbstractPMDRecord {
     private final IWorkspaceRoot workspaceRoot;
-    private AbstractPMDRecord[] children;
+    private ChildRecords<IResource> children;
 
     /**
      * Constructor
@@ -35,7 +35,6 @@ public class RootRecord extends AbstractPMDRecord {
         }
 
         this.workspaceRoot = root;
-        this.children = createChildren();
     }
 
     @Override
@@ -45,7 +44,36 @@ public class RootRecord extends AbstractPMDRecord {
 
     @Override
     public AbstractPMDRecord[] getChildren() {
-        return children; // NOPMD by Herlin on 09/10/06 00:56
+        return children().toArray(); // NOPMD by Herlin on 09/10/06 00:56
+    }
+
+    /**
+     * The projects by their resource. They are created, when they are needed for the first time.
+     */
+    private ChildRecords<IResource> children() {
+        if (children == null) {
+            children = new ChildRecords<>();
+            for (AbstractPMDRecord project : createChildren()) {
+                children.put(project.getResource(), project);
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Looks up the record of a project, package, folder or file without searching the whole model.
+     */
+    @Override
+    public AbstractPMDRecord findResource(IResource resource) {
+        final IProject project = resource.getProject();
+        if (project == null) {
+            return null;
+        }
+        final AbstractPMDRecord projectRec = children().get(project);
+        if (projectRec == null || resource.equals(project)) {
+            return projectRec;
+        }
+        return projectRec.findResource(resource);
     }
 
     @Override
@@ -100,13 +128,8 @@ public class RootRecord extends AbstractPMDRecord {
     private ProjectRecord addProject(IProject project) {
         ProjectRecord addedProject = null;
         if (project.isOpen()) {
-            final List<AbstractPMDRecord> projects = getChildrenAsList();
-            final ProjectRecord projectRec = new ProjectRecord(project, this);
-            projects.add(projectRec);
-
-            children = new AbstractPMDRecord[projects.size()];
-            projects.toArray(children);
-            addedProject = projectRec;
+            addedProject = new ProjectRecord(project, this);
+            children().put(project, addedProject);
         }
         return addedProject;
     }
@@ -119,30 +142,13 @@ public class RootRecord extends AbstractPMDRecord {
      * @return the removed ProjectRecord
      */
     private ProjectRecord removeProject(IProject project) {
-        ProjectRecord removedProject = null;
-
-        final List<AbstractPMDRecord> projects = getChildrenAsList();
-        for (int k = 0; k < projects.size() && removedProject == null; k++) {
-            final ProjectRecord projectRec = (ProjectRecord) projects.get(k);
-            final IProject proj = (IProject) projectRec.getResource();
-
-            // get the Project-Resource from the List and compare
-            if (proj.equals(project)) {
-                projects.remove(projectRec);
-
-                children = new AbstractPMDRecord[projects.size()];
-                projects.toArray(children);
-                removedProject = projectRec;
-            }
-        }
-
-        return removedProject;
+        return (ProjectRecord) children().remove(project);
     }
 
     @Override
     public int getNumberOfViolationsToPriority(int prio, boolean invertMarkerAndFileRecords) {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : getChildren()) {
             number += element.getNumberOfViolationsToPriority(prio, invertMarkerAndFileRecords);
         }
 
@@ -152,7 +158,7 @@ public class RootRecord extends AbstractPMDRecord {
     @Override
     public int getLOC() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : getChildren()) {
             number += element.getLOC();
         }
 
@@ -162,7 +168,7 @@ public class RootRecord extends AbstractPMDRecord {
     @Override
     public int getNumberOfMethods() {
         int number = 0;
-        for (AbstractPMDRecord element : children) {
+        for (AbstractPMDRecord element : getChildren()) {
             number += element.getNumberOfMethods();
         }
 
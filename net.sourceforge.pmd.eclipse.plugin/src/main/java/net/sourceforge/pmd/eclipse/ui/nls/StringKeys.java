@@ -42,6 +42,8 @@ public final class StringKeys {
     public static final String PREF_GENERAL_LABEL_USE_PROJECT_BUILD_PATH = "preference.pmd.label.use_project_build_path";
     public static final String PREF_GENERAL_LABEL_MAX_VIOLATIONS_PFPR = "preference.pmd.label.max_violations_pfpr";
     public static final String PREF_GENERAL_LABEL_DETERMINE_FILETYPES_AUTOMATICALLY = "preference.pmd.label.determine_filetypes_automatically";
+    public static final String PREF_GENERAL_LABEL_ANALYSIS_THREADS = "preference.pmd.label.analysis_threads";
+    public static final String PREF_GENERAL_TOOLTIP_ANALYSIS_THREADS = "preference.pmd.tooltip.analysis_threads";
     public static final String PREF_GENERAL_TOOLTIP_MAX_VIOLATIONS_PFPR = "preference.pmd.tooltip.max_violations_pfpr";
     public static final String PREF_GENERAL_MESSAGE_INVALID_NUMERIC_VALUE = "preference.pmd.message.invalid_numeric_value";
     public static final String PREF_GENERAL_REVIEW_PMD_STYLE = "preference.pmd.label.review_pmd_style";
@@ -158,6 +160,8 @@ public final class StringKeys {
     public static final String PREF_CPD_GROUP_GENERAL = "preference.cpd.group.general";
     public static final String PREF_CPD_TITLE = "preference.cpd.title";
     public static final String PREF_CPD_TILESIZE = "preference.cpd.tilesize";
+    public static final String PREF_CPD_MAX_MATCHES = "preference.cpd.max_matches";
+    public static final String PREF_CPD_TOOLTIP_MAX_MATCHES = "preference.cpd.tooltip.max_matches";
 
     public static final String PREF_SUMMARY_LABEL_NAME = "preference.summary.label.name";
     public static final String PREF_SUMMARY_LABEL_DESCRIPTION = "preference.summary.label.description";
@@ -190,6 +194,21 @@ public final class StringKeys {
 
     public static final String VIEW_AST_DEFAULT_TEXT = "view.ast.default_text";
 
+    public static final String VIEW_TIMINGS_COLUMN_RULE = "view.timings.column_rule";
+    public static final String VIEW_TIMINGS_COLUMN_PHASE = "view.timings.column_phase";
+    public static final String VIEW_TIMINGS_COLUMN_LANGUAGE = "view.timings.column_language";
+    public static final String VIEW_TIMINGS_COLUMN_FILES = "view.timings.column_files";
+    public static final String VIEW_TIMINGS_COLUMN_TOTAL = "view.timings.column_total";
+    public static final String VIEW_TIMINGS_COLUMN_MEAN = "view.timings.column_mean";
+    public static final String VIEW_TIMINGS_COLUMN_P95 = "view.timings.column_p95";
+    public static final String VIEW_TIMINGS_COLUMN_FILE = "view.timings.column_file";
+    public static final String VIEW_TIMINGS_COLUMN_TIME = "view.timings.column_time";
+    public static final String VIEW_TIMINGS_ACTION_COLLECT = "view.timings.action.collect";
+    public static final String VIEW_TIMINGS_ACTION_RESET = "view.timings.action.reset";
+    public static final String VIEW_TIMINGS_WITHOUT_RULE_CHAIN = "view.timings.without_rule_chain";
+
+    public static final String VIEW_CPD_LARGEST_MATCHES = "view.cpd.largest_matches";
+
     public static final String VIEW_FILTER_PRIORITY = "view.filter.priority";
     public static final String VIEW_FILTER_PRIORITY_1 = "view.filter.priority.1";
     public static final String VIEW_FILTER_PRIORITY_2 = "view.filter.priority.2";
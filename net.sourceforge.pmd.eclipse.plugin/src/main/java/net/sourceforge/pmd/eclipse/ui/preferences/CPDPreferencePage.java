@@ -30,8 +30,11 @@ import net.sourceforge.pmd.eclipse.ui.preferences.br.AbstractPMDPreferencePage;
  *
  */
 public class CPDPreferencePage extends AbstractPMDPreferencePage {
+    /** more matches can't be shown in the view in a sensible way. */
+    private static final int MAX_MATCHES_LIMIT = 10000;
 
     private Spinner minTileSizeSpinner;
+    private Spinner maxMatchesSpinner;
 
     @Override
     protected String descriptionId() {
@@ -122,17 +125,29 @@ public class CPDPreferencePage extends AbstractPMDPreferencePage {
         data.grabExcessHorizontalSpace = true;
         minTileSizeSpinner.setLayoutData(data);
 
+        Label maxMatchesLabel = new Label(group, SWT.NULL);
+        maxMatchesLabel.setText(getMessage(StringKeys.PREF_CPD_MAX_MATCHES));
+
+        maxMatchesSpinner = new Spinner(group, SWT.BORDER);
+        maxMatchesSpinner.setMinimum(0);
+        maxMatchesSpinner.setMaximum(MAX_MATCHES_LIMIT);
+        maxMatchesSpinner.setSelection(preferences.getCpdMaxMatches());
+        maxMatchesSpinner.setToolTipText(getMessage(StringKeys.PREF_CPD_TOOLTIP_MAX_MATCHES));
+        maxMatchesSpinner.setLayoutData(new GridData(GridData.FILL_HORIZONTAL));
+
         return group;
     }
 
     @Override
     protected void performDefaults() {
         minTileSizeSpinner.setMinimum(IPreferences.MIN_TILE_SIZE_DEFAULT);
+        maxMatchesSpinner.setSelection(IPreferences.CPD_MAX_MATCHES_DEFAULT);
     }
 
     @Override
     public boolean performOk() {
         preferences.setMinTileSize(Integer.valueOf(minTileSizeSpinner.getText()).intValue());
+        preferences.setCpdMaxMatches(maxMatchesSpinner.getSelection());
 
         return super.performOk();
     }
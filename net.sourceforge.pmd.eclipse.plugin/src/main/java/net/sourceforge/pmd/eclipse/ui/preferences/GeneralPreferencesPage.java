@@ -43,6 +43,7 @@ import org.eclipse.swt.widgets.Group;
 import org.eclipse.swt.widgets.Label;
 import org.eclipse.swt.widgets.Link;
 import org.eclipse.swt.widgets.Scale;
+import org.eclipse.swt.widgets.Spinner;
 import org.eclipse.swt.widgets.Table;
 import org.eclipse.swt.widgets.Text;
 import org.eclipse.ui.IWorkbench;
@@ -98,6 +99,7 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
     private IPreferences preferences;
     private BasicTableManager priorityTableMgr;
     private Button determineFiletypesAutomatically;
+    private Spinner analysisThreadsSpinner;
 
     private Control[] nameFields;
 
@@ -166,6 +168,7 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         useProjectBuildPath = buildUseProjectBuildPathButton(group);
         checkCodeOnSave = buildCheckCodeOnSaveButton(group);
         determineFiletypesAutomatically = buildDetermineFiletypesAutomatically(group);
+        analysisThreadsSpinner = buildAnalysisThreadsSpinner(group);
         Label separator = new Label(group, SWT.SEPARATOR | SWT.SHADOW_IN | SWT.HORIZONTAL);
 
         GridData data = new GridData();
@@ -714,6 +717,24 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         return button;
     }
 
+    private Spinner buildAnalysisThreadsSpinner(Composite viewGroup) {
+        Composite panel = new Composite(viewGroup, SWT.NONE);
+        GridLayout layout = new GridLayout(2, false);
+        layout.marginWidth = 0;
+        layout.marginHeight = 0;
+        panel.setLayout(layout);
+
+        Label label = new Label(panel, SWT.NONE);
+        label.setText(getMessage(StringKeys.PREF_GENERAL_LABEL_ANALYSIS_THREADS));
+
+        Spinner spinner = new Spinner(panel, SWT.BORDER);
+        spinner.setMinimum(0);
+        spinner.setMaximum(256);
+        spinner.setSelection(preferences.getAnalysisThreads());
+        spinner.setToolTipText(getMessage(StringKeys.PREF_GENERAL_TOOLTIP_ANALYSIS_THREADS));
+        return spinner;
+    }
+
     /**
      * Build the check box for enabling PMD review style.
      * 
@@ -765,6 +786,9 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
         setSelection(useProjectBuildPath, IPreferences.PROJECT_BUILD_PATH_ENABLED_DEFAULT);
         setSelection(reviewPmdStyleBox, IPreferences.REVIEW_PMD_STYLE_ENABLED_DEFAULT);
         setSelection(determineFiletypesAutomatically, IPreferences.DETERMINE_FILETYPES_AUTOMATICALLY_DEFAULT);
+        if (analysisThreadsSpinner != null && !analysisThreadsSpinner.isDisposed()) {
+            analysisThreadsSpinner.setSelection(IPreferences.ANALYSIS_THREADS_DEFAULT);
+        }
 
         setText(logFileNameText, IPreferences.LOG_FILENAME_DEFAULT);
 
@@ -887,6 +911,10 @@ public class GeneralPreferencesPage extends PreferencePage implements IWorkbench
             preferences.setDetermineFiletypesAutomatically(determineFiletypesAutomatically.getSelection());
         }
 
+        if (analysisThreadsSpinner != null) {
+            preferences.setAnalysisThreads(analysisThreadsSpinner.getSelection());
+        }
+
         if (reviewPmdStyleBox != null) {
             preferences.setReviewPmdStyleEnabled(reviewPmdStyleBox.getSelection());
         }
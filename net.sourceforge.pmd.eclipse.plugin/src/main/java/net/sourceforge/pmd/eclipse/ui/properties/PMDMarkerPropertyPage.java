@@ -25,6 +25,7 @@ import org.eclipse.ui.browser.IWebBrowser;
 import org.eclipse.ui.dialogs.PropertyPage;
 
 import net.sourceforge.pmd.Rule;
+import net.sourceforge.pmd.eclipse.core.internal.RuleRegistry;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
@@ -44,8 +45,7 @@ public class PMDMarkerPropertyPage extends PropertyPage {
 
 
         IMarker marker = (IMarker) getElement();
-        Rule rule = PMDPlugin.getDefault().getPreferencesManager().getRuleSet()
-                .getRuleByName(MarkerUtil.ruleNameFor(marker));
+        Rule rule = RuleRegistry.getInstance().getRule(MarkerUtil.ruleNameFor(marker));
 
         StringTable messages = PMDPlugin.getDefault().getStringTable();
 
@@ -18,7 +18,7 @@ import org.eclipse.ui.IMarkerResolution;
 import org.eclipse.ui.IMarkerResolutionGenerator;
 
 import net.sourceforge.pmd.Rule;
-import net.sourceforge.pmd.RuleSet;
+import net.sourceforge.pmd.eclipse.core.internal.RuleRegistry;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
@@ -159,8 +159,7 @@ public class PMDResolutionGenerator implements IMarkerResolutionGenerator {
         try {
             final String ruleName = MarkerUtil.ruleNameFor(marker);
             if (ruleName != null) {
-                final RuleSet ruleSet = PMDPlugin.getDefault().getPreferencesManager().getRuleSet();
-                final Rule rule = ruleSet.getRuleByName(ruleName);
+                final Rule rule = RuleRegistry.getInstance().getRule(ruleName);
                 if (rule == null || !hasFixesFor(rule)) {
                     return EMPTY_RESOLUTIONS;
                 }
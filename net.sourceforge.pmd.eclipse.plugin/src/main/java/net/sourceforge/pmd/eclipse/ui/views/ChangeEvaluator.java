@@ -5,7 +5,11 @@
 package net.sourceforge.pmd.eclipse.ui.views;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.eclipse.core.resources.IMarkerDelta;
 import org.eclipse.core.resources.IProject;
@@ -15,7 +19,6 @@ import org.eclipse.core.resources.IResourceChangeEvent;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
-import net.sourceforge.pmd.eclipse.ui.model.PackageRecord;
 import net.sourceforge.pmd.eclipse.ui.model.ProjectRecord;
 import net.sourceforge.pmd.eclipse.ui.model.RootRecord;
 
@@ -38,24 +41,19 @@ public class ChangeEvaluator {
 
         List<IMarkerDelta> markerDeltas = MarkerUtil.markerDeltasIn(event);
 
-        // first we get a List of changes to Files and Projects so we won't be
-        // updating everything
-        List<IResource> changedFiles = new ArrayList<>();
-        List<IProject> changedProjects = new ArrayList<>();
+        // first we get the changed Files per Project so we won't be
+        // updating everything. The sets don't contain a Resource twice
+        Map<IProject, Set<IResource>> changedFilesByProject = new LinkedHashMap<>();
         for (IMarkerDelta markerDelta : markerDeltas) {
             IResource resource = markerDelta.getResource();
             IProject project = resource.getProject();
 
-            // the lists should not contain Projects or Resources twice
-            if (!changedFiles.contains(resource)) {
-                changedFiles.add(resource);
-                // LOG.debug("Resource " + resource.getName() + " has changed");
-            }
-
-            if (!changedProjects.contains(project)) {
-                changedProjects.add(project);
-                // LOG.debug("Project " + project.getName() + " has changed");
+            Set<IResource> changedFiles = changedFilesByProject.get(project);
+            if (changedFiles == null) {
+                changedFiles = new LinkedHashSet<>();
+                changedFilesByProject.put(project, changedFiles);
             }
+            changedFiles.add(resource);
         }
 
         // we can add, change, or remove Resources
@@ -64,7 +62,9 @@ public class ChangeEvaluator {
         ChangeRecord<AbstractPMDRecord> changeRec = new ChangeRecord<>();
 
         // we go through the changed Projects
-        for (IProject project : changedProjects) {
+        for (Map.Entry<IProject, Set<IResource>> entry : changedFilesByProject.entrySet()) {
+            IProject project = entry.getKey();
+            Set<IResource> changedFiles = entry.getValue();
             // LOG.debug("Processing changes for project " + project.getName());
             ProjectRecord projectRec = (ProjectRecord) root.findResource(project);
 
@@ -110,7 +110,7 @@ public class ChangeEvaluator {
      * @return an List of Lists containing additions [0], removals [1] and
      *         changes [2] (Array-Position in Brackets)
      */
-    private List<AbstractPMDRecord>[] updateFiles(IProject project, List<IResource> changedFiles) {
+    private List<AbstractPMDRecord>[] updateFiles(IProject project, Set<IResource> changedFiles) {
         // TODO use ChangeRecord
         List<AbstractPMDRecord> additions = new ArrayList<>();
         List<AbstractPMDRecord> removals = new ArrayList<>();
@@ -130,8 +130,7 @@ public class ChangeEvaluator {
             // ... we add all Packages to the removals so they are not shown
             // anymore
             removals.addAll(packages);
-            for (int k = 0; k < packages.size(); k++) {
-                PackageRecord packageRec = (PackageRecord) packages.get(k);
+            for (AbstractPMDRecord packageRec : packages) {
                 removals.addAll(packageRec.getChildrenAsList());
             }
             updatedFiles = new List[] { additions, removals, changes };
@@ -149,7 +148,7 @@ public class ChangeEvaluator {
      * @return
      */
     private static List<AbstractPMDRecord>[] searchProjectForModifications(ProjectRecord projectRec,
-            List<IResource> changedFiles) {
+            Set<IResource> changedFiles) {
 
         // TODO use ChangeRecord
         List<AbstractPMDRecord> additions = new ArrayList<>();
@@ -185,7 +184,9 @@ public class ChangeEvaluator {
                 } else if (rec == null) {
                     // LOG.debug("This is a new file.");
                     AbstractPMDRecord fileRec = projectRec.addResource(resource);
-                    additions.add(fileRec);
+                    if (fileRec != null) {
+                        additions.add(fileRec);
+                    }
                 } else {
                     // LOG.debug("The resource found is not a file! type found :
                     // " + rec.getResourceType());
@@ -4,6 +4,7 @@
 
 package net.sourceforge.pmd.eclipse.ui.views;
 
+import org.eclipse.ui.IFolderLayout;
 import org.eclipse.ui.IPageLayout;
 import org.eclipse.ui.IPerspectiveFactory;
 
@@ -25,6 +26,9 @@ public class PMDPerspective implements IPerspectiveFactory {
 
         layout.addView(explorerAreaId, IPageLayout.LEFT, 0.25f, editorAreaId);
         layout.addView(outlineAreaId, IPageLayout.BOTTOM, 0.6f, explorerAreaId);
-        layout.addView(overviewAreaId, IPageLayout.BOTTOM, 0.65f, editorAreaId);
+
+        IFolderLayout bottomFolder = layout.createFolder("pmdBottomFolder", IPageLayout.BOTTOM, 0.65f, editorAreaId);
+        bottomFolder.addView(overviewAreaId);
+        bottomFolder.addView(PMDUiConstants.ID_RULE_TIMINGS);
     }
 }
@@ -12,6 +12,7 @@ import java.util.Set;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 import org.eclipse.core.resources.IMarker;
+import org.eclipse.core.resources.IResource;
 import org.eclipse.core.runtime.CoreException;
 import org.eclipse.core.runtime.preferences.InstanceScope;
 import org.eclipse.jface.viewers.Viewer;
@@ -20,6 +21,7 @@ import org.eclipse.ui.preferences.ScopedPreferenceStore;
 
 import net.sourceforge.pmd.RulePriority;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.builder.MarkerIndex;
 import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
 import net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
@@ -163,15 +165,20 @@ public class PriorityFilter extends ViewerFilter {
     }
 
     private boolean hasMarkersToShow(AbstractPMDRecord record) {
-        boolean hasMarkers = false;
+        IResource resource = record.getResource();
+        if (resource == null) {
+            return false;
+        }
+        // the files of a package are the direct members of its folder, the sub packages are not included
+        int depth = record instanceof PackageRecord ? IResource.DEPTH_ONE : IResource.DEPTH_INFINITE;
+        // the counts per priority are kept by the index
+        final MarkerIndex index = MarkerIndex.getInstance();
         for (RulePriority priority : enabledPriorities) {
-            final IMarker[] markers = record.findMarkersByAttribute(PMDUiConstants.KEY_MARKERATT_PRIORITY, priority.getPriority());
-            if (markers.length > 0) {
-                hasMarkers = true;
-                break;
+            if (index.countMarkers(resource, priority.getPriority(), depth) > 0) {
+                return true;
             }
         }
-        return hasMarkers;
+        return false;
     }
 
     /**
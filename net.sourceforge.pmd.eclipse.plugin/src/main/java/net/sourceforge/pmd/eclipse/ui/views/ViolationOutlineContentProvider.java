@@ -5,7 +5,9 @@
 package net.sourceforge.pmd.eclipse.ui.views;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.IMarkerDelta;
@@ -15,24 +17,37 @@ import org.eclipse.core.resources.IResourceDelta;
 import org.eclipse.jface.viewers.IStructuredContentProvider;
 import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.swt.widgets.Control;
+import org.eclipse.swt.widgets.Display;
 
-import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
+import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
 import net.sourceforge.pmd.eclipse.util.Util;
 
 /**
  * Provides the ViolationOutlinePages with Content.
  *
+ * <p>The marker changes of the shown file are collected on the thread, that fires the resource
+ * change event, and are applied to the table at most once per {@link #UPDATE_DELAY} ms, without
+ * refreshing the whole table.
+ *
  * @author SebastianRaffel ( 08.05.2005 )
  */
 public class ViolationOutlineContentProvider implements IStructuredContentProvider, IResourceChangeListener {
 
-    private RefreshableTablePage tablePage;
+    /** the minimal time between two updates of the table in ms. */
+    private static final int UPDATE_DELAY = 50;
+
     private TableViewer tableViewer;
-    private FileRecord resource;
+    private volatile FileRecord resource;
+    /** the display of the table, taken in the UI thread, as the table can't be asked from other threads. */
+    private volatile Display display;
+
+    /** the markers, that have been added, removed or changed since the last update - guarded by itself. */
+    private final Set<IMarker> pendingMarkers = new LinkedHashSet<>();
+    private boolean updateScheduled;
 
     public ViolationOutlineContentProvider(RefreshableTablePage page) {
-        tablePage = page;
         tableViewer = page.tableViewer();
     }
 
@@ -47,7 +62,9 @@ public class ViolationOutlineContentProvider implements IStructuredContentProvid
 
     @Override
     public void dispose() {
-        // TODO
+        synchronized (pendingMarkers) {
+            pendingMarkers.clear();
+        }
     }
 
     @Override
@@ -55,6 +72,10 @@ public class ViolationOutlineContentProvider implements IStructuredContentProvid
         if (resource != null) {
             resource.getResource().getWorkspace().removeResourceChangeListener(this);
         }
+        synchronized (pendingMarkers) {
+            // the new input is read completely by the viewer
+            pendingMarkers.clear();
+        }
 
         // we create a new FileRecord
         resource = (FileRecord) newInput;
@@ -62,55 +83,117 @@ public class ViolationOutlineContentProvider implements IStructuredContentProvid
             resource.getResource().getWorkspace().addResourceChangeListener(this, IResourceChangeEvent.POST_CHANGE);
         }
         tableViewer = (TableViewer) viewer;
+        Control control = viewer.getControl();
+        if (control != null && !control.isDisposed()) {
+            display = control.getDisplay();
+        }
     }
 
+    /**
+     * Only remembers the changed markers of the shown file, the table is updated later in the UI thread.
+     */
     @Override
     public void resourceChanged(IResourceChangeEvent event) {
-        if (resource == null || !resource.getResource().exists()) {
+        FileRecord current = resource;
+        if (current == null || event.getDelta() == null) {
             return;
         }
-
-        List<IMarkerDelta> markerDeltas = MarkerUtil.markerDeltasIn(event);
-
-        if (markerDeltas.isEmpty()) {
+        IResourceDelta fileDelta = event.getDelta().findMember(current.getResource().getFullPath());
+        if (fileDelta == null || (fileDelta.getFlags() & IResourceDelta.MARKERS) == 0) {
             return;
         }
 
-        // we search for removed, added or changed Markers
-        final List<IMarker> additions = new ArrayList<>();
-        final List<IMarker> removals = new ArrayList<>();
-        final List<IMarker> changes = new ArrayList<>();
+        List<IMarker> markers = new ArrayList<>();
+        for (IMarkerDelta delta : fileDelta.getMarkerDeltas()) {
+            if (isRuleMarker(delta)) {
+                markers.add(delta.getMarker());
+            }
+        }
+        if (markers.isEmpty()) {
+            return;
+        }
 
-        for (IMarkerDelta delta : markerDeltas) {
-            if (!delta.getResource().equals(resource.getResource())) {
-                continue;
+        synchronized (pendingMarkers) {
+            pendingMarkers.addAll(markers);
+            if (updateScheduled) {
+                return;
             }
-            IMarker marker = delta.getMarker();
-            switch (delta.getKind()) {
-            case IResourceDelta.ADDED:
-                additions.add(marker);
-                break;
-            case IResourceDelta.REMOVED:
-                removals.add(marker);
-                break;
-            case IResourceDelta.CHANGED:
-                changes.add(marker);
-                break;
-            default:
-                //TODO: do we need to handle other changes?
-                break;
+            updateScheduled = true;
+        }
+        scheduleUpdate();
+    }
+
+    private static boolean isRuleMarker(IMarkerDelta delta) {
+        for (String markerType : PMDRuntimeConstants.RULE_MARKER_TYPES) {
+            if (delta.isSubtypeOf(markerType)) {
+                return true;
             }
         }
+        return false;
+    }
 
-        // updating the table MUST be in sync
-        tableViewer.getControl().getDisplay().syncExec(new Runnable() {
+    private void scheduleUpdate() {
+        final Display current = display;
+        if (current == null || current.isDisposed()) {
+            synchronized (pendingMarkers) {
+                pendingMarkers.clear();
+                updateScheduled = false;
+            }
+            return;
+        }
+        current.asyncExec(new Runnable() {
             @Override
             public void run() {
-                updateViewer(additions, removals, changes);
+                current.timerExec(UPDATE_DELAY, new Runnable() {
+                    @Override
+                    public void run() {
+                        applyPendingMarkers();
+                    }
+                });
             }
         });
     }
 
+    /**
+     * Decides for every pending marker, whether it has to be added, removed or updated. The kind
+     * of the marker deltas doesn't matter, as a marker might have been added and removed again
+     * since the last update.
+     */
+    private void applyPendingMarkers() {
+        List<IMarker> markers;
+        synchronized (pendingMarkers) {
+            markers = new ArrayList<>(pendingMarkers);
+            pendingMarkers.clear();
+            updateScheduled = false;
+        }
+
+        Control control = tableViewer.getControl();
+        FileRecord current = resource;
+        if (markers.isEmpty() || control.isDisposed() || current == null) {
+            return;
+        }
+
+        List<IMarker> additions = new ArrayList<>();
+        List<IMarker> removals = new ArrayList<>();
+        List<IMarker> changes = new ArrayList<>();
+        for (IMarker marker : markers) {
+            if (!marker.exists() || !current.getResource().equals(marker.getResource())) {
+                removals.add(marker);
+            } else if (tableViewer.testFindItem(marker) != null) {
+                changes.add(marker);
+            } else {
+                additions.add(marker);
+            }
+        }
+
+        control.setRedraw(false);
+        try {
+            updateViewer(additions, removals, changes);
+        } finally {
+            control.setRedraw(true);
+        }
+    }
+
     /**
      * Applies found updates on the table, adapted from Philippe Herlin.
      *
@@ -134,7 +217,5 @@ public class ViolationOutlineContentProvider implements IStructuredContentProvid
         if (!changes.isEmpty()) {
             tableViewer.update(changes.toArray(), null);
         }
-
-        tablePage.refresh();
     }
 }
@@ -6,7 +6,10 @@ package net.sourceforge.pmd.eclipse.ui.views; // NOPMD by Sven on 13.11.06 11:45
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 import org.eclipse.core.resources.IMarker;
 import org.eclipse.core.resources.ResourcesPlugin;
@@ -39,6 +42,7 @@ import net.sourceforge.pmd.eclipse.runtime.cmd.DeleteMarkersCommand;
 import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
 import net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
+import net.sourceforge.pmd.eclipse.ui.model.FileStatisticsService;
 import net.sourceforge.pmd.eclipse.ui.model.FileToMarkerRecord;
 import net.sourceforge.pmd.eclipse.ui.model.MarkerRecord;
 import net.sourceforge.pmd.eclipse.ui.model.PackageRecord;
@@ -61,6 +65,12 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
     private ProjectFilter projectFilter;
     private ViolationOverviewMenuManager menuManager;
     private ViolationOverviewDoubleClickListener doubleClickListener;
+    private final FileStatisticsService.Listener statisticsListener = new FileStatisticsService.Listener() {
+        @Override
+        public void statisticsCalculated(Collection<FileRecord> records) {
+            updateStatistics(records);
+        }
+    };
 
     private RootRecord root;
     private ViewMemento memento;
@@ -107,7 +117,8 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
 
     @Override
     public void createPartControl(Composite parent) {
-        treeViewer = new TreeViewer(parent, SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL);
+        // virtual: the items and labels are only created for the visible rows
+        treeViewer = new TreeViewer(parent, SWT.MULTI | SWT.H_SCROLL | SWT.V_SCROLL | SWT.VIRTUAL);
         treeViewer.setUseHashlookup(true);
         treeViewer.getTree().setHeaderVisible(true);
         treeViewer.getTree().setLinesVisible(true);
@@ -130,6 +141,7 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
         treeViewer.setInput(root);
         treeViewer.addDoubleClickListener(doubleClickListener);
         getSite().setSelectionProvider(this);
+        FileStatisticsService.getInstance().addListener(statisticsListener);
 
         // load the State from a Memento into the View if there is one
         if (memento != null) {
@@ -165,6 +177,7 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
 
         memento.save();
 
+        FileStatisticsService.getInstance().removeListener(statisticsListener);
         menuManager.dispose();
 
         super.dispose();
@@ -633,28 +646,47 @@ public class ViolationOverview extends ViewPart implements ISelectionProvider, I
     }
 
     /**
-     * Calculates the LOC of the expanded file record.
+     * Calculates the LOC of the expanded file record in the background. The labels are
+     * updated, when the values are available.
      */
     @Override
     public void treeExpanded(TreeExpansionEvent event) {
         Object object = event.getElement();
         if (object instanceof PackageRecord) {
             PackageRecord record = (PackageRecord) object;
-            AbstractPMDRecord[] children = record.getChildren();
-            for (AbstractPMDRecord element : children) {
+            List<FileRecord> fileRecords = new ArrayList<>();
+            for (AbstractPMDRecord element : record.getChildren()) {
                 if (element instanceof FileRecord) {
-                    FileRecord fileRecord = (FileRecord) element;
-                    fileRecord.calculateLinesOfCode();
-                    fileRecord.calculateNumberOfMethods();
+                    fileRecords.add((FileRecord) element);
                 }
             }
+            FileStatisticsService.getInstance().calculate(fileRecords, false);
         }
+    }
 
-        // refresh the labels in the table
+    /**
+     * Updates the labels of the given file records and their parents, which show the sums.
+     * Called from the statistics service in the background.
+     */
+    private void updateStatistics(Collection<FileRecord> records) {
+        final Set<AbstractPMDRecord> elements = new LinkedHashSet<>();
+        for (FileRecord record : records) {
+            for (AbstractPMDRecord element = record; element != null; element = element.getParent()) {
+                elements.add(element);
+            }
+        }
         Display.getDefault().asyncExec(new Runnable() {
             @Override
             public void run() {
-                getViewer().refresh();
+                if (treeViewer == null || treeViewer.getControl().isDisposed()) {
+                    return;
+                }
+                if (getShowType() == SHOW_MARKERS_FILES) {
+                    // the files are shown as FileToMarkerRecords
+                    refresh();
+                } else {
+                    treeViewer.update(elements.toArray(), null);
+                }
             }
         });
     }
@@ -224,6 +224,11 @@ public class ViolationOverviewContentProvider
 
     @Override
     public boolean hasChildren(Object element) {
+        if (element instanceof FileRecord || element instanceof PackageRecord || element instanceof FolderRecord) {
+            // answered by the marker index, without creating the files or grouping the markers
+            return ((AbstractPMDRecord) element).hasMarkers();
+        }
+
         boolean hasChildren = true;
 
         // find out if this is the last level in the tree (to avaoid recursion)
@@ -4,18 +4,16 @@
 
 package net.sourceforge.pmd.eclipse.ui.views.actions;
 
-import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
 
-import org.eclipse.core.runtime.IProgressMonitor;
-import org.eclipse.jface.dialogs.ProgressMonitorDialog;
-import org.eclipse.jface.operation.IRunnableWithProgress;
 import org.eclipse.jface.viewers.TreeViewer;
-import org.eclipse.swt.widgets.Display;
 import org.eclipse.swt.widgets.TreeItem;
 
 import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
 import net.sourceforge.pmd.eclipse.ui.model.AbstractPMDRecord;
 import net.sourceforge.pmd.eclipse.ui.model.FileRecord;
+import net.sourceforge.pmd.eclipse.ui.model.FileStatisticsService;
 import net.sourceforge.pmd.eclipse.ui.model.PackageRecord;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.ui.views.ViolationOverview;
@@ -45,69 +43,24 @@ public class CalculateStatisticsAction extends AbstractPMDAction {
     }
 
     /**
-     * Executes the Action.
+     * Executes the Action. The statistics are calculated in the background, the view updates
+     * its labels, when the values are available.
      */
     @Override
     public void run() {
-        try {
-            final ProgressMonitorDialog dialog = new ProgressMonitorDialog(Display.getDefault().getActiveShell());
-            dialog.setCancelable(true);
-
-            dialog.run(false, false, new IRunnableWithProgress() {
-                @Override
-                public void run(IProgressMonitor monitor) throws InvocationTargetException, InterruptedException {
-                    final TreeItem[] items = getViewer().getTree().getItems();
-                    final int unitCount = calculateWorkUnits(items);
-                    monitor.beginTask(getString(StringKeys.MONITOR_CALC_STATS_TASK), unitCount);
-                    for (TreeItem item : items) {
-                        if (monitor.isCanceled()) {
-                            break;
-                        }
-                        if (item.getData() instanceof PackageRecord) {
-                            final PackageRecord record = (PackageRecord) item.getData();
-                            final AbstractPMDRecord[] children = record.getChildren();
-                            monitor.subTask(
-                                    getString(StringKeys.MONITOR_CALC_STATS_OF_PACKAGE) + ": " + record.getName());
-                            for (AbstractPMDRecord kid : children) {
-                                if (kid instanceof FileRecord) {
-                                    calculateFileRecord((FileRecord) kid);
-                                    monitor.worked(1);
-                                }
-                            }
-                        } else if (item.getData() instanceof FileRecord) {
-                            calculateFileRecord((FileRecord) item.getData());
-                            monitor.worked(1);
-                        }
+        final List<FileRecord> fileRecords = new ArrayList<>();
+        for (TreeItem item : getViewer().getTree().getItems()) {
+            if (item.getData() instanceof PackageRecord) {
+                for (AbstractPMDRecord kid : ((PackageRecord) item.getData()).getChildren()) {
+                    if (kid instanceof FileRecord) {
+                        fileRecords.add((FileRecord) kid);
                     }
-
-                    getViewer().refresh(true);
                 }
-            });
-        } catch (InvocationTargetException e) {
-            logErrorByKey(StringKeys.ERROR_INVOCATIONTARGET_EXCEPTION, e);
-        } catch (InterruptedException e) {
-            logErrorByKey(StringKeys.ERROR_INTERRUPTED_EXCEPTION, e);
-        }
-    }
-
-    private void calculateFileRecord(FileRecord fileRecord) {
-        if (fileRecord.getLOC() == 0) {
-            fileRecord.calculateLinesOfCode();
-            fileRecord.calculateNumberOfMethods();
-        }
-    }
-
-    private int calculateWorkUnits(TreeItem[] items) {
-        int count = 0;
-        for (TreeItem item : items) {
-            Object data = item.getData();
-            if (data instanceof PackageRecord) {
-                count += ((PackageRecord) data).getChildren().length;
-            } else if (data instanceof FileRecord) {
-                count++;
+            } else if (item.getData() instanceof FileRecord) {
+                fileRecords.add((FileRecord) item.getData());
             }
         }
-        return count;
+        FileStatisticsService.getInstance().calculate(fileRecords, true);
     }
 
 }
@@ -59,6 +59,7 @@ public class ReviewResourceAction extends AbstractPMDAction {
                     cmd.addResource(resource);
                     cmd.setStepCount(1);
                     cmd.setTaskMarker(true);
+                    cmd.setRetainMarkers(false);
                     cmd.setUserInitiated(true);
                     try {
                         cmd.performExecute();
@@ -9,7 +9,7 @@ import org.eclipse.jface.viewers.TableViewer;
 import org.eclipse.swt.widgets.Shell;
 
 import net.sourceforge.pmd.Rule;
-import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.core.internal.RuleRegistry;
 import net.sourceforge.pmd.eclipse.runtime.builder.MarkerUtil;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
 import net.sourceforge.pmd.eclipse.ui.preferences.RuleDialog;
@@ -70,8 +70,7 @@ public class ShowRuleAction extends AbstractViolationSelectionAction {
         try {
             IMarker[] markers = getSelectedViolations();
             if (markers != null) {
-                rule = PMDPlugin.getDefault().getPreferencesManager().getRuleSet()
-                        .getRuleByName(MarkerUtil.ruleNameFor(markers[0]));
+                rule = RuleRegistry.getInstance().getRule(MarkerUtil.ruleNameFor(markers[0]));
             }
         } catch (RuntimeException e) {
             logErrorByKey(StringKeys.ERROR_RUNTIME_EXCEPTION, e);
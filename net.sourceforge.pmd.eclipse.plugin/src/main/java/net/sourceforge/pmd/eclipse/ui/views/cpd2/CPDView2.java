@@ -4,13 +4,15 @@
 
 package net.sourceforge.pmd.eclipse.ui.views.cpd2;
 
+import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.PriorityQueue;
 
 import org.eclipse.jface.viewers.IStructuredSelection;
 import org.eclipse.jface.viewers.TreeNode;
@@ -39,7 +41,6 @@ import net.sourceforge.pmd.cpd.Match;
 import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
 import net.sourceforge.pmd.eclipse.runtime.PMDRuntimeConstants;
 import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
-import net.sourceforge.pmd.util.StringUtil;
 
 /**
  * An updated view for Cut & Paste Detector that shows the results in a tree
@@ -64,21 +65,48 @@ public class CPDView2 extends ViewPart implements IPropertyListener {
     private TreeColumn messageColumn; // we adjust the width of this one
 
     private static final int SPAN_COLUMN_WIDTH = 50;
-    private static final int MAX_MATCHES = 100;
     private static final int X_GAP = 6;
-    private static final String TAB_EQUIVALENT = "    "; // tab char == 4 spaces
     public static final int SOURCE_COLUMN_IDX = 1;
 
-    private static List<Match> asList(Iterator<Match> matchIter) {
-        List<Match> matches = new ArrayList<>(MAX_MATCHES);
-
-        for (int count = 0; matchIter.hasNext() && count < MAX_MATCHES; count++) {
-            matches.add(matchIter.next());
+    /**
+     * Orders the matches by size: the number of tokens, then the number of lines and marks.
+     */
+    private static final Comparator<Match> BY_SIZE = new Comparator<Match>() {
+        @Override
+        public int compare(Match match1, Match match2) {
+            int result = Integer.compare(match1.getTokenCount(), match2.getTokenCount());
+            if (result == 0) {
+                result = Integer.compare(match1.getLineCount(), match2.getLineCount());
+            }
+            if (result == 0) {
+                result = Integer.compare(match1.getMarkCount(), match2.getMarkCount());
+            }
+            return result;
         }
+    };
 
-        Collections.sort(matches, Match.MATCHES_COMPARATOR);
-        Collections.reverse(matches);
+    /**
+     * Selects the largest matches of all matches. Only the selected matches are kept in a
+     * bounded heap while iterating.
+     *
+     * @param matchIter all matches
+     * @param maxMatches the maximum number of matches, 0 to select all
+     * @return the selected matches, the largest first
+     */
+    private static List<Match> largestMatches(Iterator<Match> matchIter, int maxMatches) {
+        // the heap grows on demand, a large maximum mustn't allocate it in advance (nor overflow)
+        int initialCapacity = maxMatches > 0 ? Math.min(maxMatches, 1023) + 1 : 11;
+        PriorityQueue<Match> largest = new PriorityQueue<>(initialCapacity, BY_SIZE);
+        while (matchIter.hasNext()) {
+            largest.add(matchIter.next());
+            if (maxMatches > 0 && largest.size() > maxMatches) {
+                // drop the smallest one
+                largest.poll();
+            }
+        }
 
+        List<Match> matches = new ArrayList<>(largest);
+        Collections.sort(matches, Collections.reverseOrder(BY_SIZE));
         return matches;
     }
 
@@ -90,27 +118,7 @@ public class CPDView2 extends ViewPart implements IPropertyListener {
     }
 
     public static String[] sourceLinesFrom(Match match, boolean trimLeadingWhitespace) {
-
-        final String text = match.getSourceCodeSlice().replaceAll("\t", TAB_EQUIVALENT);
-        final StringTokenizer lines = new StringTokenizer(text, "\n");
-
-        List<String> sourceLines = new ArrayList<>();
-
-        while (lines.hasMoreTokens()) {
-            String line = lines.nextToken();
-            sourceLines.add(line);
-        }
-
-        String[] lineArr = new String[sourceLines.size()];
-        lineArr = sourceLines.toArray(lineArr);
-
-        if (trimLeadingWhitespace) {
-            int trimDepth = StringUtil.maxCommonLeadingWhitespaceForAll(lineArr);
-            if (trimDepth > 0) {
-                lineArr = StringUtil.trimStartOn(lineArr, trimDepth);
-            }
-        }
-        return lineArr;
+        return SourceLines.linesFrom(match.getSourceCodeSlice(), trimLeadingWhitespace);
     }
 
     @Override
@@ -158,7 +166,8 @@ public class CPDView2 extends ViewPart implements IPropertyListener {
 
     @Override
     public void createPartControl(Composite parent) {
-        int treeStyle = SWT.H_SCROLL | SWT.V_SCROLL | SWT.MULTI | SWT.FULL_SELECTION;
+        // virtual, so that only the visible matches get tree items, even if all matches are shown
+        int treeStyle = SWT.H_SCROLL | SWT.V_SCROLL | SWT.MULTI | SWT.FULL_SELECTION | SWT.VIRTUAL;
         treeViewer = new TreeViewer(parent, treeStyle);
         treeViewer.setUseHashlookup(true);
         Tree tree = treeViewer.getTree();
@@ -266,6 +275,9 @@ public class CPDView2 extends ViewPart implements IPropertyListener {
                     return;
                 }
 
+                if (!(event.item.getData() instanceof TreeNode)) {
+                    return;
+                }
                 Object item = ((TreeNode) event.item.getData()).getValue();
 
                 String[] names;
@@ -342,36 +354,89 @@ public class CPDView2 extends ViewPart implements IPropertyListener {
     }
 
     /**
-     * Sets input for the table.
+     * Sets input for the table. Only the largest matches are shown, as configured in the CPD
+     * preferences.
      * 
      * @param matches
      *            CPD Command that contain the matches from the CPD
      */
     public void setData(Iterator<Match> matches) {
         List<TreeNode> elements = new ArrayList<>();
+        String description = "";
         if (matches != null) {
-            for (Match match : asList(matches)) {
-                // create a treenode for the match and add to the list
-                TreeNode matchNode = new TreeNode(match);
-                elements.add(matchNode);
-
-                String[] lines = sourceLinesFrom(match, true);
-                TreeNode[] children = new TreeNode[lines.length];
-
-                for (int j = 0; j < lines.length; j++) {
-                    String line = lines[j];
-                    if (line == null) {
-                        System.out.println();
-                    }
-                    children[j] = new TreeNode(line);
-                    children[j].setParent(matchNode);
-                }
-                matchNode.setChildren(children);
+            CountingIterator counter = new CountingIterator(matches);
+            int maxMatches = PMDPlugin.getDefault().loadPreferences().getCpdMaxMatches();
+            for (Match match : largestMatches(counter, maxMatches)) {
+                elements.add(new MatchNode(match));
+            }
+            if (counter.count > elements.size()) {
+                description = MessageFormat.format(getString(StringKeys.VIEW_CPD_LARGEST_MATCHES), elements.size(),
+                        counter.count);
             }
         }
 
         // set the children of the rootnode: the matches
         treeViewer.setInput(elements.toArray(new TreeNode[0]));
+        setContentDescription(description);
+    }
+
+    /**
+     * The node of a match. The source code of the match is only read and split into lines, when
+     * the children are requested, i.e. when the node is expanded.
+     */
+    private static final class MatchNode extends TreeNode {
+
+        MatchNode(Match match) {
+            super(match);
+        }
+
+        @Override
+        public boolean hasChildren() {
+            return true;
+        }
+
+        @Override
+        public TreeNode[] getChildren() {
+            TreeNode[] children = super.getChildren();
+            if (children == null) {
+                String[] lines = sourceLinesFrom((Match) getValue(), true);
+                children = new TreeNode[lines.length];
+                for (int i = 0; i < lines.length; i++) {
+                    children[i] = new TreeNode(lines[i]);
+                    children[i].setParent(this);
+                }
+                setChildren(children);
+            }
+            return children;
+        }
+    }
+
+    /**
+     * Counts all matches, while the largest ones are selected.
+     */
+    private static final class CountingIterator implements Iterator<Match> {
+        private final Iterator<Match> matches;
+        private int count;
+
+        CountingIterator(Iterator<Match> matches) {
+            this.matches = matches;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return matches.hasNext();
+        }
+
+        @Override
+        public Match next() {
+            count++;
+            return matches.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
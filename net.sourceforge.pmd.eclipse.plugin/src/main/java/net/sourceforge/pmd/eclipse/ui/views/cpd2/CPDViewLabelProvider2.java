@@ -60,7 +60,8 @@ public class CPDViewLabelProvider2 extends LabelProvider implements ITableLabelP
         Object source = node.getValue();
 
         if (source instanceof Match) {
-            return node.getChildren().length;
+            // not the number of children, these are only created when the node is expanded
+            return ((Match) source).getLineCount();
         }
 
         return -1;
@@ -79,12 +79,16 @@ public class CPDViewTooltipListener2 implements Listener {
     }
 
     private static Match matchAt(TreeItem treeItem) {
+        if (!(treeItem.getData() instanceof TreeNode)) {
+            return null;
+        }
         Object item = ((TreeNode) treeItem.getData()).getValue();
         return item instanceof Match ? (Match) item : null;
     }
 
     private Mark itemAt(TreeItem treeItem, Point location) {
-        if (treeItem == null) {
+        // the items of the virtual tree might not have been populated yet
+        if (treeItem == null || !(treeItem.getData() instanceof TreeNode)) {
             return null;
         }
 
@@ -0,0 +1,53 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.ui.views.cpd2;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+import net.sourceforge.pmd.util.StringUtil;
+
+/**
+ * Splits the source code slices of the CPD matches into the lines shown in the CPD view.
+ * Doesn't depend on the workbench, so that it can be used without a display.
+ */
+public final class SourceLines {
+
+    private static final String TAB_EQUIVALENT = "    "; // tab char == 4 spaces
+
+    private SourceLines() {
+        // utility
+    }
+
+    /**
+     * @param sourceCodeSlice the source code of a match
+     * @param trimLeadingWhitespace whether the common leading whitespace of all lines should be removed
+     * @return the non-empty lines of the source code, tabs are replaced by spaces
+     */
+    public static String[] linesFrom(String sourceCodeSlice, boolean trimLeadingWhitespace) {
+
+        final String text = sourceCodeSlice.replaceAll("\t", TAB_EQUIVALENT);
+        final StringTokenizer lines = new StringTokenizer(text, "\n");
+
+        List<String> sourceLines = new ArrayList<>();
+
+        while (lines.hasMoreTokens()) {
+            String line = lines.nextToken();
+            sourceLines.add(line);
+        }
+
+        String[] lineArr = new String[sourceLines.size()];
+        lineArr = sourceLines.toArray(lineArr);
+
+        if (trimLeadingWhitespace) {
+            int trimDepth = StringUtil.maxCommonLeadingWhitespaceForAll(lineArr);
+            if (trimDepth > 0) {
+                lineArr = StringUtil.trimStartOn(lineArr, trimDepth);
+            }
+        }
+        return lineArr;
+    }
+}
@@ -0,0 +1,327 @@
+/**
+ * BSD-style license; for more info see http://pmd.sourceforge.net/license.html
+ */
+
+package net.sourceforge.pmd.eclipse.ui.views.profiler;
+
+import java.text.MessageFormat;
+import java.util.Collections;
+import java.util.Locale;
+
+import org.eclipse.jface.action.Action;
+import org.eclipse.jface.action.IAction;
+import org.eclipse.jface.action.IToolBarManager;
+import org.eclipse.jface.viewers.ArrayContentProvider;
+import org.eclipse.jface.viewers.ISelection;
+import org.eclipse.jface.viewers.ISelectionChangedListener;
+import org.eclipse.jface.viewers.IStructuredSelection;
+import org.eclipse.jface.viewers.ITableLabelProvider;
+import org.eclipse.jface.viewers.LabelProvider;
+import org.eclipse.jface.viewers.SelectionChangedEvent;
+import org.eclipse.jface.viewers.TableViewer;
+import org.eclipse.jface.viewers.Viewer;
+import org.eclipse.jface.viewers.ViewerComparator;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.custom.SashForm;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Display;
+import org.eclipse.swt.widgets.Table;
+import org.eclipse.swt.widgets.TableColumn;
+import org.eclipse.ui.part.ViewPart;
+
+import net.sourceforge.pmd.eclipse.plugin.PMDPlugin;
+import net.sourceforge.pmd.eclipse.runtime.profiler.RuleProfiler;
+import net.sourceforge.pmd.eclipse.runtime.profiler.TimingStatistics;
+import net.sourceforge.pmd.eclipse.ui.PMDUiConstants;
+import net.sourceforge.pmd.eclipse.ui.nls.StringKeys;
+
+/**
+ * Shows the execution times of the rules, collected by the {@link RuleProfiler}. The upper
+ * table lists the rules, the lower tables show the slowest files of the selected rule and the
+ * time spent for parsing versus the time spent for the rules per language.
+ */
+public class RuleTimingsView extends ViewPart implements RuleProfiler.Listener {
+
+    private static final int REFRESH_DELAY = 1000;
+
+    private TableViewer ruleViewer;
+    private TableViewer fileViewer;
+    private TableViewer phaseViewer;
+    private boolean refreshScheduled;
+
+    @Override
+    public void createPartControl(Composite parent) {
+        SashForm sash = new SashForm(parent, SWT.VERTICAL);
+        ruleViewer = createStatisticsViewer(sash, getString(StringKeys.VIEW_TIMINGS_COLUMN_RULE));
+        SashForm bottom = new SashForm(sash, SWT.HORIZONTAL);
+        fileViewer = createFileViewer(bottom);
+        phaseViewer = createStatisticsViewer(bottom, getString(StringKeys.VIEW_TIMINGS_COLUMN_PHASE));
+        sash.setWeights(new int[] { 65, 35 });
+
+        ruleViewer.addSelectionChangedListener(new ISelectionChangedListener() {
+            @Override
+            public void selectionChanged(SelectionChangedEvent event) {
+                showSlowestFiles();
+            }
+        });
+
+        createActions(getViewSite().getActionBars().getToolBarManager());
+        RuleProfiler.getInstance().addListener(this);
+        refresh();
+    }
+
+    private TableViewer createStatisticsViewer(Composite parent, String nameTitle) {
+        TableViewer viewer = createViewer(parent);
+        String[] titles = { nameTitle, getString(StringKeys.VIEW_TIMINGS_COLUMN_LANGUAGE),
+            getString(StringKeys.VIEW_TIMINGS_COLUMN_FILES), getString(StringKeys.VIEW_TIMINGS_COLUMN_TOTAL),
+            getString(StringKeys.VIEW_TIMINGS_COLUMN_MEAN), getString(StringKeys.VIEW_TIMINGS_COLUMN_P95), };
+        int[] widths = { 260, 80, 70, 100, 100, 120 };
+        for (int i = 0; i < titles.length; i++) {
+            createColumn(viewer, titles[i], widths[i], i == 0 || i == 1 ? SWT.LEFT : SWT.RIGHT, i);
+        }
+        viewer.setLabelProvider(new StatisticsLabelProvider());
+        // the slowest rules first
+        StatisticsComparator comparator = new StatisticsComparator();
+        comparator.setColumn(3);
+        viewer.setComparator(comparator);
+        return viewer;
+    }
+
+    private TableViewer createFileViewer(Composite parent) {
+        TableViewer viewer = createViewer(parent);
+        createColumn(viewer, getString(StringKeys.VIEW_TIMINGS_COLUMN_FILE), 400, SWT.LEFT, -1);
+        createColumn(viewer, getString(StringKeys.VIEW_TIMINGS_COLUMN_TIME), 100, SWT.RIGHT, -1);
+        viewer.setLabelProvider(new FileTimingLabelProvider());
+        return viewer;
+    }
+
+    private static TableViewer createViewer(Composite parent) {
+        TableViewer viewer = new TableViewer(parent, SWT.SINGLE | SWT.FULL_SELECTION | SWT.H_SCROLL | SWT.V_SCROLL);
+        viewer.getTable().setHeaderVisible(true);
+        viewer.getTable().setLinesVisible(true);
+        viewer.setContentProvider(ArrayContentProvider.getInstance());
+        return viewer;
+    }
+
+    /**
+     * @param sortIndex the index used for sorting or -1, if the column is not sortable
+     */
+    private static void createColumn(final TableViewer viewer, String title, int width, int style,
+            final int sortIndex) {
+        final Table table = viewer.getTable();
+        final TableColumn column = new TableColumn(table, style);
+        column.setText(title);
+        column.setWidth(width);
+        if (sortIndex < 0) {
+            return;
+        }
+        if (sortIndex == 3) {
+            table.setSortColumn(column);
+            table.setSortDirection(SWT.DOWN);
+        }
+        column.addSelectionListener(new SelectionAdapter() {
+            @Override
+            public void widgetSelected(SelectionEvent e) {
+                StatisticsComparator comparator = (StatisticsComparator) viewer.getComparator();
+                comparator.setColumn(sortIndex);
+                table.setSortColumn(column);
+                table.setSortDirection(comparator.isDescending() ? SWT.DOWN : SWT.UP);
+                viewer.refresh();
+            }
+        });
+    }
+
+    private void createActions(IToolBarManager toolBar) {
+        final RuleProfiler profiler = RuleProfiler.getInstance();
+
+        Action collectAction = new Action(null, IAction.AS_CHECK_BOX) {
+            @Override
+            public void run() {
+                profiler.setEnabled(isChecked());
+            }
+        };
+        collectAction.setImageDescriptor(PMDPlugin.getImageDescriptor(PMDUiConstants.ICON_BUTTON_CALCULATE));
+        collectAction.setToolTipText(getString(StringKeys.VIEW_TIMINGS_ACTION_COLLECT));
+        collectAction.setChecked(profiler.isEnabled());
+
+        Action resetAction = new Action() {
+            @Override
+            public void run() {
+                profiler.reset();
+            }
+        };
+        resetAction.setImageDescriptor(PMDPlugin.getImageDescriptor(PMDUiConstants.ICON_BUTTON_DELETE));
+        resetAction.setToolTipText(getString(StringKeys.VIEW_TIMINGS_ACTION_RESET));
+
+        toolBar.add(collectAction);
+        toolBar.add(resetAction);
+    }
+
+    /**
+     * Refreshes the tables at most once per second, as the statistics change with every analyzed file.
+     */
+    @Override
+    public void statisticsChanged() {
+        synchronized (this) {
+            if (refreshScheduled) {
+                return;
+            }
+            refreshScheduled = true;
+        }
+        final Display display = Display.getDefault();
+        display.asyncExec(new Runnable() {
+            @Override
+            public void run() {
+                display.timerExec(REFRESH_DELAY, new Runnable() {
+                    @Override
+                    public void run() {
+                        synchronized (RuleTimingsView.this) {
+                            refreshScheduled = false;
+                        }
+                        refresh();
+                    }
+                });
+            }
+        });
+    }
+
+    private void refresh() {
+        if (ruleViewer.getControl().isDisposed()) {
+            return;
+        }
+        RuleProfiler profiler = RuleProfiler.getInstance();
+        // the statistics objects stay the same until the profiler is reset
+        ISelection selection = ruleViewer.getSelection();
+        ruleViewer.setInput(profiler.getRuleStatistics());
+        ruleViewer.setSelection(selection);
+        phaseViewer.setInput(profiler.getPhaseStatistics());
+        showSlowestFiles();
+    }
+
+    private void showSlowestFiles() {
+        Object selected = ((IStructuredSelection) ruleViewer.getSelection()).getFirstElement();
+        if (selected instanceof TimingStatistics) {
+            fileViewer.setInput(((TimingStatistics) selected).getSlowestFiles());
+        } else {
+            fileViewer.setInput(Collections.emptyList());
+        }
+    }
+
+    @Override
+    public void setFocus() {
+        ruleViewer.getTable().setFocus();
+    }
+
+    @Override
+    public void dispose() {
+        RuleProfiler.getInstance().removeListener(this);
+        super.dispose();
+    }
+
+    private static String getString(String key) {
+        return PMDPlugin.getDefault().getStringTable().getString(key);
+    }
+
+    private static String formatMillis(double millis) {
+        return String.format(Locale.ROOT, "%.1f", millis);
+    }
+
+    /**
+     * Sorts the statistics by one column. Selecting the same column again reverses the order.
+     */
+    private static class StatisticsComparator extends ViewerComparator {
+        private int column = -1;
+        private boolean descending;
+
+        void setColumn(int newColumn) {
+            if (newColumn == column) {
+                descending = !descending;
+            } else {
+                column = newColumn;
+                // names ascending, numbers descending
+                descending = newColumn > 1;
+            }
+        }
+
+        boolean isDescending() {
+            return descending;
+        }
+
+        @Override
+        public int compare(Viewer viewer, Object e1, Object e2) {
+            TimingStatistics s1 = (TimingStatistics) e1;
+            TimingStatistics s2 = (TimingStatistics) e2;
+            int result;
+            switch (column) {
+            case 0:
+                result = s1.getName().compareToIgnoreCase(s2.getName());
+                break;
+            case 1:
+                result = s1.getLanguage().compareToIgnoreCase(s2.getLanguage());
+                break;
+            case 2:
+                result = Integer.compare(s1.getCount(), s2.getCount());
+                break;
+            case 4:
+                result = Double.compare(s1.getMeanMillis(), s2.getMeanMillis());
+                break;
+            case 5:
+                result = Double.compare(s1.getP95Millis(), s2.getP95Millis());
+                break;
+            case 3:
+            default:
+                result = Double.compare(s1.getTotalMillis(), s2.getTotalMillis());
+                break;
+            }
+            return descending ? -result : result;
+        }
+    }
+
+    private static class StatisticsLabelProvider extends LabelProvider implements ITableLabelProvider {
+        @Override
+        public Image getColumnImage(Object element, int columnIndex) {
+            return null;
+        }
+
+        @Override
+        public String getColumnText(Object element, int columnIndex) {
+            TimingStatistics statistics = (TimingStatistics) element;
+            switch (columnIndex) {
+            case 0:
+                if (statistics.isMeasuredWithoutRuleChain()) {
+                    return MessageFormat.format(getString(StringKeys.VIEW_TIMINGS_WITHOUT_RULE_CHAIN),
+                            statistics.getName());
+                }
+                return statistics.getName();
+            case 1:
+                return statistics.getLanguage();
+            case 2:
+                return String.valueOf(statistics.getCount());
+            case 3:
+                return formatMillis(statistics.getTotalMillis());
+            case 4:
+                return formatMillis(statistics.getMeanMillis());
+            case 5:
+                return formatMillis(statistics.getP95Millis());
+            default:
+                return "";
+            }
+        }
+    }
+
+    private static class FileTimingLabelProvider extends LabelProvider implements ITableLabelProvider {
+        @Override
+        public Image getColumnImage(Object element, int columnIndex) {
+            return null;
+        }
+
+        @Override
+        public String getColumnText(Object element, int columnIndex) {
+            TimingStatistics.FileTiming timing = (TimingStatistics.FileTiming) element;
+            return columnIndex == 0 ? timing.getFile() : formatMillis(timing.getMillis());
+        }
+    }
+}